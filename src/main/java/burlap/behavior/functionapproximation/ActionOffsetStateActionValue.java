@@ -0,0 +1,21 @@
+package burlap.behavior.functionapproximation;
+
+import burlap.mdp.core.action.Action;
+
+/**
+ * A {@link DifferentiableStateActionValue} whose parameters are laid out in one block per action, each holding the parameters of
+ * the same state features in the same order, so that the parameter of a state feature for one action is the parameter of that
+ * feature for another action shifted by the difference of their offsets. Learning algorithms can use the offsets to find the
+ * parameters of every action in a state from the gradient of a single action, rather than computing the gradient of each action.
+ */
+public interface ActionOffsetStateActionValue extends DifferentiableStateActionValue {
+
+	/**
+	 * Returns the index of the first parameter of the given action's block of parameters. This function should have evaluated a
+	 * state before this method is called.
+	 * @param a the {@link Action}
+	 * @return the index of the first parameter of the action's block of parameters
+	 */
+	int actionParameterOffset(Action a);
+
+}
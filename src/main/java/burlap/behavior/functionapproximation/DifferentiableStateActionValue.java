@@ -19,4 +19,18 @@ public interface DifferentiableStateActionValue extends ParametricFunction.Param
 	 */
 	FunctionGradient gradient(State s, Action a);
 
+	/**
+	 * Writes the gradient of this function into the given gradient, replacing its entries, so that a learner can reuse one
+	 * instance across updates. The default implementation copies the non-zero partial derivatives of {@link #gradient(State, Action)}.
+	 * @param s the input {@link State}
+	 * @param a the input {@link Action}
+	 * @param out the gradient into which the gradient of this function is written
+	 * @return out
+	 */
+	default FunctionGradient.SparseArrayGradient gradient(State s, Action a, FunctionGradient.SparseArrayGradient out){
+		out.clear();
+		out.addScaled(this.gradient(s, a), 1.);
+		return out;
+	}
+
 }
@@ -0,0 +1,218 @@
+package burlap.behavior.functionapproximation;
+
+import burlap.behavior.functionapproximation.dense.DenseStateFeatures;
+import burlap.behavior.functionapproximation.sparse.SparseFeatureMatrix;
+import burlap.behavior.functionapproximation.sparse.SparseStateFeatures;
+import burlap.mdp.core.state.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Methods for extracting the features of a batch of states into a row-major matrix, for {@link DenseStateFeatures}, or into a
+ * {@link SparseFeatureMatrix}, for {@link SparseStateFeatures}. Large batches may be split into contiguous chunks of states that are
+ * extracted in parallel on an {@link ExecutorService}; batches with fewer than {@link #MIN_CHUNK_ROWS} states per chunk use fewer chunks.
+ * <p>
+ * When extracting in parallel, the feature extractor is called concurrently after the first state has been extracted, so it must be
+ * safe to call concurrently once it has seen a state. This is not true of extractors that assign feature ids as new features are
+ * found, such as {@link burlap.behavior.functionapproximation.sparse.tilecoding.TileCodingFeatures}.
+ */
+public class FeatureBatches {
+
+	/**
+	 * The smallest number of states extracted by a parallel chunk
+	 */
+	public static final int MIN_CHUNK_ROWS = 64;
+
+
+	private FeatureBatches() {
+		// do nothing
+	}
+
+
+	/**
+	 * Returns the row-major matrix of the feature vectors of a batch of states, whose row length is the length of the first state's
+	 * feature vector.
+	 * @param features the feature extractor
+	 * @param states the states
+	 * @return the row-major matrix of feature vectors
+	 */
+	public static double [] denseMatrix(DenseStateFeatures features, List<? extends State> states){
+		return denseMatrix(features, states, null, 1);
+	}
+
+	/**
+	 * Returns the row-major matrix of the feature vectors of a batch of states, whose row length is the length of the first state's
+	 * feature vector, extracting chunks of states in parallel.
+	 * @param features the feature extractor
+	 * @param states the states
+	 * @param executor the executor on which chunks are run; if null, the states are extracted serially
+	 * @param numChunks the largest number of chunks into which the states are split
+	 * @return the row-major matrix of feature vectors
+	 */
+	public static double [] denseMatrix(DenseStateFeatures features, List<? extends State> states, ExecutorService executor, int numChunks){
+		if(states.isEmpty()){
+			return new double[0];
+		}
+		double [] first = features.features(states.get(0));
+		double [] matrix = new double[states.size()*first.length];
+		System.arraycopy(first, 0, matrix, 0, first.length);
+		fillDense(features, states, matrix, first.length, 1, executor, numChunks);
+		return matrix;
+	}
+
+	/**
+	 * Writes the feature vectors of a batch of states into the rows of a caller-supplied row-major matrix, extracting chunks of states
+	 * in parallel.
+	 * @param features the feature extractor
+	 * @param states the states
+	 * @param matrix the matrix into which the feature vectors are written; must have room for states.size()*rowLength elements
+	 * @param rowLength the length of every feature vector
+	 * @param executor the executor on which chunks are run; if null, the states are extracted serially
+	 * @param numChunks the largest number of chunks into which the states are split
+	 */
+	public static void denseMatrix(DenseStateFeatures features, List<? extends State> states, double [] matrix, int rowLength,
+								   ExecutorService executor, int numChunks){
+		if(states.isEmpty()){
+			return;
+		}
+		features.features(states.subList(0, 1), matrix, rowLength);
+		fillDense(features, states, matrix, rowLength, 1, executor, numChunks);
+	}
+
+
+	/**
+	 * Returns a {@link SparseFeatureMatrix} with a row for the features of each state of a batch.
+	 * @param features the feature extractor
+	 * @param states the states
+	 * @return the matrix of feature rows
+	 */
+	public static SparseFeatureMatrix sparseMatrix(SparseStateFeatures features, List<? extends State> states){
+		return sparseMatrix(features, states, null, 1);
+	}
+
+	/**
+	 * Returns a {@link SparseFeatureMatrix} with a row for the features of each state of a batch, extracting chunks of states in parallel.
+	 * Each chunk fills its own matrix, and the chunks' rows are then appended in state order.
+	 * @param features the feature extractor
+	 * @param states the states
+	 * @param executor the executor on which chunks are run; if null, the states are extracted serially
+	 * @param numChunks the largest number of chunks into which the states are split
+	 * @return the matrix of feature rows
+	 */
+	public static SparseFeatureMatrix sparseMatrix(final SparseStateFeatures features, final List<? extends State> states, ExecutorService executor, int numChunks){
+
+		SparseFeatureMatrix matrix = new SparseFeatureMatrix(states.size(), states.size());
+		if(states.isEmpty()){
+			return matrix;
+		}
+		features.features(states.get(0), matrix);
+
+		int n = states.size() - 1;
+		int chunks = numChunks(n, executor, numChunks);
+		if(chunks <= 1){
+			features.features(states.subList(1, states.size()), matrix);
+			return matrix;
+		}
+
+		List<Callable<SparseFeatureMatrix>> blocks = new ArrayList<Callable<SparseFeatureMatrix>>(chunks);
+		for(int c = 0; c < chunks; c++){
+			final int start = 1 + (int)((long)n * c / chunks);
+			final int end = 1 + (int)((long)n * (c+1) / chunks);
+			blocks.add(new Callable<SparseFeatureMatrix>() {
+				@Override
+				public SparseFeatureMatrix call() throws Exception {
+					SparseFeatureMatrix m = new SparseFeatureMatrix(end - start, end - start);
+					features.features(states.subList(start, end), m);
+					return m;
+				}
+			});
+		}
+		for(SparseFeatureMatrix m : invokeBlocks(executor, blocks)){
+			matrix.addRows(m);
+		}
+
+		return matrix;
+	}
+
+
+	/**
+	 * Writes the feature vectors of the states from the given first state onward into the rows of a row-major matrix.
+	 * @param features the feature extractor
+	 * @param states the states
+	 * @param matrix the matrix
+	 * @param rowLength the length of every feature vector
+	 * @param first the index of the first state to extract
+	 * @param executor the executor on which chunks are run; if null, the states are extracted serially
+	 * @param numChunks the largest number of chunks into which the states are split
+	 */
+	protected static void fillDense(final DenseStateFeatures features, final List<? extends State> states, final double [] matrix, final int rowLength,
+									int first, ExecutorService executor, int numChunks){
+
+		int n = states.size() - first;
+		int chunks = numChunks(n, executor, numChunks);
+		if(chunks <= 1){
+			fillDenseRows(features, states, matrix, rowLength, first, states.size());
+			return;
+		}
+
+		List<Callable<Object>> blocks = new ArrayList<Callable<Object>>(chunks);
+		for(int c = 0; c < chunks; c++){
+			final int start = first + (int)((long)n * c / chunks);
+			final int end = first + (int)((long)n * (c+1) / chunks);
+			blocks.add(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					fillDenseRows(features, states, matrix, rowLength, start, end);
+					return null;
+				}
+			});
+		}
+		invokeBlocks(executor, blocks);
+
+	}
+
+	protected static void fillDenseRows(DenseStateFeatures features, List<? extends State> states, double [] matrix, int rowLength, int start, int end){
+		//extract each row into a scratch row so that a vector of the wrong length never writes into a neighbouring row
+		double [] row = new double[rowLength];
+		for(int i = start; i < end; i++){
+			int n;
+			try {
+				n = features.features(states.get(i), row, 0);
+			} catch(IndexOutOfBoundsException e) {
+				throw new RuntimeException("Feature vector is longer than the matrix row length " + rowLength, e);
+			}
+			if(n != rowLength){
+				throw new RuntimeException("Feature vector of length " + n + " does not match the matrix row length " + rowLength);
+			}
+			System.arraycopy(row, 0, matrix, i*rowLength, rowLength);
+		}
+	}
+
+	protected static int numChunks(int n, ExecutorService executor, int numChunks){
+		if(executor == null){
+			return 1;
+		}
+		return Math.max(1, Math.min(numChunks, n / MIN_CHUNK_ROWS));
+	}
+
+	protected static <T> List<T> invokeBlocks(ExecutorService executor, List<Callable<T>> blocks){
+		List<T> results = new ArrayList<T>(blocks.size());
+		try {
+			for(Future<T> result : executor.invokeAll(blocks)){
+				results.add(result.get());
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while extracting a batch of features.", e);
+		} catch(ExecutionException e) {
+			throw new RuntimeException("Error while extracting a batch of features.", e.getCause());
+		}
+		return results;
+	}
+
+}
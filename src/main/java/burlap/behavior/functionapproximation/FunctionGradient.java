@@ -1,13 +1,26 @@
 package burlap.behavior.functionapproximation;
 
+import burlap.datastructures.IntHashIndex;
+
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
 
 /**
  * An interface for defining and querying the gradient of a function.
+ * <p>
+ * Besides {@link #getNonZeroPartialDerivatives()}, which returns a new set on each call, the stored partial derivatives
+ * can be iterated without allocation by index: for each entry i in [0, {@link #numEntries()}), {@link #parameterIdAt(int)}
+ * is the parameter of the entry and {@link #partialDerivativeAt(int)} its partial derivative. Entries may hold partial
+ * derivatives of zero. The index methods take constant time in the provided implementations; a gradient of another
+ * implementation may only provide them by walking {@link #getNonZeroPartialDerivatives()}, so code that iterates a gradient
+ * of unknown implementation should first call {@link #asIndexed()}, which copies such a gradient once. Three implementations are provided: {@link SparseGradient}, backed by a {@link java.util.Map};
+ * {@link DenseGradient}, backed by a double array over a contiguous range of parameters; and {@link SparseArrayGradient},
+ * backed by parallel primitive arrays, which also supports accumulating gradients and can be cleared and reused.
  * @author James MacGlashan
  *
  */
@@ -45,6 +58,68 @@ public interface FunctionGradient {
 	int numNonZeroPDs();
 
 
+	/**
+	 * Returns the number of stored entries, which can be iterated with {@link #parameterIdAt(int)} and {@link #partialDerivativeAt(int)}.
+	 * Entries may hold partial derivatives of zero. The default implementation returns {@link #numNonZeroPDs()}.
+	 * @return the number of stored entries
+	 */
+	default int numEntries(){
+		return this.numNonZeroPDs();
+	}
+
+
+	/**
+	 * Returns a gradient with the same partial derivatives as this one whose {@link #parameterIdAt(int)} and {@link #partialDerivativeAt(int)}
+	 * take constant time. The default implementation copies the non-zero partial derivatives into a new {@link SparseArrayGradient};
+	 * implementations that override the index methods should return this gradient itself.
+	 * @return a gradient with the same partial derivatives that can be iterated by index in linear time
+	 */
+	default FunctionGradient asIndexed(){
+		Set<PartialDerivative> pds = this.getNonZeroPartialDerivatives();
+		SparseArrayGradient copy = new SparseArrayGradient(pds.size());
+		for(PartialDerivative pd : pds){
+			copy.put(pd.parameterId, pd.value);
+		}
+		return copy;
+	}
+
+
+	/**
+	 * Returns the parameter identifier of the given entry. The default implementation walks {@link #getNonZeroPartialDerivatives()}
+	 * on every call, so iterating all entries takes quadratic time; implementations should override it along with {@link #numEntries()},
+	 * {@link #partialDerivativeAt(int)} and {@link #asIndexed()}, and callers should iterate the gradient returned by {@link #asIndexed()}.
+	 * @param entry the entry index in [0, {@link #numEntries()})
+	 * @return the parameter identifier of the entry
+	 */
+	default int parameterIdAt(int entry){
+		return entryAt(this, entry).parameterId;
+	}
+
+
+	/**
+	 * Returns the partial derivative of the given entry. The default implementation walks {@link #getNonZeroPartialDerivatives()}
+	 * on every call, so iterating all entries takes quadratic time; implementations should override it along with {@link #numEntries()},
+	 * {@link #parameterIdAt(int)} and {@link #asIndexed()}, and callers should iterate the gradient returned by {@link #asIndexed()}.
+	 * @param entry the entry index in [0, {@link #numEntries()})
+	 * @return the partial derivative of the entry
+	 */
+	default double partialDerivativeAt(int entry){
+		return entryAt(this, entry).value;
+	}
+
+
+	/**
+	 * Returns the given element of the non-zero partial derivatives of a gradient.
+	 */
+	static PartialDerivative entryAt(FunctionGradient gradient, int entry){
+		Iterator<PartialDerivative> it = gradient.getNonZeroPartialDerivatives().iterator();
+		for(int i = 0; i < entry; i++){
+			it.next();
+		}
+		return it.next();
+	}
+
+
 	/**
 	 * A class for storing a partial derivative. Consists of the parameter id and the value of the partial derivative.
 	 */
@@ -89,6 +164,17 @@ public interface FunctionGradient {
 		 */
 		protected Map<Integer, Double> gradient;
 
+		/**
+		 * The parameter identifiers of the entries for index iteration; null when they must be rebuilt from the map.
+		 * Written after {@link #entryValues}, so that concurrent readers that see it also see the values.
+		 */
+		protected volatile int [] entryIds;
+
+		/**
+		 * The partial derivatives of the entries for index iteration
+		 */
+		protected volatile double [] entryValues;
+
 
 		/**
 		 * Initializes with the gradient unspecified for any weights.
@@ -109,6 +195,7 @@ public interface FunctionGradient {
 
 		@Override
 		public void put(int parameterId, double partialDerivative){
+			this.entryIds = null;
 			if(partialDerivative == 0.){
 				if(this.gradient.containsKey(parameterId)){
 					this.gradient.remove(parameterId);
@@ -145,8 +232,341 @@ public interface FunctionGradient {
 			return this.gradient.size();
 		}
 
+		@Override
+		public int numEntries(){
+			return this.gradient.size();
+		}
+
+		@Override
+		public FunctionGradient asIndexed(){
+			return this;
+		}
+
+		@Override
+		public int parameterIdAt(int entry){
+			this.ensureEntries();
+			return this.entryIds[entry];
+		}
+
+		@Override
+		public double partialDerivativeAt(int entry){
+			this.ensureEntries();
+			return this.entryValues[entry];
+		}
+
+		/**
+		 * Copies the map into the entry arrays if it changed since they were last built.
+		 */
+		protected void ensureEntries(){
+			if(this.entryIds != null){
+				return;
+			}
+			int [] ids = new int[this.gradient.size()];
+			double [] values = new double[ids.length];
+			int i = 0;
+			for(Map.Entry<Integer, Double> e : this.gradient.entrySet()){
+				ids[i] = e.getKey();
+				values[i] = e.getValue();
+				i++;
+			}
+			this.entryValues = values;
+			this.entryIds = ids;
+		}
+
+
+
+	}
+
+
+	/**
+	 * A {@link FunctionGradient} over a contiguous range of parameters, [offset, offset + length), whose partial derivatives are
+	 * stored in a double array. Parameters outside the range have a partial derivative of zero and cannot be set. Every
+	 * parameter in the range is an entry, including those whose partial derivative is zero. This representation suits
+	 * linear functions of dense features, whose gradient is the feature vector itself.
+	 */
+	public static class DenseGradient implements FunctionGradient{
+
+		/**
+		 * The partial derivatives of the parameters in the range
+		 */
+		protected double [] values;
+
+		/**
+		 * The first parameter of the range
+		 */
+		protected int offset;
+
+
+		/**
+		 * Initializes a zero gradient over parameters [0, dimension).
+		 * @param dimension the number of parameters
+		 */
+		public DenseGradient(int dimension) {
+			this(new double[dimension], 0);
+		}
+
+		/**
+		 * Initializes a gradient over parameters [0, values.length) that uses the given array, without copying, to store its partial derivatives.
+		 * @param values the partial derivatives
+		 */
+		public DenseGradient(double [] values) {
+			this(values, 0);
+		}
+
+		/**
+		 * Initializes a gradient over parameters [offset, offset + values.length) that uses the given array, without copying, to store its partial derivatives.
+		 * @param values the partial derivatives
+		 * @param offset the first parameter of the range
+		 */
+		public DenseGradient(double [] values, int offset) {
+			this.values = values;
+			this.offset = offset;
+		}
+
+		/**
+		 * Returns the array, without copying, holding the partial derivatives of parameters [offset, offset + length).
+		 * @return the array holding the partial derivatives
+		 */
+		public double [] values(){
+			return this.values;
+		}
+
+		/**
+		 * Returns the first parameter of the range.
+		 * @return the first parameter of the range
+		 */
+		public int getOffset(){
+			return this.offset;
+		}
+
+		/**
+		 * Sets every partial derivative to zero.
+		 */
+		public void clear(){
+			Arrays.fill(this.values, 0.);
+		}
+
+		@Override
+		public void put(int parameterId, double partialDerivative){
+			int i = parameterId - this.offset;
+			if(i < 0 || i >= this.values.length){
+				throw new RuntimeException("Parameter " + parameterId + " is outside the range [" + this.offset + ", " + (this.offset + this.values.length) + ") of this dense gradient.");
+			}
+			this.values[i] = partialDerivative;
+		}
+
+		@Override
+		public double getPartialDerivative(int parameterId){
+			int i = parameterId - this.offset;
+			if(i < 0 || i >= this.values.length){
+				return 0.;
+			}
+			return this.values[i];
+		}
+
+		@Override
+		public Set<PartialDerivative> getNonZeroPartialDerivatives(){
+			Set<PartialDerivative> nzPds = new HashSet<PartialDerivative>(this.values.length);
+			for(int i = 0; i < this.values.length; i++){
+				if(this.values[i] != 0.){
+					nzPds.add(new PartialDerivative(i + this.offset, this.values[i]));
+				}
+			}
+			return nzPds;
+		}
+
+		@Override
+		public int numNonZeroPDs(){
+			int n = 0;
+			for(double v : this.values){
+				if(v != 0.){
+					n++;
+				}
+			}
+			return n;
+		}
+
+		@Override
+		public int numEntries(){
+			return this.values.length;
+		}
+
+		@Override
+		public FunctionGradient asIndexed(){
+			return this;
+		}
+
+		@Override
+		public int parameterIdAt(int entry){
+			return entry + this.offset;
+		}
+
+		@Override
+		public double partialDerivativeAt(int entry){
+			return this.values[entry];
+		}
+
+	}
+
+
+	/**
+	 * A sparse {@link FunctionGradient} that stores the parameter identifiers and partial derivatives of its entries in parallel
+	 * primitive arrays, with an open-addressing hash table from parameter identifiers to entries, so that setting, adding to,
+	 * and querying a partial derivative take constant expected time and allocate nothing once the arrays are large enough.
+	 * Entries are never removed, so setting a partial derivative to zero leaves an entry with a value of zero; {@link #clear()}
+	 * removes all entries in time proportional to the capacity, so an instance can be reused as an accumulator
+	 * (see {@link #addScaled(FunctionGradient, double)}) across updates.
+	 */
+	public static class SparseArrayGradient implements FunctionGradient{
+
+		/**
+		 * The index from parameter identifiers to entries
+		 */
+		protected IntHashIndex entries;
+
+		/**
+		 * The partial derivative of each entry
+		 */
+		protected double [] values;
+
+
+		/**
+		 * Initializes with room for 16 entries.
+		 */
+		public SparseArrayGradient() {
+			this(16);
+		}
+
+		/**
+		 * Initializes with room for the given number of entries before the arrays must grow.
+		 * @param capacity the number of entries for which to reserve space
+		 */
+		public SparseArrayGradient(int capacity) {
+			this.entries = new IntHashIndex(capacity);
+			this.values = new double[Math.max(1, capacity)];
+		}
+
+		/**
+		 * Removes all entries, keeping the allocated arrays.
+		 */
+		public void clear(){
+			this.entries.clear();
+		}
+
+		/**
+		 * Adds the given value to the partial derivative of the given parameter.
+		 * @param parameterId the parameter identifier
+		 * @param value the value to add
+		 */
+		public void add(int parameterId, double value){
+			int e = this.entryOf(parameterId, true);
+			this.values[e] += value;
+		}
+
+		/**
+		 * Adds the partial derivatives of the given gradient, multiplied by the scale, to this gradient.
+		 * @param gradient the gradient to add
+		 * @param scale the value by which the gradient is multiplied
+		 */
+		public void addScaled(FunctionGradient gradient, double scale){
+			gradient = gradient.asIndexed();
+			int n = gradient.numEntries();
+			for(int i = 0; i < n; i++){
+				double v = gradient.partialDerivativeAt(i);
+				if(v != 0.){
+					this.add(gradient.parameterIdAt(i), scale * v);
+				}
+			}
+		}
+
+		/**
+		 * Multiplies every partial derivative by the given value.
+		 * @param scale the value by which every partial derivative is multiplied
+		 */
+		public void scale(double scale){
+			int n = this.entries.size();
+			for(int i = 0; i < n; i++){
+				this.values[i] *= scale;
+			}
+		}
+
+		@Override
+		public void put(int parameterId, double partialDerivative){
+			int e = this.entryOf(parameterId, partialDerivative != 0.);
+			if(e != -1){
+				this.values[e] = partialDerivative;
+			}
+		}
+
+		@Override
+		public double getPartialDerivative(int parameterId){
+			int e = this.entryOf(parameterId, false);
+			return e == -1 ? 0. : this.values[e];
+		}
+
+		@Override
+		public Set<PartialDerivative> getNonZeroPartialDerivatives(){
+			int n = this.entries.size();
+			Set<PartialDerivative> nzPds = new HashSet<PartialDerivative>(n);
+			for(int i = 0; i < n; i++){
+				if(this.values[i] != 0.){
+					nzPds.add(new PartialDerivative(this.entries.key(i), this.values[i]));
+				}
+			}
+			return nzPds;
+		}
+
+		@Override
+		public int numNonZeroPDs(){
+			int n = 0;
+			for(int i = 0; i < this.entries.size(); i++){
+				if(this.values[i] != 0.){
+					n++;
+				}
+			}
+			return n;
+		}
+
+		@Override
+		public int numEntries(){
+			return this.entries.size();
+		}
+
+		@Override
+		public FunctionGradient asIndexed(){
+			return this;
+		}
+
+		@Override
+		public int parameterIdAt(int entry){
+			return this.entries.key(entry);
+		}
+
+		@Override
+		public double partialDerivativeAt(int entry){
+			return this.values[entry];
+		}
 
 
+		/**
+		 * Returns the entry index of the given parameter, optionally creating an entry with a partial derivative of zero if there is none.
+		 * @param parameterId the parameter identifier
+		 * @param create whether to create a missing entry
+		 * @return the entry index; -1 if there is none and create is false
+		 */
+		protected int entryOf(int parameterId, boolean create){
+			int e = this.entries.find(parameterId);
+			if(e != -1 || !create){
+				return e;
+			}
+			e = this.entries.add(parameterId);
+			if(e == this.values.length){
+				this.values = Arrays.copyOf(this.values, this.values.length * 2);
+			}
+			this.values[e] = 0.;
+			return e;
+		}
+
 	}
 
 }
@@ -49,9 +49,13 @@ public class GradientUtils {
      */
     public static FunctionGradient scalarMultCopy(FunctionGradient fg, double scalar){
         FunctionGradient cfg = new FunctionGradient.SparseGradient(fg.numNonZeroPDs());
-        for(FunctionGradient.PartialDerivative pd : fg.getNonZeroPartialDerivatives()){
-            double scaled = pd.value * scalar;
-            cfg.put(pd.parameterId, scaled);
+        fg = fg.asIndexed();
+        int n = fg.numEntries();
+        for(int i = 0; i < n; i++){
+            double v = fg.partialDerivativeAt(i);
+            if(v != 0.){
+                cfg.put(fg.parameterIdAt(i), v * scalar);
+            }
         }
         return cfg;
     }
@@ -63,8 +67,13 @@ public class GradientUtils {
      * @param sum the destination to which the partial derivatives are added
      */
     public static void sumInto(FunctionGradient fg, HashedAggregator<Integer> sum){
-        for(FunctionGradient.PartialDerivative pd : fg.getNonZeroPartialDerivatives()){
-            sum.add(pd.parameterId, pd.value);
+        fg = fg.asIndexed();
+        int n = fg.numEntries();
+        for(int i = 0; i < n; i++){
+            double v = fg.partialDerivativeAt(i);
+            if(v != 0.){
+                sum.add(fg.parameterIdAt(i), v);
+            }
         }
     }
 
@@ -120,17 +129,27 @@ public class GradientUtils {
      * @return a set of the partial derivative ids
      */
     public static Set<Integer> pdIdSet(FunctionGradient a, FunctionGradient b){
-        Set<FunctionGradient.PartialDerivative> aSet = a.getNonZeroPartialDerivatives();
-        Set<FunctionGradient.PartialDerivative> bSet = b.getNonZeroPartialDerivatives();
-        Set<Integer> pIds = new HashSet<Integer>(aSet.size()+bSet.size());
-        for(FunctionGradient.PartialDerivative pd : aSet){
-            pIds.add(pd.parameterId);
-        }
-        for(FunctionGradient.PartialDerivative pd : bSet){
-            pIds.add(pd.parameterId);
-        }
+        Set<Integer> pIds = new HashSet<Integer>(a.numEntries()+b.numEntries());
+        addNonZeroIds(a, pIds);
+        addNonZeroIds(b, pIds);
 
         return pIds;
     }
 
+
+    /**
+     * Adds the parameter ids with non-zero partial derivatives in a gradient to a set.
+     * @param fg the gradient
+     * @param pIds the set to which the parameter ids are added
+     */
+    public static void addNonZeroIds(FunctionGradient fg, Set<Integer> pIds){
+        fg = fg.asIndexed();
+        int n = fg.numEntries();
+        for(int i = 0; i < n; i++){
+            if(fg.partialDerivativeAt(i) != 0.){
+                pIds.add(fg.parameterIdAt(i));
+            }
+        }
+    }
+
 }
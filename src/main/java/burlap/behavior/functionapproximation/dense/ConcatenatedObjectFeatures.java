@@ -84,6 +84,26 @@ public class ConcatenatedObjectFeatures implements
 		return fvec;
 	}
 
+	@Override
+	public int features(State s, double[] buffer, int offset) {
+
+		if(!(s instanceof OOState)){
+			throw new RuntimeException("ConcatenatedObjectFeatureVectorGenerator is only defined for OOState instances.");
+		}
+
+		//each object's vector is written in place after the previous one
+		int i = offset;
+		for(String className : this.objectClassOrder){
+			List<ObjectInstance> objects = ((OOState)s).objectsOfClass(className);
+			DenseStateFeatures ovecGen = this.objectVectorGenerators.get(className);
+			for(ObjectInstance o : objects){
+				i += ovecGen.features(o, buffer, i);
+			}
+		}
+
+		return i - offset;
+	}
+
 	@Override
 	public ConcatenatedObjectFeatures copy() {
 		return new ConcatenatedObjectFeatures(new ArrayList<String>(objectClassOrder), new HashMap<String, DenseStateFeatures>(objectVectorGenerators));
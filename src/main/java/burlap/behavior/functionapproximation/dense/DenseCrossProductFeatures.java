@@ -3,6 +3,7 @@ package burlap.behavior.functionapproximation.dense;
 import burlap.mdp.core.action.Action;
 import burlap.mdp.core.state.State;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -61,13 +62,26 @@ public class DenseCrossProductFeatures implements DenseStateActionFeatures {
 		double [] sFeatures = stateFeatures.features(s);
 		double [] saFeatures = new double[sFeatures.length*numActions];
 		int offset = this.getActionOffset(a)*sFeatures.length;
-		for(int i = 0; i < sFeatures.length; i++){
-			saFeatures[i+offset] = sFeatures[i];
-		}
+		System.arraycopy(sFeatures, 0, saFeatures, offset, sFeatures.length);
 
 		return saFeatures;
 	}
 
+	@Override
+	public int features(State s, Action a, double[] buffer, int offset) {
+
+		//write the state features at the start, then move them to the action's block
+		int n = stateFeatures.features(s, buffer, offset);
+		int actionOffset = this.getActionOffset(a)*n;
+		if(actionOffset > 0){
+			System.arraycopy(buffer, offset, buffer, offset + actionOffset, n);
+			Arrays.fill(buffer, offset, offset + actionOffset, 0.);
+		}
+		Arrays.fill(buffer, offset + actionOffset + n, offset + n*numActions, 0.);
+
+		return n*numActions;
+	}
+
 	@Override
 	public DenseStateActionFeatures copy() {
 		return new DenseCrossProductFeatures(stateFeatures, numActions, actionOffset);
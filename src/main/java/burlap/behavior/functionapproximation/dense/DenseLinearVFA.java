@@ -1,6 +1,6 @@
 package burlap.behavior.functionapproximation.dense;
 
-import burlap.behavior.functionapproximation.DifferentiableStateActionValue;
+import burlap.behavior.functionapproximation.ActionOffsetStateActionValue;
 import burlap.behavior.functionapproximation.DifferentiableStateValue;
 import burlap.behavior.functionapproximation.FunctionGradient;
 import burlap.mdp.core.action.Action;
@@ -22,7 +22,7 @@ import java.util.Map;
  * method.
  * @author James MacGlashan.
  */
-public class DenseLinearVFA implements DifferentiableStateValue, DifferentiableStateActionValue{
+public class DenseLinearVFA implements DifferentiableStateValue, ActionOffsetStateActionValue{
 
 
 	/**
@@ -78,7 +78,7 @@ public class DenseLinearVFA implements DifferentiableStateValue, DifferentiableS
 
 	@Override
 	public double evaluate(State s, Action a) {
-		this.currentStateFeatures = this.stateFeatures.features(s);
+		this.extractStateFeatures(s);
 		this.currentActionOffset = this.getActionOffset(a);
 		int indOff = this.currentActionOffset*this.currentStateFeatures.length;
 		double val = 0;
@@ -96,7 +96,7 @@ public class DenseLinearVFA implements DifferentiableStateValue, DifferentiableS
 
 	@Override
 	public double evaluate(State s) {
-		this.currentStateFeatures = this.stateFeatures.features(s);
+		this.extractStateFeatures(s);
 		this.currentActionOffset = 0;
 		if(this.stateWeights == null){
 			this.stateWeights = new double[this.currentStateFeatures.length];
@@ -125,13 +125,11 @@ public class DenseLinearVFA implements DifferentiableStateValue, DifferentiableS
 			features = this.currentStateFeatures;
 		}
 		else{
-			features = this.stateFeatures.features(s);
+			this.extractStateFeatures(s);
+			features = this.currentStateFeatures;
 		}
 
-		FunctionGradient gradient = new FunctionGradient.SparseGradient(features.length);
-		for(int i = 0; i < features.length; i++){
-			gradient.put(i, features[i]);
-		}
+		FunctionGradient gradient = new FunctionGradient.DenseGradient(features.clone());
 
 		this.currentGradient = gradient;
 		this.currentStateFeatures = features;
@@ -152,15 +150,13 @@ public class DenseLinearVFA implements DifferentiableStateValue, DifferentiableS
 			features = this.currentStateFeatures;
 		}
 		else{
-			features = this.stateFeatures.features(s);
+			this.extractStateFeatures(s);
+			features = this.currentStateFeatures;
 		}
 
-		FunctionGradient gradient = new FunctionGradient.SparseGradient(features.length);
 		int actionOffset = this.getActionOffset(a);
 		int sIndOffset = actionOffset*features.length;
-		for(int i = 0; i < features.length; i++){
-			gradient.put(i+sIndOffset, features[i]);
-		}
+		FunctionGradient gradient = new FunctionGradient.DenseGradient(features.clone(), sIndOffset);
 
 		this.currentGradient = gradient;
 		this.currentStateFeatures = features;
@@ -169,6 +165,27 @@ public class DenseLinearVFA implements DifferentiableStateValue, DifferentiableS
 		return gradient;
 	}
 
+	@Override
+	public FunctionGradient.SparseArrayGradient gradient(State s, Action a, FunctionGradient.SparseArrayGradient out){
+
+		if(this.lastState != s){
+			this.extractStateFeatures(s);
+			this.currentGradient = null;
+			this.lastState = s;
+		}
+		double [] features = this.currentStateFeatures;
+
+		int sIndOffset = this.getActionOffset(a)*features.length;
+		out.clear();
+		for(int i = 0; i < features.length; i++){
+			if(features[i] != 0.){
+				out.put(i + sIndOffset, features[i]);
+			}
+		}
+
+		return out;
+	}
+
 
 	@Override
 	public int numParameters() {
@@ -224,6 +241,21 @@ public class DenseLinearVFA implements DifferentiableStateValue, DifferentiableS
 	}
 
 
+	/**
+	 * Writes the state features of a state into {@link #currentStateFeatures}, reusing its array once one has been extracted. The
+	 * features must have the same length for every state, as the function weights require.
+	 * @param s the state
+	 */
+	protected void extractStateFeatures(State s){
+		if(this.currentStateFeatures == null){
+			this.currentStateFeatures = this.stateFeatures.features(s);
+		}
+		else{
+			this.stateFeatures.features(s, this.currentStateFeatures, 0);
+		}
+	}
+
+
 	public int getActionOffset(Action a){
 		Integer offset = this.actionOffset.get(a);
 		if(offset == null){
@@ -234,6 +266,11 @@ public class DenseLinearVFA implements DifferentiableStateValue, DifferentiableS
 		return offset;
 	}
 
+	@Override
+	public int actionParameterOffset(Action a) {
+		return this.getActionOffset(a)*this.currentStateFeatures.length;
+	}
+
 	/**
 	 * Expands the state-action function weight vector by a fixed sized and initializes their value
 	 * to the default weight value set for this object.
@@ -16,6 +16,21 @@ public interface DenseStateActionFeatures {
 	 */
 	double [] features(State s, Action a);
 
+	/**
+	 * Writes the feature vector for a given input state-action pair into a buffer, starting at the given offset, and returns its length.
+	 * The buffer must have room for the whole vector. The default implementation copies the array returned by {@link #features(State, Action)}.
+	 * @param s the input state
+	 * @param a the input action
+	 * @param buffer the buffer into which the feature vector is written
+	 * @param offset the index of the buffer at which the feature vector starts
+	 * @return the length of the feature vector
+	 */
+	default int features(State s, Action a, double [] buffer, int offset){
+		double [] f = this.features(s, a);
+		System.arraycopy(f, 0, buffer, offset, f.length);
+		return f.length;
+	}
+
 	/**
 	 * Returns a copy of this {@link DenseStateActionFeatures}
 	 * @return a copy of this {@link DenseStateActionFeatures}
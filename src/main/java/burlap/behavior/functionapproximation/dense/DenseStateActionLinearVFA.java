@@ -51,13 +51,11 @@ public class DenseStateActionLinearVFA implements DifferentiableStateActionValue
 			features = this.currentFeatures;
 		}
 		else{
-			features = this.features.features(s, a);
+			this.extractFeatures(s, a);
+			features = this.currentFeatures;
 		}
 
-		FunctionGradient gradient = new FunctionGradient.SparseGradient(features.length);
-		for(int i = 0; i < features.length; i++){
-			gradient.put(i, features[i]);
-		}
+		FunctionGradient gradient = new FunctionGradient.DenseGradient(features.clone());
 
 		this.currentGradient = gradient;
 		this.currentFeatures = features;
@@ -67,9 +65,28 @@ public class DenseStateActionLinearVFA implements DifferentiableStateActionValue
 
 	}
 
+	@Override
+	public FunctionGradient.SparseArrayGradient gradient(State s, Action a, FunctionGradient.SparseArrayGradient out) {
+
+		//the features depend on the action, so they are always extracted
+		this.extractFeatures(s, a);
+		this.currentGradient = null;
+		this.lastState = s;
+
+		double [] features = this.currentFeatures;
+		out.clear();
+		for(int i = 0; i < features.length; i++){
+			if(features[i] != 0.){
+				out.put(i, features[i]);
+			}
+		}
+
+		return out;
+	}
+
 	@Override
 	public double evaluate(State s, Action a) {
-		this.currentFeatures = this.features.features(s, a);
+		this.extractFeatures(s, a);
 
 		if(this.stateActionWeights == null){
 			this.stateActionWeights = new double[this.currentFeatures.length];
@@ -89,6 +106,21 @@ public class DenseStateActionLinearVFA implements DifferentiableStateActionValue
 		return this.currentValue;
 	}
 
+	/**
+	 * Writes the state-action features of a state-action pair into {@link #currentFeatures}, reusing its array once one has been
+	 * extracted. The features must have the same length for every state-action pair, as the function weights require.
+	 * @param s the state
+	 * @param a the action
+	 */
+	protected void extractFeatures(State s, Action a){
+		if(this.currentFeatures == null){
+			this.currentFeatures = this.features.features(s, a);
+		}
+		else{
+			this.features.features(s, a, this.currentFeatures, 0);
+		}
+	}
+
 	@Override
 	public int numParameters() {
 		if(this.stateActionWeights != null){
@@ -2,10 +2,17 @@ package burlap.behavior.functionapproximation.dense;
 
 import burlap.mdp.core.state.State;
 
+import java.util.List;
+
 /**
  * Many functions approximation techniques require a fixed feature vector to work and in many cases, using abstract features from
  * the state attributes is useful. This interface provides a means to take a BURLAP OO-MDP state and transform it into
  * a feature vector represented as a double array so that these function approximation techniques may be used.
+ * <p>
+ * Feature vectors may also be written into a caller-supplied buffer with {@link #features(State, double[], int)}, and the vectors of a
+ * batch of states into the rows of a row-major matrix with {@link #features(List, double[], int)}, so that learners that extract
+ * features at every step can reuse one array. Use {@link burlap.behavior.functionapproximation.FeatureBatches} to extract a large
+ * batch in parallel chunks.
  * @author James MacGlashan
  *
  */
@@ -18,6 +25,44 @@ public interface DenseStateFeatures {
 	 */
 	double [] features(State s);
 
+	/**
+	 * Writes the feature vector for a given input state into a buffer, starting at the given offset, and returns its length. The buffer
+	 * must have room for the whole vector. The default implementation copies the array returned by {@link #features(State)}.
+	 * @param s the input state to turn into a feature vector.
+	 * @param buffer the buffer into which the feature vector is written
+	 * @param offset the index of the buffer at which the feature vector starts
+	 * @return the length of the feature vector
+	 */
+	default int features(State s, double [] buffer, int offset){
+		double [] f = this.features(s);
+		System.arraycopy(f, 0, buffer, offset, f.length);
+		return f.length;
+	}
+
+	/**
+	 * Writes the feature vectors of a batch of states into the rows of a row-major matrix, so that the vector of the i'th state starts
+	 * at index i*rowLength of the matrix.
+	 * @param states the input states to turn into feature vectors
+	 * @param matrix the matrix into which the feature vectors are written; must have room for states.size()*rowLength elements
+	 * @param rowLength the length of every feature vector
+	 */
+	default void features(List<? extends State> states, double [] matrix, int rowLength){
+		//extract each row into a scratch row so that a vector of the wrong length never writes into a neighbouring row
+		double [] row = new double[rowLength];
+		for(int i = 0; i < states.size(); i++){
+			int n;
+			try {
+				n = this.features(states.get(i), row, 0);
+			} catch(IndexOutOfBoundsException e) {
+				throw new RuntimeException("Feature vector is longer than the matrix row length " + rowLength, e);
+			}
+			if(n != rowLength){
+				throw new RuntimeException("Feature vector of length " + n + " does not match the matrix row length " + rowLength);
+			}
+			System.arraycopy(row, 0, matrix, i*rowLength, rowLength);
+		}
+	}
+
 	/**
 	 * Returns a copy of this {@link DenseStateFeatures}
 	 * @return a copy of this {@link DenseStateFeatures}
@@ -1,5 +1,6 @@
 package burlap.behavior.functionapproximation.dense;
 
+import burlap.mdp.core.state.NumericVariableState;
 import burlap.mdp.core.state.State;
 import burlap.mdp.core.state.vardomain.StateDomain;
 import burlap.mdp.core.state.vardomain.VariableDomain;
@@ -62,7 +63,14 @@ public class NormalizedVariableFeatures implements DenseStateFeatures {
 	@Override
 	public double[] features(State s) {
 		double [] vals = new double[domains.size()];
-		int i = 0;
+		this.features(s, vals, 0);
+		return vals;
+	}
+
+	@Override
+	public int features(State s, double[] buffer, int offset) {
+		NumericVariableState ns = s instanceof NumericVariableState ? (NumericVariableState)s : null;
+		int i = offset;
 		List<Object> keys = s.variableKeys();
 		for(Object key : keys){
 			VariableDomain vd = this.domains.get(key);
@@ -70,14 +78,20 @@ public class NormalizedVariableFeatures implements DenseStateFeatures {
 				continue;
 			}
 
-			double d = ((Number)s.get(key)).doubleValue();
+			double d = ns != null ? ns.getNumeric(key) : ((Number)s.get(key)).doubleValue();
 			double norm = vd.norm(d);
-			vals[i] = norm;
+			buffer[i] = norm;
 
 			i++;
 		}
 
-		return vals;
+		//variables with a domain that the state does not have are 0
+		int n = this.domains.size();
+		for(; i < offset + n; i++){
+			buffer[i] = 0.;
+		}
+
+		return n;
 	}
 
 	@Override
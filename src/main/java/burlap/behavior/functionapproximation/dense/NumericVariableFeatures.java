@@ -1,5 +1,6 @@
 package burlap.behavior.functionapproximation.dense;
 
+import burlap.mdp.core.state.NumericVariableState;
 import burlap.mdp.core.state.State;
 
 import java.util.ArrayList;
@@ -42,31 +43,33 @@ public class NumericVariableFeatures implements DenseStateFeatures {
 
 	@Override
 	public double[] features(State s) {
+		List<Object> keys = this.whiteList != null ? this.whiteList : s.variableKeys();
+		double [] vals = new double[keys.size()];
+		this.features(s, vals, 0);
+		return vals;
+	}
 
-		if(this.whiteList == null){
-			//then use all
-			List<Object> keys = s.variableKeys();
-			double [] vals = new double[keys.size()];
-			int i = 0;
+	@Override
+	public int features(State s, double[] buffer, int offset) {
+
+		//use the white list if there is one; otherwise use all
+		List<Object> keys = this.whiteList != null ? this.whiteList : s.variableKeys();
+		int i = offset;
+		if(s instanceof NumericVariableState){
+			NumericVariableState ns = (NumericVariableState)s;
 			for(Object key : keys){
-				Number n = (Number)s.get(key);
-				vals[i] = n.doubleValue();
+				buffer[i] = ns.getNumeric(key);
 				i++;
 			}
-
-			return vals;
 		}
-
-		//otherwise use white list
-		double [] vals = new double[this.whiteList.size()];
-		int i = 0;
-		for(Object key : this.whiteList){
-			Number n = (Number)s.get(key);
-			vals[i] = n.doubleValue();
-			i++;
+		else{
+			for(Object key : keys){
+				buffer[i] = ((Number)s.get(key)).doubleValue();
+				i++;
+			}
 		}
 
-		return vals;
+		return i - offset;
 	}
 
 	@Override
@@ -6,7 +6,7 @@ import burlap.mdp.core.oo.propositional.PropositionalFunction;
 import burlap.mdp.core.oo.state.OOState;
 import burlap.mdp.core.state.State;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -55,31 +55,50 @@ public class PFFeatures implements DenseStateFeatures {
 	
 	@Override
 	public double[] features(State s) {
-		
-		List<Double> featureValueList = new LinkedList<Double>();
+
+		//find the groundings first so that the vector can be sized
+		List<List<GroundedProp>> groundings = new ArrayList<List<GroundedProp>>(this.pfsToUse.length);
+		int n = 0;
 		for(PropositionalFunction pf : this.pfsToUse){
-			//List<GroundedProp> gps = s.getAllGroundedPropsFor(pf);
 			List<GroundedProp> gps = pf.allGroundings((OOState)s);
-			for(GroundedProp gp : gps){
-				if(gp.isTrue((OOState)s)){
-					featureValueList.add(1.);
-				}
-				else{
-					featureValueList.add(0.);
-				}
-			}
+			groundings.add(gps);
+			n += gps.size();
 		}
-		
-		double [] fv = new double[featureValueList.size()];
+
+		double [] fv = new double[n];
 		int i = 0;
-		for(double f : featureValueList){
-			fv[i] = f;
-			i++;
+		for(List<GroundedProp> gps : groundings){
+			i = this.truthValues(s, gps, fv, i);
 		}
-		
+
 		return fv;
 	}
 
+	@Override
+	public int features(State s, double[] buffer, int offset) {
+		int i = offset;
+		for(PropositionalFunction pf : this.pfsToUse){
+			i = this.truthValues(s, pf.allGroundings((OOState)s), buffer, i);
+		}
+		return i - offset;
+	}
+
+	/**
+	 * Writes 1 for each true grounded proposition and 0 for each false one into a buffer.
+	 * @param s the state in which the propositions are evaluated
+	 * @param gps the grounded propositions
+	 * @param buffer the buffer
+	 * @param i the index of the buffer at which to start writing
+	 * @return the index after the last one written
+	 */
+	protected int truthValues(State s, List<GroundedProp> gps, double [] buffer, int i){
+		for(GroundedProp gp : gps){
+			buffer[i] = gp.isTrue((OOState)s) ? 1. : 0.;
+			i++;
+		}
+		return i;
+	}
+
 	@Override
 	public DenseStateFeatures copy() {
 		return new PFFeatures(this.pfsToUse.clone());
@@ -4,6 +4,7 @@ import burlap.behavior.functionapproximation.sparse.SparseStateFeatures;
 import burlap.behavior.functionapproximation.sparse.StateFeature;
 import burlap.mdp.core.state.State;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -33,13 +34,26 @@ public class SparseToDenseFeatures implements DenseStateFeatures {
 
 	@Override
 	public double[] features(State s) {
-
+		//the sparse features may add new features, so they are found before the vector is sized
 		List<StateFeature> sfs = this.sparseStateFeatures.features(s);
 		double [] fv = new double[this.sparseStateFeatures.numFeatures()];
+		this.copyFeatures(sfs, fv, 0);
+		return fv;
+	}
+
+	@Override
+	public int features(State s, double[] buffer, int offset) {
+		List<StateFeature> sfs = this.sparseStateFeatures.features(s);
+		int n = this.sparseStateFeatures.numFeatures();
+		Arrays.fill(buffer, offset, offset + n, 0.);
+		this.copyFeatures(sfs, buffer, offset);
+		return n;
+	}
+
+	protected void copyFeatures(List<StateFeature> sfs, double [] buffer, int offset){
 		for(StateFeature sf : sfs){
-			fv[sf.id] = sf.value;
+			buffer[offset + sf.id] = sf.value;
 		}
-		return fv;
 	}
 
 	@Override
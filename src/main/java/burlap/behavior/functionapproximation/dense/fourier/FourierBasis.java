@@ -3,7 +3,6 @@ package burlap.behavior.functionapproximation.dense.fourier;
 import burlap.behavior.functionapproximation.dense.DenseLinearVFA;
 import burlap.behavior.functionapproximation.dense.DenseStateFeatures;
 import burlap.behavior.functionapproximation.dense.NormalizedVariableFeatures;
-import burlap.behavior.functionapproximation.sparse.StateFeature;
 import burlap.behavior.singleagent.learning.tdmethods.vfa.GradientDescentSarsaLam;
 import burlap.mdp.core.action.Action;
 import burlap.mdp.core.state.State;
@@ -25,6 +24,11 @@ import java.util.Map;
  * <p>
  * When using a learning algorithm like {@link GradientDescentSarsaLam} with Fourier basis functions, it is typically a good idea to use the {@link FourierBasisLearningRateWrapper}, which scales the normal learning rate by the inverse of the norm
  * of a basis function's coefficient vector. 
+ * <p>
+ * The coefficient vectors are packed into a primitive row-major matrix, and {@link #features(State)} computes all basis values with
+ * one matrix-vector product that processes four basis functions at a time. For high-order bases on many state variables, the cosine
+ * then dominates, and {@link #toggleFastCosine(boolean)} replaces {@link Math#cos(double)} with {@link #fastCosPi(double)}, a
+ * polynomial approximation with an absolute error below 1e-10.
  * 
  * <p>
  * 1. G.D. Konidaris, S. Osentoski and P.S. Thomas. Value Function Approximation in Reinforcement Learning using the Fourier Basis. In Proceedings of the Twenty-Fifth Conference on Artificial Intelligence, pages 380-385, August 2011.
@@ -48,6 +52,17 @@ public class FourierBasis implements DenseStateFeatures {
 	 * The coefficient vectors used
 	 */
 	protected List<short[]>						coefficientVectors;
+
+	/**
+	 * The coefficient vectors packed into a row-major matrix with a row for each basis function; built from
+	 * {@link #coefficientVectors} when first needed.
+	 */
+	protected double []							coefficientMatrix;
+
+	/**
+	 * Whether basis values use {@link #fastCosPi(double)} instead of {@link Math#cos(double)}
+	 */
+	protected boolean							fastCosine = false;
 	
 	/**
 	 * The maximum number of non-zero coefficient entries permitted in a coefficient vector
@@ -107,6 +122,17 @@ public class FourierBasis implements DenseStateFeatures {
 	 */
 	public void setCoefficientVectors(List<short[]> coefficientVectors){
 		this.coefficientVectors = coefficientVectors;
+		this.numStateVariables = coefficientVectors.isEmpty() ? 0 : coefficientVectors.get(0).length;
+		this.coefficientMatrix = null;
+	}
+
+	/**
+	 * Sets whether basis values are computed with {@link #fastCosPi(double)}, which is several times faster than {@link Math#cos(double)}
+	 * and differs from it by less than 1e-10, instead of with {@link Math#cos(double)}. The default is false.
+	 * @param fastCosine whether to use the fast cosine approximation
+	 */
+	public void toggleFastCosine(boolean fastCosine){
+		this.fastCosine = fastCosine;
 	}
 	
 	
@@ -130,15 +156,36 @@ public class FourierBasis implements DenseStateFeatures {
 		}
 		
 		//get cos function of it
-		sum *= Math.PI;
-		sum = Math.cos(sum);
-		return sum;
+		return this.cosPi(sum);
 	}
 	
 	@Override
 	public double [] features(State s) {
 		
 		double [] input = this.inputFeatures.features(s);
+		this.initCoefficientVectors(input);
+
+		double [] features = new double[this.coefficientVectors.size()];
+		this.basisValues(input, features, 0);
+		
+		return features;
+	}
+
+	@Override
+	public int features(State s, double[] buffer, int offset) {
+
+		double [] input = this.inputFeatures.features(s);
+		this.initCoefficientVectors(input);
+
+		return this.basisValues(input, buffer, offset);
+	}
+
+	/**
+	 * Generates the coefficient vectors for the dimension of the given input state variables, if they have not been generated or set,
+	 * and packs them into {@link #coefficientMatrix}.
+	 * @param input the state variables
+	 */
+	protected void initCoefficientVectors(double [] input){
 		if(this.coefficientVectors == null){
 			this.numStateVariables = input.length;
 			if(this.maxNonZeroCoefficients == -1){
@@ -146,17 +193,102 @@ public class FourierBasis implements DenseStateFeatures {
 			}
 			this.generateCoefficientVectors();
 		}
-		
-		List<StateFeature> res = new ArrayList<StateFeature>(this.coefficientVectors.size());
+		if(this.coefficientMatrix == null){
+			int d = this.numStateVariables;
+			double [] matrix = new double[this.coefficientVectors.size()*d];
+			for(int i = 0; i < this.coefficientVectors.size(); i++){
+				short [] coefficientVector = this.coefficientVectors.get(i);
+				for(int j = 0; j < d; j++){
+					matrix[i*d+j] = coefficientVector[j];
+				}
+			}
+			this.coefficientMatrix = matrix;
+		}
+	}
 
-		double [] features = new double[this.coefficientVectors.size()];
-		for(int i = 0; i < this.coefficientVectors.size(); i++){
-			double value = this.basisValue(input, i);
-			features[i] = value;
+	/**
+	 * Writes the value of each basis function for the given input state variables into a buffer. The dot products of the input with
+	 * the rows of the coefficient matrix are computed four rows at a time, so each input value is loaded once for four rows and the four
+	 * sums are independent; each sum adds its terms in the same order as {@link #basisValue(double[], int)}, so the values are identical.
+	 * @param input the state variables
+	 * @param buffer the buffer
+	 * @param offset the index of the buffer at which the first basis function value is written
+	 * @return the number of basis functions
+	 */
+	protected int basisValues(double [] input, double [] buffer, int offset){
+
+		int d = this.numStateVariables;
+		if(input.length != d){
+			throw new RuntimeException("Error in Fourier Basis function evaluation: expected input state variable vector of size " + this.numStateVariables + ", but received one of dimension " + input.length);
 		}
-		
-		
-		return features;
+
+		double [] c = this.coefficientMatrix;
+		int n = this.coefficientVectors.size();
+		int i = 0;
+		for(; i + 4 <= n; i += 4){
+			int r0 = i*d;
+			int r1 = r0 + d;
+			int r2 = r1 + d;
+			int r3 = r2 + d;
+			double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+			for(int j = 0; j < d; j++){
+				double x = input[j];
+				s0 += x * c[r0+j];
+				s1 += x * c[r1+j];
+				s2 += x * c[r2+j];
+				s3 += x * c[r3+j];
+			}
+			buffer[offset+i] = this.cosPi(s0);
+			buffer[offset+i+1] = this.cosPi(s1);
+			buffer[offset+i+2] = this.cosPi(s2);
+			buffer[offset+i+3] = this.cosPi(s3);
+		}
+		for(; i < n; i++){
+			int r = i*d;
+			double sum = 0.;
+			for(int j = 0; j < d; j++){
+				sum += input[j] * c[r+j];
+			}
+			buffer[offset+i] = this.cosPi(sum);
+		}
+
+		return n;
+	}
+
+	/**
+	 * Returns cos(pi * t), using {@link #fastCosPi(double)} if fast cosine is enabled.
+	 * @param t the argument as a multiple of pi
+	 * @return cos(pi * t)
+	 */
+	protected double cosPi(double t){
+		if(this.fastCosine){
+			return fastCosPi(t);
+		}
+		return Math.cos(t * Math.PI);
+	}
+
+	/**
+	 * Returns an approximation of cos(pi * t) with an absolute error below 1e-10. The argument is reduced with the period of the cosine
+	 * to a in [0, 1], and cos(pi*a) = sin(pi*(0.5 - a)) is computed from the Taylor series of the sine through the x^15 term, which
+	 * needs no branches.
+	 * @param t the argument as a multiple of pi
+	 * @return an approximation of cos(pi * t)
+	 */
+	public static double fastCosPi(double t){
+
+		double a = Math.abs(t - 2. * Math.rint(0.5 * t));
+		double x = Math.PI * (0.5 - a);
+		double z = x * x;
+		double p = -1. / 1307674368000.;
+		p = p * z + 1. / 6227020800.;
+		p = p * z - 1. / 39916800.;
+		p = p * z + 1. / 362880.;
+		p = p * z - 1. / 5040.;
+		p = p * z + 1. / 120.;
+		p = p * z - 1. / 6.;
+		p = p * z + 1.;
+
+		return x * p;
 	}
 
 
@@ -256,6 +388,8 @@ public class FourierBasis implements DenseStateFeatures {
 		FourierBasis fb = new FourierBasis(this.inputFeatures, this.order, this.maxNonZeroCoefficients);
 		fb.numStateVariables = this.numStateVariables;
 		fb.coefficientVectors = new ArrayList<short[]>(this.coefficientVectors);
+		fb.coefficientMatrix = this.coefficientMatrix;
+		fb.fastCosine = this.fastCosine;
 		fb.actionFeatureMultiplier = new HashMap<Action, Integer>(this.actionFeatureMultiplier);
 
 		return fb;
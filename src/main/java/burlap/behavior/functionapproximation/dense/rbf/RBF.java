@@ -27,6 +27,22 @@ public abstract class RBF {
 		this.metric = metric;
 	}
 
+	/**
+	 * Returns the center state of the RBF unit.
+	 * @return the center state of the RBF unit.
+	 */
+	public double [] getCenteredState(){
+		return this.centeredState;
+	}
+
+	/**
+	 * Returns the distance metric used to compare query input states to the centeredState
+	 * @return the distance metric used to compare query input states to the centeredState
+	 */
+	public DistanceMetric getMetric(){
+		return this.metric;
+	}
+
 	/**
 	 * Returns the RBF response from its center state to the query input state.
 	 * @param input the query input state represented with a double array.
@@ -102,25 +102,32 @@ public class RBFFeatures implements DenseStateFeatures {
 		n = hasOffset ? n+1 : n;
 
 		double [] rbfFeatures = new double[n];
+		this.features(s, rbfFeatures, 0);
 
+		return rbfFeatures;
+	}
 
+	@Override
+	public int features(State s, double[] buffer, int offset)
+	{
 
 		double [] svars = this.inputFeatures.features(s);
 
-		int id = 0;
+		int id = offset;
 		for(RBF r : rbfs)
 		{
 			double value = r.responseFor(svars);
-			rbfFeatures[id] = value;
+			buffer[id] = value;
 			id++;
 		}
 
 		if(hasOffset)
 		{
-			rbfFeatures[id] = 1.;
+			buffer[id] = 1.;
+			id++;
 		}
 
-		return rbfFeatures;
+		return id - offset;
 	}
 
 
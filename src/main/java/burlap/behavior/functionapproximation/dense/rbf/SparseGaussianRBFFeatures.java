@@ -0,0 +1,228 @@
+package burlap.behavior.functionapproximation.dense.rbf;
+
+import burlap.behavior.functionapproximation.dense.DenseStateFeatures;
+import burlap.behavior.functionapproximation.dense.rbf.functions.GaussianRBF;
+import burlap.behavior.functionapproximation.dense.rbf.metrics.EuclideanDistance;
+import burlap.behavior.functionapproximation.sparse.LinearVFA;
+import burlap.behavior.functionapproximation.sparse.SparseFeatureMatrix;
+import burlap.behavior.functionapproximation.sparse.SparseStateFeatures;
+import burlap.behavior.functionapproximation.sparse.StateFeature;
+import burlap.datastructures.KDTree;
+import burlap.mdp.core.state.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sparse Gaussian radial basis function features for large numbers of RBF units. The response of each unit is
+ * e^(-d(x, c)^2 / e^2), as for a {@link GaussianRBF} with a {@link EuclideanDistance} metric, but it is only computed for units whose
+ * centers are within a cutoff radius of the input; the responses of all other units are treated as zero and omitted from the
+ * returned features. The centers are indexed by a {@link KDTree}, so the cost of a query grows with the number of nearby centers
+ * rather than with the total number of centers.
+ * <p>
+ * A cutoff radius of e*sqrt(ln(1/m)) omits only responses smaller than m; {@link #cutoffForMinResponse(double, double)} computes it.
+ * The feature id of each unit is the order in which it was added, and if an offset feature is used, it has the id after the last unit
+ * and is always 1. The KD-tree is built when features are first queried after units are added, so all units should be added before
+ * the features are used.
+ */
+public class SparseGaussianRBFFeatures implements SparseStateFeatures {
+
+	/**
+	 * The input features over which RBFs are computed
+	 */
+	protected DenseStateFeatures inputFeatures;
+
+	/**
+	 * The row-major centers of the units
+	 */
+	protected double [] centers = new double[0];
+
+	/**
+	 * The inverse of the squared bandwidth of each unit
+	 */
+	protected double [] inverseSqBandwidths = new double[0];
+
+	/**
+	 * The number of units
+	 */
+	protected int numCenters = 0;
+
+	/**
+	 * The dimension of the centers; -1 until the first unit is added
+	 */
+	protected int dim = -1;
+
+	/**
+	 * The distance from the input beyond which unit responses are omitted
+	 */
+	protected double cutoffRadius;
+
+	/**
+	 * Whether an offset feature that is always 1 is included
+	 */
+	protected boolean hasOffset;
+
+	/**
+	 * The KD-tree over the centers; null until features are queried after units are added
+	 */
+	protected KDTree tree;
+
+
+	/**
+	 * Initializes with no units.
+	 * @param inputFeatures the input features over which RBFs are computed
+	 * @param cutoffRadius the distance from the input beyond which unit responses are omitted
+	 * @param hasOffset whether an offset feature that is always 1 is included
+	 */
+	public SparseGaussianRBFFeatures(DenseStateFeatures inputFeatures, double cutoffRadius, boolean hasOffset) {
+		this.inputFeatures = inputFeatures;
+		this.cutoffRadius = cutoffRadius;
+		this.hasOffset = hasOffset;
+	}
+
+	/**
+	 * Returns the cutoff radius that omits only unit responses smaller than the given response, for units with the given bandwidth.
+	 * @param epsilon the Gaussian bandwidth value
+	 * @param minResponse the smallest response that is not omitted, in (0, 1)
+	 * @return the cutoff radius
+	 */
+	public static double cutoffForMinResponse(double epsilon, double minResponse){
+		return epsilon * Math.sqrt(-Math.log(minResponse));
+	}
+
+
+	/**
+	 * Adds a Gaussian unit.
+	 * @param center the center of the unit
+	 * @param epsilon the Gaussian bandwidth value
+	 */
+	public void addCenter(double [] center, double epsilon){
+		if(this.dim == -1){
+			this.dim = center.length;
+		}
+		else if(center.length != this.dim){
+			throw new RuntimeException("Cannot add an RBF center of dimension " + center.length + " to centers of dimension " + this.dim);
+		}
+		if((this.numCenters + 1) * this.dim > this.centers.length){
+			int c = Math.max(this.numCenters * 2, 16);
+			this.centers = Arrays.copyOf(this.centers, c * this.dim);
+			this.inverseSqBandwidths = Arrays.copyOf(this.inverseSqBandwidths, c);
+		}
+		System.arraycopy(center, 0, this.centers, this.numCenters * this.dim, this.dim);
+		this.inverseSqBandwidths[this.numCenters] = 1. / (epsilon * epsilon);
+		this.numCenters++;
+		this.tree = null;
+	}
+
+	/**
+	 * Adds a {@link GaussianRBF} unit, which must use a {@link EuclideanDistance} metric.
+	 * @param rbf the unit to add
+	 */
+	public void addRBF(RBF rbf){
+		if(!(rbf instanceof GaussianRBF) || !(rbf.getMetric() instanceof EuclideanDistance)){
+			throw new RuntimeException("SparseGaussianRBFFeatures only supports GaussianRBF units with a EuclideanDistance metric.");
+		}
+		this.addCenter(rbf.getCenteredState(), ((GaussianRBF)rbf).getEpsilon());
+	}
+
+	/**
+	 * Adds {@link GaussianRBF} units, which must use a {@link EuclideanDistance} metric.
+	 * @param rbfs the units to add
+	 */
+	public void addRBFs(List<RBF> rbfs){
+		for(RBF rbf : rbfs){
+			this.addRBF(rbf);
+		}
+	}
+
+	public double getCutoffRadius() {
+		return cutoffRadius;
+	}
+
+	public void setCutoffRadius(double cutoffRadius) {
+		this.cutoffRadius = cutoffRadius;
+	}
+
+	/**
+	 * Returns the number of units.
+	 * @return the number of units
+	 */
+	public int numCenters(){
+		return this.numCenters;
+	}
+
+
+	@Override
+	public List<StateFeature> features(State s) {
+		final List<StateFeature> features = new ArrayList<StateFeature>();
+		this.nearbyResponses(s, new KDTree.RangeVisitor() {
+			@Override
+			public void visit(int id, double sqDistance) {
+				features.add(new StateFeature(id, Math.exp(-sqDistance * inverseSqBandwidths[id])));
+			}
+		});
+		if(this.hasOffset){
+			features.add(new StateFeature(this.numCenters, 1.));
+		}
+		return features;
+	}
+
+	@Override
+	public void features(State s, final SparseFeatureMatrix matrix) {
+		this.nearbyResponses(s, new KDTree.RangeVisitor() {
+			@Override
+			public void visit(int id, double sqDistance) {
+				matrix.add(id, Math.exp(-sqDistance * inverseSqBandwidths[id]));
+			}
+		});
+		if(this.hasOffset){
+			matrix.add(this.numCenters, 1.);
+		}
+		matrix.endRow();
+	}
+
+	/**
+	 * Passes each unit whose center is within the cutoff radius of a state's input features to the visitor.
+	 * @param s the state
+	 * @param visitor the visitor
+	 */
+	protected void nearbyResponses(State s, KDTree.RangeVisitor visitor){
+		if(this.numCenters == 0){
+			return;
+		}
+		double [] input = this.inputFeatures.features(s);
+		if(input.length != this.dim){
+			throw new RuntimeException("Expected input features of dimension " + this.dim + ", but received " + input.length);
+		}
+		if(this.tree == null){
+			this.tree = new KDTree(this.centers, this.numCenters, this.dim);
+		}
+		this.tree.withinRadius(input, this.cutoffRadius, visitor);
+	}
+
+	@Override
+	public int numFeatures() {
+		return this.hasOffset ? this.numCenters + 1 : this.numCenters;
+	}
+
+	/**
+	 * Creates and returns a linear VFA object over these sparse RBF features.
+	 * @param defaultWeightValue the default feature weight value to use for all features
+	 * @return a linear VFA object over these sparse RBF features.
+	 */
+	public LinearVFA generateVFA(double defaultWeightValue){
+		return new LinearVFA(this, defaultWeightValue);
+	}
+
+	@Override
+	public SparseGaussianRBFFeatures copy() {
+		SparseGaussianRBFFeatures rbf = new SparseGaussianRBFFeatures(this.inputFeatures, this.cutoffRadius, this.hasOffset);
+		rbf.centers = this.centers.clone();
+		rbf.inverseSqBandwidths = this.inverseSqBandwidths.clone();
+		rbf.numCenters = this.numCenters;
+		rbf.dim = this.dim;
+		return rbf;
+	}
+
+}
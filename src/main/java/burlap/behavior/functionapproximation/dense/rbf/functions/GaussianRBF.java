@@ -48,6 +48,14 @@ public class GaussianRBF extends RBF {
 	}
 
 
+	/**
+	 * Returns the bandwidth parameter.
+	 * @return the bandwidth parameter.
+	 */
+	public double getEpsilon(){
+		return this.epsilon;
+	}
+
 	@Override
 	public double responseFor(double[] input) {
 		double distance = metric.distance(centeredState, input);
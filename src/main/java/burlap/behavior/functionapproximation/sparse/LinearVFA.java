@@ -6,9 +6,8 @@ import burlap.behavior.functionapproximation.FunctionGradient;
 import burlap.mdp.core.action.Action;
 import burlap.mdp.core.state.State;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 
 /**
@@ -19,6 +18,11 @@ import java.util.Map;
  * This class can also be used for state-action value function approximation, which it will perform by creating
  * state-action features as a cross product of the state features and action set. You should only ever using this class
  * for state-values or state-action values, not both.
+ * <p>
+ * Weights are stored in a flat primitive array indexed by feature identifier that grows as larger identifiers are set, so
+ * feature identifiers should be small non-negative integers, as those produced by {@link burlap.behavior.functionapproximation.sparse.tilecoding.TileCodingFeatures}
+ * and {@link SparseCrossProductFeatures} are. Reading the weight of a feature that has never been set returns the default
+ * weight without storing anything.
  *  
  * @author James MacGlashan
  *
@@ -36,9 +40,14 @@ public class LinearVFA implements DifferentiableStateValue, DifferentiableStateA
 	protected SparseCrossProductFeatures stateActionFeatures;
 	
 	/**
-	 * A map from feature identifiers to function weights
+	 * The function weights, indexed by feature identifier. Entries at or beyond {@link #numWeights} hold the default weight.
+	 */
+	protected double[]								weights;
+
+	/**
+	 * One more than the largest feature identifier whose weight has been set
 	 */
-	protected Map<Integer, Double>					weights;
+	protected int									numWeights = 0;
 	
 	/**
 	 * A default weight for the functions
@@ -64,7 +73,7 @@ public class LinearVFA implements DifferentiableStateValue, DifferentiableStateA
 
 		this.sparseStateFeatures = sparseStateFeatures;
 		this.stateActionFeatures = new SparseCrossProductFeatures(sparseStateFeatures);
-		this.weights = new HashMap<Integer, Double>();
+		this.weights = new double[0];
 
 
 	}
@@ -80,7 +89,7 @@ public class LinearVFA implements DifferentiableStateValue, DifferentiableStateA
 		this.sparseStateFeatures = sparseStateFeatures;
 		this.stateActionFeatures = new SparseCrossProductFeatures(sparseStateFeatures);
 		this.defaultWeight = defaultWeight;
-		this.weights = new HashMap<Integer, Double>();
+		this.weights = new double[0];
 
 
 	}
@@ -137,7 +146,7 @@ public class LinearVFA implements DifferentiableStateValue, DifferentiableStateA
 			features = this.sparseStateFeatures.features(s);
 		}
 
-		FunctionGradient gd = new FunctionGradient.SparseGradient(features.size());
+		FunctionGradient gd = new FunctionGradient.SparseArrayGradient(features.size());
 		for(StateFeature sf : features){
 			gd.put(sf.id, sf.value);
 		}
@@ -164,7 +173,7 @@ public class LinearVFA implements DifferentiableStateValue, DifferentiableStateA
 			features = this.stateActionFeatures.features(s, a);
 		}
 
-		FunctionGradient gd = new FunctionGradient.SparseGradient(features.size());
+		FunctionGradient gd = new FunctionGradient.SparseArrayGradient(features.size());
 		for(StateFeature sf : features){
 			gd.put(sf.id, sf.value);
 		}
@@ -176,10 +185,29 @@ public class LinearVFA implements DifferentiableStateValue, DifferentiableStateA
 		return gd;
 	}
 
+	@Override
+	public FunctionGradient.SparseArrayGradient gradient(State s, Action a, FunctionGradient.SparseArrayGradient out) {
+
+		List<StateFeature> features;
+		if(this.lastState == s && this.lastAction == a){
+			features = this.currentFeatures;
+		}
+		else{
+			features = this.stateActionFeatures.features(s, a);
+		}
+
+		out.clear();
+		for(StateFeature sf : features){
+			out.put(sf.id, sf.value);
+		}
+
+		return out;
+	}
+
 
 	@Override
 	public int numParameters() {
-		return this.weights.size();
+		return this.numWeights;
 	}
 
 	@Override
@@ -189,33 +217,40 @@ public class LinearVFA implements DifferentiableStateValue, DifferentiableStateA
 
 	@Override
 	public void setParameter(int i, double p) {
-		this.weights.put(i, p);
+		if(i < 0){
+			throw new RuntimeException("LinearVFA cannot set the weight of negative feature id " + i);
+		}
+		if(i >= this.weights.length){
+			int n = Math.max(i + 1, this.weights.length * 2);
+			int oldLength = this.weights.length;
+			this.weights = Arrays.copyOf(this.weights, n);
+			Arrays.fill(this.weights, oldLength, n, this.defaultWeight);
+		}
+		this.weights[i] = p;
+		this.numWeights = Math.max(this.numWeights, i + 1);
 	}
 
 	protected double getWeight(int weightId){
-		Double stored = this.weights.get(weightId);
-		if(stored == null){
-			this.weights.put(weightId, this.defaultWeight);
-			return this.defaultWeight;
+		if(weightId < this.weights.length && weightId >= 0){
+			return this.weights[weightId];
 		}
-		return stored;
+		return this.defaultWeight;
 	}
 
 
 	@Override
 	public void resetParameters() {
-		this.weights.clear();
+		Arrays.fill(this.weights, 0, this.numWeights, this.defaultWeight);
+		this.numWeights = 0;
 	}
 
 	@Override
 	public LinearVFA copy() {
 
 		LinearVFA vfa = new LinearVFA(this.sparseStateFeatures.copy(), this.defaultWeight);
-		vfa.weights = new HashMap<Integer, Double>(this.weights.size());
+		vfa.weights = this.weights.clone();
+		vfa.numWeights = this.numWeights;
 		vfa.stateActionFeatures = stateActionFeatures.copy();
-		for(Map.Entry<Integer, Double> e : this.weights.entrySet()){
-			vfa.weights.put(e.getKey(), e.getValue());
-		}
 
 		return vfa;
 	}
@@ -0,0 +1,181 @@
+package burlap.behavior.functionapproximation.sparse;
+
+import java.util.Arrays;
+
+/**
+ * A block of sparse feature vectors in compressed sparse row (CSR) form, with a row for each state. The feature ids and values of all
+ * rows are stored back to back in primitive arrays, and {@link #rowStart(int)} gives the position of each row's first entry. Rows are
+ * built by calling {@link #add(int, double)} for each feature of the row and then {@link #endRow()}.
+ * <p>
+ * The arrays grow as needed and are kept by {@link #clear()}, so a matrix that is cleared and refilled for each state or batch creates
+ * no objects once it is large enough.
+ */
+public class SparseFeatureMatrix {
+
+	/**
+	 * The position of the first entry of each row, followed by the number of entries
+	 */
+	protected int [] rowStarts;
+
+	/**
+	 * The feature id of each entry
+	 */
+	protected int [] ids;
+
+	/**
+	 * The feature value of each entry
+	 */
+	protected double [] values;
+
+	/**
+	 * The number of completed rows
+	 */
+	protected int numRows = 0;
+
+	/**
+	 * The number of entries
+	 */
+	protected int numEntries = 0;
+
+
+	/**
+	 * Initializes with room for 16 rows and 64 entries.
+	 */
+	public SparseFeatureMatrix() {
+		this(16, 64);
+	}
+
+	/**
+	 * Initializes with room for the given number of rows and entries before the arrays grow.
+	 * @param rowCapacity the initial number of rows
+	 * @param entryCapacity the initial number of entries
+	 */
+	public SparseFeatureMatrix(int rowCapacity, int entryCapacity) {
+		this.rowStarts = new int[Math.max(rowCapacity, 1) + 1];
+		this.ids = new int[Math.max(entryCapacity, 1)];
+		this.values = new double[this.ids.length];
+	}
+
+
+	/**
+	 * Adds a feature to the current row.
+	 * @param id the feature id
+	 * @param value the feature value
+	 */
+	public void add(int id, double value) {
+		if(this.numEntries == this.ids.length){
+			this.ensureEntryCapacity(this.numEntries + 1);
+		}
+		this.ids[this.numEntries] = id;
+		this.values[this.numEntries] = value;
+		this.numEntries++;
+	}
+
+	/**
+	 * Completes the current row; features added afterwards belong to the next row.
+	 */
+	public void endRow() {
+		if(this.numRows + 2 > this.rowStarts.length){
+			this.rowStarts = Arrays.copyOf(this.rowStarts, this.rowStarts.length * 2);
+		}
+		this.numRows++;
+		this.rowStarts[this.numRows] = this.numEntries;
+	}
+
+	/**
+	 * Appends all rows of another matrix to this one.
+	 * @param m the matrix whose rows are appended
+	 */
+	public void addRows(SparseFeatureMatrix m) {
+		this.ensureEntryCapacity(this.numEntries + m.numEntries);
+		System.arraycopy(m.ids, 0, this.ids, this.numEntries, m.numEntries);
+		System.arraycopy(m.values, 0, this.values, this.numEntries, m.numEntries);
+		for(int i = 0; i < m.numRows; i++){
+			this.numEntries += m.rowLength(i);
+			this.endRow();
+		}
+	}
+
+	/**
+	 * Removes all rows, keeping the arrays.
+	 */
+	public void clear() {
+		this.numRows = 0;
+		this.numEntries = 0;
+	}
+
+	/**
+	 * Makes sure the entry arrays can hold the given number of entries without growing.
+	 * @param capacity the number of entries
+	 */
+	public void ensureEntryCapacity(int capacity) {
+		if(capacity > this.ids.length){
+			int c = Math.max(capacity, this.ids.length * 2);
+			this.ids = Arrays.copyOf(this.ids, c);
+			this.values = Arrays.copyOf(this.values, c);
+		}
+	}
+
+
+	/**
+	 * Returns the number of completed rows.
+	 * @return the number of completed rows
+	 */
+	public int numRows() {
+		return this.numRows;
+	}
+
+	/**
+	 * Returns the number of entries, including those of a row that has not been completed.
+	 * @return the number of entries
+	 */
+	public int numEntries() {
+		return this.numEntries;
+	}
+
+	/**
+	 * Returns the position of the first entry of a row.
+	 * @param row the row
+	 * @return the position of the first entry of the row
+	 */
+	public int rowStart(int row) {
+		return this.rowStarts[row];
+	}
+
+	/**
+	 * Returns the position one past the last entry of a row.
+	 * @param row the row
+	 * @return the position one past the last entry of the row
+	 */
+	public int rowEnd(int row) {
+		return this.rowStarts[row+1];
+	}
+
+	/**
+	 * Returns the number of entries of a row.
+	 * @param row the row
+	 * @return the number of entries of the row
+	 */
+	public int rowLength(int row) {
+		return this.rowStarts[row+1] - this.rowStarts[row];
+	}
+
+	/**
+	 * Returns the feature id of an entry.
+	 * @param i the entry position
+	 * @return the feature id of the entry
+	 */
+	public int id(int i) {
+		return this.ids[i];
+	}
+
+	/**
+	 * Returns the feature value of an entry.
+	 * @param i the entry position
+	 * @return the feature value of the entry
+	 */
+	public double value(int i) {
+		return this.values[i];
+	}
+
+}
@@ -7,6 +7,11 @@ import java.util.List;
 
 /**
  * An interface for defining a database of state features that can be returned for any given input state or input state-action pair.
+ * <p>
+ * The features of a state may also be appended as a row of a {@link SparseFeatureMatrix} with {@link #features(State, SparseFeatureMatrix)},
+ * and those of a batch of states as consecutive rows with {@link #features(List, SparseFeatureMatrix)}, which create no
+ * {@link StateFeature} objects when implemented natively. Use {@link burlap.behavior.functionapproximation.FeatureBatches} to extract a
+ * large batch in parallel chunks.
  * @author James MacGlashan
  *
  */
@@ -19,6 +24,30 @@ public interface SparseStateFeatures {
 	 */
 	List<StateFeature> features(State s);
 
+	/**
+	 * Appends the non-zero state features of a given state to a matrix as a new row. The default implementation copies the features
+	 * returned by {@link #features(State)}.
+	 * @param s the state for which features should be returned
+	 * @param matrix the matrix to which the row is appended
+	 */
+	default void features(State s, SparseFeatureMatrix matrix){
+		for(StateFeature sf : this.features(s)){
+			matrix.add(sf.id, sf.value);
+		}
+		matrix.endRow();
+	}
+
+	/**
+	 * Appends the non-zero state features of each state of a batch to a matrix, as one row per state in the order of the states.
+	 * @param states the states for which features should be returned
+	 * @param matrix the matrix to which the rows are appended
+	 */
+	default void features(List<? extends State> states, SparseFeatureMatrix matrix){
+		for(State s : states){
+			this.features(s, matrix);
+		}
+	}
+
 
 	/**
 	 * Returns a deep copy of this feature database. If the feature database is dynamic, then changes to one will
@@ -0,0 +1,356 @@
+package burlap.behavior.functionapproximation.sparse.tilecoding;
+
+import burlap.behavior.functionapproximation.dense.DenseStateFeatures;
+import burlap.behavior.functionapproximation.sparse.SparseFeatureMatrix;
+import burlap.behavior.functionapproximation.sparse.SparseStateFeatures;
+import burlap.behavior.functionapproximation.sparse.StateFeature;
+import burlap.debugtools.RandomFactory;
+import burlap.mdp.core.state.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * A tile coding (CMAC) feature database that maps tiles into a fixed number of feature indices by hashing, in the style of the
+ * index hash table (IHT) of Sutton's tile coding software, so that the memory used is bounded and known in advance no matter
+ * how many distinct tiles are visited. Tilings are specified as in {@link TileCodingFeatures}.
+ * <p>
+ * Each active tile is identified by a 64-bit hash of its tiling, its tile coordinates, and optionally an extra integer, such
+ * as an action index, which is then mapped to an index in [0, memorySize) in one of two ways. With an index table (the
+ * default), each new tile is assigned the next unused index until all memorySize indices are used, so there are no collisions
+ * until the table is full; after that, new tiles share indices chosen by their hash and are counted by {@link #numOverflows()}.
+ * Without an index table, every tile's index is chosen by its hash, tolerating collisions from the start but using no memory
+ * beyond the weights.
+ * <p>
+ * The active tiles are written into a caller-supplied int array by the activeTiles methods, which allocate nothing, and
+ * {@link #generateVFA(double)} produces a {@link HashedTileCodingVFA} with a flat weight array of length memorySize that
+ * uses them. The {@link SparseStateFeatures} methods are also supported so that these features can be used with
+ * {@link burlap.behavior.functionapproximation.sparse.LinearVFA}, in which case each feature has a value of 1.
+ * <p>
+ * The index table holds up to memorySize tiles in arrays of twice that length, so it uses about 24 bytes per index.
+ */
+public class HashedTileCodingFeatures implements SparseStateFeatures {
+
+	/**
+	 * The generator that turns OO-MDP state objects into state feature vectors.
+	 */
+	protected DenseStateFeatures featureVectorGenerator;
+
+	/**
+	 * A random object for jittering the tile alignments.
+	 */
+	protected Random rand = RandomFactory.getMapped(0);
+
+	/**
+	 * A list of all the tilings used.
+	 */
+	protected List<Tiling> tilings;
+
+	/**
+	 * The number of feature indices
+	 */
+	protected int memorySize;
+
+	/**
+	 * The tile hash stored in each slot of the index table; null when no index table is used.
+	 */
+	protected long [] tableKeys;
+
+	/**
+	 * The feature index stored in each slot of the index table; -1 marks an empty slot.
+	 */
+	protected int [] tableIndices;
+
+	/**
+	 * The number of feature indices assigned by the index table
+	 */
+	protected int numIndexed = 0;
+
+	/**
+	 * The number of times a new tile was hashed into a full index table
+	 */
+	protected int numOverflows = 0;
+
+
+	/**
+	 * Initializes with an index table.
+	 * @param featureVectorGenerator the OO-MDP state to feature vector generator to use
+	 * @param memorySize the number of feature indices
+	 */
+	public HashedTileCodingFeatures(DenseStateFeatures featureVectorGenerator, int memorySize){
+		this(featureVectorGenerator, memorySize, true);
+	}
+
+	/**
+	 * Initializes.
+	 * @param featureVectorGenerator the OO-MDP state to feature vector generator to use
+	 * @param memorySize the number of feature indices
+	 * @param useIndexTable if true, tiles are assigned unused indices until all are used; if false, indices are chosen by hashing alone.
+	 */
+	public HashedTileCodingFeatures(DenseStateFeatures featureVectorGenerator, int memorySize, boolean useIndexTable){
+		if(memorySize < 1){
+			throw new RuntimeException("HashedTileCodingFeatures requires a memory size of at least 1.");
+		}
+		this.featureVectorGenerator = featureVectorGenerator;
+		this.memorySize = memorySize;
+		this.tilings = new ArrayList<Tiling>();
+		if(useIndexTable){
+			int tableSize = Integer.highestOneBit(Math.max(1, memorySize * 2 - 1)) << 1;
+			this.tableKeys = new long[tableSize];
+			this.tableIndices = new int[tableSize];
+			Arrays.fill(this.tableIndices, -1);
+		}
+	}
+
+
+	/**
+	 * Adds a number of tilings where each tile is dependent on the dimensions that are labeled as "true" in the dimensionMask parameter.
+	 * See {@link TileCodingFeatures#addTilingsForDimensionsAndWidths(boolean[], double[], int, TilingArrangement)}.
+	 * @param dimensionMask each true entry in this boolen array is a dimension over which the tiling will be defined.
+	 * @param widths the width of tiles along each dimension. This value should be non-zero for each dimension unless the tiling doesn't depend on that dimension.
+	 * @param nTilings the number of tilings over the specified dimensions to create
+	 * @param tileArrangement whether the created tiles are uniformally spaced or randomly spaced.
+	 */
+	public void addTilingsForDimensionsAndWidths(boolean [] dimensionMask, double [] widths, int nTilings, TilingArrangement tileArrangement){
+
+		for(int i = 0; i < nTilings; i++){
+			double [] offset = new double[dimensionMask.length];
+			for(int j = 0; j < offset.length; j++){
+				if(dimensionMask[j]){
+					if(tileArrangement == TilingArrangement.RANDOM_JITTER){
+						offset[j] = this.rand.nextDouble()*widths[j];
+					}
+					else{
+						offset[j] = ((double)i / (double)nTilings)*widths[j];
+					}
+				}
+			}
+			this.tilings.add(new Tiling(widths, offset, dimensionMask));
+		}
+
+	}
+
+
+	/**
+	 * Adds a number of tilings where each tile is dependent on *all* the dimensions of a state feature vector.
+	 * See {@link TileCodingFeatures#addTilingsForAllDimensionsWithWidths(double[], int, TilingArrangement)}.
+	 * @param widths the width of tiles along each dimension. This value should be non-zero for each dimension .
+	 * @param nTilings the number of tilings over the specified dimensions to create.
+	 * @param tileArrangement whether the created tiles are uniformally spaced or randomly spaced.
+	 */
+	public void addTilingsForAllDimensionsWithWidths(double [] widths, int nTilings, TilingArrangement tileArrangement){
+
+		boolean [] dimensionMask = new boolean[widths.length];
+		Arrays.fill(dimensionMask, true);
+		this.addTilingsForDimensionsAndWidths(dimensionMask, widths, nTilings, tileArrangement);
+
+	}
+
+
+	/**
+	 * Returns the number of tilings, which is the number of active tiles for any input.
+	 * @return the number of tilings
+	 */
+	public int numTilings(){
+		return this.tilings.size();
+	}
+
+	/**
+	 * Returns the number of feature indices.
+	 * @return the number of feature indices
+	 */
+	public int getMemorySize(){
+		return this.memorySize;
+	}
+
+	/**
+	 * Returns whether an index table is used to assign feature indices.
+	 * @return whether an index table is used to assign feature indices
+	 */
+	public boolean usesIndexTable(){
+		return this.tableKeys != null;
+	}
+
+	/**
+	 * Returns the number of times a new tile had to share an index because the index table was full. Always 0 when no index table is used.
+	 * @return the number of times a new tile had to share an index
+	 */
+	public int numOverflows(){
+		return this.numOverflows;
+	}
+
+
+	/**
+	 * Writes the feature indices of the active tiles of the given state into the given array.
+	 * @param s the state
+	 * @param indices the array into which the indices are written; must have length at least {@link #numTilings()}
+	 * @return the number of indices written, which is {@link #numTilings()}
+	 */
+	public int activeTiles(State s, int [] indices){
+		return this.activeTiles(this.featureVectorGenerator.features(s), false, 0, indices);
+	}
+
+	/**
+	 * Writes the feature indices of the active tiles of the given state and extra integer, such as an action index, into the given array.
+	 * Tiles with different extra integers have different indices, collisions aside.
+	 * @param s the state
+	 * @param extra the extra integer
+	 * @param indices the array into which the indices are written; must have length at least {@link #numTilings()}
+	 * @return the number of indices written, which is {@link #numTilings()}
+	 */
+	public int activeTiles(State s, int extra, int [] indices){
+		return this.activeTiles(this.featureVectorGenerator.features(s), true, extra, indices);
+	}
+
+	/**
+	 * Writes the feature indices of the active tiles of the given feature vector into the given array.
+	 * @param input the feature vector
+	 * @param indices the array into which the indices are written; must have length at least {@link #numTilings()}
+	 * @return the number of indices written, which is {@link #numTilings()}
+	 */
+	public int activeTiles(double [] input, int [] indices){
+		return this.activeTiles(input, false, 0, indices);
+	}
+
+	/**
+	 * Writes the feature indices of the active tiles of the given feature vector and extra integer into the given array.
+	 * @param input the feature vector
+	 * @param extra the extra integer
+	 * @param indices the array into which the indices are written; must have length at least {@link #numTilings()}
+	 * @return the number of indices written, which is {@link #numTilings()}
+	 */
+	public int activeTiles(double [] input, int extra, int [] indices){
+		return this.activeTiles(input, true, extra, indices);
+	}
+
+
+	protected int activeTiles(double [] input, boolean hasExtra, int extra, int [] indices){
+		int n = this.tilings.size();
+		if(indices.length < n){
+			throw new RuntimeException("The active tile array has length " + indices.length + " but there are " + n + " tilings.");
+		}
+		for(int i = 0; i < n; i++){
+			indices[i] = this.tileIndex(input, i, hasExtra, extra);
+		}
+		return n;
+	}
+
+
+	/**
+	 * Returns the feature index of the active tile of a tiling.
+	 * @param input the input state variables
+	 * @param tiling the tiling index
+	 * @param hasExtra whether the extra int is hashed with the tile
+	 * @param extra the extra int
+	 * @return the feature index of the active tile
+	 */
+	protected int tileIndex(double [] input, int tiling, boolean hasExtra, int extra){
+		long seed = mix(tiling + 1);
+		if(hasExtra){
+			seed = mix(seed ^ extra);
+		}
+		long key = mix(this.tilings.get(tiling).tileHash(input, seed));
+		return this.indexOf(key);
+	}
+
+
+	/**
+	 * Returns the feature index of the tile with the given hash, assigning one if the tile is new.
+	 * @param key the tile hash
+	 * @return the feature index
+	 */
+	protected int indexOf(long key){
+
+		if(this.tableKeys == null){
+			return Math.floorMod(key, this.memorySize);
+		}
+
+		int mask = this.tableKeys.length - 1;
+		int slot = (int)key & mask;
+		while(this.tableIndices[slot] != -1){
+			if(this.tableKeys[slot] == key){
+				return this.tableIndices[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if(this.numIndexed == this.memorySize){
+			this.numOverflows++;
+			return Math.floorMod(key, this.memorySize);
+		}
+
+		int index = this.numIndexed++;
+		this.tableKeys[slot] = key;
+		this.tableIndices[slot] = index;
+		return index;
+	}
+
+
+	@Override
+	public List<StateFeature> features(State s) {
+		int [] indices = new int[this.tilings.size()];
+		int n = this.activeTiles(s, indices);
+		List<StateFeature> features = new ArrayList<StateFeature>(n);
+		for(int i = 0; i < n; i++){
+			features.add(new StateFeature(indices[i], 1.));
+		}
+		return features;
+	}
+
+	@Override
+	public void features(State s, SparseFeatureMatrix matrix) {
+		double [] input = this.featureVectorGenerator.features(s);
+		int n = this.tilings.size();
+		for(int i = 0; i < n; i++){
+			matrix.add(this.tileIndex(input, i, false, 0), 1.);
+		}
+		matrix.endRow();
+	}
+
+	@Override
+	public int numFeatures() {
+		return this.memorySize;
+	}
+
+	@Override
+	public HashedTileCodingFeatures copy() {
+		HashedTileCodingFeatures tilecoding = new HashedTileCodingFeatures(this.featureVectorGenerator, this.memorySize, false);
+		tilecoding.rand = this.rand;
+		tilecoding.tilings = new ArrayList<Tiling>(this.tilings);
+		if(this.tableKeys != null){
+			tilecoding.tableKeys = this.tableKeys.clone();
+			tilecoding.tableIndices = this.tableIndices.clone();
+		}
+		tilecoding.numIndexed = this.numIndexed;
+		tilecoding.numOverflows = this.numOverflows;
+		return tilecoding;
+	}
+
+
+	/**
+	 * After all the tiling specifications have been set, this method can be called to produce a linear
+	 * VFA object with a flat weight array over these features.
+	 * @param defaultWeightValue the value to which every weight is initialized.
+	 * @return a {@link HashedTileCodingVFA} that uses this feature database
+	 */
+	public HashedTileCodingVFA generateVFA(double defaultWeightValue){
+		return new HashedTileCodingVFA(this, defaultWeightValue);
+	}
+
+
+	/**
+	 * The finalizer of the 64-bit MurmurHash3, which scrambles the bits of a value.
+	 */
+	protected static long mix(long h){
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+}
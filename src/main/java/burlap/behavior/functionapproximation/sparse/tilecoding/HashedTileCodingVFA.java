@@ -0,0 +1,206 @@
+package burlap.behavior.functionapproximation.sparse.tilecoding;
+
+import burlap.behavior.functionapproximation.DifferentiableStateActionValue;
+import burlap.behavior.functionapproximation.DifferentiableStateValue;
+import burlap.behavior.functionapproximation.FunctionGradient;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.state.State;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * A linear value function over {@link HashedTileCodingFeatures} whose weights are a flat array with one entry per feature
+ * index. Because every active tile has a feature value of 1, the value of a state is the sum of the weights of its active tiles,
+ * which are written into a reused array, so evaluating the function allocates nothing.
+ * <p>
+ * For state-action values, each action is assigned a small integer the first time it is queried, which is hashed along with
+ * the tiles, so all actions share the same weight array. You should only ever use this class for state-values or
+ * state-action values, not both.
+ */
+public class HashedTileCodingVFA implements DifferentiableStateValue, DifferentiableStateActionValue {
+
+	/**
+	 * The tile coding features
+	 */
+	protected HashedTileCodingFeatures features;
+
+	/**
+	 * The function weights, indexed by feature index
+	 */
+	protected double [] weights;
+
+	/**
+	 * The value to which weights are initialized
+	 */
+	protected double defaultWeight;
+
+	/**
+	 * The integer assigned to each action
+	 */
+	protected Map<Action, Integer> actionIds = new HashMap<Action, Integer>();
+
+	/**
+	 * The active tiles of the last evaluated input
+	 */
+	protected int [] activeTiles = new int[0];
+	protected int numActiveTiles = 0;
+
+	protected FunctionGradient currentGradient = null;
+	protected State lastState = null;
+	protected Action lastAction = null;
+
+
+	/**
+	 * Initializes with every weight set to the default weight.
+	 * @param features the tile coding features
+	 * @param defaultWeight the value to which weights are initialized
+	 */
+	public HashedTileCodingVFA(HashedTileCodingFeatures features, double defaultWeight) {
+		this.features = features;
+		this.defaultWeight = defaultWeight;
+		this.weights = new double[features.getMemorySize()];
+		Arrays.fill(this.weights, defaultWeight);
+	}
+
+	public HashedTileCodingFeatures getFeatures() {
+		return features;
+	}
+
+	/**
+	 * Returns the weight array, without copying.
+	 * @return the weight array
+	 */
+	public double [] getWeights() {
+		return weights;
+	}
+
+
+	@Override
+	public double evaluate(State s) {
+		this.ensureActiveTileCapacity();
+		this.numActiveTiles = this.features.activeTiles(s, this.activeTiles);
+		this.currentGradient = null;
+		this.lastState = s;
+		this.lastAction = null;
+		return this.sumActiveWeights();
+	}
+
+	@Override
+	public double evaluate(State s, Action a) {
+		this.ensureActiveTileCapacity();
+		this.numActiveTiles = this.features.activeTiles(s, this.actionId(a), this.activeTiles);
+		this.currentGradient = null;
+		this.lastState = s;
+		this.lastAction = a;
+		return this.sumActiveWeights();
+	}
+
+	@Override
+	public FunctionGradient gradient(State s) {
+		if(this.lastState != s || this.lastAction != null){
+			this.evaluate(s);
+		}
+		if(this.currentGradient == null){
+			this.currentGradient = this.activeTileGradient();
+		}
+		return this.currentGradient;
+	}
+
+	@Override
+	public FunctionGradient gradient(State s, Action a) {
+		if(this.lastState != s || this.lastAction != a){
+			this.evaluate(s, a);
+		}
+		if(this.currentGradient == null){
+			this.currentGradient = this.activeTileGradient();
+		}
+		return this.currentGradient;
+	}
+
+	@Override
+	public FunctionGradient.SparseArrayGradient gradient(State s, Action a, FunctionGradient.SparseArrayGradient out) {
+		if(this.lastState != s || this.lastAction != a){
+			this.evaluate(s, a);
+		}
+		out.clear();
+		for(int i = 0; i < this.numActiveTiles; i++){
+			out.add(this.activeTiles[i], 1.);
+		}
+		return out;
+	}
+
+
+	@Override
+	public int numParameters() {
+		return this.weights.length;
+	}
+
+	@Override
+	public double getParameter(int i) {
+		return this.weights[i];
+	}
+
+	@Override
+	public void setParameter(int i, double p) {
+		this.weights[i] = p;
+	}
+
+	@Override
+	public void resetParameters() {
+		Arrays.fill(this.weights, this.defaultWeight);
+	}
+
+	@Override
+	public HashedTileCodingVFA copy() {
+		HashedTileCodingVFA vfa = new HashedTileCodingVFA(this.features.copy(), this.defaultWeight);
+		vfa.weights = this.weights.clone();
+		vfa.actionIds = new HashMap<Action, Integer>(this.actionIds);
+		return vfa;
+	}
+
+
+	/**
+	 * Returns the integer assigned to the given action, assigning the next one if the action is new.
+	 * @param a the action
+	 * @return the integer assigned to the action
+	 */
+	protected int actionId(Action a){
+		Integer id = this.actionIds.get(a);
+		if(id == null){
+			id = this.actionIds.size();
+			this.actionIds.put(a, id);
+		}
+		return id;
+	}
+
+	protected void ensureActiveTileCapacity(){
+		int n = this.features.numTilings();
+		if(this.activeTiles.length < n){
+			this.activeTiles = new int[n];
+		}
+	}
+
+	protected double sumActiveWeights(){
+		double sum = 0.;
+		for(int i = 0; i < this.numActiveTiles; i++){
+			sum += this.weights[this.activeTiles[i]];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the gradient for the active tiles. Tiles that share an index through a collision have a partial derivative equal to their number.
+	 * @return the gradient for the active tiles
+	 */
+	protected FunctionGradient activeTileGradient(){
+		FunctionGradient.SparseArrayGradient gradient = new FunctionGradient.SparseArrayGradient(this.numActiveTiles);
+		for(int i = 0; i < this.numActiveTiles; i++){
+			gradient.add(this.activeTiles[i], 1.);
+		}
+		return gradient;
+	}
+
+}
@@ -2,6 +2,7 @@ package burlap.behavior.functionapproximation.sparse.tilecoding;
 
 import burlap.behavior.functionapproximation.dense.DenseStateFeatures;
 import burlap.behavior.functionapproximation.sparse.LinearVFA;
+import burlap.behavior.functionapproximation.sparse.SparseFeatureMatrix;
 import burlap.behavior.functionapproximation.sparse.SparseStateFeatures;
 import burlap.behavior.functionapproximation.sparse.StateFeature;
 import burlap.debugtools.RandomFactory;
@@ -160,6 +161,22 @@ public class TileCodingFeatures implements SparseStateFeatures {
 		return features;
 	}
 
+	@Override
+	public void features(State s, SparseFeatureMatrix matrix) {
+
+		double [] input = this.featureVectorGenerator.features(s);
+		for(int i = 0; i < this.tilings.size(); i++){
+			Tiling tiling = this.tilings.get(i);
+			Map<Tiling.FVTile, Integer> tileFeatureMap = this.stateFeatures.get(i);
+
+			Tiling.FVTile tile = tiling.getFVTile(input);
+			matrix.add(this.getOrGenerateFeature(tileFeatureMap, tile), 1.);
+
+		}
+		matrix.endRow();
+
+	}
+
 	@Override
 	public int numFeatures() {
 		return nextStateFeatureId;
@@ -81,6 +81,35 @@ public class Tiling {
 	}
 	
 	
+	/**
+	 * Returns a 64-bit hash of the tile containing the given input vector, chained from the given seed, without allocating a tile object.
+	 * Only the dimensions on which this tiling depends affect the hash, so inputs in the same tile always have the same hash
+	 * and inputs in different tiles have different hashes with high probability.
+	 * @param input the input vector to tile
+	 * @param seed the value from which the hash is chained
+	 * @return the hash of the tile of the input vector
+	 */
+	public long tileHash(double [] input, long seed){
+
+		if(input.length != this.widths.length){
+			throw new RuntimeException("Error: the input feature vector to be tiled is a different dimensionality " +
+					"than the dimensionality on which this tiling was defined; " +
+					"e.g., the specified widths vector for this tiling is a different dimension than the input vector.");
+		}
+
+		long h = seed;
+		for(int i = 0; i < input.length; i++){
+			if(this.dimensionMask[i]){
+				int c = (int)Math.floor((input[i] - this.offset[i]) / this.widths[i]);
+				h = (h + c) * 0x9E3779B97F4A7C15L;
+				h ^= h >>> 29;
+			}
+		}
+
+		return h;
+	}
+	
+	
 	/**
 	 * Stores a tiled version of a feature vector with a hashcode and equality comparions methods implemented.
 	 * @author James MacGlashan
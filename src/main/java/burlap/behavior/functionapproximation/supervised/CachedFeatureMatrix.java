@@ -0,0 +1,151 @@
+package burlap.behavior.functionapproximation.supervised;
+
+import burlap.behavior.functionapproximation.dense.DenseStateFeatures;
+import burlap.mdp.core.state.State;
+
+import java.util.List;
+
+/**
+ * Caches the dense feature matrix of the states of a {@link SupervisedVFA} training set, so that trainers called repeatedly on
+ * the same states with new target values, as {@link burlap.behavior.singleagent.planning.vfa.fittedvi.FittedVI} does every iteration,
+ * extract features only once. The cache is reused when the training set has the same states, by reference, in the same order
+ * as the last training set; otherwise the matrix is rebuilt and the version (see {@link #version()}) is incremented, which
+ * trainers use to invalidate anything else they derived from the matrix.
+ */
+public class CachedFeatureMatrix {
+
+	/**
+	 * The state features
+	 */
+	protected DenseStateFeatures features;
+
+	/**
+	 * The states of the cached matrix
+	 */
+	protected State [] states;
+
+	/**
+	 * The feature matrix, stored row-major with one row per state
+	 */
+	protected double [] matrix;
+
+	protected int numRows;
+	protected int numCols;
+
+	/**
+	 * The number of times the matrix has been built
+	 */
+	protected long version;
+
+
+	/**
+	 * Initializes.
+	 * @param features the state features
+	 */
+	public CachedFeatureMatrix(DenseStateFeatures features) {
+		this.features = features;
+	}
+
+	/**
+	 * Returns the state features.
+	 * @return the state features.
+	 */
+	public DenseStateFeatures getFeatures() {
+		return features;
+	}
+
+	/**
+	 * Makes the matrix hold the features of the states of the training data, reusing the cached matrix if the training
+	 * data has the same states as the last training data.
+	 * @param trainingData the training data
+	 * @return true if the matrix was rebuilt; false if it was reused.
+	 */
+	public boolean update(List<SupervisedVFA.SupervisedVFAInstance> trainingData){
+
+		if(trainingData.isEmpty()){
+			throw new RuntimeException("Cannot train a value function on an empty training set.");
+		}
+
+		if(this.states != null && this.states.length == trainingData.size()){
+			boolean same = true;
+			for(int i = 0; i < this.states.length && same; i++){
+				same = this.states[i] == trainingData.get(i).s;
+			}
+			if(same){
+				return false;
+			}
+		}
+
+		int n = trainingData.size();
+		State [] nStates = new State[n];
+		double [] first = this.features.features(trainingData.get(0).s);
+		int d = first.length;
+		double [] m = new double[n*d];
+		for(int i = 0; i < n; i++){
+			State s = trainingData.get(i).s;
+			nStates[i] = s;
+			double [] f = i == 0 ? first : this.features.features(s);
+			if(f.length != d){
+				throw new RuntimeException("State features must all have the same dimension, but got " + f.length + " and " + d);
+			}
+			System.arraycopy(f, 0, m, i*d, d);
+		}
+
+		this.states = nStates;
+		this.matrix = m;
+		this.numRows = n;
+		this.numCols = d;
+		this.version++;
+
+		return true;
+	}
+
+	/**
+	 * Returns the target values of the training data.
+	 * @param trainingData the training data
+	 * @return the target value of each instance
+	 */
+	public static double [] targets(List<SupervisedVFA.SupervisedVFAInstance> trainingData){
+		double [] y = new double[trainingData.size()];
+		for(int i = 0; i < y.length; i++){
+			y[i] = trainingData.get(i).v;
+		}
+		return y;
+	}
+
+	/**
+	 * Returns the row-major feature matrix, without copying.
+	 * @return the row-major feature matrix
+	 */
+	public double [] matrix(){
+		return this.matrix;
+	}
+
+	public int numRows(){
+		return this.numRows;
+	}
+
+	public int numCols(){
+		return this.numCols;
+	}
+
+	/**
+	 * Returns the number of times the matrix has been built, which changes whenever {@link #update(List)} rebuilds it.
+	 * @return the number of times the matrix has been built
+	 */
+	public long version(){
+		return this.version;
+	}
+
+	/**
+	 * Clears the cached matrix.
+	 */
+	public void clear(){
+		this.states = null;
+		this.matrix = null;
+		this.numRows = 0;
+		this.numCols = 0;
+		this.version++;
+	}
+
+}
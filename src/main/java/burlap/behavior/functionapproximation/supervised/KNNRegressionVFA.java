@@ -0,0 +1,142 @@
+package burlap.behavior.functionapproximation.supervised;
+
+import burlap.behavior.functionapproximation.dense.DenseStateFeatures;
+import burlap.behavior.valuefunction.ValueFunction;
+import burlap.datastructures.KDTree;
+import burlap.mdp.core.state.State;
+
+import java.util.List;
+
+/**
+ * A {@link SupervisedVFA} that performs k-nearest neighbor regression over {@link DenseStateFeatures}: the value of a state is
+ * the mean target value of the k training states whose features are closest in Euclidean distance, optionally weighted
+ * by inverse distance. Neighbors are found with a {@link KDTree} over the training features, so each query takes roughly
+ * logarithmic rather than linear time in the number of training states for low dimensional features.
+ * <p>
+ * The feature matrix and the KD-tree are cached, so when the trainer is called repeatedly on the same states with new targets,
+ * as {@link burlap.behavior.singleagent.planning.vfa.fittedvi.FittedVI} does, each call after the first only copies the
+ * new targets. The returned value functions may be queried concurrently.
+ */
+public class KNNRegressionVFA implements SupervisedVFA {
+
+	/**
+	 * The cached feature matrix
+	 */
+	protected CachedFeatureMatrix cache;
+
+	/**
+	 * The number of neighbors
+	 */
+	protected int k;
+
+	/**
+	 * Whether neighbors are weighted by inverse distance
+	 */
+	protected boolean distanceWeighted = false;
+
+	/**
+	 * The maximum number of points in a KD-tree leaf
+	 */
+	protected int leafSize = 16;
+
+	/**
+	 * The KD-tree over the cached feature matrix
+	 */
+	protected KDTree tree;
+
+	/**
+	 * The version of the feature matrix from which {@link #tree} was built
+	 */
+	protected long treeVersion = -1;
+
+
+	/**
+	 * Initializes.
+	 * @param features the state features
+	 * @param k the number of neighbors
+	 */
+	public KNNRegressionVFA(DenseStateFeatures features, int k) {
+		if(k < 1){
+			throw new RuntimeException("KNNRegressionVFA requires k to be at least 1.");
+		}
+		this.cache = new CachedFeatureMatrix(features);
+		this.k = k;
+	}
+
+	/**
+	 * Sets whether the neighbors are weighted by their inverse distance. Default is false, which weights them equally.
+	 * @param distanceWeighted whether the neighbors are weighted by their inverse distance
+	 */
+	public void toggleDistanceWeighting(boolean distanceWeighted) {
+		this.distanceWeighted = distanceWeighted;
+	}
+
+	/**
+	 * Sets the maximum number of points in a KD-tree leaf. Default is 16.
+	 * @param leafSize the maximum number of points in a KD-tree leaf
+	 */
+	public void setLeafSize(int leafSize) {
+		this.leafSize = leafSize;
+		this.tree = null;
+	}
+
+	@Override
+	public ValueFunction train(List<SupervisedVFAInstance> trainingData) {
+		this.cache.update(trainingData);
+		if(this.tree == null || this.treeVersion != this.cache.version()){
+			this.tree = new KDTree(this.cache.matrix(), this.cache.numRows(), this.cache.numCols(), this.leafSize);
+			this.treeVersion = this.cache.version();
+		}
+		return new KNNValueFunction(this.cache.getFeatures(), this.tree, CachedFeatureMatrix.targets(trainingData), this.k, this.distanceWeighted);
+	}
+
+
+	/**
+	 * A value function that averages the target values of the nearest training states.
+	 */
+	public static class KNNValueFunction implements ValueFunction {
+
+		protected DenseStateFeatures features;
+		protected KDTree tree;
+		protected double [] targets;
+		protected int k;
+		protected boolean distanceWeighted;
+
+		public KNNValueFunction(DenseStateFeatures features, KDTree tree, double[] targets, int k, boolean distanceWeighted) {
+			this.features = features;
+			this.tree = tree;
+			this.targets = targets;
+			this.k = k;
+			this.distanceWeighted = distanceWeighted;
+		}
+
+		@Override
+		public double value(State s) {
+			int [] neighbors = new int[this.k];
+			double [] sqDistances = new double[this.k];
+			int found = this.tree.nearest(this.features.features(s), this.k, neighbors, sqDistances);
+
+			if(!this.distanceWeighted){
+				double sum = 0.;
+				for(int i = 0; i < found; i++){
+					sum += this.targets[neighbors[i]];
+				}
+				return sum / found;
+			}
+
+			//an exact match determines the value
+			if(sqDistances[0] == 0.){
+				return this.targets[neighbors[0]];
+			}
+			double sum = 0.;
+			double norm = 0.;
+			for(int i = 0; i < found; i++){
+				double w = 1. / Math.sqrt(sqDistances[i]);
+				sum += w * this.targets[neighbors[i]];
+				norm += w;
+			}
+			return sum / norm;
+		}
+	}
+
+}
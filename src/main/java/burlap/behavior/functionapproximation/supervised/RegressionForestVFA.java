@@ -0,0 +1,468 @@
+package burlap.behavior.functionapproximation.supervised;
+
+import burlap.behavior.functionapproximation.dense.DenseStateFeatures;
+import burlap.behavior.valuefunction.ValueFunction;
+import burlap.datastructures.ParallelBlocks;
+import burlap.debugtools.RandomFactory;
+import burlap.mdp.core.state.State;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A {@link SupervisedVFA} that fits a forest of regression trees over {@link DenseStateFeatures}; the value of a state is the
+ * mean of the predictions of the trees. Each tree greedily splits its training states on the feature threshold that most
+ * reduces the squared error of the targets, until the maximum depth is reached or a split would leave fewer than the
+ * minimum leaf size of states on either side. With a single tree, the tree is fit to all of the training data; with more than
+ * one, each tree is fit to a bootstrap sample of it, and each split may consider only a random subset of features
+ * (see {@link #setFeaturesPerSplit(int)}), as in a random forest.
+ * <p>
+ * Candidate split thresholds are limited to at most {@link #setMaxBins(int)} quantiles of each feature, so finding the best
+ * split of a node takes linear time in its number of states using histograms of the targets. The feature matrix and the
+ * binned features are cached, so when the trainer is called repeatedly on the same states with new targets,
+ * as {@link burlap.behavior.singleagent.planning.vfa.fittedvi.FittedVI} does, they are only computed once.
+ * <p>
+ * Trees are independent, so they can be trained across a thread pool with {@link #setParallelTraining(int)}. Every tree draws
+ * from its own random number generator seeded from {@link RandomFactory#getMapped(int)}, so the trained forest does not depend on
+ * the number of threads.
+ */
+public class RegressionForestVFA implements SupervisedVFA {
+
+	/**
+	 * The cached feature matrix
+	 */
+	protected CachedFeatureMatrix cache;
+
+	protected int numTrees;
+	protected int maxDepth;
+	protected int minLeafSize;
+
+	/**
+	 * The number of features considered at each split; 0 or less considers all of them.
+	 */
+	protected int featuresPerSplit = 0;
+
+	/**
+	 * The maximum number of bins into which each feature is discretized
+	 */
+	protected int maxBins = 64;
+
+	/**
+	 * The candidate split thresholds of each feature, in increasing order
+	 */
+	protected double [][] thresholds;
+
+	/**
+	 * The bin of each feature value of the cached feature matrix, stored row-major. A value is in bin b when it is
+	 * greater than thresholds b-1 and less than or equal to threshold b.
+	 */
+	protected int [] bins;
+
+	/**
+	 * The version of the feature matrix from which {@link #bins} was computed
+	 */
+	protected long binVersion = -1;
+
+	/**
+	 * The executor and number of blocks with which trees are trained; they are trained serially when it has no executor.
+	 */
+	protected ParallelBlocks trainingBlocks = new ParallelBlocks();
+
+
+	/**
+	 * Initializes.
+	 * @param features the state features
+	 * @param numTrees the number of trees; with more than one, each tree is fit to a bootstrap sample
+	 * @param maxDepth the maximum depth of each tree
+	 * @param minLeafSize the minimum number of training states in each leaf
+	 */
+	public RegressionForestVFA(DenseStateFeatures features, int numTrees, int maxDepth, int minLeafSize) {
+		if(numTrees < 1){
+			throw new RuntimeException("RegressionForestVFA requires at least one tree.");
+		}
+		this.cache = new CachedFeatureMatrix(features);
+		this.numTrees = numTrees;
+		this.maxDepth = maxDepth;
+		this.minLeafSize = Math.max(1, minLeafSize);
+	}
+
+	/**
+	 * Sets the number of randomly selected features considered at each split. Default is 0, which considers all features.
+	 * @param featuresPerSplit the number of features considered at each split; 0 or less for all features
+	 */
+	public void setFeaturesPerSplit(int featuresPerSplit) {
+		this.featuresPerSplit = featuresPerSplit;
+	}
+
+	/**
+	 * Sets the maximum number of bins into which each feature is discretized for finding splits. Default is 64.
+	 * @param maxBins the maximum number of bins of each feature
+	 */
+	public void setMaxBins(int maxBins) {
+		this.maxBins = Math.max(2, maxBins);
+		this.bins = null;
+	}
+
+	/**
+	 * Sets trees to be trained across the given number of threads using a new {@link ForkJoinPool}, with
+	 * the trees split into one contiguous block per thread. If numThreads is 1 or less, they are trained serially.
+	 * @param numThreads the number of threads to use.
+	 */
+	public void setParallelTraining(int numThreads){
+		this.trainingBlocks.setThreads(numThreads);
+	}
+
+	/**
+	 * Sets trees to be trained on the given executor, with the trees split into numPartitions contiguous blocks.
+	 * @param executor the executor on which blocks are trained, such as a {@link ForkJoinPool}; null to train serially
+	 * @param numPartitions the number of blocks into which the trees are split
+	 */
+	public void setParallelTraining(ExecutorService executor, int numPartitions){
+		this.trainingBlocks.setExecutor(executor, numPartitions);
+	}
+
+
+	@Override
+	public ValueFunction train(List<SupervisedVFAInstance> trainingData) {
+
+		this.cache.update(trainingData);
+		if(this.bins == null || this.binVersion != this.cache.version()){
+			this.computeBins();
+		}
+
+		final double [] y = CachedFeatureMatrix.targets(trainingData);
+		final long seed = RandomFactory.getMapped(0).nextLong();
+		final RegressionTree [] trees = new RegressionTree[this.numTrees];
+
+		this.trainingBlocks.invokeBlocks(this.numTrees, new ParallelBlocks.Block<Object>() {
+			@Override
+			public Object run(int start, int end) {
+				for(int t = start; t < end; t++){
+					trees[t] = trainTree(y, new Random(seed + t * 0x9E3779B97F4A7C15L));
+				}
+				return null;
+			}
+		}, "training regression trees");
+
+		return new ForestValueFunction(this.cache.getFeatures(), trees);
+	}
+
+
+	/**
+	 * Computes the candidate thresholds of each feature from its quantiles and the bin of every value of the feature matrix.
+	 */
+	protected void computeBins(){
+
+		double [] x = this.cache.matrix();
+		int n = this.cache.numRows();
+		int d = this.cache.numCols();
+
+		this.thresholds = new double[d][];
+		this.bins = new int[n*d];
+		double [] column = new double[n];
+		for(int j = 0; j < d; j++){
+			for(int i = 0; i < n; i++){
+				column[i] = x[i*d+j];
+			}
+			Arrays.sort(column);
+
+			//quantiles strictly less than the maximum, so every threshold leaves a value on each side
+			double [] cuts = new double[this.maxBins-1];
+			int numCuts = 0;
+			for(int q = 1; q < this.maxBins; q++){
+				double v = column[(int)((long)q * (n-1) / this.maxBins)];
+				if(v < column[n-1] && (numCuts == 0 || v > cuts[numCuts-1])){
+					cuts[numCuts++] = v;
+				}
+			}
+			this.thresholds[j] = Arrays.copyOf(cuts, numCuts);
+
+			for(int i = 0; i < n; i++){
+				this.bins[i*d+j] = binOf(this.thresholds[j], x[i*d+j]);
+			}
+		}
+
+		this.binVersion = this.cache.version();
+	}
+
+
+	/**
+	 * Trains a single tree.
+	 * @param y the targets
+	 * @param rand the random number generator of the tree
+	 * @return the trained tree
+	 */
+	protected RegressionTree trainTree(double [] y, Random rand){
+
+		int n = y.length;
+		int [] sample = new int[n];
+		if(this.numTrees > 1){
+			for(int i = 0; i < n; i++){
+				sample[i] = rand.nextInt(n);
+			}
+		}
+		else{
+			for(int i = 0; i < n; i++){
+				sample[i] = i;
+			}
+		}
+
+		TreeBuilder builder = new TreeBuilder(y, sample, rand);
+		builder.build(0, n, 0);
+		return builder.tree();
+	}
+
+
+	/**
+	 * Returns the bin of a value: the number of thresholds less than it.
+	 */
+	protected static int binOf(double [] thresholds, double v){
+		int lo = 0;
+		int hi = thresholds.length;
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(thresholds[mid] < v){
+				lo = mid + 1;
+			}
+			else{
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+
+	/**
+	 * Grows a single tree over a sample of the training rows, storing its nodes in flat arrays.
+	 */
+	protected class TreeBuilder {
+
+		protected double [] y;
+		protected int [] sample;
+		protected Random rand;
+
+		protected int [] feature;
+		protected double [] threshold;
+		protected int [] left;
+		protected int [] right;
+		protected double [] value;
+		protected int numNodes;
+
+		protected int [] candidates;
+		protected double [] binSums;
+		protected int [] binCounts;
+
+		public TreeBuilder(double [] y, int [] sample, Random rand){
+			this.y = y;
+			this.sample = sample;
+			this.rand = rand;
+
+			//a binary tree whose leaves each hold at least one row has fewer than twice as many nodes as rows
+			int maxNodes = 2 * sample.length;
+			this.feature = new int[maxNodes];
+			this.threshold = new double[maxNodes];
+			this.left = new int[maxNodes];
+			this.right = new int[maxNodes];
+			this.value = new double[maxNodes];
+
+			int d = cache.numCols();
+			this.candidates = new int[d];
+			for(int j = 0; j < d; j++){
+				this.candidates[j] = j;
+			}
+			this.binSums = new double[maxBins];
+			this.binCounts = new int[maxBins];
+		}
+
+		/**
+		 * Builds the node for the sample positions [start, end).
+		 * @return the node id
+		 */
+		public int build(int start, int end, int depth){
+
+			int node = this.numNodes++;
+			int count = end - start;
+			double sum = 0.;
+			for(int p = start; p < end; p++){
+				sum += this.y[this.sample[p]];
+			}
+			this.value[node] = sum / count;
+			this.feature[node] = -1;
+
+			if(depth >= maxDepth || count < 2*minLeafSize){
+				return node;
+			}
+
+			int d = cache.numCols();
+			int numCandidates = d;
+			if(featuresPerSplit > 0 && featuresPerSplit < d){
+				//partial Fisher-Yates shuffle to select the candidate features
+				numCandidates = featuresPerSplit;
+				for(int c = 0; c < numCandidates; c++){
+					int r = c + this.rand.nextInt(d - c);
+					int tmp = this.candidates[c];
+					this.candidates[c] = this.candidates[r];
+					this.candidates[r] = tmp;
+				}
+			}
+
+			double baseScore = sum * sum / count;
+			double bestGain = 1e-12 * Math.abs(baseScore);
+			int bestFeature = -1;
+			int bestBin = -1;
+			for(int c = 0; c < numCandidates; c++){
+				int j = this.candidates[c];
+				int numBins = thresholds[j].length + 1;
+				if(numBins < 2){
+					continue;
+				}
+				Arrays.fill(this.binSums, 0, numBins, 0.);
+				Arrays.fill(this.binCounts, 0, numBins, 0);
+				for(int p = start; p < end; p++){
+					int row = this.sample[p];
+					int b = bins[row*d+j];
+					this.binSums[b] += this.y[row];
+					this.binCounts[b]++;
+				}
+
+				double leftSum = 0.;
+				int leftCount = 0;
+				for(int b = 0; b < numBins-1; b++){
+					leftSum += this.binSums[b];
+					leftCount += this.binCounts[b];
+					int rightCount = count - leftCount;
+					if(leftCount < minLeafSize){
+						continue;
+					}
+					if(rightCount < minLeafSize){
+						break;
+					}
+					double rightSum = sum - leftSum;
+					double gain = leftSum*leftSum/leftCount + rightSum*rightSum/rightCount - baseScore;
+					if(gain > bestGain){
+						bestGain = gain;
+						bestFeature = j;
+						bestBin = b;
+					}
+				}
+			}
+
+			if(bestFeature == -1){
+				return node;
+			}
+
+			//partition the sample so rows in bins up to bestBin come first
+			int i = start;
+			int k = end - 1;
+			while(i <= k){
+				if(bins[this.sample[i]*d+bestFeature] <= bestBin){
+					i++;
+				}
+				else{
+					int tmp = this.sample[i];
+					this.sample[i] = this.sample[k];
+					this.sample[k] = tmp;
+					k--;
+				}
+			}
+
+			this.feature[node] = bestFeature;
+			this.threshold[node] = thresholds[bestFeature][bestBin];
+			int l = this.build(start, i, depth+1);
+			int r = this.build(i, end, depth+1);
+			this.left[node] = l;
+			this.right[node] = r;
+
+			return node;
+		}
+
+		/**
+		 * Returns the tree that was built.
+		 * @return the tree that was built
+		 */
+		public RegressionTree tree(){
+			int m = this.numNodes;
+			return new RegressionTree(Arrays.copyOf(this.feature, m), Arrays.copyOf(this.threshold, m),
+					Arrays.copyOf(this.left, m), Arrays.copyOf(this.right, m), Arrays.copyOf(this.value, m));
+		}
+
+	}
+
+
+	/**
+	 * A regression tree stored in flat arrays indexed by node id, with the root at node 0. An internal node sends feature
+	 * vectors whose value of its feature is less than or equal to its threshold to its left child, and the others to its right child.
+	 * Leaves have a feature of -1 and predict their value.
+	 */
+	public static class RegressionTree {
+
+		protected int [] feature;
+		protected double [] threshold;
+		protected int [] left;
+		protected int [] right;
+		protected double [] value;
+
+		public RegressionTree(int[] feature, double[] threshold, int[] left, int[] right, double[] value) {
+			this.feature = feature;
+			this.threshold = threshold;
+			this.left = left;
+			this.right = right;
+			this.value = value;
+		}
+
+		/**
+		 * Returns the number of nodes.
+		 * @return the number of nodes
+		 */
+		public int numNodes(){
+			return this.feature.length;
+		}
+
+		/**
+		 * Returns the prediction of the tree for the given feature vector.
+		 * @param f the feature vector
+		 * @return the prediction of the tree
+		 */
+		public double predict(double [] f){
+			int node = 0;
+			while(this.feature[node] != -1){
+				node = f[this.feature[node]] <= this.threshold[node] ? this.left[node] : this.right[node];
+			}
+			return this.value[node];
+		}
+
+	}
+
+
+	/**
+	 * A value function that averages the predictions of a forest of regression trees.
+	 */
+	public static class ForestValueFunction implements ValueFunction {
+
+		protected DenseStateFeatures features;
+		protected RegressionTree [] trees;
+
+		public ForestValueFunction(DenseStateFeatures features, RegressionTree[] trees) {
+			this.features = features;
+			this.trees = trees;
+		}
+
+		public RegressionTree [] getTrees() {
+			return trees;
+		}
+
+		@Override
+		public double value(State s) {
+			double [] f = this.features.features(s);
+			double sum = 0.;
+			for(RegressionTree tree : this.trees){
+				sum += tree.predict(f);
+			}
+			return sum / this.trees.length;
+		}
+	}
+
+}
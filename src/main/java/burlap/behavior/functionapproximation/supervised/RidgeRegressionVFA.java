@@ -0,0 +1,196 @@
+package burlap.behavior.functionapproximation.supervised;
+
+import burlap.behavior.functionapproximation.dense.DenseStateFeatures;
+import burlap.behavior.valuefunction.ValueFunction;
+import burlap.mdp.core.state.State;
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.factory.LinearSolverFactory;
+import org.ejml.interfaces.linsol.LinearSolver;
+
+import java.util.List;
+
+/**
+ * A {@link SupervisedVFA} that fits a linear value function over {@link DenseStateFeatures} with closed-form ridge regression:
+ * w = (X^T X + lambda I)^-1 X^T y. By default a constant bias feature is appended to the state features; it is regularized like
+ * the other weights.
+ * <p>
+ * The feature matrix X is cached with a {@link CachedFeatureMatrix}, along with the Cholesky factorization of X^T X + lambda I,
+ * so when the trainer is called repeatedly on the same states with new targets, as {@link burlap.behavior.singleagent.planning.vfa.fittedvi.FittedVI}
+ * does, each call after the first only computes X^T y, O(n d), and solves the factored system, O(d^2).
+ */
+public class RidgeRegressionVFA implements SupervisedVFA {
+
+	/**
+	 * The cached feature matrix
+	 */
+	protected CachedFeatureMatrix cache;
+
+	/**
+	 * The regularization strength
+	 */
+	protected double lambda;
+
+	/**
+	 * Whether a constant bias feature is appended
+	 */
+	protected boolean includeBias = true;
+
+	/**
+	 * The solver holding the factorization of X^T X + lambda I; null when it must be rebuilt.
+	 */
+	protected LinearSolver<DenseMatrix64F> solver;
+
+	/**
+	 * The version of the feature matrix from which {@link #solver} was built
+	 */
+	protected long solverVersion = -1;
+
+
+	/**
+	 * Initializes.
+	 * @param features the state features
+	 * @param lambda the regularization strength; must be positive for the system to be guaranteed solvable
+	 */
+	public RidgeRegressionVFA(DenseStateFeatures features, double lambda) {
+		this.cache = new CachedFeatureMatrix(features);
+		this.lambda = lambda;
+	}
+
+	public double getLambda() {
+		return lambda;
+	}
+
+	public void setLambda(double lambda) {
+		this.lambda = lambda;
+		this.solver = null;
+	}
+
+	/**
+	 * Sets whether a constant bias feature is appended to the state features. Default is true.
+	 * @param includeBias whether a constant bias feature is appended
+	 */
+	public void toggleBias(boolean includeBias) {
+		this.includeBias = includeBias;
+		this.solver = null;
+	}
+
+
+	@Override
+	public ValueFunction train(List<SupervisedVFAInstance> trainingData) {
+
+		this.cache.update(trainingData);
+		double [] x = this.cache.matrix();
+		int n = this.cache.numRows();
+		int nf = this.cache.numCols();
+		int d = this.includeBias ? nf+1 : nf;
+
+		if(this.solver == null || this.solverVersion != this.cache.version()){
+			this.buildSolver(x, n, nf, d);
+		}
+
+		double [] y = CachedFeatureMatrix.targets(trainingData);
+		DenseMatrix64F xty = new DenseMatrix64F(d, 1);
+		double [] b = xty.data;
+		for(int i = 0; i < n; i++){
+			int row = i*nf;
+			double yi = y[i];
+			for(int j = 0; j < nf; j++){
+				b[j] += x[row+j] * yi;
+			}
+			if(this.includeBias){
+				b[nf] += yi;
+			}
+		}
+
+		DenseMatrix64F w = new DenseMatrix64F(d, 1);
+		this.solver.solve(xty, w);
+
+		double [] weights = new double[nf];
+		System.arraycopy(w.data, 0, weights, 0, nf);
+		double bias = this.includeBias ? w.data[nf] : 0.;
+
+		return new LinearValueFunction(this.cache.getFeatures(), weights, bias);
+	}
+
+
+	/**
+	 * Computes X^T X + lambda I and factors it.
+	 * @param x the row-major feature matrix
+	 * @param n the number of rows
+	 * @param nf the number of features
+	 * @param d the number of weights, including the bias
+	 */
+	protected void buildSolver(double [] x, int n, int nf, int d){
+
+		DenseMatrix64F a = new DenseMatrix64F(d, d);
+		double [] ad = a.data;
+		for(int i = 0; i < n; i++){
+			int row = i*nf;
+			for(int j = 0; j < nf; j++){
+				double xj = x[row+j];
+				if(xj == 0.){
+					continue;
+				}
+				int arow = j*d;
+				for(int k = j; k < nf; k++){
+					ad[arow+k] += xj * x[row+k];
+				}
+				if(this.includeBias){
+					ad[arow+nf] += xj;
+				}
+			}
+		}
+		if(this.includeBias){
+			ad[nf*d+nf] = n;
+		}
+		for(int j = 0; j < d; j++){
+			ad[j*d+j] += this.lambda;
+			for(int k = 0; k < j; k++){
+				ad[j*d+k] = ad[k*d+j];
+			}
+		}
+
+		LinearSolver<DenseMatrix64F> s = LinearSolverFactory.symmPosDef(d);
+		if(!s.setA(a)){
+			throw new RuntimeException("RidgeRegressionVFA could not factor X^T X + lambda I; use a larger lambda.");
+		}
+		this.solver = s;
+		this.solverVersion = this.cache.version();
+	}
+
+
+	/**
+	 * A linear value function over dense state features with a bias term.
+	 */
+	public static class LinearValueFunction implements ValueFunction {
+
+		protected DenseStateFeatures features;
+		protected double [] weights;
+		protected double bias;
+
+		public LinearValueFunction(DenseStateFeatures features, double[] weights, double bias) {
+			this.features = features;
+			this.weights = weights;
+			this.bias = bias;
+		}
+
+		public double [] getWeights() {
+			return weights;
+		}
+
+		public double getBias() {
+			return bias;
+		}
+
+		@Override
+		public double value(State s) {
+			double [] f = this.features.features(s);
+			double sum = this.bias;
+			for(int i = 0; i < f.length; i++){
+				sum += f[i] * this.weights[i];
+			}
+			return sum;
+		}
+	}
+
+}
@@ -0,0 +1,182 @@
+package burlap.behavior.singleagent.auxiliary.performance;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * A {@link MetricsConsumer} that streams the step-wise and episode-wise performance data to CSV files as each episode ends, so the
+ * data of long experiments is on disk while they run and need not be held until the end. The files have the same columns as those
+ * written by {@link MetricsCollector#writeStepAndEpisodeDataToCSV(String)}; when trials run concurrently, the rows of different trials
+ * are interleaved in the order their episodes end. The files are flushed at the end of each trial and closed by {@link #close()}.
+ */
+public class CSVMetricsWriter implements MetricsConsumer {
+
+	/**
+	 * The header of step-wise CSV files
+	 */
+	public static final String STEP_HEADER = "agent,trial,step,cumulativeReward\n";
+
+	/**
+	 * The header of episode-wise CSV files
+	 */
+	public static final String EPISODE_HEADER = "agent,trial,episode,cumulativeReward,averageReward,cumulativeSteps,numSteps\n";
+
+	/**
+	 * The step-wise output; null if step data is not written.
+	 */
+	protected Writer outStep;
+
+	/**
+	 * The episode-wise output; null if episode data is not written.
+	 */
+	protected Writer outEpisode;
+
+	/**
+	 * Reused row buffer
+	 */
+	protected StringBuilder row = new StringBuilder();
+
+
+	/**
+	 * Initializes to write the episode-wise data to the file &lt;pathAndBaseNameToUse&gt;Episodes.csv and the step-wise data to the
+	 * file &lt;pathAndBaseNameToUse&gt;Steps.csv.
+	 * @param pathAndBaseNameToUse the base path and file name for the episode-wise and step-wise csv files.
+	 */
+	public CSVMetricsWriter(String pathAndBaseNameToUse) {
+		if(pathAndBaseNameToUse.endsWith(".csv")){
+			pathAndBaseNameToUse = pathAndBaseNameToUse.substring(0, pathAndBaseNameToUse.length() - 4);
+		}
+		try{
+			this.outStep = new BufferedWriter(new FileWriter(pathAndBaseNameToUse + "Steps.csv"));
+			this.outEpisode = new BufferedWriter(new FileWriter(pathAndBaseNameToUse + "Episodes.csv"));
+			this.outStep.write(STEP_HEADER);
+			this.outEpisode.write(EPISODE_HEADER);
+		} catch(IOException e){
+			throw new RuntimeException("Could not open csv files " + pathAndBaseNameToUse + "Steps.csv and " + pathAndBaseNameToUse + "Episodes.csv", e);
+		}
+	}
+
+	/**
+	 * Initializes to write to the given outputs, which will be closed by {@link #close()}. The headers are written immediately.
+	 * @param outStep the step-wise output; null if step data should not be written.
+	 * @param outEpisode the episode-wise output; null if episode data should not be written.
+	 */
+	public CSVMetricsWriter(Writer outStep, Writer outEpisode) {
+		this.outStep = outStep;
+		this.outEpisode = outEpisode;
+		try{
+			if(this.outStep != null){
+				this.outStep.write(STEP_HEADER);
+			}
+			if(this.outEpisode != null){
+				this.outEpisode.write(EPISODE_HEADER);
+			}
+		} catch(IOException e){
+			throw new RuntimeException("Could not write csv headers.", e);
+		}
+	}
+
+
+	@Override
+	public void trialStarted(TrialMetrics trial) {
+		//do nothing
+	}
+
+	@Override
+	synchronized public void episodeEnded(TrialMetrics trial) {
+		int e = trial.numEpisodes() - 1;
+		int end = trial.numCompletedSteps();
+		int start = end - (int)trial.stepEpisode(e);
+		try{
+			if(this.outStep != null){
+				writeStepRows(this.outStep, this.row, trial.getAgentName(), trial.getTrial(), trial, start, end);
+			}
+			if(this.outEpisode != null){
+				writeEpisodeRows(this.outEpisode, this.row, trial.getAgentName(), trial.getTrial(), trial, e, e+1);
+			}
+		} catch(IOException ex){
+			throw new RuntimeException("Could not write csv rows.", ex);
+		}
+	}
+
+	@Override
+	synchronized public void trialEnded(TrialMetrics trial) {
+		try{
+			if(this.outStep != null){
+				this.outStep.flush();
+			}
+			if(this.outEpisode != null){
+				this.outEpisode.flush();
+			}
+		} catch(IOException e){
+			throw new RuntimeException("Could not flush csv files.", e);
+		}
+	}
+
+	@Override
+	public void agentEnded(String agentName, List<TrialMetrics> trials) {
+		//do nothing
+	}
+
+	@Override
+	synchronized public void close() {
+		try{
+			if(this.outStep != null){
+				this.outStep.close();
+			}
+			if(this.outEpisode != null){
+				this.outEpisode.close();
+			}
+		} catch(IOException e){
+			throw new RuntimeException("Could not close csv files.", e);
+		}
+	}
+
+
+	/**
+	 * Writes the step-wise CSV rows of the steps in [start, end) of a trial.
+	 * @param out the output
+	 * @param row a buffer used to build each row
+	 * @param agentName the agent name written
+	 * @param trialIndex the trial index written
+	 * @param trial the trial
+	 * @param start the first step
+	 * @param end one past the last step
+	 * @throws IOException if the output cannot be written
+	 */
+	public static void writeStepRows(Writer out, StringBuilder row, String agentName, int trialIndex, TrialMetrics trial, int start, int end) throws IOException {
+		for(int j = start; j < end; j++){
+			row.setLength(0);
+			row.append(agentName).append(',').append(trialIndex).append(',').append(j).append(',').append(trial.cumulativeStepReward(j)).append('\n');
+			out.append(row);
+		}
+	}
+
+	/**
+	 * Writes the episode-wise CSV rows of the episodes in [start, end) of a trial.
+	 * @param out the output
+	 * @param row a buffer used to build each row
+	 * @param agentName the agent name written
+	 * @param trialIndex the trial index written
+	 * @param trial the trial
+	 * @param start the first episode
+	 * @param end one past the last episode
+	 * @throws IOException if the output cannot be written
+	 */
+	public static void writeEpisodeRows(Writer out, StringBuilder row, String agentName, int trialIndex, TrialMetrics trial, int start, int end) throws IOException {
+		for(int j = start; j < end; j++){
+			row.setLength(0);
+			row.append(agentName).append(',').append(trialIndex).append(',').append(j);
+			row.append(',').append(trial.cumulativeEpisodeReward(j));
+			row.append(',').append(trial.averageEpisodeReward(j));
+			row.append(',').append(trial.cumulativeStepEpisode(j));
+			row.append(',').append(trial.stepEpisode(j));
+			row.append('\n');
+			out.append(row);
+		}
+	}
+
+}
@@ -7,10 +7,19 @@ import burlap.behavior.singleagent.learning.LearningAgent;
 import burlap.behavior.singleagent.learning.LearningAgentFactory;
 import burlap.behavior.singleagent.learning.tdmethods.QLearning;
 import burlap.debugtools.DPrint;
+import burlap.debugtools.RandomFactory;
 import burlap.domain.singleagent.gridworld.GridWorldVisualizer;
 import burlap.mdp.singleagent.environment.Environment;
+import burlap.mdp.singleagent.environment.EnvironmentFactory;
 import burlap.mdp.singleagent.environment.extensions.EnvironmentServer;
 import burlap.shell.visual.VisualExplorer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class is used to simplify the comparison of different learning algorithms. It takes as input a test
@@ -23,18 +32,33 @@ import burlap.shell.visual.VisualExplorer;
  * episodes, but it may also be changed to indicate length in total number of steps using the
  * {@link #toggleTrialLengthInterpretation(boolean)} method.
  * <p>
- * Performance results are displayed in plots using the {@link PerformancePlotter} class, but visualization may also be disabled with the
- * {@link #toggleVisualPlots(boolean)} method. Results may be saved to csv files after the experiment is complete.
+ * Performance data is recorded by a {@link MetricsCollector}, which records each trial in a {@link TrialMetrics} without locking and passes
+ * it to any {@link MetricsConsumer} objects added with {@link #addMetricsConsumer(MetricsConsumer)}. Results are displayed in plots using
+ * the {@link PerformancePlotter} class, which is one such consumer, but visualization may also be disabled with the
+ * {@link #toggleVisualPlots(boolean)} method, in which case no window is created and the experimenter can run headless. Results may be
+ * streamed to csv files while the experiment runs with {@link #streamMetricsToCSV(String)}, or saved to csv files after the experiment is
+ * complete.
  * <p>
  * The purpose of the experimenter is to test an agent for a specified number of trials. At the beginning of each trial, a new agent is
  * generated using the designated LearningAgentFactory and is used for the specified trial length. After all trials are complete for an
- * agent, the next agent is tested. Note that immediately before an agent is generated from an agent factory, the performance plotter is
- * temporarily frozen from collecting data until the new agent is returned. This allows agent factories to perform offline learning before
- * returning a new agent in the same domain without affecting the experimenter results.
+ * agent, the next agent is tested. Note that data for a trial is only recorded after its agent is returned by the agent factory. This
+ * allows agent factories to perform offline learning before returning a new agent in the same domain without affecting the experimenter
+ * results.
  * <p>
  * By default the cumulative reward per step will be plotted and if more than one trial is specified, the both the most recent trail and the
  * trial average plot will be shown. If only one trial is specified, then only the most recent trial plot will be shown. To control the
  * kinds of plots displayed use the {@link #setUpPlottingConfiguration(int, int, int, int, TrialMode, PerformanceMetric...)} method.
+ * <p>
+ * Trials can also be run independently of each other, and concurrently, with {@link #setParallelTrials(EnvironmentFactory, int)}. In this
+ * mode, each trial is given its own {@link Environment} generated by an {@link EnvironmentFactory} and the trials of each agent are run on
+ * a worker pool; their results are plotted in the {@link PerformancePlotter} in trial order after all trials of the agent complete.
+ * If trial seeds are set with {@link #setTrialSeed(long)}, each trial runs with its own seeded {@link RandomFactory} streams, so the
+ * results, and the CSV files written, are identical regardless of the number of worker threads.
+ * <p>
+ * Trial seeds also apply to trials run in the test environment, but since the test environment and its model are created before any trial,
+ * only the objects created by the agent factories draw from the trial's streams. Seeded trials in the test environment therefore produce
+ * the same results as seeded independent trials when the test environment is deterministic and starts each trial in the state in which a
+ * newly generated trial environment starts.
  *
  * @author James MacGlashan
  *
@@ -47,8 +71,8 @@ public class LearningAlgorithmExperimenter {
   protected Environment testEnvironment;
 
   /**
-   * The {@link EnvironmentServer} that wraps the test {@link burlap.mdp.singleagent.environment.Environment} and tells a
-   * {@link burlap.behavior.singleagent.auxiliary.performance.PerformancePlotter} about the individual interactions.
+   * The {@link EnvironmentServer} that wraps the test {@link burlap.mdp.singleagent.environment.Environment} and tells the
+   * {@link TrialMetrics} of the current trial about the individual interactions.
    */
   protected EnvironmentServer environmentSever;
 
@@ -73,10 +97,15 @@ public class LearningAlgorithmExperimenter {
   protected boolean trialLengthIsInEpisodes = true;
 
   /**
-   * The PerformancePlotter used to collect and plot results
+   * The PerformancePlotter used to plot results; only created if plots are displayed
    */
   protected PerformancePlotter plotter = null;
 
+  /**
+   * The MetricsCollector used to collect results
+   */
+  protected MetricsCollector collector = new MetricsCollector();
+
   /**
    * Whether the performance should be visually plotted (by default they will)
    */
@@ -97,6 +126,21 @@ public class LearningAlgorithmExperimenter {
    */
   protected boolean completedExperiment = false;
 
+  /**
+   * The factory that generates an independent {@link Environment} for each trial; null when all trials use the test environment.
+   */
+  protected EnvironmentFactory trialEnvironmentFactory = null;
+
+  /**
+   * The number of worker threads on which independent trials are run.
+   */
+  protected int numTrialThreads = 1;
+
+  /**
+   * The seed from which the {@link RandomFactory} of each independent trial is seeded; null if trials are not seeded.
+   */
+  protected Long trialSeed = null;
+
   /**
    * The debug code used for debug printing. This experimenter will print with the debugger the number of trials completed for each agent.
    */
@@ -183,6 +227,35 @@ public class LearningAlgorithmExperimenter {
     this.displayPlots = shouldPlotResults;
   }
 
+  /**
+   * Adds a consumer of the performance data of every trial, such as a {@link CSVMetricsWriter}.
+   *
+   * @param consumer the consumer
+   */
+  public void addMetricsConsumer(MetricsConsumer consumer) {
+    this.collector.addConsumer(consumer);
+  }
+
+  /**
+   * Streams the step-wise and episode-wise data to CSV files as each episode ends, rather than after the experiment is complete. The
+   * episode-wise data will be saved to the file &lt;pathAndBaseNameToUse&gt;Episodes.csv and the step-wise data to the file
+   * &lt;pathAndBaseNameToUse&gt;Steps.csv. The files are closed when the experiment completes.
+   *
+   * @param pathAndBaseNameToUse the base path and file name for the episode-wise and step-wise csv files.
+   */
+  public void streamMetricsToCSV(String pathAndBaseNameToUse) {
+    this.addMetricsConsumer(new CSVMetricsWriter(pathAndBaseNameToUse));
+  }
+
+  /**
+   * Returns the {@link MetricsCollector} that collects the performance data of the experiment.
+   *
+   * @return the {@link MetricsCollector}
+   */
+  public MetricsCollector getMetricsCollector() {
+    return this.collector;
+  }
+
   /**
    * Changes whether the trial length provided in the constructor is interpreted as the number of episodes or total number of steps.
    *
@@ -192,6 +265,34 @@ public class LearningAlgorithmExperimenter {
     this.trialLengthIsInEpisodes = lengthRepresentsEpisodes;
   }
 
+  /**
+   * Sets each trial to be run independently in its own {@link Environment} generated by the given factory, with the trials of each agent
+   * run concurrently on the given number of worker threads. The agent factories and environment factory must be safe to call concurrently if
+   * more than one thread is used. Objects that are created on the trial's thread by the factories use the trial's {@link RandomFactory}
+   * streams when trial seeds are set with {@link #setTrialSeed(long)}; objects shared between trials, such as a domain model created
+   * outside the environment factory, are not seeded per trial and must be safe to use concurrently.
+   * <p>
+   * In this mode, plots are updated when all trials of an agent complete, rather than as data is collected.
+   *
+   * @param trialEnvironmentFactory the factory that generates the environment of each trial
+   * @param numThreads the number of worker threads; 1 runs the independent trials serially
+   */
+  public void setParallelTrials(EnvironmentFactory trialEnvironmentFactory, int numThreads) {
+    this.trialEnvironmentFactory = trialEnvironmentFactory;
+    this.numTrialThreads = Math.max(1, numThreads);
+  }
+
+  /**
+   * Sets the seed of the trials. Trial j of every agent runs with the calling thread's {@link RandomFactory} set to a new factory seeded
+   * with seed + j, so all agents are compared on the same random streams. This applies both to independent trials (see
+   * {@link #setParallelTrials(EnvironmentFactory, int)}) and to trials in the test environment.
+   *
+   * @param seed the base seed of the trials
+   */
+  public void setTrialSeed(long seed) {
+    this.trialSeed = seed;
+  }
+
   /**
    * Starts the experiment and runs all trails for all agents.
    */
@@ -202,29 +303,40 @@ public class LearningAlgorithmExperimenter {
       return;
     }
 
-    if (this.plotter == null) {
+    if (!this.displayPlots) {
+      this.plotter = null;
+    } else {
 
-      TrialMode trialMode = TrialMode.MOST_RECENT_AND_AVERAGE;
-      if (this.nTrials == 1) {
-        trialMode = TrialMode.MOST_RECENT_TRIAL_ONLY;
-      }
+      if (this.plotter == null) {
 
-      this.plotter = new PerformancePlotter(this.agentFactories[0].getAgentName(), 500, 250, 2, 500, trialMode);
+        TrialMode trialMode = TrialMode.MOST_RECENT_AND_AVERAGE;
+        if (this.nTrials == 1) {
+          trialMode = TrialMode.MOST_RECENT_TRIAL_ONLY;
+        }
 
-    }
+        this.plotter = new PerformancePlotter(this.agentFactories[0].getAgentName(), 500, 250, 2, 500, trialMode);
 
-    //this.domain.addActionObserverForAllAction(plotter);
-    this.environmentSever = new EnvironmentServer(this.testEnvironment, plotter);
+      }
 
-    if (this.displayPlots) {
       this.plotter.startGUI();
-    }
 
-    for (int i = 0; i < this.agentFactories.length; i++) {
+      //independent trials are merged into the plotter after each agent instead
+      if (this.trialEnvironmentFactory == null) {
+        this.collector.addConsumer(this.plotter);
+      }
+    }
 
-      if (i > 0) {
-        this.plotter.startNewAgent(this.agentFactories[i].getAgentName());
+    if (this.trialEnvironmentFactory != null) {
+      this.runIndependentTrials();
+      this.collector.close();
+      if (this.plotter != null) {
+        this.plotter.endAllAgents();
       }
+      this.completedExperiment = true;
+      return;
+    }
+
+    for (int i = 0; i < this.agentFactories.length; i++) {
 
       if (this.testEnvironment instanceof ExperimentalEnvironment) {
         ((ExperimentalEnvironment) this.testEnvironment).startNewExperiment();
@@ -233,16 +345,27 @@ public class LearningAlgorithmExperimenter {
 
         DPrint.cl(this.debugCode, "Beginning " + this.agentFactories[i].getAgentName() + " trial " + (j + 1) + "/" + this.nTrials);
 
-        if (this.trialLengthIsInEpisodes) {
-          this.runEpisodeBoundTrial(this.agentFactories[i]);
-        } else {
-          this.runStepBoundTrial(this.agentFactories[i]);
+        if (this.trialSeed != null) {
+          RandomFactory.setThreadFactory(new RandomFactory(this.trialSeed + j));
+        }
+        try {
+          if (this.trialLengthIsInEpisodes) {
+            this.runEpisodeBoundTrial(this.agentFactories[i], j);
+          } else {
+            this.runStepBoundTrial(this.agentFactories[i], j);
+          }
+        } finally {
+          if (this.trialSeed != null) {
+            RandomFactory.setThreadFactory(null);
+          }
         }
       }
 
+      this.collector.endAgent(this.agentFactories[i].getAgentName());
+
     }
 
-    this.plotter.endAllAgents();
+    this.collector.close();
 
     this.completedExperiment = true;
 
@@ -260,7 +383,7 @@ public class LearningAlgorithmExperimenter {
       System.out.println("Cannot write data until the experiment has been started with the startExperiment() method.");
       return;
     }
-    this.plotter.writeStepAndEpisodeDataToCSV(pathAndBaseNameToUse);
+    this.collector.writeStepAndEpisodeDataToCSV(pathAndBaseNameToUse);
   }
 
   /**
@@ -274,7 +397,7 @@ public class LearningAlgorithmExperimenter {
       System.out.println("Cannot write data until the experiment has been started with the startExperiment() method.");
       return;
     }
-    this.plotter.writeStepDataToCSV(filePath);
+    this.collector.writeStepDataToCSV(filePath);
   }
 
   /**
@@ -288,33 +411,143 @@ public class LearningAlgorithmExperimenter {
       System.out.println("Cannot write data until the experiment has been started with the startExperiment() method.");
       return;
     }
-    this.plotter.writeEpisodeDataToCSV(filePath);
+    this.collector.writeEpisodeDataToCSV(filePath);
   }
 
   /**
-   * Runs a trial for an agent generated by the given factory when interpreting trial length as a number of episodes.
+   * Runs the trials of every agent independently on the worker pool and, if plots are displayed, merges them into the plotter in trial
+   * order.
+   */
+  protected void runIndependentTrials() {
+
+    ExecutorService executor = this.numTrialThreads > 1 ? Executors.newFixedThreadPool(this.numTrialThreads) : null;
+
+    try {
+      for (int i = 0; i < this.agentFactories.length; i++) {
+
+        if (i > 0 && this.plotter != null) {
+          this.plotter.startNewAgent(this.agentFactories[i].getAgentName());
+        }
+
+        final LearningAgentFactory agentFactory = this.agentFactories[i];
+        List<Callable<TrialMetrics>> trials = new ArrayList<Callable<TrialMetrics>>(this.nTrials);
+        for (int j = 0; j < this.nTrials; j++) {
+          final int trial = j;
+          trials.add(new Callable<TrialMetrics>() {
+            @Override
+            public TrialMetrics call() throws Exception {
+              return runIndependentTrial(agentFactory, trial);
+            }
+          });
+        }
+
+        List<TrialMetrics> metrics = new ArrayList<TrialMetrics>(this.nTrials);
+        if (executor == null) {
+          for (Callable<TrialMetrics> trial : trials) {
+            metrics.add(trial.call());
+          }
+        } else {
+          for (Future<TrialMetrics> result : executor.invokeAll(trials)) {
+            metrics.add(result.get());
+          }
+        }
+
+        this.collector.endAgent(agentFactory.getAgentName());
+        if (this.plotter != null) {
+          this.plotter.mergeTrials(metrics);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while running trials.", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Error while running a trial.", e.getCause());
+    } catch (Exception e) {
+      throw new RuntimeException("Error while running a trial.", e);
+    } finally {
+      if (executor != null) {
+        executor.shutdown();
+      }
+    }
+
+  }
+
+  /**
+   * Runs a single independent trial in a new environment from the trial environment factory and returns its recorded data.
    *
    * @param agentFactory the agent factory used to generate the agent to test.
+   * @param trial the index of the trial
+   * @return the {@link TrialMetrics} holding the trial's data
    */
-  protected void runEpisodeBoundTrial(LearningAgentFactory agentFactory) {
+  protected TrialMetrics runIndependentTrial(LearningAgentFactory agentFactory, int trial) {
 
-    //temporarily disable plotter data collection to avoid possible contamination for any actions taken by the agent generation
-    //(e.g., if there is pre-test training)
-    this.plotter.toggleDataCollection(false);
+    DPrint.cl(this.debugCode, "Beginning " + agentFactory.getAgentName() + " trial " + (trial + 1) + "/" + this.nTrials);
 
+    if (this.trialSeed != null) {
+      RandomFactory.setThreadFactory(new RandomFactory(this.trialSeed + trial));
+    }
+
+    try {
+
+      Environment env = this.trialEnvironmentFactory.generateEnvironment();
+      if (env instanceof ExperimentalEnvironment) {
+        ((ExperimentalEnvironment) env).startNewExperiment();
+      }
+
+      //the metrics only observe the environment after the agent is generated, so any pre-test training is not recorded
+      LearningAgent agent = agentFactory.generateAgent();
+      TrialMetrics metrics = this.collector.startTrial(agentFactory.getAgentName(), trial);
+      EnvironmentServer server = new EnvironmentServer(env, metrics);
+
+      if (this.trialLengthIsInEpisodes) {
+        for (int i = 0; i < this.trialLength; i++) {
+          agent.runLearningEpisode(server);
+          metrics.endEpisode();
+          server.resetEnvironment();
+        }
+      } else {
+        int stepsRemaining = this.trialLength;
+        while (stepsRemaining > 0) {
+          Episode ea = agent.runLearningEpisode(server, stepsRemaining);
+          stepsRemaining -= ea.numTimeSteps() - 1;
+          metrics.endEpisode();
+          server.resetEnvironment();
+        }
+      }
+
+      this.collector.endTrial(metrics);
+      return metrics;
+
+    } finally {
+      if (this.trialSeed != null) {
+        RandomFactory.setThreadFactory(null);
+      }
+    }
+
+  }
+
+  /**
+   * Runs a trial for an agent generated by the given factory when interpreting trial length as a number of episodes.
+   *
+   * @param agentFactory the agent factory used to generate the agent to test.
+   * @param trial the index of the trial
+   */
+  protected void runEpisodeBoundTrial(LearningAgentFactory agentFactory, int trial) {
+
+    //the trial's metrics only observe the environment after the agent is generated to avoid possible contamination for any actions
+    //taken by the agent generation (e.g., if there is pre-test training)
     LearningAgent agent = agentFactory.generateAgent();
     if (agent instanceof QLearning) {
       GridWorldVisualizer.setQLearning((QLearning) agent);
     }
 
-    this.plotter.toggleDataCollection(true); //turn it back on to begin
-
-    this.plotter.startNewTrial();
+    TrialMetrics metrics = this.collector.startTrial(agentFactory.getAgentName(), trial);
+    this.environmentSever = new EnvironmentServer(this.testEnvironment, metrics);
 
     for (int i = 0; i < this.trialLength; i++) {
       System.out.println("trial number " + (i + 1) + "===================================================================================================================");
       agent.runLearningEpisode(this.environmentSever);
-      this.plotter.endEpisode();
+      metrics.endEpisode();
       this.environmentSever.resetEnvironment();
       if (visualExplorer != null) {
         visualExplorer.init();
@@ -327,13 +560,13 @@ public class LearningAlgorithmExperimenter {
 //        agent.runLearningEpisode(this.environmentSever);
 //
 //        qLearning.setLearningPolicy(learningPolicy);
-//        this.plotter.endEpisode();
+//        metrics.endEpisode();
 //        this.environmentSever.resetEnvironment();
 //        visualExplorer.init();
 //      }
     }
 
-    this.plotter.endTrial();
+    this.collector.endTrial(metrics);
 
   }
 
@@ -341,28 +574,26 @@ public class LearningAlgorithmExperimenter {
    * Runs a trial for an agent generated by the given factor when interpreting trial length as a number of total steps.
    *
    * @param agentFactory the agent factory used to generate the agent to test.
+   * @param trial the index of the trial
    */
-  protected void runStepBoundTrial(LearningAgentFactory agentFactory) {
-
-    //temporarily disable plotter data collection to avoid possible contamination for any actions taken by the agent generation
-    //(e.g., if there is pre-test training)
-    this.plotter.toggleDataCollection(false);
+  protected void runStepBoundTrial(LearningAgentFactory agentFactory, int trial) {
 
+    //the trial's metrics only observe the environment after the agent is generated to avoid possible contamination for any actions
+    //taken by the agent generation (e.g., if there is pre-test training)
     LearningAgent agent = agentFactory.generateAgent();
 
-    this.plotter.toggleDataCollection(true); //turn it back on to begin
-
-    this.plotter.startNewTrial();
+    TrialMetrics metrics = this.collector.startTrial(agentFactory.getAgentName(), trial);
+    this.environmentSever = new EnvironmentServer(this.testEnvironment, metrics);
 
     int stepsRemaining = this.trialLength;
     while (stepsRemaining > 0) {
       Episode ea = agent.runLearningEpisode(this.environmentSever, stepsRemaining);
       stepsRemaining -= ea.numTimeSteps() - 1; //-1  because we want to subtract the number of actions, not the number of states seen
-      this.plotter.endEpisode();
+      metrics.endEpisode();
       this.environmentSever.resetEnvironment();
     }
 
-    this.plotter.endTrial();
+    this.collector.endTrial(metrics);
 
   }
 
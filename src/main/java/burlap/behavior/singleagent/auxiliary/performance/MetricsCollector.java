@@ -0,0 +1,186 @@
+package burlap.behavior.singleagent.auxiliary.performance;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects the performance data of the trials of learning agents, without any display, and passes it to {@link MetricsConsumer} objects
+ * such as a {@link CSVMetricsWriter} or a {@link PerformancePlotter}. Each trial is recorded by the {@link TrialMetrics} returned by
+ * {@link #startTrial(String, int)}, which observes the trial's environment without locking, so trials can be recorded from many threads
+ * at once; this collector only synchronizes when trials start and end.
+ * <p>
+ * The collected data can be written to CSV files after the experiment with {@link #writeStepAndEpisodeDataToCSV(String)}, in which agents
+ * appear in the order they were started and trials in trial order.
+ */
+public class MetricsCollector {
+
+	/**
+	 * The consumers of the collected data
+	 */
+	protected List<MetricsConsumer> consumers = new CopyOnWriteArrayList<MetricsConsumer>();
+
+	/**
+	 * The trials of each agent, indexed by trial
+	 */
+	protected Map<String, List<TrialMetrics>> agentTrials = new LinkedHashMap<String, List<TrialMetrics>>();
+
+
+	/**
+	 * Adds a consumer that is told about trials started after it is added.
+	 * @param consumer the consumer
+	 */
+	public void addConsumer(MetricsConsumer consumer) {
+		this.consumers.add(consumer);
+	}
+
+	/**
+	 * Starts recording a trial. The returned {@link TrialMetrics} should observe the trial's environment, have
+	 * {@link TrialMetrics#endEpisode()} called at the end of each episode, and be passed to {@link #endTrial(TrialMetrics)} at the end.
+	 * @param agentName the name of the agent of the trial
+	 * @param trial the index of the trial among the agent's trials
+	 * @return the metrics of the trial
+	 */
+	public TrialMetrics startTrial(String agentName, int trial) {
+		TrialMetrics metrics = new TrialMetrics(agentName, trial, this.consumers);
+		synchronized(this){
+			List<TrialMetrics> trials = this.agentTrials.get(agentName);
+			if(trials == null){
+				trials = new ArrayList<TrialMetrics>();
+				this.agentTrials.put(agentName, trials);
+			}
+			while(trials.size() <= trial){
+				trials.add(null);
+			}
+			trials.set(trial, metrics);
+		}
+		for(MetricsConsumer consumer : this.consumers){
+			consumer.trialStarted(metrics);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Informs the consumers that a trial has ended.
+	 * @param trial the metrics of the trial
+	 */
+	public void endTrial(TrialMetrics trial) {
+		for(MetricsConsumer consumer : this.consumers){
+			consumer.trialEnded(trial);
+		}
+	}
+
+	/**
+	 * Informs the consumers that all trials of an agent have ended.
+	 * @param agentName the name of the agent
+	 */
+	public void endAgent(String agentName) {
+		List<TrialMetrics> trials = this.getTrials(agentName);
+		for(MetricsConsumer consumer : this.consumers){
+			consumer.agentEnded(agentName, trials);
+		}
+	}
+
+	/**
+	 * Informs the consumers that all agents have ended.
+	 */
+	public void close() {
+		for(MetricsConsumer consumer : this.consumers){
+			consumer.close();
+		}
+	}
+
+	/**
+	 * Returns the names of the agents, in the order their first trial was started.
+	 * @return the names of the agents
+	 */
+	synchronized public List<String> getAgentNames() {
+		return new ArrayList<String>(this.agentTrials.keySet());
+	}
+
+	/**
+	 * Returns the trials of an agent that have been started, in trial order.
+	 * @param agentName the name of the agent
+	 * @return the trials of the agent
+	 */
+	synchronized public List<TrialMetrics> getTrials(String agentName) {
+		List<TrialMetrics> trials = new ArrayList<TrialMetrics>();
+		List<TrialMetrics> stored = this.agentTrials.get(agentName);
+		if(stored != null){
+			for(TrialMetrics t : stored){
+				if(t != null){
+					trials.add(t);
+				}
+			}
+		}
+		return trials;
+	}
+
+
+	/**
+	 * Writes the step-wise and episode-wise data to CSV files. The episode-wise data will be saved to the file
+	 * &lt;pathAndBaseNameToUse&gt;Episodes.csv. The step-wise data will be saved to the file &lt;pathAndBaseNameToUse&gt;Steps.csv
+	 *
+	 * @param pathAndBaseNameToUse the base path and file name for the episode-wise and step-wise csv files.
+	 */
+	public void writeStepAndEpisodeDataToCSV(String pathAndBaseNameToUse) {
+		if(pathAndBaseNameToUse.endsWith(".csv")){
+			pathAndBaseNameToUse = pathAndBaseNameToUse.substring(0, pathAndBaseNameToUse.length() - 4);
+		}
+		this.writeStepDataToCSV(pathAndBaseNameToUse + "Steps.csv");
+		this.writeEpisodeDataToCSV(pathAndBaseNameToUse + "Episodes.csv");
+	}
+
+	/**
+	 * Writes the step-wise data to a csv file. If the file path does not include the .csv extension, it will automatically be added.
+	 *
+	 * @param filePath the path to the csv file to write to.
+	 */
+	public void writeStepDataToCSV(String filePath) {
+		this.writeCSV(filePath, true);
+	}
+
+	/**
+	 * Writes the episode-wise data to a csv file. If the file path does not include the .csv extension, it will automatically be added.
+	 *
+	 * @param filePath the path to the csv file to write to.
+	 */
+	public void writeEpisodeDataToCSV(String filePath) {
+		this.writeCSV(filePath, false);
+	}
+
+
+	protected void writeCSV(String filePath, boolean steps) {
+
+		if(!filePath.endsWith(".csv")){
+			filePath = filePath + ".csv";
+		}
+
+		try{
+			Writer out = new BufferedWriter(new FileWriter(filePath));
+			StringBuilder row = new StringBuilder();
+			out.write(steps ? CSVMetricsWriter.STEP_HEADER : CSVMetricsWriter.EPISODE_HEADER);
+			for(String agentName : this.getAgentNames()){
+				for(TrialMetrics trial : this.getTrials(agentName)){
+					if(steps){
+						CSVMetricsWriter.writeStepRows(out, row, agentName, trial.getTrial(), trial, 0, trial.numCompletedSteps());
+					}
+					else{
+						CSVMetricsWriter.writeEpisodeRows(out, row, agentName, trial.getTrial(), trial, 0, trial.numEpisodes());
+					}
+				}
+			}
+			out.close();
+		} catch(IOException e){
+			throw new RuntimeException("Could not write csv file to: " + filePath, e);
+		}
+
+	}
+
+}
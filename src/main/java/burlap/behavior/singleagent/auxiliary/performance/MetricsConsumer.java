@@ -0,0 +1,45 @@
+package burlap.behavior.singleagent.auxiliary.performance;
+
+import java.util.List;
+
+/**
+ * An interface for objects that consume the performance data recorded by a {@link MetricsCollector}, such as the
+ * {@link CSVMetricsWriter}, which streams it to files, and the {@link PerformancePlotter}, which plots it.
+ * <p>
+ * The trial and episode methods are called on the thread recording the trial, so when trials are run concurrently, they may be called
+ * concurrently for different trials, and implementations must be thread safe. They are called once per episode or trial, not per step.
+ */
+public interface MetricsConsumer {
+
+	/**
+	 * Called when a trial begins, before any of its steps are recorded.
+	 * @param trial the trial's metrics
+	 */
+	void trialStarted(TrialMetrics trial);
+
+	/**
+	 * Called when an episode of a trial ends. The episode is the last of {@link TrialMetrics#numEpisodes()}, and its steps are the last
+	 * {@link TrialMetrics#stepEpisode(int)} steps before {@link TrialMetrics#numCompletedSteps()}.
+	 * @param trial the trial's metrics
+	 */
+	void episodeEnded(TrialMetrics trial);
+
+	/**
+	 * Called when a trial ends.
+	 * @param trial the trial's metrics
+	 */
+	void trialEnded(TrialMetrics trial);
+
+	/**
+	 * Called when all trials of an agent have ended.
+	 * @param agentName the name of the agent
+	 * @param trials the agent's trials, in trial order
+	 */
+	void agentEnded(String agentName, List<TrialMetrics> trials);
+
+	/**
+	 * Called when all agents have ended; releases any resources, such as open files.
+	 */
+	void close();
+
+}
@@ -21,6 +21,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 import java.util.List;
 
@@ -45,6 +46,10 @@ import java.util.List;
  * To ensure proper use of this class, it is highly reccomended that the {@link LearningAlgorithmExperimenter} class is used, since it
  * handles all of these method calls behind the scenes.
  * <p>
+ * Alternatively, this plotter can be added as a {@link MetricsConsumer} to a {@link MetricsCollector}, in which case it plots each
+ * {@link TrialMetrics} as it is recorded and the collector makes these calls. Recording a step does not lock the plotter; the refresh
+ * thread reads the recorded series of the current trial directly.
+ * <p>
  * When testing is done, you may optionally request all data to be printed to CSV files. One CSV file will produce the step-wise performance
  * metric (cumulaitve reward by step) for all agents and trials. Another will produce all the episode-wise performance metric data. This
  * data can be produced regardless of which metrics you requested to be plotted.
@@ -56,7 +61,7 @@ import java.util.List;
  * @author James MacGlashan
  *
  */
-public class PerformancePlotter extends JFrame implements EnvironmentObserver {
+public class PerformancePlotter extends JFrame implements EnvironmentObserver, MetricsConsumer {
 
   private static final long serialVersionUID = 1L;
 
@@ -65,7 +70,7 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
   /**
    * Contains all the current trial performance data
    */
-  protected Trial curTrial;
+  protected volatile TrialMetrics curTrial;
 
   /**
    * contains the plot series data that will be displayed for the current agent
@@ -75,7 +80,7 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
   /**
    * contains all trial data for each agent
    */
-  protected Map<String, List<Trial>> agentTrials;
+  protected Map<String, List<TrialMetrics>> agentTrials;
 
   /**
    * The name of the current agent being tested
@@ -167,16 +172,6 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
    */
   protected int lastEpisode = 0;
 
-  /**
-   * the current time step that was recorded
-   */
-  protected int curTimeStep = 0;
-
-  /**
-   * the current episode that was recorded
-   */
-  protected int curEpisode = 0;
-
   /**
    * the delay in milliseconds between which the charts are updated automatically
    */
@@ -215,8 +210,8 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
 
     this.curAgentName = firstAgentName;
 
-    this.agentTrials = new HashMap<String, List<Trial>>();
-    this.agentTrials.put(this.curAgentName, new ArrayList<PerformancePlotter.Trial>());
+    this.agentTrials = new HashMap<String, List<TrialMetrics>>();
+    this.agentTrials.put(this.curAgentName, new ArrayList<TrialMetrics>());
 
     colCSR = new XYSeriesCollection();
     colCER = new XYSeriesCollection();
@@ -232,7 +227,7 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
     colCSEAvg = new YIntervalSeriesCollection();
     colSEAvg = new YIntervalSeriesCollection();
 
-    this.curTrial = new Trial();
+    this.curTrial = new TrialMetrics();
     this.curAgentDatasets = new AgentDatasets(curAgentName);
 
     if (metrics.length == 0) {
@@ -323,13 +318,12 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
   }
 
   @Override
-  synchronized public void observeEnvironmentInteraction(EnvironmentOutcome eo) {
+  public void observeEnvironmentInteraction(EnvironmentOutcome eo) {
     if (!this.collectData) {
       return;
     }
 
     this.curTrial.stepIncrement(eo.r);
-    this.curTimeStep++;
 
   }
 
@@ -342,8 +336,7 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
    * Informs the plotter that all data for the last episode has been collected.
    */
   synchronized public void endEpisode() {
-    this.curTrial.setupForNewEpisode();
-    this.curEpisode++;
+    this.curTrial.endEpisode();
   }
 
   /**
@@ -351,15 +344,13 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
    */
   synchronized public void startNewTrial() {
 
-    if (this.curTimeStep > 0) {
+    if (this.curTrial.numSteps() > 0) {
       this.needsClearing = true;
     }
 
-    this.curTrial = new Trial();
+    this.curTrial = new TrialMetrics();
     this.lastTimeStepUpdate = 0;
     this.lastEpisode = 0;
-    this.curTimeStep = 0;
-    this.curEpisode = 0;
 
   }
 
@@ -387,6 +378,93 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
 
   }
 
+  /**
+   * Records completed trials of the current agent that were collected independently of this plotter, such as trials run concurrently.
+   * The trials are recorded in the order given, exactly as if each had been collected by this plotter between calls to
+   * {@link #startNewTrial()} and {@link #endTrial()}.
+   *
+   * @param trials the completed trials
+   */
+  public void mergeTrials(List<TrialMetrics> trials) {
+
+    this.awaitPendingUpdates();
+
+    for (TrialMetrics trial : trials) {
+      synchronized (this) {
+        this.startNewTrial();
+        this.curTrial = trial;
+      }
+      this.endTrial();
+    }
+
+  }
+
+  /**
+   * Begins plotting the given trial as the current trial, first starting a new agent if the trial's agent is not the current agent.
+   * Trials should be started one at a time; use {@link #mergeTrials(List)} for trials run concurrently.
+   *
+   * @param trial the trial's metrics
+   */
+  @Override
+  public void trialStarted(TrialMetrics trial) {
+    boolean newAgent;
+    synchronized (this) {
+      newAgent = !trial.getAgentName().equals(this.curAgentName);
+    }
+    if (newAgent) {
+      this.startNewAgent(trial.getAgentName());
+      this.awaitPendingUpdates();
+    }
+    synchronized (this) {
+      this.startNewTrial();
+      this.curTrial = trial;
+    }
+  }
+
+  @Override
+  public void episodeEnded(TrialMetrics trial) {
+    //the refresh thread reads new episodes from the current trial
+  }
+
+  @Override
+  public void trialEnded(TrialMetrics trial) {
+    if (trial == this.curTrial) {
+      this.endTrial();
+    }
+  }
+
+  @Override
+  public void agentEnded(String agentName, List<TrialMetrics> trials) {
+    //the average plots are set when the next agent starts or all agents end
+  }
+
+  @Override
+  public void close() {
+    this.endAllAgents();
+  }
+
+  /**
+   * Blocks until the event dispatch thread has processed the plot updates queued so far, such as the agent change queued by
+   * {@link #startNewAgent(String)}.
+   */
+  protected void awaitPendingUpdates() {
+    if (SwingUtilities.isEventDispatchThread()) {
+      return;
+    }
+    try {
+      SwingUtilities.invokeAndWait(new Runnable() {
+        @Override
+        public void run() {
+          //do nothing
+        }
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (InvocationTargetException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
   /**
    * Informs the plotter that data collecton for a new agent should begin. If the current agent is already set to the agent name provided,
    * then a warning message is printed and nothing changes.
@@ -410,7 +488,7 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
           PerformancePlotter.this.endTrialsForCurrentAgent();
 
           PerformancePlotter.this.curAgentName = agentName;
-          PerformancePlotter.this.agentTrials.put(PerformancePlotter.this.curAgentName, new ArrayList<PerformancePlotter.Trial>());
+          PerformancePlotter.this.agentTrials.put(PerformancePlotter.this.curAgentName, new ArrayList<TrialMetrics>());
           PerformancePlotter.this.curAgentDatasets = new AgentDatasets(curAgentName);
 
         }
@@ -458,25 +536,17 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
       BufferedWriter outEpisode = new BufferedWriter(new FileWriter(pathAndBaseNameToUse + "Episodes.csv"));
 
       //create header
-      outStep.write("agent,trial,step,cumulativeReward\n");
-      outEpisode.write("agent,trial,episode,cumulativeReward,averageReward,cumulativeSteps,numSteps\n");
+      outStep.write(CSVMetricsWriter.STEP_HEADER);
+      outEpisode.write(CSVMetricsWriter.EPISODE_HEADER);
 
-      for (Map.Entry<String, List<Trial>> e : this.agentTrials.entrySet()) {
+      StringBuilder row = new StringBuilder();
+      for (Map.Entry<String, List<TrialMetrics>> e : this.agentTrials.entrySet()) {
         String aname = e.getKey();
-        List<Trial> trials = e.getValue();
+        List<TrialMetrics> trials = e.getValue();
         for (int i = 0; i < trials.size(); i++) {
-          Trial trial = trials.get(i);
-          for (int j = 0; j < trial.totalSteps; j++) {
-            outStep.write(aname + "," + i + "," + j + "," + trial.cumulativeStepReward.get(j) + "\n");
-          }
-          for (int j = 0; j < trial.totalEpisodes; j++) {
-            outEpisode.write(aname + "," + i + "," + j);
-            outEpisode.write("," + trial.cumulativeEpisodeReward.get(j));
-            outEpisode.write("," + trial.averageEpisodeReward.get(j));
-            outEpisode.write("," + trial.cumulativeStepEpisode.get(j));
-            outEpisode.write("," + trial.stepEpisode.get(j));
-            outEpisode.write("\n");
-          }
+          TrialMetrics trial = trials.get(i);
+          CSVMetricsWriter.writeStepRows(outStep, row, aname, i, trial, 0, trial.numCompletedSteps());
+          CSVMetricsWriter.writeEpisodeRows(outEpisode, row, aname, i, trial, 0, trial.numEpisodes());
         }
       }
 
@@ -505,16 +575,15 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
       BufferedWriter outStep = new BufferedWriter(new FileWriter(filePath));
 
       //create header
-      outStep.write("agent,trial,step,cumulativeReward\n");
+      outStep.write(CSVMetricsWriter.STEP_HEADER);
 
-      for (Map.Entry<String, List<Trial>> e : this.agentTrials.entrySet()) {
+      StringBuilder row = new StringBuilder();
+      for (Map.Entry<String, List<TrialMetrics>> e : this.agentTrials.entrySet()) {
         String aname = e.getKey();
-        List<Trial> trials = e.getValue();
+        List<TrialMetrics> trials = e.getValue();
         for (int i = 0; i < trials.size(); i++) {
-          Trial trial = trials.get(i);
-          for (int j = 0; j < trial.totalSteps; j++) {
-            outStep.write(aname + "," + i + "," + j + "," + trial.cumulativeStepReward.get(j) + "\n");
-          }
+          TrialMetrics trial = trials.get(i);
+          CSVMetricsWriter.writeStepRows(outStep, row, aname, i, trial, 0, trial.numCompletedSteps());
         }
       }
 
@@ -542,21 +611,15 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
       BufferedWriter outEpisode = new BufferedWriter(new FileWriter(filePath));
 
       //create header
-      outEpisode.write("agent,trial,episode,cumulativeReward,averageReward,cumulativeSteps,numSteps\n");
+      outEpisode.write(CSVMetricsWriter.EPISODE_HEADER);
 
-      for (Map.Entry<String, List<Trial>> e : this.agentTrials.entrySet()) {
+      StringBuilder row = new StringBuilder();
+      for (Map.Entry<String, List<TrialMetrics>> e : this.agentTrials.entrySet()) {
         String aname = e.getKey();
-        List<Trial> trials = e.getValue();
+        List<TrialMetrics> trials = e.getValue();
         for (int i = 0; i < trials.size(); i++) {
-          Trial trial = trials.get(i);
-          for (int j = 0; j < trial.totalEpisodes; j++) {
-            outEpisode.write(aname + "," + i + "," + j);
-            outEpisode.write("," + trial.cumulativeEpisodeReward.get(j));
-            outEpisode.write("," + trial.averageEpisodeReward.get(j));
-            outEpisode.write("," + trial.cumulativeStepEpisode.get(j));
-            outEpisode.write("," + trial.stepEpisode.get(j));
-            outEpisode.write("\n");
-          }
+          TrialMetrics trial = trials.get(i);
+          CSVMetricsWriter.writeEpisodeRows(outEpisode, row, aname, i, trial, 0, trial.numEpisodes());
         }
       }
 
@@ -682,18 +745,20 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
                 PerformancePlotter.this.needsClearing = false;
               }
 
-              if (PerformancePlotter.this.curTimeStep > PerformancePlotter.this.lastTimeStepUpdate) {
-                PerformancePlotter.this.updateCSRSeries();
-                PerformancePlotter.this.lastTimeStepUpdate = curTimeStep;
+              int steps = PerformancePlotter.this.curTrial.numSteps();
+              int episodes = PerformancePlotter.this.curTrial.numEpisodes();
+              if (steps > PerformancePlotter.this.lastTimeStepUpdate) {
+                PerformancePlotter.this.updateCSRSeries(steps);
+                PerformancePlotter.this.lastTimeStepUpdate = steps;
               }
-              if (PerformancePlotter.this.curEpisode > PerformancePlotter.this.lastEpisode) {
-                PerformancePlotter.this.updateCERSeries();
-                PerformancePlotter.this.updateAERSeris();
-                PerformancePlotter.this.updateMERSeris();
-                PerformancePlotter.this.updateCSESeries();
-                PerformancePlotter.this.updateSESeries();
-
-                PerformancePlotter.this.lastEpisode = PerformancePlotter.this.curEpisode;
+              if (episodes > PerformancePlotter.this.lastEpisode) {
+                PerformancePlotter.this.updateCERSeries(episodes);
+                PerformancePlotter.this.updateAERSeris(episodes);
+                PerformancePlotter.this.updateMERSeris(episodes);
+                PerformancePlotter.this.updateCSESeries(episodes);
+                PerformancePlotter.this.updateSESeries(episodes);
+
+                PerformancePlotter.this.lastEpisode = episodes;
               }
 
               PerformancePlotter.this.trialUpdateComplete.b = true;
@@ -720,14 +785,14 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
       return;
     }
 
-    List<Trial> trials = PerformancePlotter.this.agentTrials.get(aName);
+    List<TrialMetrics> trials = PerformancePlotter.this.agentTrials.get(aName);
     int[] n = PerformancePlotter.this.minStepAndEpisodes(trials);
 
     if (this.metricsSet.contains(PerformanceMetric.CUMULATIVE_REWARD_PER_STEP)) {
       for (int i = 0; i < n[0]; i++) {
         DescriptiveStatistics avgi = new DescriptiveStatistics();
-        for (Trial t : trials) {
-          avgi.addValue(t.cumulativeStepReward.get(i));
+        for (TrialMetrics t : trials) {
+          avgi.addValue(t.cumulativeStepReward(i));
         }
         double[] ci = getCI(avgi, this.significance);
         curAgentDatasets.csrAvgSeries.add(i, ci[0], ci[1], ci[2]);
@@ -737,8 +802,8 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
     if (this.metricsSet.contains(PerformanceMetric.CUMULATIVE_REWARD_PER_EPISODE)) {
       for (int i = 0; i < n[1]; i++) {
         DescriptiveStatistics avgi = new DescriptiveStatistics();
-        for (Trial t : trials) {
-          avgi.addValue(t.cumulativeEpisodeReward.get(i));
+        for (TrialMetrics t : trials) {
+          avgi.addValue(t.cumulativeEpisodeReward(i));
         }
         double[] ci = getCI(avgi, this.significance);
         curAgentDatasets.cerAvgSeries.add(i, ci[0], ci[1], ci[2]);
@@ -748,8 +813,8 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
     if (this.metricsSet.contains(PerformanceMetric.AVERAGE_EPISODE_REWARD)) {
       for (int i = 0; i < n[1]; i++) {
         DescriptiveStatistics avgi = new DescriptiveStatistics();
-        for (Trial t : trials) {
-          avgi.addValue(t.averageEpisodeReward.get(i));
+        for (TrialMetrics t : trials) {
+          avgi.addValue(t.averageEpisodeReward(i));
         }
         double[] ci = getCI(avgi, this.significance);
         curAgentDatasets.aerAvgSeries.add(i, ci[0], ci[1], ci[2]);
@@ -759,8 +824,8 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
     if (this.metricsSet.contains(PerformanceMetric.MEDIAN_EPISODE_REWARD)) {
       for (int i = 0; i < n[1]; i++) {
         DescriptiveStatistics avgi = new DescriptiveStatistics();
-        for (Trial t : trials) {
-          avgi.addValue(t.medianEpisodeReward.get(i));
+        for (TrialMetrics t : trials) {
+          avgi.addValue(t.medianEpisodeReward(i));
         }
         double[] ci = getCI(avgi, this.significance);
         curAgentDatasets.merAvgSeries.add(i, ci[0], ci[1], ci[2]);
@@ -770,8 +835,8 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
     if (this.metricsSet.contains(PerformanceMetric.CUMULATIVE_STEPS_PER_EPISODE)) {
       for (int i = 0; i < n[1]; i++) {
         DescriptiveStatistics avgi = new DescriptiveStatistics();
-        for (Trial t : trials) {
-          avgi.addValue(t.cumulativeStepEpisode.get(i));
+        for (TrialMetrics t : trials) {
+          avgi.addValue(t.cumulativeStepEpisode(i));
         }
         double[] ci = getCI(avgi, this.significance);
         curAgentDatasets.cseAvgSeries.add(i, ci[0], ci[1], ci[2]);
@@ -781,8 +846,8 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
     if (this.metricsSet.contains(PerformanceMetric.STEPS_PER_EPISODE)) {
       for (int i = 0; i < n[1]; i++) {
         DescriptiveStatistics avgi = new DescriptiveStatistics();
-        for (Trial t : trials) {
-          avgi.addValue(t.stepEpisode.get(i));
+        for (TrialMetrics t : trials) {
+          avgi.addValue(t.stepEpisode(i));
         }
         double[] ci = getCI(avgi, this.significance);
         curAgentDatasets.seAvgSeries.add(i, ci[0], ci[1], ci[2]);
@@ -796,15 +861,15 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
   /**
    * Updates the cumulative reward by step series. Does nothing if that metric is not being plotted.
    */
-  protected void updateCSRSeries() {
+  protected void updateCSRSeries(int n) {
 
     if (!this.metricsSet.contains(PerformanceMetric.CUMULATIVE_REWARD_PER_STEP)) {
       return;
     }
 
-    int n = this.curTrial.cumulativeStepReward.size();
+    TrialMetrics trial = this.curTrial;
     for (int i = this.lastTimeStepUpdate; i < n; i++) {
-      this.curAgentDatasets.cumulativeStepRewardSeries.add((double) i, this.curTrial.cumulativeStepReward.get(i), false);
+      this.curAgentDatasets.cumulativeStepRewardSeries.add((double) i, trial.cumulativeStepReward(i), false);
     }
     if (n > this.lastTimeStepUpdate) {
       this.curAgentDatasets.cumulativeStepRewardSeries.fireSeriesChanged();
@@ -814,15 +879,15 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
   /**
    * Updates the cumulative reward by episode series. Does nothing if that metric is not being plotted.
    */
-  protected void updateCERSeries() {
+  protected void updateCERSeries(int n) {
 
     if (!this.metricsSet.contains(PerformanceMetric.CUMULATIVE_REWARD_PER_EPISODE)) {
       return;
     }
 
-    int n = this.curTrial.cumulativeEpisodeReward.size();
+    TrialMetrics trial = this.curTrial;
     for (int i = this.lastEpisode; i < n; i++) {
-      this.curAgentDatasets.cumulativeEpisodeRewardSeries.add((double) i, this.curTrial.cumulativeEpisodeReward.get(i), false);
+      this.curAgentDatasets.cumulativeEpisodeRewardSeries.add((double) i, trial.cumulativeEpisodeReward(i), false);
     }
     if (n > this.lastEpisode) {
       this.curAgentDatasets.cumulativeEpisodeRewardSeries.fireSeriesChanged();
@@ -833,15 +898,15 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
   /**
    * Updates the average reward by episode series. Does nothing if that metric is not being plotted.
    */
-  protected void updateAERSeris() {
+  protected void updateAERSeris(int n) {
 
     if (!this.metricsSet.contains(PerformanceMetric.AVERAGE_EPISODE_REWARD)) {
       return;
     }
 
-    int n = this.curTrial.averageEpisodeReward.size();
+    TrialMetrics trial = this.curTrial;
     for (int i = this.lastEpisode; i < n; i++) {
-      this.curAgentDatasets.averageEpisodeRewardSeries.add((double) i, this.curTrial.averageEpisodeReward.get(i), false);
+      this.curAgentDatasets.averageEpisodeRewardSeries.add((double) i, trial.averageEpisodeReward(i), false);
     }
     if (n > this.lastEpisode) {
       this.curAgentDatasets.averageEpisodeRewardSeries.fireSeriesChanged();
@@ -851,15 +916,15 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
   /**
    * Updates the median reward by episode series. Does nothing if that metric is not being plotted.
    */
-  protected void updateMERSeris() {
+  protected void updateMERSeris(int n) {
 
     if (!this.metricsSet.contains(PerformanceMetric.MEDIAN_EPISODE_REWARD)) {
       return;
     }
 
-    int n = this.curTrial.medianEpisodeReward.size();
+    TrialMetrics trial = this.curTrial;
     for (int i = this.lastEpisode; i < n; i++) {
-      this.curAgentDatasets.medianEpisodeRewardSeries.add((double) i, this.curTrial.medianEpisodeReward.get(i), false);
+      this.curAgentDatasets.medianEpisodeRewardSeries.add((double) i, trial.medianEpisodeReward(i), false);
     }
     if (n > this.lastEpisode) {
       this.curAgentDatasets.medianEpisodeRewardSeries.fireSeriesChanged();
@@ -869,15 +934,15 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
   /**
    * Updates the cumulative steps by episode series. Does nothing if that metric is not being plotted.
    */
-  protected void updateCSESeries() {
+  protected void updateCSESeries(int n) {
 
     if (!this.metricsSet.contains(PerformanceMetric.CUMULATIVE_STEPS_PER_EPISODE)) {
       return;
     }
 
-    int n = this.curTrial.cumulativeStepEpisode.size();
+    TrialMetrics trial = this.curTrial;
     for (int i = this.lastEpisode; i < n; i++) {
-      this.curAgentDatasets.cumulativeStepEpisodeSeries.add((double) i, this.curTrial.cumulativeStepEpisode.get(i), false);
+      this.curAgentDatasets.cumulativeStepEpisodeSeries.add((double) i, trial.cumulativeStepEpisode(i), false);
     }
     if (n > this.lastEpisode) {
       this.curAgentDatasets.cumulativeStepEpisodeSeries.fireSeriesChanged();
@@ -887,47 +952,34 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
   /**
    * Updates the steps by episode series. Does nothing if that metric is not being plotted.
    */
-  protected void updateSESeries() {
+  protected void updateSESeries(int n) {
 
     if (!this.metricsSet.contains(PerformanceMetric.STEPS_PER_EPISODE)) {
       return;
     }
 
-    int n = this.curTrial.stepEpisode.size();
+    TrialMetrics trial = this.curTrial;
     for (int i = this.lastEpisode; i < n; i++) {
-      this.curAgentDatasets.stepEpisodeSeries.add((double) i, this.curTrial.stepEpisode.get(i), false);
+      this.curAgentDatasets.stepEpisodeSeries.add((double) i, trial.stepEpisode(i), false);
     }
     if (n > this.lastEpisode) {
       this.curAgentDatasets.stepEpisodeSeries.fireSeriesChanged();
     }
   }
 
-  /**
-   * Computes the sum of the last entry in list and the value v and adds it to the end of list. Use for maintainly cumulative data.
-   *
-   * @param list the list to add and append to.
-   * @param v the value to add to the last value of list and append
-   */
-  protected static void accumulate(List<Double> list, double v) {
-    if (!list.isEmpty()) {
-      v += list.get(list.size() - 1);
-    }
-    list.add(v);
-  }
-
   /**
    * Returns the minimum steps and episodes across all trials
    *
    * @param trials the trials to perform the min over
    * @return a double array of length 2; the first entry is the minimum steps, the second entry tthe minimum episodes
    */
-  protected int[] minStepAndEpisodes(List<Trial> trials) {
+  protected int[] minStepAndEpisodes(List<TrialMetrics> trials) {
     int minStep = Integer.MAX_VALUE;
     int minEpisode = Integer.MAX_VALUE;
 
-    for (Trial t : trials) {
-      minStep = Math.min(minStep, t.totalSteps);
-      minEpisode = Math.min(minEpisode, t.totalEpisodes);
+    for (TrialMetrics t : trials) {
+      minStep = Math.min(minStep, t.numCompletedSteps());
+      minEpisode = Math.min(minEpisode, t.numEpisodes());
     }
 
     return new int[]{minStep, minEpisode};
@@ -956,121 +1008,6 @@ public class PerformancePlotter extends JFrame implements EnvironmentObserver {
     return new double[]{m, m - width, m + width};
   }
 
-  /**
-   * A datastructure for maintaining all the metric stats for a single trial.
-   *
-   * @author James MacGlashan
-   *
-   */
-  protected class Trial {
-
-    /**
-     * Stores the cumulative reward by step
-     */
-    public List<Double> cumulativeStepReward = new ArrayList<Double>();
-
-    /**
-     * Stores the cumulative reward by episode
-     */
-    public List<Double> cumulativeEpisodeReward = new ArrayList<Double>();
-
-    /**
-     * Stores the average reward by episode
-     */
-    public List<Double> averageEpisodeReward = new ArrayList<Double>();
-
-    /**
-     * Stores the median reward by episode
-     */
-    public List<Double> medianEpisodeReward = new ArrayList<Double>();
-
-    /**
-     * Stores the cumulative steps by episode
-     */
-    public List<Double> cumulativeStepEpisode = new ArrayList<Double>();
-
-    /**
-     * Stores the steps by episode
-     */
-    public List<Double> stepEpisode = new ArrayList<Double>();
-
-    /**
-     * The cumulative reward of the episode so far
-     */
-    public double curEpisodeReward = 0.;
-
-    /**
-     * The number of steps in the episode so far
-     */
-    public int curEpisodeSteps = 0;
-
-    /**
-     * the total number of steps in the trial
-     */
-    public int totalSteps = 0;
-
-    /**
-     * The total number of episodes in the trial
-     */
-    public int totalEpisodes = 0;
-
-    /**
-     * A list of the reward sequence in the current episode
-     */
-    protected List<Double> curEpisodeRewards = new ArrayList<Double>();
-
-    /**
-     * Updates all datastructures with the reward received from the last step
-     *
-     * @param r the last reward received
-     */
-    public void stepIncrement(double r) {
-
-      accumulate(this.cumulativeStepReward, r);
-      this.curEpisodeReward += r;
-      this.curEpisodeSteps++;
-      this.curEpisodeRewards.add(r);
-
-    }
-
-    /**
-     * Completes the last episode and sets up the datastructures for the next episode
-     */
-    public void setupForNewEpisode() {
-      accumulate(this.cumulativeEpisodeReward, this.curEpisodeReward);
-      accumulate(this.cumulativeStepEpisode, this.curEpisodeSteps);
-
-      double avgER = this.curEpisodeReward / (double) this.curEpisodeSteps;
-      this.averageEpisodeReward.add(avgER);
-      this.stepEpisode.add((double) this.curEpisodeSteps);
-
-      Collections.sort(this.curEpisodeRewards);
-      double med = 0.;
-      if (this.curEpisodeSteps > 0) {
-        int n2 = this.curEpisodeSteps / 2;
-        if (this.curEpisodeSteps % 2 == 0) {
-          double m = this.curEpisodeRewards.get(n2);
-          double m2 = this.curEpisodeRewards.get(n2 - 1);
-          med = (m + m2) / 2.;
-        } else {
-          med = this.curEpisodeRewards.get(n2);
-        }
-      }
-
-      this.medianEpisodeReward.add(med);
-
-      this.totalSteps += this.curEpisodeSteps;
-      this.totalEpisodes++;
-
-      this.curEpisodeReward = 0.;
-      this.curEpisodeSteps = 0;
-
-      this.curEpisodeRewards.clear();
-
-    }
-
-  }
-
   /**
    * A datastructure for maintain the plot series data in the current agent
    *
@@ -0,0 +1,265 @@
+package burlap.behavior.singleagent.auxiliary.performance;
+
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.environment.Environment;
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+import burlap.mdp.singleagent.environment.extensions.EnvironmentObserver;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The performance data of a single trial of a learning agent: the cumulative reward of every step and, for every episode, the
+ * cumulative reward, average reward, median reward, cumulative steps, and number of steps. Observe the trial's
+ * {@link Environment} with this object and call {@link #endEpisode()} at the end of each episode.
+ * <p>
+ * The series are stored in primitive arrays that grow as needed, so recording a step neither locks nor boxes. Each trial must be
+ * recorded by one thread at a time, but different trials can be recorded concurrently, and other threads, such as a plot refresh
+ * thread, may read the series while they are being recorded: the counts are published after the values, so a reader sees every value
+ * below the count it reads.
+ * <p>
+ * When an episode or the trial ends, the {@link MetricsConsumer} objects given to the constructor are told so on the recording thread.
+ */
+public class TrialMetrics implements EnvironmentObserver {
+
+	/**
+	 * The name of the agent of the trial
+	 */
+	protected String agentName;
+
+	/**
+	 * The index of the trial among the agent's trials
+	 */
+	protected int trial;
+
+	/**
+	 * The consumers told about ended episodes
+	 */
+	protected List<MetricsConsumer> consumers;
+
+	/**
+	 * The cumulative reward by step
+	 */
+	protected double [] cumulativeStepReward = new double[64];
+
+	/**
+	 * The number of recorded steps
+	 */
+	protected volatile int numSteps = 0;
+
+	/**
+	 * The cumulative reward by episode
+	 */
+	protected double [] cumulativeEpisodeReward = new double[16];
+
+	/**
+	 * The average reward by episode
+	 */
+	protected double [] averageEpisodeReward = new double[16];
+
+	/**
+	 * The median reward by episode
+	 */
+	protected double [] medianEpisodeReward = new double[16];
+
+	/**
+	 * The cumulative steps by episode
+	 */
+	protected double [] cumulativeStepEpisode = new double[16];
+
+	/**
+	 * The steps by episode
+	 */
+	protected double [] stepEpisode = new double[16];
+
+	/**
+	 * The number of completed episodes
+	 */
+	protected volatile int numEpisodes = 0;
+
+	/**
+	 * The number of steps in completed episodes
+	 */
+	protected int completedSteps = 0;
+
+	/**
+	 * The cumulative reward of the episode so far
+	 */
+	protected double curEpisodeReward = 0.;
+
+	/**
+	 * The rewards of the episode so far; its first curEpisodeSteps entries are used.
+	 */
+	protected double [] curEpisodeRewards = new double[64];
+
+	/**
+	 * The number of steps in the episode so far
+	 */
+	protected int curEpisodeSteps = 0;
+
+
+	/**
+	 * Initializes for an unnamed trial with no consumers.
+	 */
+	public TrialMetrics() {
+		this("", 0, Collections.<MetricsConsumer>emptyList());
+	}
+
+	/**
+	 * Initializes.
+	 * @param agentName the name of the agent of the trial
+	 * @param trial the index of the trial among the agent's trials
+	 * @param consumers the consumers to tell about ended episodes
+	 */
+	public TrialMetrics(String agentName, int trial, List<MetricsConsumer> consumers) {
+		this.agentName = agentName;
+		this.trial = trial;
+		this.consumers = consumers;
+	}
+
+	public String getAgentName() {
+		return agentName;
+	}
+
+	public int getTrial() {
+		return trial;
+	}
+
+
+	@Override
+	public void observeEnvironmentActionInitiation(State o, Action action) {
+		//do nothing
+	}
+
+	@Override
+	public void observeEnvironmentInteraction(EnvironmentOutcome eo) {
+		this.stepIncrement(eo.r);
+	}
+
+	@Override
+	public void observeEnvironmentReset(Environment resetEnvironment) {
+		//do nothing
+	}
+
+
+	/**
+	 * Records the reward received from the last step.
+	 * @param r the last reward received
+	 */
+	public void stepIncrement(double r) {
+
+		int n = this.numSteps;
+		if(n == this.cumulativeStepReward.length){
+			this.cumulativeStepReward = Arrays.copyOf(this.cumulativeStepReward, n * 2);
+		}
+		this.cumulativeStepReward[n] = n > 0 ? r + this.cumulativeStepReward[n-1] : r;
+
+		if(this.curEpisodeSteps == this.curEpisodeRewards.length){
+			this.curEpisodeRewards = Arrays.copyOf(this.curEpisodeRewards, this.curEpisodeSteps * 2);
+		}
+		this.curEpisodeRewards[this.curEpisodeSteps] = r;
+		this.curEpisodeReward += r;
+		this.curEpisodeSteps++;
+
+		this.numSteps = n + 1;
+
+	}
+
+	/**
+	 * Completes the last episode, records its statistics, and tells the consumers.
+	 */
+	public void endEpisode() {
+
+		int e = this.numEpisodes;
+		if(e == this.stepEpisode.length){
+			int c = e * 2;
+			this.cumulativeEpisodeReward = Arrays.copyOf(this.cumulativeEpisodeReward, c);
+			this.averageEpisodeReward = Arrays.copyOf(this.averageEpisodeReward, c);
+			this.medianEpisodeReward = Arrays.copyOf(this.medianEpisodeReward, c);
+			this.cumulativeStepEpisode = Arrays.copyOf(this.cumulativeStepEpisode, c);
+			this.stepEpisode = Arrays.copyOf(this.stepEpisode, c);
+		}
+
+		int steps = this.curEpisodeSteps;
+		this.cumulativeEpisodeReward[e] = e > 0 ? this.curEpisodeReward + this.cumulativeEpisodeReward[e-1] : this.curEpisodeReward;
+		this.cumulativeStepEpisode[e] = e > 0 ? steps + this.cumulativeStepEpisode[e-1] : steps;
+		this.averageEpisodeReward[e] = this.curEpisodeReward / (double)steps;
+		this.stepEpisode[e] = steps;
+
+		Arrays.sort(this.curEpisodeRewards, 0, steps);
+		double med = 0.;
+		if(steps > 0){
+			int n2 = steps / 2;
+			if(steps % 2 == 0){
+				med = (this.curEpisodeRewards[n2] + this.curEpisodeRewards[n2-1]) / 2.;
+			}
+			else{
+				med = this.curEpisodeRewards[n2];
+			}
+		}
+		this.medianEpisodeReward[e] = med;
+
+		this.completedSteps += steps;
+		this.curEpisodeReward = 0.;
+		this.curEpisodeSteps = 0;
+
+		this.numEpisodes = e + 1;
+
+		for(MetricsConsumer consumer : this.consumers){
+			consumer.episodeEnded(this);
+		}
+
+	}
+
+
+	/**
+	 * Returns the number of recorded steps, including those of an episode in progress.
+	 * @return the number of recorded steps
+	 */
+	public int numSteps() {
+		return this.numSteps;
+	}
+
+	/**
+	 * Returns the number of steps in completed episodes.
+	 * @return the number of steps in completed episodes
+	 */
+	public int numCompletedSteps() {
+		return this.completedSteps;
+	}
+
+	/**
+	 * Returns the number of completed episodes.
+	 * @return the number of completed episodes
+	 */
+	public int numEpisodes() {
+		return this.numEpisodes;
+	}
+
+	public double cumulativeStepReward(int step) {
+		return this.cumulativeStepReward[step];
+	}
+
+	public double cumulativeEpisodeReward(int episode) {
+		return this.cumulativeEpisodeReward[episode];
+	}
+
+	public double averageEpisodeReward(int episode) {
+		return this.averageEpisodeReward[episode];
+	}
+
+	public double medianEpisodeReward(int episode) {
+		return this.medianEpisodeReward[episode];
+	}
+
+	public double cumulativeStepEpisode(int episode) {
+		return this.cumulativeStepEpisode[episode];
+	}
+
+	public double stepEpisode(int episode) {
+		return this.stepEpisode[episode];
+	}
+
+}
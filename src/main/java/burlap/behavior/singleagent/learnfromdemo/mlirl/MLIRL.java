@@ -5,17 +5,20 @@ import burlap.behavior.policy.BoltzmannQPolicy;
 import burlap.behavior.policy.Policy;
 import burlap.behavior.singleagent.Episode;
 import burlap.behavior.singleagent.learnfromdemo.CustomRewardModel;
+import burlap.behavior.singleagent.learnfromdemo.mlirl.differentiableplanners.DifferentiableVI;
 import burlap.behavior.singleagent.learnfromdemo.mlirl.support.BoltzmannPolicyGradient;
 import burlap.behavior.singleagent.learnfromdemo.mlirl.support.DifferentiableQFunction;
 import burlap.behavior.singleagent.learnfromdemo.mlirl.support.DifferentiableRF;
+import burlap.behavior.singleagent.planning.Planner;
 import burlap.behavior.valuefunction.QProvider;
-import burlap.datastructures.HashedAggregator;
+import burlap.datastructures.ParallelBlocks;
 import burlap.debugtools.DPrint;
 import burlap.mdp.core.action.Action;
 import burlap.mdp.core.state.State;
 
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * An implementation of Maximum-likelihood Inverse Reinforcement Learning [1]. This class takes as input (from an
@@ -30,7 +33,18 @@ import java.util.Map;
  * The gradient ascent will stop either after a fixed number of steps or until the change in likelihood is smaller
  * than some threshold. If the max number of steps is set to -1, then it will continue until the change in likelihood
  * is smaller than the threshold.
- *
+ * <p>
+ * By default, when the planner is a {@link DifferentiableVI}, each gradient ascent step warm starts planning from the
+ * previous step's value function and value gradients, rather than resetting the planner and solving from scratch
+ * (see {@link #toggleWarmStart(boolean)}). Other planners are reset after each step.
+ * <p>
+ * The log-likelihood and its gradient can be computed across a thread pool with {@link #setParallelGradient(int)}.
+ * In that case, the planner is first planned serially from every state of the expert trajectories, after which the
+ * trajectories are split into contiguous blocks whose Q-values and Q-value gradients are queried concurrently and whose
+ * gradients are summed in block order. This requires that the planner answer queries for states from which it has
+ * already planned without modifying itself, which holds for {@link DifferentiableVI} and for
+ * {@link burlap.behavior.singleagent.learnfromdemo.mlirl.differentiableplanners.DifferentiableSparseSampling} unless it
+ * is set to forget previous planning results, and that the reward function be safe to query concurrently.
  *
  *
  * <p>
@@ -69,6 +83,18 @@ public class MLIRL {
 	protected int debugCode = 625420;
 
 
+	/**
+	 * Whether each gradient ascent step warm starts a {@link DifferentiableVI} planner from the previous step's solution
+	 */
+	protected boolean warmStart = true;
+
+	/**
+	 * The executor and number of blocks with which trajectory log-likelihoods and gradients are computed; they are computed
+	 * serially when it has no executor.
+	 */
+	protected ParallelBlocks gradientBlocks = new ParallelBlocks();
+
+
 	/**
 	 * Initializes.
 	 * @param request the problem request definition
@@ -99,6 +125,34 @@ public class MLIRL {
 	}
 
 
+	/**
+	 * Returns a new instance with the same learning rate, termination conditions, warm start, parallel, and debug settings
+	 * as this one, but for a different request. The copy shares this instance's executor but does not own it, so a pool created
+	 * by {@link #setParallelGradient(int)} is only shut down by this instance.
+	 * @param request the problem request definition of the new instance
+	 * @return the new instance
+	 */
+	public MLIRL copyForRequest(MLIRLRequest request){
+		MLIRL copy = new MLIRL(request, this.learningRate, this.maxLikelihoodChange, this.maxSteps);
+		this.copySettingsTo(copy);
+		return copy;
+	}
+
+	/**
+	 * Sets the learning rate, termination conditions, warm start, parallel, and debug settings of another instance to those
+	 * of this one. The other instance shares this instance's executor but does not own it.
+	 * @param target the instance whose settings are replaced
+	 */
+	public void copySettingsTo(MLIRL target){
+		target.learningRate = this.learningRate;
+		target.maxLikelihoodChange = this.maxLikelihoodChange;
+		target.maxSteps = this.maxSteps;
+		target.debugCode = this.debugCode;
+		target.warmStart = this.warmStart;
+		target.gradientBlocks.setExecutor(this.gradientBlocks.executor(), this.gradientBlocks.numPartitions());
+	}
+
+
 	/**
 	 * Sets whether information during learning is printed to the terminal. Will automatically toggle the debug printing
 	 * for the underlying valueFunction as well.
@@ -128,6 +182,37 @@ public class MLIRL {
 	}
 
 
+	/**
+	 * Sets whether each gradient ascent step warm starts a {@link DifferentiableVI} planner from the previous step's value function
+	 * and value gradients. If false, or if the planner is not a {@link DifferentiableVI}, the planner is reset after each step.
+	 * Default is true.
+	 * @param warmStart whether gradient ascent steps warm start the planner
+	 */
+	public void toggleWarmStart(boolean warmStart){
+		this.warmStart = warmStart;
+	}
+
+
+	/**
+	 * Sets the log-likelihood and its gradient to be computed across the given number of threads using a new {@link ForkJoinPool}, with
+	 * the expert trajectories split into one contiguous block per thread. If numThreads is 1 or less, they are computed serially.
+	 * @param numThreads the number of threads to use.
+	 */
+	public void setParallelGradient(int numThreads){
+		this.gradientBlocks.setThreads(numThreads);
+	}
+
+	/**
+	 * Sets the log-likelihood and its gradient to be computed on the given executor, with the expert trajectories split into
+	 * numPartitions contiguous blocks.
+	 * @param executor the executor on which blocks are computed, such as a {@link ForkJoinPool}; null to compute serially
+	 * @param numPartitions the number of blocks into which the trajectories are split
+	 */
+	public void setParallelGradient(ExecutorService executor, int numPartitions){
+		this.gradientBlocks.setExecutor(executor, numPartitions);
+	}
+
+
 	/**
 	 * Runs gradient ascent.
 	 */
@@ -136,8 +221,7 @@ public class MLIRL {
 		DifferentiableRF rf = this.request.getRf();
 
 		//reset valueFunction
-		this.request.getPlanner().resetSolver();
-		this.request.getPlanner().setModel(new CustomRewardModel(request.getDomain().getModel(), rf));
+		this.refreshPlanner(rf);
 		double lastLikelihood = this.logLikelihood();
 		DPrint.cl(this.debugCode, "RF: " + this.request.getRf().toString());
 		DPrint.cl(this.debugCode, "Log likelihood: " + lastLikelihood);
@@ -147,20 +231,25 @@ public class MLIRL {
 		for(i = 0; i < maxSteps || this.maxSteps == -1; i++){
 
 			//move up gradient
-			FunctionGradient gradient = this.logLikelihoodGradient();
+			FunctionGradient gradient = this.logLikelihoodGradient().asIndexed();
 			double maxChange = 0.;
-			for(FunctionGradient.PartialDerivative pd : gradient.getNonZeroPartialDerivatives()){
-				double curVal = rf.getParameter(pd.parameterId);
-				double nexVal = curVal + this.learningRate*pd.value;
-				rf.setParameter(pd.parameterId, nexVal);
+			int numEntries = gradient.numEntries();
+			for(int j = 0; j < numEntries; j++){
+				double pd = gradient.partialDerivativeAt(j);
+				if(pd == 0.){
+					continue;
+				}
+				int pid = gradient.parameterIdAt(j);
+				double curVal = rf.getParameter(pid);
+				double nexVal = curVal + this.learningRate*pd;
+				rf.setParameter(pid, nexVal);
 				double delta = Math.abs(curVal-nexVal);
 				maxChange = Math.max(maxChange, delta);
 			}
 
 
 			//reset valueFunction
-			this.request.getPlanner().resetSolver();
-			this.request.getPlanner().setModel(new CustomRewardModel(request.getDomain().getModel(), rf));
+			this.refreshPlanner(rf);
 
 			double newLikelihood = this.logLikelihood();
 			double likelihoodChange = newLikelihood-lastLikelihood;
@@ -187,20 +276,51 @@ public class MLIRL {
 	}
 
 
+	/**
+	 * Prepares the planner to plan with the current reward function parameters, either by marking a {@link DifferentiableVI}
+	 * planner's solution to be recomputed from its current values when warm starting, or by resetting the planner.
+	 * @param rf the reward function
+	 */
+	protected void refreshPlanner(DifferentiableRF rf){
+		Planner planner = this.request.getPlanner();
+		if(this.warmStart && planner instanceof DifferentiableVI){
+			((DifferentiableVI)planner).recomputeValueFunction();
+		}
+		else{
+			planner.resetSolver();
+		}
+		planner.setModel(new CustomRewardModel(request.getDomain().getModel(), rf));
+	}
+
+
 	/**
 	 * Computes and returns the log-likelihood of all expert trajectories under the current reward function parameters.
 	 * @return the log-likelihood of all expert trajectories under the current reward function parameters.
 	 */
 	public double logLikelihood(){
 
-		double [] weights = this.request.getEpisodeWeights();
-		List<Episode> exampleTrajectories = this.request.getExpertEpisodes();
+		final double [] weights = this.request.getEpisodeWeights();
+		final List<Episode> exampleTrajectories = this.request.getExpertEpisodes();
+		int n = exampleTrajectories.size();
 
-		double sum = 0.;
-		for(int i = 0; i < exampleTrajectories.size(); i++){
-			sum += this.logLikelihoodOfTrajectory(exampleTrajectories.get(i), weights[i]);
+		if(this.numBlocks(n) > 1){
+			this.planFromTrajectoryStates(exampleTrajectories);
 		}
+		List<Double> blockSums = this.gradientBlocks.invokeBlocks(n, new ParallelBlocks.Block<Double>() {
+			@Override
+			public Double run(int start, int end) {
+				double sum = 0.;
+				for(int i = start; i < end; i++){
+					sum += logLikelihoodOfTrajectory(exampleTrajectories.get(i), weights[i]);
+				}
+				return sum;
+			}
+		}, "computing the MLIRL log-likelihood");
 
+		double sum = 0.;
+		for(double blockSum : blockSums){
+			sum += blockSum;
+		}
 		return sum;
 
 	}
@@ -233,37 +353,84 @@ public class MLIRL {
 	 * @return the gradient of the log-likelihood of all trajectories
 	 */
 	public FunctionGradient logLikelihoodGradient(){
-		HashedAggregator<Integer> gradientSum = new HashedAggregator<Integer>();
 
-		double [] weights = this.request.getEpisodeWeights();
-		List<Episode> exampleTrajectories = this.request.getExpertEpisodes();
+		final double [] weights = this.request.getEpisodeWeights();
+		final List<Episode> exampleTrajectories = this.request.getExpertEpisodes();
+		int n = exampleTrajectories.size();
+
+		if(this.numBlocks(n) > 1){
+			this.planFromTrajectoryStates(exampleTrajectories);
+		}
+		List<FunctionGradient.SparseArrayGradient> blockSums = this.gradientBlocks.invokeBlocks(n, new ParallelBlocks.Block<FunctionGradient.SparseArrayGradient>() {
+			@Override
+			public FunctionGradient.SparseArrayGradient run(int start, int end) {
+				FunctionGradient.SparseArrayGradient blockSum = new FunctionGradient.SparseArrayGradient();
+				addLogLikelihoodGradients(exampleTrajectories, weights, start, end, blockSum);
+				return blockSum;
+			}
+		}, "computing the MLIRL log-likelihood gradient");
+		if(blockSums.size() == 1){
+			return blockSums.get(0);
+		}
+
+		//reduce in block order so the sum does not depend on scheduling
+		FunctionGradient.SparseArrayGradient gradientSum = new FunctionGradient.SparseArrayGradient();
+		for(FunctionGradient.SparseArrayGradient blockSum : blockSums){
+			gradientSum.addScaled(blockSum, 1.);
+		}
+
+		return gradientSum;
+	}
+
 
-		for(int i = 0; i < exampleTrajectories.size(); i++){
+	/**
+	 * Adds the weighted log policy gradients of every step of the trajectories in the range [start, end) to the given sum.
+	 * @param exampleTrajectories the expert trajectories
+	 * @param weights the weight of each trajectory
+	 * @param start the first trajectory index
+	 * @param end one past the last trajectory index
+	 * @param gradientSum the sum to which the gradients are added
+	 */
+	protected void addLogLikelihoodGradients(List<Episode> exampleTrajectories, double [] weights, int start, int end, FunctionGradient.SparseArrayGradient gradientSum){
+		for(int i = start; i < end; i++){
 			Episode ea = exampleTrajectories.get(i);
 			double weight = weights[i];
 			for(int t = 0; t < ea.numTimeSteps()-1; t++){
 				this.request.getPlanner().planFromState(ea.state(t));
 				FunctionGradient policyGrad = this.logPolicyGrad(ea.state(t), ea.action(t));
 				//weigh it by trajectory strength
-				for(FunctionGradient.PartialDerivative pd : policyGrad.getNonZeroPartialDerivatives()){
-					double newVal = pd.value * weight;
-					gradientSum.add(pd.parameterId, newVal);
-				}
+				gradientSum.addScaled(policyGrad, weight);
 
 			}
 		}
-
-		FunctionGradient gradient = new FunctionGradient.SparseGradient(gradientSum.size());
-		for(Map.Entry<Integer, Double> e : gradientSum.entrySet()){
-			gradient.put(e.getKey(), e.getValue());
-		}
-
-		return gradient;
 	}
 
 
+	/**
+	 * Plans from every state of the trajectories, so that the planner can then answer queries about them without further planning.
+	 * @param exampleTrajectories the expert trajectories
+	 */
+	protected void planFromTrajectoryStates(List<Episode> exampleTrajectories){
+		Planner planner = this.request.getPlanner();
+		for(Episode ea : exampleTrajectories){
+			for(int t = 0; t < ea.numTimeSteps()-1; t++){
+				planner.planFromState(ea.state(t));
+			}
+		}
+	}
 
 
+	/**
+	 * Returns the number of blocks into which the given number of trajectories are split.
+	 * @param n the number of trajectories
+	 * @return the number of blocks; 1 when computing serially
+	 */
+	protected int numBlocks(int n){
+		if(!this.gradientBlocks.isParallel()){
+			return 1;
+		}
+		return Math.max(1, Math.min(this.gradientBlocks.numPartitions(), n));
+	}
 
 
 	/**
@@ -278,12 +445,10 @@ public class MLIRL {
 		double invActProb = 1./p.actionProb(s, ga);
 		FunctionGradient gradient = BoltzmannPolicyGradient.computeBoltzmannPolicyGradient(s, ga, (DifferentiableQFunction)this.request.getPlanner(), this.request.getBoltzmannBeta());
 
-		for(FunctionGradient.PartialDerivative pd : gradient.getNonZeroPartialDerivatives()){
-			double newVal = pd.value * invActProb;
-			gradient.put(pd.parameterId, newVal);
-		}
+		FunctionGradient.SparseArrayGradient scaled = new FunctionGradient.SparseArrayGradient(gradient.numEntries());
+		scaled.addScaled(gradient, invActProb);
 
-		return gradient;
+		return scaled;
 
 	}
 
@@ -4,12 +4,15 @@ import burlap.behavior.singleagent.Episode;
 import burlap.behavior.singleagent.learnfromdemo.mlirl.support.DifferentiableRF;
 import burlap.behavior.singleagent.learnfromdemo.mlirl.support.QGradientPlannerFactory;
 import burlap.behavior.singleagent.planning.Planner;
+import burlap.datastructures.ParallelBlocks;
 import burlap.debugtools.DPrint;
 import burlap.debugtools.RandomFactory;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * An implementation of Multiple Intentions Maximum-likelihood Inverse Reinforcement Learning [1]. This algorithm
@@ -70,6 +73,18 @@ public class MultipleIntentionsMLIRL {
 	protected Random rand = RandomFactory.getMapped(0);
 
 
+	/**
+	 * The {@link burlap.behavior.singleagent.learnfromdemo.mlirl.MLIRL} instance of each cluster used when clusters are
+	 * processed concurrently; null until needed.
+	 */
+	protected List<MLIRL> clusterMLIRLs;
+
+	/**
+	 * The executor and number of blocks with which clusters are processed; they are processed serially when it has no executor.
+	 */
+	protected ParallelBlocks clusterBlocks = new ParallelBlocks();
+
+
 	/**
 	 * Initializes. Reward function parameters for each cluster will be initialized randomly between -1 and 1.
 	 * @param request the request that defines the problem.
@@ -95,6 +110,28 @@ public class MultipleIntentionsMLIRL {
 	}
 
 
+	/**
+	 * Sets the clusters to be processed across the given number of threads using a new {@link ForkJoinPool}, with
+	 * the clusters split into one contiguous block per thread. If numThreads is 1 or less, they are processed serially.
+	 * @param numThreads the number of threads to use.
+	 */
+	public void setParallelClusters(int numThreads){
+		this.clusterBlocks.setThreads(numThreads);
+	}
+
+	/**
+	 * Sets the clusters to be processed on the given executor, with the clusters split into numPartitions contiguous blocks.
+	 * When processed concurrently, each cluster's maximization step (its MLIRL gradient ascent) and its trajectory likelihoods
+	 * are computed with a separate {@link burlap.behavior.singleagent.learnfromdemo.mlirl.MLIRL} instance, which is possible
+	 * because each cluster has its own reward function and planner.
+	 * @param executor the executor on which blocks are processed, such as a {@link ForkJoinPool}; null to process serially
+	 * @param numPartitions the number of blocks into which the clusters are split
+	 */
+	public void setParallelClusters(ExecutorService executor, int numPartitions){
+		this.clusterBlocks.setExecutor(executor, numPartitions);
+	}
+
+
 	/**
 	 * Performs multiple intention inverse reinforcement learning.
 	 */
@@ -108,11 +145,14 @@ public class MultipleIntentionsMLIRL {
 
 			double [][] trajectoryPerClusterWeights = this.computePerClusterMLIRLWeights();
 			for(int j = 0; j < k; j++){
-				MLIRLRequest clusterRequest = this.clusterRequests.get(j);
-				clusterRequest.setEpisodeWeights(trajectoryPerClusterWeights[j].clone());
-				this.mlirlInstance.setRequest(clusterRequest);
-				this.mlirlInstance.performIRL();
+				this.clusterRequests.get(j).setEpisodeWeights(trajectoryPerClusterWeights[j].clone());
 			}
+			this.forEachCluster(new ClusterStep() {
+				@Override
+				public void run(int cluster, MLIRL mlirl) {
+					mlirl.performIRL();
+				}
+			});
 
 
 		}
@@ -236,24 +276,24 @@ public class MultipleIntentionsMLIRL {
 		int k = this.clusterPriors.length;
 		int n = this.request.getExpertEpisodes().size();
 
-		double [][] newWeights = new double[k][n];
+		final double [][] newWeights = new double[k][n];
 
 		//first do pass computing log prior weighted likelihood of each trajectory
-		for(int i = 0; i < k; i++){
-			double logPrior = Math.log(this.clusterPriors[i]);
-
-			//set the IRL request for the current cluster
-			this.mlirlInstance.setRequest(this.clusterRequests.get(i));
-
-			//compute the trajectory log-likelihoods and add them in
-			for(int j = 0; j < n; j++){
-				double trajectLogLikelihood = this.mlirlInstance.logLikelihoodOfTrajectory(
-						this.request.getExpertEpisodes().get(j), 1.);
-
-				double val = logPrior + trajectLogLikelihood;
-				newWeights[i][j] = val;
+		this.forEachCluster(new ClusterStep() {
+			@Override
+			public void run(int i, MLIRL mlirl) {
+				double logPrior = Math.log(clusterPriors[i]);
+
+				//compute the trajectory log-likelihoods and add them in
+				for(int j = 0; j < newWeights[i].length; j++){
+					double trajectLogLikelihood = mlirl.logLikelihoodOfTrajectory(
+							request.getExpertEpisodes().get(j), 1.);
+
+					double val = logPrior + trajectLogLikelihood;
+					newWeights[i][j] = val;
+				}
 			}
-		}
+		});
 
 		//now pass through normalizing in log space, and then exponentiate to get back probability
 		//also maintain sum of entire matrix to normalize for new cluster priors
@@ -282,6 +322,62 @@ public class MultipleIntentionsMLIRL {
 	}
 
 
+	/**
+	 * Runs the given step on every cluster with an {@link burlap.behavior.singleagent.learnfromdemo.mlirl.MLIRL} instance whose
+	 * request is the cluster's request. When processed serially, the shared instance is used for every cluster; otherwise, blocks of
+	 * clusters are run on the executor, each cluster with its own instance.
+	 * @param step the step to run
+	 */
+	protected void forEachCluster(final ClusterStep step){
+
+		final int k = this.clusterRequests.size();
+		if(!this.clusterBlocks.isParallel() || this.clusterBlocks.numPartitions() == 1 || k < 2){
+			for(int i = 0; i < k; i++){
+				this.mlirlInstance.setRequest(this.clusterRequests.get(i));
+				step.run(i, this.mlirlInstance);
+			}
+			return;
+		}
+
+		if(this.clusterMLIRLs == null){
+			this.clusterMLIRLs = new ArrayList<MLIRL>(k);
+			for(MLIRLRequest clusterRequest : this.clusterRequests){
+				this.clusterMLIRLs.add(this.mlirlInstance.copyForRequest(clusterRequest));
+			}
+		}
+		else{
+			for(MLIRL clusterMLIRL : this.clusterMLIRLs){
+				//the shared instance's settings, including its executor, may have changed since the copies were made
+				this.mlirlInstance.copySettingsTo(clusterMLIRL);
+			}
+		}
+
+		this.clusterBlocks.invokeBlocks(k, new ParallelBlocks.Block<Object>() {
+			@Override
+			public Object run(int start, int end) {
+				for(int i = start; i < end; i++){
+					step.run(i, clusterMLIRLs.get(i));
+				}
+				return null;
+			}
+		}, "processing MLIRL clusters");
+	}
+
+
+	/**
+	 * A step of EM run on a single cluster.
+	 */
+	protected interface ClusterStep {
+
+		/**
+		 * Runs the step on the given cluster.
+		 * @param cluster the cluster index
+		 * @param mlirl the {@link burlap.behavior.singleagent.learnfromdemo.mlirl.MLIRL} instance whose request is the cluster's request
+		 */
+		void run(int cluster, MLIRL mlirl);
+	}
+
+
 	/**
 	 * Given a matrix holding the log[Pr(c)] + log(Pr(t | c)] values in its entries, where
 	 * Pr(c) is the probability of the cluster and Pr(t | c)] is the probability of the trajectory given the cluster,
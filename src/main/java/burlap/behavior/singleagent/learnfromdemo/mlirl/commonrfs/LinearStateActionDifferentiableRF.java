@@ -111,14 +111,7 @@ public class LinearStateActionDifferentiableRF implements DifferentiableRF {
 		double [] sFeatures = this.fvGen.features(s);
 		int sIndex = this.actionMap.get(a) * this.numStateFeatures;
 
-		FunctionGradient gradient = new FunctionGradient.SparseGradient(sFeatures.length);
-		int soff = this.numStateFeatures*this.numActions;
-		for(int i = 0; i < sFeatures.length; i++){
-			int f = i + soff;
-			gradient.put(f, sFeatures[i]);
-		}
-
-		return gradient;
+		return new FunctionGradient.DenseGradient(sFeatures.clone(), sIndex);
 	}
 
 	@Override
@@ -88,12 +88,7 @@ public class LinearStateDifferentiableRF implements DifferentiableRF {
 		else{
 			features = fvGen.features(s);
 		}
-		FunctionGradient gradient = new FunctionGradient.SparseGradient(features.length);
-		for(int i = 0; i < features.length; i++){
-			gradient.put(i, features[i]);
-		}
-
-		return gradient;
+		return new FunctionGradient.DenseGradient(features.clone());
 	}
 
 	@Override
@@ -1,6 +1,7 @@
 package burlap.behavior.singleagent.learnfromdemo.mlirl.differentiableplanners;
 
 import burlap.behavior.functionapproximation.FunctionGradient;
+import burlap.behavior.functionapproximation.GradientUtils;
 import burlap.behavior.singleagent.learnfromdemo.mlirl.differentiableplanners.dpoperator.DifferentiableDPOperator;
 import burlap.behavior.singleagent.learnfromdemo.mlirl.differentiableplanners.dpoperator.DifferentiableSoftmaxOperator;
 import burlap.behavior.singleagent.learnfromdemo.mlirl.support.DifferentiableQFunction;
@@ -123,19 +124,31 @@ public abstract class DifferentiableDP extends DynamicProgramming implements Dif
 	 */
 	protected FunctionGradient computeQGradient(State s, Action ga){
 
-		FunctionGradient qgradient = new FunctionGradient.SparseGradient();
+		FunctionGradient.SparseArrayGradient qgradient = new FunctionGradient.SparseArrayGradient();
 		List<TransitionProb> tps = ((FullModel)model).transitions(s, ga);
 		for(TransitionProb tp : tps){
-			FunctionGradient valueGradient = this.valueGradient(tp.eo.op);
-			FunctionGradient rewardGradient = this.rf.gradient(s, ga, tp.eo.op);
-			Set<Integer> params = combinedNonZeroPDParameters(valueGradient, rewardGradient);
-
-			for(int i : params){
-				double curval = qgradient.getPartialDerivative(i);
-				double nval = curval + tp.p * (rewardGradient.getPartialDerivative(i) + this.gamma * valueGradient.getPartialDerivative(i));
-				qgradient.put(i, nval);
+			FunctionGradient valueGradient = this.valueGradient(tp.eo.op).asIndexed();
+			FunctionGradient rewardGradient = this.rf.gradient(s, ga, tp.eo.op).asIndexed();
+
+			//visit the union of the non-zero parameters: all of the reward gradient, then the rest of the value gradient
+			int nr = rewardGradient.numEntries();
+			for(int j = 0; j < nr; j++){
+				double r = rewardGradient.partialDerivativeAt(j);
+				if(r != 0.){
+					int i = rewardGradient.parameterIdAt(j);
+					qgradient.add(i, tp.p * (r + this.gamma * valueGradient.getPartialDerivative(i)));
+				}
+			}
+			int nv = valueGradient.numEntries();
+			for(int j = 0; j < nv; j++){
+				double v = valueGradient.partialDerivativeAt(j);
+				if(v != 0.){
+					int i = valueGradient.parameterIdAt(j);
+					if(rewardGradient.getPartialDerivative(i) == 0.){
+						qgradient.add(i, tp.p * (this.gamma * v));
+					}
+				}
 			}
-
 
 		}
 
@@ -148,10 +161,7 @@ public abstract class DifferentiableDP extends DynamicProgramming implements Dif
 
 		Set<Integer> c = new HashSet<Integer>();
 		for(FunctionGradient g : gradients){
-			Set<FunctionGradient.PartialDerivative> p = g.getNonZeroPartialDerivatives();
-			for(FunctionGradient.PartialDerivative e : p){
-				c.add(e.parameterId);
-			}
+			GradientUtils.addNonZeroIds(g, c);
 		}
 
 		return c;
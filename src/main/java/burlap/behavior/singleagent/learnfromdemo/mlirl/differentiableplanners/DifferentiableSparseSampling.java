@@ -1,6 +1,7 @@
 package burlap.behavior.singleagent.learnfromdemo.mlirl.differentiableplanners;
 
 import burlap.behavior.functionapproximation.FunctionGradient;
+import burlap.behavior.functionapproximation.GradientUtils;
 import burlap.behavior.policy.BoltzmannQPolicy;
 import burlap.behavior.singleagent.MDPSolver;
 import burlap.behavior.singleagent.learnfromdemo.CustomRewardModel;
@@ -589,10 +590,7 @@ public class DifferentiableSparseSampling extends MDPSolver implements Different
 
 		Set<Integer> c = new HashSet<Integer>();
 		for(FunctionGradient g : gradients){
-			Set<FunctionGradient.PartialDerivative> p = g.getNonZeroPartialDerivatives();
-			for(FunctionGradient.PartialDerivative e : p){
-				c.add(e.parameterId);
-			}
+			GradientUtils.addNonZeroIds(g, c);
 		}
 
 		return c;
@@ -90,6 +90,17 @@ public class DifferentiableVI extends DifferentiableDP implements Planner {
 	}
 
 
+	/**
+	 * Calling this method will force the valueFunction to rerun VI when the {@link #planFromState(State)} method is called next,
+	 * starting from the current values and value gradients rather than from scratch. This is useful when the reward function
+	 * parameters have changed by a small amount, such as after a gradient ascent step of MLIRL, since VI will then converge
+	 * in far fewer passes than it would after {@link #resetSolver()}.
+	 */
+	public void recomputeValueFunction(){
+		this.hasRunVI = false;
+	}
+
+
 	/**
 	 * Sets whether the state reachability search to generate the state space will be prune the search from terminal states.
 	 * The default is not to prune.
@@ -113,6 +124,9 @@ public class DifferentiableVI extends DifferentiableDP implements Planner {
 			this.performReachabilityFrom(initialState);
 			this.runVI();
 		}
+		else if(!this.hasRunVI){
+			this.runVI();
+		}
 
 		return new BoltzmannQPolicy(this, 1./this.boltzBeta);
 
@@ -20,7 +20,7 @@ public class DifferentiableSoftmaxOperator extends SoftmaxOperator implements Di
 
 	@Override
 	public FunctionGradient gradient(double [] qs, FunctionGradient[] qGradients) {
-		FunctionGradient vGradient = new FunctionGradient.SparseGradient();
+		FunctionGradient.SparseArrayGradient vGradient = new FunctionGradient.SparseArrayGradient();
 
 		double maxBetaScaled = BoltzmannPolicyGradient.maxBetaScaled(qs, this.beta);
 		double logSum = BoltzmannPolicyGradient.logSum(qs, maxBetaScaled, this.beta);
@@ -28,12 +28,18 @@ public class DifferentiableSoftmaxOperator extends SoftmaxOperator implements Di
 		for(int i = 0; i < qs.length; i++){
 
 			double probA = Math.exp(this.beta * qs[i] - logSum);
-			FunctionGradient policyGradient = BoltzmannPolicyGradient.computePolicyGradient(qs, qGradients, i, this.beta);
-
-			for(FunctionGradient.PartialDerivative pd : policyGradient.getNonZeroPartialDerivatives()){
-				double curVal = vGradient.getPartialDerivative(pd.parameterId);
-				double nextVal = curVal + (probA * qGradients[i].getPartialDerivative(pd.parameterId)) + qs[i] * pd.value;
-				vGradient.put(pd.parameterId, nextVal);
+			FunctionGradient policyGradient = BoltzmannPolicyGradient.computePolicyGradient(qs, qGradients, i, this.beta).asIndexed();
+
+			int n = policyGradient.numEntries();
+			for(int j = 0; j < n; j++){
+				double pd = policyGradient.partialDerivativeAt(j);
+				if(pd == 0.){
+					continue;
+				}
+				int pid = policyGradient.parameterIdAt(j);
+				double curVal = vGradient.getPartialDerivative(pid);
+				double nextVal = curVal + (probA * qGradients[i].getPartialDerivative(pid)) + qs[i] * pd;
+				vGradient.put(pid, nextVal);
 			}
 
 
@@ -5,7 +5,6 @@ import burlap.behavior.functionapproximation.GradientUtils;
 import burlap.behavior.valuefunction.QProvider;
 import burlap.behavior.valuefunction.QValue;
 import burlap.datastructures.BoltzmannDistribution;
-import burlap.datastructures.HashedAggregator;
 import burlap.mdp.core.action.Action;
 import burlap.mdp.core.state.State;
 
@@ -89,22 +88,19 @@ public class BoltzmannPolicyGradient {
 
     public static FunctionGradient computePolicyGradient(double [] probs, double [] prefs, FunctionGradient[] grads, int aind, double beta){
 
-        HashedAggregator<Integer> sums = new HashedAggregator<Integer>();
+        FunctionGradient.SparseArrayGradient grad = new FunctionGradient.SparseArrayGradient(grads[aind].numEntries());
 
         //now get component for on action gradient
-        FunctionGradient aterm = GradientUtils.scalarMultCopy(grads[aind], beta * (1. - probs[aind]));
-        GradientUtils.sumInto(aterm, sums);
+        grad.addScaled(grads[aind], beta * (1. - probs[aind]));
 
         //now sum over off action gradients
         for(int i = 0; i < prefs.length; i++){
             if(i == aind) continue;
 
-            FunctionGradient offTerm = GradientUtils.scalarMultCopy(grads[i], -beta * probs[i]);
-            GradientUtils.sumInto(offTerm, sums);
+            grad.addScaled(grads[i], -beta * probs[i]);
         }
 
-        FunctionGradient unnormalized = GradientUtils.toGradient(sums);
-        FunctionGradient grad = GradientUtils.scalarMultCopy(unnormalized, probs[aind]);
+        grad.scale(probs[aind]);
 
         return grad;
 
@@ -153,10 +149,7 @@ public class BoltzmannPolicyGradient {
 
 		Set<Integer> c = new HashSet<Integer>();
 		for(FunctionGradient g : gradients){
-			Set<FunctionGradient.PartialDerivative> p = g.getNonZeroPartialDerivatives();
-			for(FunctionGradient.PartialDerivative e : p){
-				c.add(e.parameterId);
-			}
+			GradientUtils.addNonZeroIds(g, c);
 		}
 
 		return c;
@@ -0,0 +1,149 @@
+package burlap.behavior.singleagent.learning.experiencereplay;
+
+import burlap.behavior.singleagent.options.EnvironmentOptionOutcome;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link ExperienceBuffer} that stores each experience as primitive data in a ring buffer rather than as an
+ * {@link EnvironmentOutcome} holding two state object graphs. The states of each experience are encoded by a {@link StateEncoder} into
+ * fixed-length rows of two long arrays, its reward and termination flag are stored in primitive arrays, and its action is stored as
+ * the index of the action in a list of the distinct actions seen. With a {@link PackedStateEncoder}, a memory of a million grid world
+ * experiences takes a few tens of megabytes in a handful of arrays instead of millions of objects.
+ * <p>
+ * {@link #get(int)} decodes a new {@link EnvironmentOutcome} with new states each time it is called. Actions are not copied, so they
+ * should not be modified after they are stored. Option outcomes ({@link EnvironmentOptionOutcome}) cannot be stored.
+ */
+public class EncodedExperienceBuffer implements ExperienceBuffer {
+
+	/**
+	 * The encoder of the states
+	 */
+	protected StateEncoder encoder;
+
+	/**
+	 * The number of slots
+	 */
+	protected int capacity;
+
+	/**
+	 * The number of words of an encoded state; -1 until the first experience is stored
+	 */
+	protected int words = -1;
+
+	/**
+	 * The encoded previous state of each slot, row-major
+	 */
+	protected long [] observations;
+
+	/**
+	 * The encoded next state of each slot, row-major
+	 */
+	protected long [] nextObservations;
+
+	/**
+	 * The index of the action of each slot in {@link #actions}; -1 for empty slots
+	 */
+	protected int [] actionIds;
+
+	/**
+	 * The reward of each slot
+	 */
+	protected double [] rewards;
+
+	/**
+	 * Whether the next state of each slot is terminal
+	 */
+	protected boolean [] terminated;
+
+	/**
+	 * The distinct actions stored
+	 */
+	protected List<Action> actions = new ArrayList<Action>();
+
+	/**
+	 * The index of each distinct action in {@link #actions}
+	 */
+	protected Map<Action, Integer> actionIndices = new HashMap<Action, Integer>();
+
+
+	/**
+	 * Initializes.
+	 * @param capacity the number of slots
+	 * @param encoder the encoder of the states
+	 */
+	public EncodedExperienceBuffer(int capacity, StateEncoder encoder) {
+		if(capacity < 1){
+			throw new RuntimeException("EncodedExperienceBuffer requires capacity > 0; was requested capacity of " + capacity);
+		}
+		this.capacity = capacity;
+		this.encoder = encoder;
+		this.actionIds = new int[capacity];
+		this.rewards = new double[capacity];
+		this.terminated = new boolean[capacity];
+		Arrays.fill(this.actionIds, -1);
+	}
+
+	@Override
+	public int capacity() {
+		return this.capacity;
+	}
+
+	@Override
+	public void set(int slot, EnvironmentOutcome eo) {
+		if(eo instanceof EnvironmentOptionOutcome){
+			throw new RuntimeException("EncodedExperienceBuffer cannot store option outcomes.");
+		}
+		if(this.words == -1){
+			this.words = this.encoder.encodedLength(eo.o);
+			this.observations = new long[this.capacity * this.words];
+			this.nextObservations = new long[this.capacity * this.words];
+		}
+		this.encoder.encode(eo.o, this.observations, slot * this.words);
+		this.encoder.encode(eo.op, this.nextObservations, slot * this.words);
+		this.actionIds[slot] = this.actionIndex(eo.a);
+		this.rewards[slot] = eo.r;
+		this.terminated[slot] = eo.terminated;
+	}
+
+	@Override
+	public EnvironmentOutcome get(int slot) {
+		if(this.actionIds[slot] == -1){
+			return null;
+		}
+		State o = this.encoder.decode(this.observations, slot * this.words);
+		State op = this.encoder.decode(this.nextObservations, slot * this.words);
+		return new EnvironmentOutcome(o, this.actions.get(this.actionIds[slot]), op, this.rewards[slot], this.terminated[slot]);
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.actionIds, -1);
+	}
+
+	/**
+	 * Returns the number of words of an encoded state, or -1 if no experience has been stored.
+	 * @return the number of words of an encoded state
+	 */
+	public int encodedLength() {
+		return this.words;
+	}
+
+	protected int actionIndex(Action a){
+		Integer index = this.actionIndices.get(a);
+		if(index == null){
+			index = this.actions.size();
+			this.actions.add(a);
+			this.actionIndices.put(a, index);
+		}
+		return index;
+	}
+
+}
@@ -0,0 +1,38 @@
+package burlap.behavior.singleagent.learning.experiencereplay;
+
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+
+/**
+ * A fixed number of slots in which an {@link ExperienceMemory} stores its experiences. {@link ObjectExperienceBuffer} keeps the
+ * {@link EnvironmentOutcome} objects themselves, while {@link EncodedExperienceBuffer} keeps each experience as primitive arrays
+ * in a ring buffer and decodes it when it is read.
+ */
+public interface ExperienceBuffer {
+
+	/**
+	 * Returns the number of slots.
+	 * @return the number of slots
+	 */
+	int capacity();
+
+	/**
+	 * Stores an experience in a slot, replacing any experience stored there.
+	 * @param slot the slot
+	 * @param eo the experience
+	 */
+	void set(int slot, EnvironmentOutcome eo);
+
+	/**
+	 * Returns the experience stored in a slot. Depending on the implementation, this may be a new object decoded from the stored
+	 * data rather than the object that was stored.
+	 * @param slot the slot
+	 * @return the experience stored in the slot
+	 */
+	EnvironmentOutcome get(int slot);
+
+	/**
+	 * Removes all experiences.
+	 */
+	void clear();
+
+}
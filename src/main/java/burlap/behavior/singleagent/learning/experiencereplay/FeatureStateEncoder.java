@@ -0,0 +1,77 @@
+package burlap.behavior.singleagent.learning.experiencereplay;
+
+import burlap.behavior.functionapproximation.dense.DenseStateFeatures;
+import burlap.mdp.core.state.FeatureVectorState;
+import burlap.mdp.core.state.State;
+
+/**
+ * A {@link StateEncoder} that encodes states as their dense feature vectors, stored as the raw bits of each double, and decodes them as
+ * {@link FeatureVectorState}s. The original states cannot be recovered, so a learner replaying these experiences must compute its
+ * values from the feature vectors, for example with a {@link burlap.behavior.functionapproximation.dense.NumericVariableFeatures} over
+ * {@link FeatureVectorState}s, and should see the same {@link FeatureVectorState}s when it acts, for example through a
+ * {@link burlap.mdp.auxiliary.StateMapping}.
+ * <p>
+ * This encoder reuses a feature buffer, so it must not be used concurrently.
+ */
+public class FeatureStateEncoder implements StateEncoder {
+
+	protected DenseStateFeatures features;
+
+	protected double [] buffer;
+
+	/**
+	 * The length of the encoded feature vectors; -1 until a state is encoded
+	 */
+	protected int length = -1;
+
+
+	/**
+	 * Initializes.
+	 * @param features the feature extractor that encodes states
+	 */
+	public FeatureStateEncoder(DenseStateFeatures features) {
+		this.features = features;
+	}
+
+	@Override
+	public int encodedLength(State s) {
+		if(this.length == -1){
+			this.length = s instanceof FeatureVectorState ? ((FeatureVectorState)s).values().length : this.features.features(s).length;
+		}
+		return this.length;
+	}
+
+	@Override
+	public void encode(State s, long [] buffer, int offset) {
+		double [] f;
+		int n;
+		if(s instanceof FeatureVectorState){
+			f = ((FeatureVectorState)s).values();
+			n = f.length;
+		}
+		else if(this.buffer == null){
+			f = this.buffer = this.features.features(s);
+			n = f.length;
+		}
+		else{
+			f = this.buffer;
+			n = this.features.features(s, f, 0);
+		}
+		if(n != this.encodedLength(s)){
+			throw new RuntimeException("Feature vector of length " + n + " does not match the encoded length " + this.length);
+		}
+		for(int i = 0; i < n; i++){
+			buffer[offset+i] = Double.doubleToRawLongBits(f[i]);
+		}
+	}
+
+	@Override
+	public State decode(long [] buffer, int offset) {
+		double [] f = new double[this.length];
+		for(int i = 0; i < f.length; i++){
+			f[i] = Double.longBitsToDouble(buffer[offset+i]);
+		}
+		return new FeatureVectorState(f);
+	}
+
+}
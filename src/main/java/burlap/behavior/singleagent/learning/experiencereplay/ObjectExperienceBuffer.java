@@ -0,0 +1,43 @@
+package burlap.behavior.singleagent.learning.experiencereplay;
+
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+
+import java.util.Arrays;
+
+/**
+ * An {@link ExperienceBuffer} that stores the {@link EnvironmentOutcome} objects themselves.
+ */
+public class ObjectExperienceBuffer implements ExperienceBuffer {
+
+	protected EnvironmentOutcome [] experiences;
+
+
+	/**
+	 * Initializes.
+	 * @param capacity the number of slots
+	 */
+	public ObjectExperienceBuffer(int capacity) {
+		this.experiences = new EnvironmentOutcome[capacity];
+	}
+
+	@Override
+	public int capacity() {
+		return this.experiences.length;
+	}
+
+	@Override
+	public void set(int slot, EnvironmentOutcome eo) {
+		this.experiences[slot] = eo;
+	}
+
+	@Override
+	public EnvironmentOutcome get(int slot) {
+		return this.experiences[slot];
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.experiences, null);
+	}
+
+}
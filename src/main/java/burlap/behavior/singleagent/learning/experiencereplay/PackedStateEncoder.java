@@ -0,0 +1,55 @@
+package burlap.behavior.singleagent.learning.experiencereplay;
+
+import burlap.mdp.core.state.State;
+import burlap.statehashing.packed.PackedHashableState;
+import burlap.statehashing.packed.PackedHashableStateFactory;
+
+import java.util.Arrays;
+
+/**
+ * A {@link StateEncoder} that encodes states as the packed bit keys of a {@link PackedHashableStateFactory}, so decoded states are
+ * equal to the encoded states. The factory's requirements apply: every state must have the same structure, and states must be
+ * mutable to be decoded. The factory should not retain source states, or the encoding keeps them on the heap anyway.
+ */
+public class PackedStateEncoder implements StateEncoder {
+
+	protected PackedHashableStateFactory factory;
+
+	/**
+	 * The number of words of a packed key; -1 until a state is encoded
+	 */
+	protected int words = -1;
+
+
+	/**
+	 * Initializes.
+	 * @param factory the factory that packs and decodes states
+	 */
+	public PackedStateEncoder(PackedHashableStateFactory factory) {
+		this.factory = factory;
+	}
+
+	@Override
+	public int encodedLength(State s) {
+		if(this.words == -1){
+			this.words = this.key(s).length;
+		}
+		return this.words;
+	}
+
+	@Override
+	public void encode(State s, long [] buffer, int offset) {
+		long [] key = this.key(s);
+		System.arraycopy(key, 0, buffer, offset, key.length);
+	}
+
+	@Override
+	public State decode(long [] buffer, int offset) {
+		return this.factory.decode(Arrays.copyOfRange(buffer, offset, offset + this.words));
+	}
+
+	protected long [] key(State s){
+		return ((PackedHashableState)this.factory.hashState(s)).key();
+	}
+
+}
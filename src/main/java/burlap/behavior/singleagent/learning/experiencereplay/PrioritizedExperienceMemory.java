@@ -0,0 +1,215 @@
+package burlap.behavior.singleagent.learning.experiencereplay;
+
+import burlap.datastructures.SumTree;
+import burlap.debugtools.RandomFactory;
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A fixed size memory with prioritized experience replay [1]. Experience i is sampled with probability p_i / \sum_j p_j, where its
+ * priority is p_i = (|d_i| + e)^alpha for its last reported TD error d_i, and new experiences get the largest priority reported so far,
+ * so that each is likely to be replayed at least once. Each sample has the importance-sampling weight
+ * w_i = (N P(i))^(-beta) / max_j w_j, where N is the number of stored experiences, which corrects the bias of the sampling when beta is 1.
+ * A learner reports TD errors back with {@link #updatePriorities(int[], double[])}.
+ * <p>
+ * Priorities are kept in a {@link SumTree}, so adding an experience, updating a priority, and sampling an experience take O(log N) time.
+ * A batch of n experiences is sampled by splitting the total priority into n equal ranges and sampling one experience from each, with
+ * replacement. When the memory is full, a new experience replaces the oldest one. The id of an experience is its slot, so a priority
+ * update for an experience that has since been replaced applies to the experience that replaced it.
+ * <p>
+ * Experiences are stored in an {@link ExperienceBuffer}; by default an {@link ObjectExperienceBuffer}, but an {@link EncodedExperienceBuffer}
+ * stores them as primitive arrays, which is much smaller for large memories.
+ * <p>
+ * [1] Schaul, Tom, et al. "Prioritized experience replay." arXiv preprint arXiv:1511.05952 (2015).
+ */
+public class PrioritizedExperienceMemory implements PrioritizedMemory {
+
+	/**
+	 * The stored experiences
+	 */
+	protected ExperienceBuffer buffer;
+
+	/**
+	 * The priority of each slot
+	 */
+	protected SumTree priorities;
+
+	/**
+	 * The slot in which the next experience is stored
+	 */
+	protected int next = 0;
+
+	/**
+	 * The number of stored experiences
+	 */
+	protected int size = 0;
+
+	/**
+	 * The exponent applied to TD errors to compute priorities; 0 samples uniformly
+	 */
+	protected double alpha;
+
+	/**
+	 * The exponent of the importance-sampling weights; 1 fully corrects the sampling bias
+	 */
+	protected double beta;
+
+	/**
+	 * The constant added to the magnitude of TD errors, so that no experience has priority 0
+	 */
+	protected double epsilon = 1e-6;
+
+	/**
+	 * The largest priority so far, given to new experiences
+	 */
+	protected double maxPriority = 1.;
+
+
+	/**
+	 * Initializes with alpha = 0.6, beta = 0.4, and experiences stored as objects.
+	 * @param size the number of experiences to store
+	 */
+	public PrioritizedExperienceMemory(int size) {
+		this(size, 0.6, 0.4);
+	}
+
+	/**
+	 * Initializes with experiences stored as objects.
+	 * @param size the number of experiences to store
+	 * @param alpha the exponent applied to TD errors to compute priorities; 0 samples uniformly
+	 * @param beta the exponent of the importance-sampling weights; 1 fully corrects the sampling bias
+	 */
+	public PrioritizedExperienceMemory(int size, double alpha, double beta) {
+		this(new ObjectExperienceBuffer(size), alpha, beta);
+	}
+
+	/**
+	 * Initializes with the buffer in which experiences are stored; its capacity is the number of experiences stored.
+	 * @param buffer the buffer in which experiences are stored
+	 * @param alpha the exponent applied to TD errors to compute priorities; 0 samples uniformly
+	 * @param beta the exponent of the importance-sampling weights; 1 fully corrects the sampling bias
+	 */
+	public PrioritizedExperienceMemory(ExperienceBuffer buffer, double alpha, double beta) {
+		if(buffer.capacity() < 1){
+			throw new RuntimeException("PrioritizedExperienceMemory requires memory size > 0; was request size of " + buffer.capacity());
+		}
+		this.buffer = buffer;
+		this.priorities = new SumTree(buffer.capacity());
+		this.alpha = alpha;
+		this.beta = beta;
+	}
+
+	public double getAlpha() {
+		return alpha;
+	}
+
+	/**
+	 * Sets the exponent applied to TD errors to compute priorities. Only priorities updated afterwards use it.
+	 * @param alpha the exponent applied to TD errors; 0 samples uniformly
+	 */
+	public void setAlpha(double alpha) {
+		this.alpha = alpha;
+	}
+
+	public double getBeta() {
+		return beta;
+	}
+
+	/**
+	 * Sets the exponent of the importance-sampling weights, which is typically annealed toward 1 over the course of learning.
+	 * @param beta the exponent of the importance-sampling weights; 1 fully corrects the sampling bias
+	 */
+	public void setBeta(double beta) {
+		this.beta = beta;
+	}
+
+	public double getEpsilon() {
+		return epsilon;
+	}
+
+	public void setEpsilon(double epsilon) {
+		this.epsilon = epsilon;
+	}
+
+	/**
+	 * Returns the number of stored experiences.
+	 * @return the number of stored experiences
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the priority of the experience with the given id.
+	 * @param id the id of the experience
+	 * @return the priority of the experience
+	 */
+	public double priority(int id) {
+		return this.priorities.get(id);
+	}
+
+	@Override
+	public void addExperience(EnvironmentOutcome eo) {
+		this.buffer.set(this.next, eo);
+		this.priorities.set(this.next, this.maxPriority);
+		this.next = (this.next + 1) % this.buffer.capacity();
+		this.size = Math.min(this.size + 1, this.buffer.capacity());
+	}
+
+	@Override
+	public List<EnvironmentOutcome> sampleExperiences(int n) {
+		return this.samplePrioritized(n).experiences;
+	}
+
+	@Override
+	public PrioritizedSample samplePrioritized(int n) {
+
+		if(this.size == 0){
+			return new PrioritizedSample(new ArrayList<EnvironmentOutcome>(), new int[0], new double[0]);
+		}
+
+		List<EnvironmentOutcome> experiences = new ArrayList<EnvironmentOutcome>(n);
+		int [] ids = new int[n];
+		double [] weights = new double[n];
+
+		Random r = RandomFactory.getMapped(0);
+		double total = this.priorities.total();
+		double segment = total / n;
+
+		//w_i / max_j w_j = (p_i / p_min)^(-beta), since the largest weight belongs to the smallest priority
+		double minPriority = this.priorities.min();
+		for(int i = 0; i < n; i++){
+			int id = this.priorities.find((i + r.nextDouble()) * segment);
+			ids[i] = id;
+			weights[i] = Math.pow(this.priorities.get(id) / minPriority, -this.beta);
+			experiences.add(this.buffer.get(id));
+		}
+
+		return new PrioritizedSample(experiences, ids, weights);
+	}
+
+	@Override
+	public void updatePriorities(int [] ids, double [] tdErrors) {
+		for(int i = 0; i < ids.length; i++){
+			if(Double.isNaN(tdErrors[i])){
+				continue;
+			}
+			double p = Math.pow(Math.abs(tdErrors[i]) + this.epsilon, this.alpha);
+			this.priorities.set(ids[i], p);
+			this.maxPriority = Math.max(this.maxPriority, p);
+		}
+	}
+
+	@Override
+	public void resetMemory() {
+		this.buffer.clear();
+		this.priorities.clear();
+		this.next = 0;
+		this.size = 0;
+		this.maxPriority = 1.;
+	}
+
+}
@@ -0,0 +1,27 @@
+package burlap.behavior.singleagent.learning.experiencereplay;
+
+/**
+ * An {@link ExperienceMemory} that samples experiences non-uniformly, according to priorities that a learner updates with the
+ * temporal difference (TD) errors it computes for them. Since the sampling is biased, each sample carries an importance-sampling
+ * weight by which a learner should scale its update.
+ * {@link burlap.behavior.singleagent.learning.tdmethods.vfa.ApproximateQLearning} uses these methods when its memory implements
+ * this interface.
+ */
+public interface PrioritizedMemory extends ExperienceMemory {
+
+	/**
+	 * Samples up to n experiences according to their priorities, along with the ids by which their priorities are updated and their
+	 * importance-sampling weights.
+	 * @param n the desired number of experiences to sample
+	 * @return the sampled experiences, ids and weights
+	 */
+	PrioritizedSample samplePrioritized(int n);
+
+	/**
+	 * Updates the priorities of sampled experiences from their new TD errors. Entries whose TD error is NaN are left unchanged.
+	 * @param ids the ids of the experiences, as returned in a {@link PrioritizedSample}
+	 * @param tdErrors the TD error of each experience
+	 */
+	void updatePriorities(int [] ids, double [] tdErrors);
+
+}
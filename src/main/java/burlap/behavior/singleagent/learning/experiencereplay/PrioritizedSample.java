@@ -0,0 +1,35 @@
+package burlap.behavior.singleagent.learning.experiencereplay;
+
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+
+import java.util.List;
+
+/**
+ * The experiences sampled from a {@link PrioritizedMemory}, along with the id of each experience, by which its priority is updated,
+ * and its importance-sampling weight.
+ */
+public class PrioritizedSample {
+
+	/**
+	 * The sampled experiences
+	 */
+	public List<EnvironmentOutcome> experiences;
+
+	/**
+	 * The id of each sampled experience
+	 */
+	public int [] ids;
+
+	/**
+	 * The importance-sampling weight of each sampled experience
+	 */
+	public double [] weights;
+
+
+	public PrioritizedSample(List<EnvironmentOutcome> experiences, int [] ids, double [] weights) {
+		this.experiences = experiences;
+		this.ids = ids;
+		this.weights = weights;
+	}
+
+}
@@ -0,0 +1,34 @@
+package burlap.behavior.singleagent.learning.experiencereplay;
+
+import burlap.mdp.core.state.State;
+
+/**
+ * Encodes states as fixed-length rows of longs and decodes them back, so that an {@link EncodedExperienceBuffer} can store states
+ * in primitive arrays rather than as state objects. Every state must encode to the same number of words.
+ */
+public interface StateEncoder {
+
+	/**
+	 * Returns the number of words to which the given state, and every other state, encodes.
+	 * @param s a state
+	 * @return the number of words of an encoded state
+	 */
+	int encodedLength(State s);
+
+	/**
+	 * Writes the encoding of a state into a buffer.
+	 * @param s the state
+	 * @param buffer the buffer
+	 * @param offset the position at which the encoding is written
+	 */
+	void encode(State s, long [] buffer, int offset);
+
+	/**
+	 * Returns a new state decoded from an encoding in a buffer.
+	 * @param buffer the buffer
+	 * @param offset the position of the encoding
+	 * @return the decoded state
+	 */
+	State decode(long [] buffer, int offset);
+
+}
@@ -0,0 +1,771 @@
+package burlap.behavior.singleagent.learning.lspi;
+
+import burlap.behavior.functionapproximation.dense.DenseStateActionFeatures;
+import burlap.debugtools.RandomFactory;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.action.ActionType;
+import burlap.mdp.core.action.ActionUtils;
+import burlap.mdp.singleagent.SADomain;
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.factory.LinearSolverFactory;
+import org.ejml.interfaces.linsol.LinearSolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An LSTDQ [1] engine that evaluates the greedy policy of a set of linear Q-function weights on a {@link SARSData} dataset
+ * and is designed to be called repeatedly, as it is by {@link LSPI}. The state-action features of every sample, phi(s, a),
+ * and the features of every applicable action in every next state, phi(s', a'), are extracted once, the first time a sample
+ * is seen, and cached, so that later policy iterations evaluate the greedy next action of each sample with dot products
+ * against the cached features rather than by querying the {@link DenseStateActionFeatures} again. Cached features
+ * whose fraction of non-zero values is at most {@link #setSparsityThreshold(double)} are stored sparsely and all updates iterate
+ * only over their non-zero values.
+ * <p>
+ * Two solvers are provided, selected with {@link #setSolverType(SolverType)}:
+ * <ul>
+ *     <li>{@link SolverType#SHERMAN_MORRISON} (default) maintains the inverse matrix B of the original optimized LSTDQ
+ *     algorithm and applies a Sherman-Morrison rank-one update for each sample in place, using preallocated buffers.</li>
+ *     <li>{@link SolverType#LEAST_SQUARES} accumulates the policy-independent statistics sum phi phi^T and sum phi r
+ *     and the policy-dependent statistic sum phi phi'^T, and solves the resulting linear system A w = b once per call
+ *     with a QR decomposition. A is not symmetric, so a Cholesky decomposition does not apply.</li>
+ * </ul>
+ * Both solvers start from A = I / identityScalar, so they produce the same weights up to floating point error.
+ * <p>
+ * The dataset is assumed to only grow by appending samples. When {@link #solve(double[])} is called with the same policy
+ * weights as the previous call, only the samples appended since that call are processed; when the policy weights differ, the
+ * policy-dependent statistics are recomputed from the cached features. If samples are removed from the dataset, or
+ * modified, call {@link #reset()}; a dataset that becomes smaller than the number of cached samples is reset automatically.
+ * If the feature vectors grow as new samples are seen (for instance, because features are generated on the fly), missing
+ * features of earlier samples are treated as zero.
+ * <p>
+ * 1. Lagoudakis, Michail G., and Ronald Parr. "Least-squares policy iteration." The Journal of Machine Learning Research 4 (2003): 1107-1149.
+ */
+public class IncrementalLSTDQ {
+
+	/**
+	 * The solvers an {@link IncrementalLSTDQ} can use.
+	 */
+	public enum SolverType{
+		/**
+		 * In-place Sherman-Morrison rank-one updates of the inverse matrix for each sample.
+		 */
+		SHERMAN_MORRISON,
+
+		/**
+		 * Accumulation of A and b and a single QR solve.
+		 */
+		LEAST_SQUARES
+	}
+
+
+	/**
+	 * The state-action features
+	 */
+	protected DenseStateActionFeatures saFeatures;
+
+	/**
+	 * The action types used to generate the applicable actions of next states
+	 */
+	protected List<ActionType> actionTypes;
+
+	/**
+	 * The discount factor
+	 */
+	protected double gamma;
+
+	/**
+	 * The initial identity matrix scalar; A starts as the identity divided by this value.
+	 */
+	protected double identityScalar = 100.;
+
+	/**
+	 * The solver used
+	 */
+	protected SolverType solverType = SolverType.SHERMAN_MORRISON;
+
+	/**
+	 * The maximum fraction of non-zero values for which a feature vector is cached sparsely
+	 */
+	protected double sparsityThreshold = 0.5;
+
+	/**
+	 * The random generator used to break ties between greedy next actions
+	 */
+	protected Random rand = RandomFactory.getMapped(0);
+
+
+	/**
+	 * The dataset whose samples are cached
+	 */
+	protected SARSData dataset;
+
+	/**
+	 * The cached state-action features of each sample
+	 */
+	protected List<CachedFeatures> phi = new ArrayList<CachedFeatures>();
+
+	/**
+	 * The cached features of each applicable action in the next state of each sample
+	 */
+	protected List<CachedFeatures[]> nextPhi = new ArrayList<CachedFeatures[]>();
+
+	/**
+	 * The reward of each cached sample
+	 */
+	protected double [] rewards = new double[64];
+
+	/**
+	 * The number of features
+	 */
+	protected int nf;
+
+
+	/**
+	 * The policy weights of the current policy-dependent statistics; null for all-zero weights.
+	 */
+	protected double [] policyWeights;
+
+	/**
+	 * Whether the policy-dependent statistics are valid for {@link #policyWeights}
+	 */
+	protected boolean hasPolicy = false;
+
+	/**
+	 * The number of samples included in the policy-dependent statistics
+	 */
+	protected int numPolicySamples;
+
+	/**
+	 * The number of samples included in the policy-independent statistics
+	 */
+	protected int numStatSamples;
+
+	/**
+	 * The sum of phi r over all included samples
+	 */
+	protected double [] b;
+
+	/**
+	 * The nf x nf row-major inverse matrix of the {@link SolverType#SHERMAN_MORRISON} solver
+	 */
+	protected double [] inverse;
+
+	/**
+	 * The nf x nf row-major I / identityScalar + sum phi phi^T of the {@link SolverType#LEAST_SQUARES} solver
+	 */
+	protected double [] phiPhi;
+
+	/**
+	 * The nf x nf row-major sum phi phi'^T of the {@link SolverType#LEAST_SQUARES} solver
+	 */
+	protected double [] phiNext;
+
+	/**
+	 * Buffer holding B phi
+	 */
+	protected double [] bPhi;
+
+	/**
+	 * Buffer holding (phi - gamma phi')^T B
+	 */
+	protected double [] uB;
+
+	/**
+	 * The most recently computed weights
+	 */
+	protected double [] weights;
+
+
+	/**
+	 * Initializes.
+	 * @param domain the domain whose action types generate the applicable actions of next states
+	 * @param gamma the discount factor
+	 * @param saFeatures the state-action features
+	 */
+	public IncrementalLSTDQ(SADomain domain, double gamma, DenseStateActionFeatures saFeatures) {
+		this(domain.getActionTypes(), gamma, saFeatures);
+	}
+
+	/**
+	 * Initializes.
+	 * @param actionTypes the action types that generate the applicable actions of next states
+	 * @param gamma the discount factor
+	 * @param saFeatures the state-action features
+	 */
+	public IncrementalLSTDQ(List<ActionType> actionTypes, double gamma, DenseStateActionFeatures saFeatures) {
+		this.actionTypes = actionTypes;
+		this.gamma = gamma;
+		this.saFeatures = saFeatures;
+	}
+
+
+	public double getGamma() {
+		return gamma;
+	}
+
+	public DenseStateActionFeatures getSaFeatures() {
+		return saFeatures;
+	}
+
+	public double getIdentityScalar() {
+		return identityScalar;
+	}
+
+	/**
+	 * Sets the initial identity matrix scalar and discards the accumulated statistics. Default is 100.
+	 * @param identityScalar the initial identity matrix scalar
+	 */
+	public void setIdentityScalar(double identityScalar) {
+		this.identityScalar = identityScalar;
+		this.resetStatistics();
+	}
+
+	public SolverType getSolverType() {
+		return solverType;
+	}
+
+	/**
+	 * Sets the solver and discards the accumulated statistics. Default is {@link SolverType#SHERMAN_MORRISON}.
+	 * @param solverType the solver to use
+	 */
+	public void setSolverType(SolverType solverType) {
+		this.solverType = solverType;
+		this.resetStatistics();
+	}
+
+	/**
+	 * Sets the maximum fraction of non-zero values for which a feature vector is cached sparsely. Default is 0.5. Only affects
+	 * samples that are cached after this call.
+	 * @param sparsityThreshold the maximum fraction of non-zero values for sparse storage
+	 */
+	public void setSparsityThreshold(double sparsityThreshold) {
+		this.sparsityThreshold = sparsityThreshold;
+	}
+
+	/**
+	 * Returns the dataset whose samples are cached.
+	 * @return the dataset whose samples are cached.
+	 */
+	public SARSData getDataset() {
+		return dataset;
+	}
+
+	/**
+	 * Sets the dataset to evaluate and discards all cached features and statistics if it differs from the current dataset.
+	 * @param dataset the dataset
+	 */
+	public void setDataset(SARSData dataset) {
+		if(this.dataset != dataset){
+			this.dataset = dataset;
+			this.reset();
+		}
+	}
+
+	/**
+	 * Returns the number of features.
+	 * @return the number of features.
+	 */
+	public int numFeatures() {
+		return nf;
+	}
+
+	/**
+	 * Returns the number of samples whose features are cached.
+	 * @return the number of samples whose features are cached.
+	 */
+	public int numCachedSamples() {
+		return this.phi.size();
+	}
+
+	/**
+	 * Returns the most recently computed weights, or null if {@link #solve(double[])} has not been called.
+	 * @return the most recently computed weights
+	 */
+	public double [] getWeights() {
+		return weights;
+	}
+
+
+	/**
+	 * Discards all cached features and accumulated statistics.
+	 */
+	public void reset(){
+		this.phi.clear();
+		this.nextPhi.clear();
+		this.nf = 0;
+		this.resetStatistics();
+	}
+
+	/**
+	 * Discards the accumulated statistics, keeping the cached features.
+	 */
+	protected void resetStatistics(){
+		this.hasPolicy = false;
+		this.policyWeights = null;
+		this.numPolicySamples = 0;
+		this.numStatSamples = 0;
+		this.inverse = null;
+		this.phiPhi = null;
+		this.phiNext = null;
+		this.b = null;
+	}
+
+
+	/**
+	 * Extracts and caches the features of the samples appended to the dataset since the last call.
+	 * @return the number of newly cached samples
+	 */
+	public int absorbNewSamples(){
+		if(this.dataset == null){
+			throw new RuntimeException("IncrementalLSTDQ cannot absorb samples because no dataset has been set.");
+		}
+		if(this.dataset.size() < this.phi.size()){
+			this.reset();
+		}
+		int start = this.phi.size();
+		int n = this.dataset.size();
+		if(n > this.rewards.length){
+			this.rewards = Arrays.copyOf(this.rewards, Math.max(n, this.rewards.length*2));
+		}
+		int maxLength = this.nf;
+		for(int i = start; i < n; i++){
+			SARSData.SARS sars = this.dataset.get(i);
+			double [] f = this.saFeatures.features(sars.s, sars.a);
+			maxLength = Math.max(maxLength, f.length);
+			this.phi.add(this.cache(f));
+
+			List<Action> nextActions = ActionUtils.allApplicableActionsForTypes(this.actionTypes, sars.sp);
+			CachedFeatures [] next = new CachedFeatures[nextActions.size()];
+			for(int j = 0; j < next.length; j++){
+				double [] nextF = this.saFeatures.features(sars.sp, nextActions.get(j));
+				maxLength = Math.max(maxLength, nextF.length);
+				next[j] = this.cache(nextF);
+			}
+			this.nextPhi.add(next);
+			this.rewards[i] = sars.r;
+		}
+		if(maxLength > this.nf){
+			this.growFeatures(maxLength);
+		}
+		return n - start;
+	}
+
+
+	/**
+	 * Runs LSTDQ for the greedy policy of the given weights, absorbing any new samples in the dataset, and returns the new weights.
+	 * Weights beyond the length of policyWeights are treated as zero.
+	 * @param policyWeights the weights whose greedy policy is evaluated; null for all-zero weights
+	 * @return the new weights
+	 */
+	public double [] solve(double [] policyWeights){
+
+		this.absorbNewSamples();
+		int n = this.phi.size();
+
+		if(this.b == null){
+			this.initStatistics();
+		}
+
+		//policy-independent statistics
+		for(int i = this.numStatSamples; i < n; i++){
+			CachedFeatures f = this.phi.get(i);
+			f.addScaledTo(this.b, this.rewards[i]);
+			if(this.solverType == SolverType.LEAST_SQUARES){
+				f.addOuterTo(this.phiPhi, f, 1., this.nf);
+			}
+		}
+		this.numStatSamples = n;
+
+		//policy-dependent statistics
+		if(!this.hasPolicy || !Arrays.equals(this.policyWeights, policyWeights)){
+			this.policyWeights = policyWeights == null ? null : policyWeights.clone();
+			this.hasPolicy = true;
+			this.numPolicySamples = 0;
+			if(this.solverType == SolverType.SHERMAN_MORRISON){
+				this.initInverse();
+			}
+			else{
+				Arrays.fill(this.phiNext, 0.);
+			}
+		}
+		for(int i = this.numPolicySamples; i < n; i++){
+			CachedFeatures f = this.phi.get(i);
+			CachedFeatures next = this.greedyNext(i);
+			if(this.solverType == SolverType.SHERMAN_MORRISON){
+				this.shermanMorrisonUpdate(f, next);
+			}
+			else if(next != null){
+				f.addOuterTo(this.phiNext, next, 1., this.nf);
+			}
+		}
+		this.numPolicySamples = n;
+
+		if(this.solverType == SolverType.SHERMAN_MORRISON){
+			this.weights = multiply(this.inverse, this.b, this.nf);
+		}
+		else{
+			this.weights = this.solveLeastSquares();
+		}
+
+		return this.weights;
+	}
+
+
+	/**
+	 * Returns the cached features of the greedy next action of the given sample, or null if the next state has no applicable actions.
+	 * Ties are broken uniformly randomly.
+	 * @param i the sample index
+	 * @return the cached features of the greedy next action
+	 */
+	protected CachedFeatures greedyNext(int i){
+		CachedFeatures [] next = this.nextPhi.get(i);
+		if(next.length == 0){
+			return null;
+		}
+		int selected = 0;
+		int numTies = 1;
+		double maxQ = next[0].dot(this.policyWeights);
+		for(int j = 1; j < next.length; j++){
+			double q = next[j].dot(this.policyWeights);
+			if(q == maxQ){
+				numTies++;
+				//reservoir sampling over the tied actions
+				if(this.rand.nextInt(numTies) == 0){
+					selected = j;
+				}
+			}
+			else if(q > maxQ){
+				maxQ = q;
+				selected = j;
+				numTies = 1;
+			}
+		}
+		return next[selected];
+	}
+
+
+	/**
+	 * Applies the Sherman-Morrison rank-one update B -= (B phi)((phi - gamma phi')^T B) / (1 + (phi - gamma phi')^T B phi) in place.
+	 * @param f the state-action features
+	 * @param next the features of the greedy next action; null for zero features
+	 */
+	protected void shermanMorrisonUpdate(CachedFeatures f, CachedFeatures next){
+
+		int n = this.nf;
+		double [] B = this.inverse;
+
+		//B phi
+		for(int r = 0; r < n; r++){
+			this.bPhi[r] = f.dotRow(B, r*n);
+		}
+
+		//(phi - gamma phi')^T B
+		Arrays.fill(this.uB, 0.);
+		f.addScaledRowsTo(B, n, 1., this.uB);
+		if(next != null){
+			next.addScaledRowsTo(B, n, -this.gamma, this.uB);
+		}
+
+		double denominator = 1. + f.dot(this.uB);
+
+		for(int r = 0; r < n; r++){
+			double scale = this.bPhi[r] / denominator;
+			if(scale == 0.){
+				continue;
+			}
+			int offset = r*n;
+			for(int c = 0; c < n; c++){
+				B[offset+c] -= scale * this.uB[c];
+			}
+		}
+
+	}
+
+
+	/**
+	 * Solves (phiPhi - gamma phiNext) w = b with a QR decomposition.
+	 * @return the solution w
+	 */
+	protected double [] solveLeastSquares(){
+		int n = this.nf;
+		double [] a = new double[n*n];
+		for(int i = 0; i < a.length; i++){
+			a[i] = this.phiPhi[i] - this.gamma*this.phiNext[i];
+		}
+		LinearSolver<DenseMatrix64F> solver = LinearSolverFactory.leastSquares(n, n);
+		if(!solver.setA(DenseMatrix64F.wrap(n, n, a))){
+			throw new RuntimeException("IncrementalLSTDQ could not decompose the LSTDQ matrix.");
+		}
+		DenseMatrix64F x = new DenseMatrix64F(n, 1);
+		solver.solve(DenseMatrix64F.wrap(n, 1, this.b.clone()), x);
+		return x.getData();
+	}
+
+
+	/**
+	 * Allocates the statistics for the current number of features.
+	 */
+	protected void initStatistics(){
+		int n = this.nf;
+		this.b = new double[n];
+		this.bPhi = new double[n];
+		this.uB = new double[n];
+		this.numStatSamples = 0;
+		this.hasPolicy = false;
+		this.numPolicySamples = 0;
+		if(this.solverType == SolverType.SHERMAN_MORRISON){
+			this.inverse = new double[n*n];
+			this.phiPhi = null;
+			this.phiNext = null;
+		}
+		else{
+			this.inverse = null;
+			this.phiPhi = new double[n*n];
+			for(int i = 0; i < n; i++){
+				this.phiPhi[i*n+i] = 1. / this.identityScalar;
+			}
+			this.phiNext = new double[n*n];
+		}
+	}
+
+	/**
+	 * Sets the inverse matrix to the identity scaled by the identity scalar.
+	 */
+	protected void initInverse(){
+		int n = this.nf;
+		Arrays.fill(this.inverse, 0.);
+		for(int i = 0; i < n; i++){
+			this.inverse[i*n+i] = this.identityScalar;
+		}
+	}
+
+
+	/**
+	 * Grows the statistics to a larger number of features. Since the new features of earlier samples are zero, the new
+	 * block of A is I / identityScalar and is decoupled from the existing features, so the existing statistics remain valid.
+	 * @param newNf the new number of features
+	 */
+	protected void growFeatures(int newNf){
+		int oldNf = this.nf;
+		this.nf = newNf;
+		if(this.b == null){
+			return;
+		}
+		this.b = Arrays.copyOf(this.b, newNf);
+		this.bPhi = new double[newNf];
+		this.uB = new double[newNf];
+		if(this.inverse != null){
+			this.inverse = growSquare(this.inverse, oldNf, newNf, this.identityScalar);
+		}
+		if(this.phiPhi != null){
+			this.phiPhi = growSquare(this.phiPhi, oldNf, newNf, 1. / this.identityScalar);
+			this.phiNext = growSquare(this.phiNext, oldNf, newNf, 0.);
+		}
+	}
+
+
+	/**
+	 * Returns the cached representation of a feature vector.
+	 * @param f the feature vector
+	 * @return the cached representation
+	 */
+	protected CachedFeatures cache(double [] f){
+		int nnz = 0;
+		for(double v : f){
+			if(v != 0.){
+				nnz++;
+			}
+		}
+		if(nnz > this.sparsityThreshold * f.length){
+			return new CachedFeatures(null, f.clone());
+		}
+		int [] indices = new int[nnz];
+		double [] values = new double[nnz];
+		int k = 0;
+		for(int i = 0; i < f.length; i++){
+			if(f[i] != 0.){
+				indices[k] = i;
+				values[k] = f[i];
+				k++;
+			}
+		}
+		return new CachedFeatures(indices, values);
+	}
+
+
+	/**
+	 * Copies a row-major square matrix into a larger one, placing the given value on the new diagonal entries.
+	 * @param m the matrix
+	 * @param oldN the old dimension
+	 * @param newN the new dimension
+	 * @param diag the value of the new diagonal entries
+	 * @return the larger matrix
+	 */
+	protected static double [] growSquare(double [] m, int oldN, int newN, double diag){
+		double [] grown = new double[newN*newN];
+		for(int r = 0; r < oldN; r++){
+			System.arraycopy(m, r*oldN, grown, r*newN, oldN);
+		}
+		for(int i = oldN; i < newN; i++){
+			grown[i*newN+i] = diag;
+		}
+		return grown;
+	}
+
+	/**
+	 * Returns the product of a row-major square matrix and a vector.
+	 * @param m the matrix
+	 * @param v the vector
+	 * @param n the dimension
+	 * @return the product
+	 */
+	protected static double [] multiply(double [] m, double [] v, int n){
+		double [] result = new double[n];
+		for(int r = 0; r < n; r++){
+			double sum = 0.;
+			int offset = r*n;
+			for(int c = 0; c < n; c++){
+				sum += m[offset+c] * v[c];
+			}
+			result[r] = sum;
+		}
+		return result;
+	}
+
+
+	/**
+	 * A cached feature vector that is stored either densely, when {@link #indices} is null, or as parallel arrays of the indices
+	 * and values of its non-zero features.
+	 */
+	protected static class CachedFeatures{
+
+		/**
+		 * The indices of the non-zero features; null for dense storage.
+		 */
+		protected final int [] indices;
+
+		/**
+		 * The feature values
+		 */
+		protected final double [] values;
+
+		public CachedFeatures(int[] indices, double[] values) {
+			this.indices = indices;
+			this.values = values;
+		}
+
+		/**
+		 * Returns the dot product with a weight vector, treating missing weights as zero.
+		 * @param w the weight vector; null for all-zero weights
+		 * @return the dot product
+		 */
+		public double dot(double [] w){
+			if(w == null){
+				return 0.;
+			}
+			double sum = 0.;
+			if(this.indices == null){
+				int n = Math.min(w.length, this.values.length);
+				for(int i = 0; i < n; i++){
+					sum += this.values[i] * w[i];
+				}
+			}
+			else{
+				for(int k = 0; k < this.indices.length; k++){
+					int i = this.indices[k];
+					if(i < w.length){
+						sum += this.values[k] * w[i];
+					}
+				}
+			}
+			return sum;
+		}
+
+		/**
+		 * Returns the dot product with row of a row-major matrix.
+		 * @param m the matrix
+		 * @param offset the offset of the row in the matrix
+		 * @return the dot product
+		 */
+		public double dotRow(double [] m, int offset){
+			double sum = 0.;
+			if(this.indices == null){
+				for(int i = 0; i < this.values.length; i++){
+					sum += this.values[i] * m[offset+i];
+				}
+			}
+			else{
+				for(int k = 0; k < this.indices.length; k++){
+					sum += this.values[k] * m[offset+this.indices[k]];
+				}
+			}
+			return sum;
+		}
+
+		/**
+		 * Adds this vector, scaled, to the target vector.
+		 * @param target the target vector
+		 * @param scale the scale
+		 */
+		public void addScaledTo(double [] target, double scale){
+			if(this.indices == null){
+				for(int i = 0; i < this.values.length; i++){
+					target[i] += scale * this.values[i];
+				}
+			}
+			else{
+				for(int k = 0; k < this.indices.length; k++){
+					target[this.indices[k]] += scale * this.values[k];
+				}
+			}
+		}
+
+		/**
+		 * Adds scale * (this^T M) to the target vector, where M is an n x n row-major matrix.
+		 * @param m the matrix
+		 * @param n the dimension of the matrix
+		 * @param scale the scale
+		 * @param target the target vector
+		 */
+		public void addScaledRowsTo(double [] m, int n, double scale, double [] target){
+			int nnz = this.indices == null ? this.values.length : this.indices.length;
+			for(int k = 0; k < nnz; k++){
+				double v = scale * this.values[k];
+				if(v == 0.){
+					continue;
+				}
+				int offset = (this.indices == null ? k : this.indices[k]) * n;
+				for(int c = 0; c < n; c++){
+					target[c] += v * m[offset+c];
+				}
+			}
+		}
+
+		/**
+		 * Adds scale * (this other^T) to the n x n row-major target matrix.
+		 * @param target the target matrix
+		 * @param other the right-hand vector
+		 * @param scale the scale
+		 * @param n the dimension of the matrix
+		 */
+		public void addOuterTo(double [] target, CachedFeatures other, double scale, int n){
+			int nnz = this.indices == null ? this.values.length : this.indices.length;
+			int otherNnz = other.indices == null ? other.values.length : other.indices.length;
+			for(int k = 0; k < nnz; k++){
+				double v = scale * this.values[k];
+				if(v == 0.){
+					continue;
+				}
+				int offset = (this.indices == null ? k : this.indices[k]) * n;
+				for(int l = 0; l < otherNnz; l++){
+					target[offset + (other.indices == null ? l : other.indices[l])] += v * other.values[l];
+				}
+			}
+		}
+
+	}
+
+}
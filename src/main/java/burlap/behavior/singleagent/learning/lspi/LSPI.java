@@ -10,7 +10,6 @@ import burlap.behavior.singleagent.Episode;
 import burlap.behavior.singleagent.MDPSolver;
 import burlap.behavior.singleagent.learning.LearningAgent;
 import burlap.behavior.singleagent.learning.lspi.SARSCollector.UniformRandomSARSCollector;
-import burlap.behavior.singleagent.learning.lspi.SARSData.SARS;
 import burlap.behavior.singleagent.planning.Planner;
 import burlap.behavior.valuefunction.QProvider;
 import burlap.behavior.valuefunction.QValue;
@@ -148,6 +147,17 @@ public class LSPI extends MDPSolver implements QProvider, LearningAgent, Planner
 	 * The number of the most recent learning episodes to store.
 	 */
 	protected int													numEpisodesToStore;
+
+
+	/**
+	 * The solver used by {@link #LSTDQ()}
+	 */
+	protected IncrementalLSTDQ.SolverType							solverType = IncrementalLSTDQ.SolverType.SHERMAN_MORRISON;
+
+	/**
+	 * The LSTDQ engine that caches the features of the dataset
+	 */
+	protected IncrementalLSTDQ										lstdq;
 	
 	
 	
@@ -380,57 +390,76 @@ public class LSPI extends MDPSolver implements QProvider, LearningAgent, Planner
 
 	
 	/**
-	 * Runs LSTDQ on this object's current {@link SARSData} dataset.
+	 * Returns the solver used by {@link #LSTDQ()}.
+	 * @return the solver used by {@link #LSTDQ()}.
+	 */
+	public IncrementalLSTDQ.SolverType getSolverType() {
+		return solverType;
+	}
+
+	/**
+	 * Sets the solver used by {@link #LSTDQ()}. Default is {@link IncrementalLSTDQ.SolverType#SHERMAN_MORRISON}.
+	 * @param solverType the solver used by {@link #LSTDQ()}.
+	 */
+	public void setSolverType(IncrementalLSTDQ.SolverType solverType) {
+		this.solverType = solverType;
+	}
+
+
+	/**
+	 * Runs LSTDQ on this object's current {@link SARSData} dataset for the greedy policy of the current weights. The features
+	 * of each sample are extracted and cached by an {@link IncrementalLSTDQ} the first time the sample is seen, so repeated
+	 * calls, and calls after new samples have been appended to the dataset, do not query the state-action features for old samples.
 	 * @return the new weight matrix as a {@link SimpleMatrix} object.
 	 */
 	public SimpleMatrix LSTDQ(){
-		
-		//set our policy
-		Policy p = new GreedyQPolicy(this);
-		
-		//first we want to get all the features for all of our states in our data set; this is important if our feature database generates new features on the fly
-		List<SSFeatures> features = new ArrayList<LSPI.SSFeatures>(this.dataset.size());
-		int nf = 0;
-		for(SARS sars : this.dataset.dataset){
-			SSFeatures transitionFeatures = new SSFeatures(this.saFeatures.features(sars.s, sars.a), this.saFeatures.features(sars.sp, p.action(sars.sp)));
-			features.add(transitionFeatures);
-			nf = Math.max(nf, transitionFeatures.sActionFeatures.length);
-		}
 
-		SimpleMatrix B = SimpleMatrix.identity(nf).scale(this.identityScalar);
-		SimpleMatrix b = new SimpleMatrix(nf, 1);
-		
-		
-		
-		for(int i = 0; i < features.size(); i++){
+		IncrementalLSTDQ engine = this.lstdqEngine();
+		double [] w = engine.solve(this.currentWeights());
+		int nf = w.length;
 
-			SimpleMatrix phi = this.phiConstructor(features.get(i).sActionFeatures, nf);
-			SimpleMatrix phiPrime = this.phiConstructor(features.get(i).sPrimeActionFeatures, nf);
-			double r = this.dataset.get(i).r;
-			
+		this.vfa = new DenseStateActionLinearVFA(this.saFeatures, w.clone(), 0.);
 
-			SimpleMatrix numerator = B.mult(phi).mult(phi.minus(phiPrime.scale(gamma)).transpose()).mult(B);
-			SimpleMatrix denomenatorM = phi.minus(phiPrime.scale(this.gamma)).transpose().mult(B).mult(phi);
-			double denomenator = denomenatorM.get(0) + 1;
-			
-			B = B.minus(numerator.scale(1./denomenator));
-			b = b.plus(phi.scale(r));
-			
-			//DPrint.cl(0, "updated matrix for row " + i + "/" + features.size());
-			
+		return new SimpleMatrix(nf, 1, true, w);
+
+
+	}
+
+
+	/**
+	 * Returns the {@link IncrementalLSTDQ} engine for this object's dataset and parameters, creating a new one if any of
+	 * the features, discount factor, identity scalar, or solver changed since the last call.
+	 * @return the {@link IncrementalLSTDQ} engine
+	 */
+	protected IncrementalLSTDQ lstdqEngine(){
+		if(this.lstdq == null || this.lstdq.getSaFeatures() != this.saFeatures || this.lstdq.getGamma() != this.gamma){
+			this.lstdq = new IncrementalLSTDQ(this.actionTypes, this.gamma, this.saFeatures);
 		}
-		
-		
-		SimpleMatrix w = B.mult(b);
-		
-		this.vfa = this.vfa.copy();
-		for(int i = 0; i < nf; i++){
-			this.vfa.setParameter(i, w.get(i, 0));
+		if(this.lstdq.getIdentityScalar() != this.identityScalar){
+			this.lstdq.setIdentityScalar(this.identityScalar);
+		}
+		if(this.lstdq.getSolverType() != this.solverType){
+			this.lstdq.setSolverType(this.solverType);
+		}
+		this.lstdq.setDataset(this.dataset);
+		return this.lstdq;
+	}
+
+
+	/**
+	 * Returns the current weights of the value function approximation, or null if they have not been set.
+	 * @return the current weights
+	 */
+	protected double [] currentWeights(){
+		int n = this.vfa.numParameters();
+		if(n == 0){
+			return null;
+		}
+		double [] w = new double[n];
+		for(int i = 0; i < n; i++){
+			w[i] = this.vfa.getParameter(i);
 		}
-		
 		return w;
-		
-		
 	}
 	
 	/**
@@ -461,19 +490,6 @@ public class LSPI extends MDPSolver implements QProvider, LearningAgent, Planner
 	}
 	
 	
-	/**
-	 * Constructs the state-action feature vector as a {@link SimpleMatrix}.
-	 * @param features the state-action features
-	 * @param nf the total number of state-action features.
-	 * @return the state-action feature vector as a {@link SimpleMatrix}.
-	 */
-	protected SimpleMatrix phiConstructor(double [] features, int nf){
-		SimpleMatrix phi = new SimpleMatrix(nf, 1, true, features);
-
-		return phi;
-	}
-	
-	
 	@Override
 	public List<QValue> qValues(State s) {
 		
@@ -527,42 +543,12 @@ public class LSPI extends MDPSolver implements QProvider, LearningAgent, Planner
 	public void resetSolver() {
 		this.dataset.clear();
 		this.vfa.resetParameters();
+		this.lstdq = null;
 	}
 	
 	
 	
 	
-	/**
-	 * Pair of the the state-action features and the next state-action features.
-	 * @author James MacGlashan
-	 *
-	 */
-	protected class SSFeatures{
-		
-		/**
-		 * State-action features
-		 */
-		public double[] sActionFeatures;
-		
-		/**
-		 * Next state-action features.
-		 */
-		public double[] sPrimeActionFeatures;
-		
-		
-		/**
-		 * Initializes.
-		 * @param sActionFeatures state-action features
-		 * @param sPrimeActionFeatures next state-action features
-		 */
-		public SSFeatures(double[] sActionFeatures, double[] sPrimeActionFeatures){
-			this.sActionFeatures = sActionFeatures;
-			this.sPrimeActionFeatures = sPrimeActionFeatures;
-		}
-		
-	}
-
-
 	@Override
 	public Episode runLearningEpisode(Environment env) {
 		return this.runLearningEpisode(env, -1);
@@ -0,0 +1,340 @@
+package burlap.behavior.singleagent.learning.modellearning.modelplanners;
+
+import burlap.datastructures.HashIndexedHeap;
+import burlap.debugtools.DPrint;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.SADomain;
+import burlap.mdp.singleagent.model.FullModel;
+import burlap.mdp.singleagent.model.TransitionProb;
+import burlap.statehashing.HashableState;
+import burlap.statehashing.HashableStateFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link VIModelLearningPlanner} that replans incrementally rather than resetting and rerunning VI every time the model changes.
+ * The value function is kept as a warm start, only states that become newly reachable are added to it, and changes are propagated
+ * with prioritized Bellman backups in the manner of {@link burlap.behavior.singleagent.planning.stochastic.valueiteration.PrioritizedSweeping}:
+ * the planner records a back pointer graph from each state to the states that can transition to it, along with the maximum
+ * probability of that transition, and when the value of a state changes by delta, the priority of each predecessor is raised
+ * to gamma times that probability times delta. Backups stop when no state has a priority greater than the maximum delta of VI,
+ * or when the maximum number of backups per replan is reached (see {@link #setMaxBackups(int)}).
+ * <p>
+ * When the model of a state changes, the state's transitions are re-expanded, so any new successors are added to the state space
+ * and the back pointer graph, and the state is backed up first. Back pointers of transitions that the model no longer produces are
+ * kept; they can only cause extra backups.
+ */
+public class IncrementalVIModelLearningPlanner extends VIModelLearningPlanner {
+
+	/**
+	 * The back pointer node of each state in the value function
+	 */
+	protected Map<HashableState, BackupNode> nodes = new HashMap<HashableState, BackupNode>();
+
+	/**
+	 * The priority queue of back pointer nodes
+	 */
+	protected HashIndexedHeap<BackupNode> priorityNodes = new HashIndexedHeap<BackupNode>(new BackupNodeComparator());
+
+	/**
+	 * The maximum number of Bellman backups per replan; -1 for the maximum number of VI iterations times the number of states.
+	 */
+	protected int maxBackups = -1;
+
+
+	/**
+	 * Initializes
+	 * @param domain model domain
+	 * @param model the learned model to use for planning
+	 * @param gamma discount factor
+	 * @param hashingFactory the hashing factory
+	 * @param maxDelta the priority below which backups stop
+	 * @param maxIterations the maximum number of Bellman backups per replan, in multiples of the number of states
+	 */
+	public IncrementalVIModelLearningPlanner(SADomain domain, FullModel model, double gamma, HashableStateFactory hashingFactory, double maxDelta, int maxIterations) {
+		super(domain, model, gamma, hashingFactory, maxDelta, maxIterations);
+	}
+
+
+	/**
+	 * Sets the maximum number of Bellman backups per replan. Default is -1, which sets the maximum to the maximum number of VI
+	 * iterations times the number of states, the number of backups a full VI run can perform.
+	 * @param maxBackups the maximum number of Bellman backups per replan; -1 for the VI equivalent
+	 */
+	public void setMaxBackups(int maxBackups) {
+		this.maxBackups = maxBackups;
+	}
+
+
+	@Override
+	public void modelChanged(State changedState) {
+
+		HashableState sh = this.hashingFactory.hashState(changedState);
+		this.observedStates.add(sh);
+
+		List<BackupNode> seeds = new ArrayList<BackupNode>();
+		BackupNode node = this.nodes.get(sh);
+		if(node != null){
+			//the transitions of this state changed, so find its new successors
+			this.expand(node, seeds);
+			seeds.add(node);
+		}
+		this.addObservedStates(seeds);
+
+		this.sweep(seeds);
+
+	}
+
+
+	/**
+	 * Incrementally replans after previously unseen states are observed, adding the states reachable from them and propagating
+	 * their values with prioritized backups.
+	 */
+	@Override
+	protected void rerunVI() {
+		List<BackupNode> seeds = new ArrayList<BackupNode>();
+		this.addObservedStates(seeds);
+		this.sweep(seeds);
+	}
+
+
+	@Override
+	public boolean performReachabilityFrom(State si) {
+		HashableState sih = this.stateHash(si);
+		if(valueFunction.containsKey(sih) && this.foundReachableStates){
+			return false;
+		}
+		this.addReachableStates(sih, new ArrayList<BackupNode>());
+		this.hasRunVI = false;
+		return true;
+	}
+
+
+	@Override
+	public void resetSolver() {
+		super.resetSolver();
+		this.nodes.clear();
+		this.priorityNodes = new HashIndexedHeap<BackupNode>(new BackupNodeComparator());
+	}
+
+
+	/**
+	 * Adds the states reachable from every observed state that is not yet in the value function.
+	 * @param added the list to which the nodes of added states are appended
+	 */
+	protected void addObservedStates(List<BackupNode> added){
+		for(HashableState sh : this.observedStates){
+			if(!this.valueFunction.containsKey(sh)){
+				this.addReachableStates(sh, added);
+			}
+		}
+	}
+
+
+	/**
+	 * Adds every state reachable from the given state that is not yet in the value function, initializing its value and recording
+	 * its back pointers.
+	 * @param sih the hashed state from which to search
+	 * @param added the list to which the nodes of added states are appended
+	 */
+	protected void addReachableStates(HashableState sih, List<BackupNode> added){
+
+		LinkedList<BackupNode> openList = new LinkedList<BackupNode>();
+		openList.offer(this.getNodeFor(sih));
+
+		int start = added.size();
+		while(!openList.isEmpty()){
+			BackupNode node = openList.poll();
+
+			if(valueFunction.containsKey(node.sh)){
+				continue;
+			}
+
+			//do not need to expand from terminal states if set to prune
+			if(this.model.terminal(node.sh.s()) && stopReachabilityFromTerminalStates){
+				continue;
+			}
+
+			this.valueFunction.put(node.sh, this.valueInitializer.value(node.sh.s()));
+			added.add(node);
+
+			for(BackupNode next : this.expand(node, null)){
+				if(!valueFunction.containsKey(next.sh)){
+					openList.offer(next);
+				}
+			}
+
+		}
+
+		DPrint.cl(this.debugCode, "Added " + (added.size() - start) + " reachable states; # states: " + valueFunction.size());
+
+		this.foundReachableStates = true;
+		this.indexedTable = null;
+
+	}
+
+
+	/**
+	 * Queries the model for the transitions of the given node's state and records a back pointer from each successor to it.
+	 * Successors that are not in the value function are added with {@link #addReachableStates(HashableState, List)} if added is not null.
+	 * @param node the node to expand
+	 * @param added the list to which the nodes of newly added states are appended; null to not add successors
+	 * @return the successor nodes
+	 */
+	protected List<BackupNode> expand(BackupNode node, List<BackupNode> added){
+
+		Map<BackupNode, Double> maxProbs = new LinkedHashMap<BackupNode, Double>();
+		for(Action a : this.applicableActions(node.sh.s())){
+			for(TransitionProb tp : ((FullModel)model).transitions(node.sh.s(), a)){
+				BackupNode next = this.getNodeFor(this.stateHash(tp.eo.op));
+				Double p = maxProbs.get(next);
+				if(p == null || tp.p > p){
+					maxProbs.put(next, tp.p);
+				}
+			}
+		}
+
+		List<BackupNode> successors = new ArrayList<BackupNode>(maxProbs.size());
+		for(Map.Entry<BackupNode, Double> e : maxProbs.entrySet()){
+			BackupNode next = e.getKey();
+			next.addBackPointer(node, e.getValue());
+			successors.add(next);
+			if(added != null && !valueFunction.containsKey(next.sh)){
+				this.addReachableStates(next.sh, added);
+			}
+		}
+
+		return successors;
+
+	}
+
+
+	/**
+	 * Performs prioritized Bellman backups starting from the given nodes until no state has a priority greater than the
+	 * maximum delta or the maximum number of backups is reached.
+	 * @param seeds the nodes whose values must be backed up first
+	 */
+	protected void sweep(List<BackupNode> seeds){
+
+		for(BackupNode node : seeds){
+			node.priority = Double.MAX_VALUE;
+			this.priorityNodes.refreshPriority(node);
+		}
+
+		int limit = this.maxBackups != -1 ? this.maxBackups : (int)Math.min(Integer.MAX_VALUE, (long)this.maxIterations * this.valueFunction.size());
+		int numBackups = 0;
+		while(numBackups < limit){
+
+			BackupNode node = this.priorityNodes.peek();
+			if(node == null || node.priority <= this.maxDelta){
+				break;
+			}
+
+			node = this.priorityNodes.poll();
+			double oldV = this.value(node.sh);
+			double delta = Math.abs(this.performBellmanUpdateOn(node.sh) - oldV);
+			node.priority = 0.;
+			this.priorityNodes.insert(node);
+
+			for(Map.Entry<BackupNode, Double> bptr : node.backPointers.entrySet()){
+				BackupNode back = bptr.getKey();
+				double priority = this.gamma * bptr.getValue() * delta;
+				if(priority > back.priority){
+					back.priority = priority;
+					this.priorityNodes.refreshPriority(back);
+				}
+			}
+
+			numBackups++;
+
+		}
+
+		this.hasRunVI = true;
+
+		DPrint.cl(this.debugCode, "Finished incremental replanning with " + numBackups + " Bellman backups");
+
+	}
+
+
+	/**
+	 * Returns the node for the given hashed state, creating it, and inserting it in the priority queue, if it does not exist.
+	 * @param sh the hashed state
+	 * @return the node for the hashed state
+	 */
+	protected BackupNode getNodeFor(HashableState sh){
+		BackupNode node = this.nodes.get(sh);
+		if(node == null){
+			node = new BackupNode(sh);
+			this.nodes.put(sh, node);
+			this.priorityNodes.insert(node);
+		}
+		return node;
+	}
+
+
+	/**
+	 * A node for a state that holds the states that can transition to it, with the maximum probability of each transition,
+	 * and the state's backup priority.
+	 */
+	protected static class BackupNode{
+
+		public HashableState sh;
+
+		/**
+		 * The nodes that can transition to this node, mapped to the maximum probability of the transition
+		 */
+		public Map<BackupNode, Double> backPointers = new LinkedHashMap<BackupNode, Double>();
+
+		public double priority = 0.;
+
+		public BackupNode(HashableState sh) {
+			this.sh = sh;
+		}
+
+		/**
+		 * Records that the given node can transition to this node with the given probability, keeping the maximum recorded probability.
+		 * @param back the node that can transition to this node
+		 * @param p the probability of the transition
+		 */
+		public void addBackPointer(BackupNode back, double p){
+			Double old = this.backPointers.get(back);
+			if(old == null || p > old){
+				this.backPointers.put(back, p);
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return this.sh.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(other == null || this.getClass() != other.getClass()){
+				return false;
+			}
+			return this.sh.equals(((BackupNode)other).sh);
+		}
+	}
+
+
+	/**
+	 * Comparator for the priority of {@link BackupNode}s
+	 */
+	protected static class BackupNodeComparator implements Comparator<BackupNode>{
+
+		@Override
+		public int compare(BackupNode o1, BackupNode o2) {
+			return Double.compare(o1.priority, o2.priority);
+		}
+
+	}
+
+}
@@ -164,6 +164,16 @@ public class PotentialShapedRMax extends MDPSolver implements LearningAgent{
 		return modelPlanner;
 	}
 
+	/**
+	 * Sets the planning algorithm used on the model, such as an
+	 * {@link burlap.behavior.singleagent.learning.modellearning.modelplanners.IncrementalVIModelLearningPlanner}, and sets its model to this object's model.
+	 * @param modelPlanner the planning algorithm used on the model
+	 */
+	public void setModelPlanner(ModelLearningPlanner modelPlanner) {
+		this.modelPlanner = modelPlanner;
+		this.modelPlanner.setModel(this.model);
+	}
+
 
 	/**
 	 * Returns the model reward function. This is expected to have larger values for unknown states.
@@ -0,0 +1,288 @@
+package burlap.behavior.singleagent.learning.tdmethods;
+
+import burlap.behavior.valuefunction.QValue;
+import burlap.datastructures.IntHashIndex;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.state.State;
+import burlap.statehashing.HashableState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact {@link QTable} that stores Q-values in a single flat double array. Each distinct {@link Action} is mapped
+ * to a dense action id once, the first time it is seen, and each stored state-action pair records only the action id
+ * and its Q-value in primitive arrays. Hashed states are mapped to their state index with an {@link IntHashIndex} over their
+ * hash codes, so a lookup only calls {@link HashableState#equals(Object)} when hash codes match.
+ * <p>
+ * Compared to the default {@link QLearningStateNode} storage, this table creates no per-entry objects, which
+ * substantially reduces the heap footprint and garbage collection load of large Q-tables.
+ * <p>
+ * The table also tracks which states had an entry added or set since the last call to {@link #clearModified()}, which
+ * {@link QLearning#writeQTable(String, boolean, boolean)} uses to write delta checkpoints.
+ */
+public class CompactQTable implements QTable {
+
+	/**
+	 * The dense id of each action that has been seen
+	 */
+	protected Map<Action, Integer> actionIds = new HashMap<Action, Integer>();
+
+	/**
+	 * The actions that have been seen, indexed by their id
+	 */
+	protected List<Action> actions = new ArrayList<Action>();
+
+	/**
+	 * The stored hashed states, indexed by state index
+	 */
+	protected HashableState [] states;
+
+	/**
+	 * The first entry index of each state; entry rowStart[i+1] is one past the last entry of state i.
+	 */
+	protected int [] rowStart;
+
+	/**
+	 * The index of the states by hash code, whose indices are the state indices
+	 */
+	protected IntHashIndex stateHashes;
+
+	/**
+	 * The action id of each entry
+	 */
+	protected int [] entryActions;
+
+	/**
+	 * The Q-value of each entry
+	 */
+	protected double [] values;
+
+	/**
+	 * A bit set of the entries added or set since the last call to {@link #clearModified()}
+	 */
+	protected long [] modifiedEntries;
+
+	/**
+	 * The number of stored states
+	 */
+	protected int numStates;
+
+	/**
+	 * The number of stored entries
+	 */
+	protected int numEntries;
+
+
+	/**
+	 * Initializes with a small initial capacity that grows as needed.
+	 */
+	public CompactQTable() {
+		this(1024);
+	}
+
+
+	/**
+	 * Initializes with capacity for the given number of states before any resizing is needed.
+	 * @param initialStateCapacity the expected number of states
+	 */
+	public CompactQTable(int initialStateCapacity) {
+		int cap = Math.max(16, initialStateCapacity);
+		this.states = new HashableState[cap];
+		this.stateHashes = new IntHashIndex(cap);
+		this.rowStart = new int[cap+1];
+		this.entryActions = new int[cap*4];
+		this.values = new double[cap*4];
+		this.modifiedEntries = new long[(cap*4+63) >>> 6];
+	}
+
+
+	/**
+	 * Returns the dense id of the given action, or -1 if the action has not been seen.
+	 * @param a the action
+	 * @return the dense id of the action, or -1 if it has not been seen.
+	 */
+	public int actionId(Action a){
+		Integer id = this.actionIds.get(a);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the number of distinct actions that have been seen.
+	 * @return the number of distinct actions that have been seen.
+	 */
+	public int numActionIds(){
+		return this.actions.size();
+	}
+
+	/**
+	 * Returns the number of stored state-action entries.
+	 * @return the number of stored state-action entries.
+	 */
+	public int numEntries(){
+		return this.numEntries;
+	}
+
+	/**
+	 * Returns whether an entry of the given state was added or set since the last call to {@link #clearModified()}.
+	 * @param stateIndex the state index
+	 * @return true if an entry of the state was modified; false otherwise.
+	 */
+	public boolean isModified(int stateIndex){
+		int end = this.rowStart[stateIndex+1];
+		for(int j = this.rowStart[stateIndex]; j < end; j++){
+			if((this.modifiedEntries[j >>> 6] & (1L << j)) != 0){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Marks all entries as unmodified.
+	 */
+	public void clearModified(){
+		Arrays.fill(this.modifiedEntries, 0L);
+	}
+
+	@Override
+	public int stateIndex(HashableState s) {
+		int h = s.hashCode();
+		for(int si = this.stateHashes.find(h); si != -1; si = this.stateHashes.findNext(h, si)){
+			if(this.states[si].equals(s)){
+				return si;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int addState(HashableState s, List<Action> actions, double[] qs) {
+
+		if(this.numStates == this.states.length){
+			int cap = this.states.length*2;
+			this.states = Arrays.copyOf(this.states, cap);
+			this.rowStart = Arrays.copyOf(this.rowStart, cap+1);
+		}
+		int needed = this.numEntries + actions.size();
+		if(needed > this.values.length){
+			int cap = Math.max(needed, this.values.length*2);
+			this.entryActions = Arrays.copyOf(this.entryActions, cap);
+			this.values = Arrays.copyOf(this.values, cap);
+			this.modifiedEntries = Arrays.copyOf(this.modifiedEntries, (cap+63) >>> 6);
+		}
+
+		int si = this.stateHashes.add(s.hashCode());
+		this.states[si] = s;
+
+		for(int i = 0; i < actions.size(); i++){
+			Action a = actions.get(i);
+			Integer id = this.actionIds.get(a);
+			if(id == null){
+				id = this.actions.size();
+				this.actionIds.put(a, id);
+				this.actions.add(a);
+			}
+			this.entryActions[this.numEntries] = id;
+			this.values[this.numEntries] = qs[i];
+			this.modifiedEntries[this.numEntries >>> 6] |= 1L << this.numEntries;
+			this.numEntries++;
+		}
+
+		this.numStates++;
+		this.rowStart[this.numStates] = this.numEntries;
+
+		return si;
+	}
+
+	@Override
+	public int numStates() {
+		return this.numStates;
+	}
+
+	@Override
+	public HashableState state(int stateIndex) {
+		return this.states[stateIndex];
+	}
+
+	@Override
+	public int firstEntry(int stateIndex) {
+		return this.rowStart[stateIndex];
+	}
+
+	@Override
+	public int numActions(int stateIndex) {
+		return this.rowStart[stateIndex+1] - this.rowStart[stateIndex];
+	}
+
+	@Override
+	public int entry(int stateIndex, Action a) {
+		int id = this.actionId(a);
+		if(id == -1){
+			return -1;
+		}
+		int end = this.rowStart[stateIndex+1];
+		for(int j = this.rowStart[stateIndex]; j < end; j++){
+			if(this.entryActions[j] == id){
+				return j;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public Action action(int entry) {
+		return this.actions.get(this.entryActions[entry]);
+	}
+
+	@Override
+	public double q(int entry) {
+		return this.values[entry];
+	}
+
+	@Override
+	public void setQ(int entry, double q) {
+		this.values[entry] = q;
+		this.modifiedEntries[entry >>> 6] |= 1L << entry;
+	}
+
+	@Override
+	public double maxQ(int stateIndex) {
+		double max = Double.NEGATIVE_INFINITY;
+		int end = this.rowStart[stateIndex+1];
+		for(int j = this.rowStart[stateIndex]; j < end; j++){
+			if(this.values[j] > max){
+				max = this.values[j];
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public List<QValue> qValues(int stateIndex) {
+		int start = this.rowStart[stateIndex];
+		int end = this.rowStart[stateIndex+1];
+		List<QValue> qs = new ArrayList<QValue>(end-start);
+		if(end == start){
+			return qs;
+		}
+		State s = this.states[stateIndex].s();
+		for(int j = start; j < end; j++){
+			qs.add(new QValue(s, this.action(j), this.values[j]));
+		}
+		return qs;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.states, 0, this.numStates, null);
+		this.stateHashes.clear();
+		Arrays.fill(this.modifiedEntries, 0L);
+		this.numStates = 0;
+		this.numEntries = 0;
+	}
+
+}
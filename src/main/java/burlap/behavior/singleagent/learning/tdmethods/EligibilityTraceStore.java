@@ -0,0 +1,206 @@
+package burlap.behavior.singleagent.learning.tdmethods;
+
+import burlap.datastructures.IntHashIndex;
+
+import java.util.Arrays;
+
+/**
+ * A set of eligibility traces for the learning episode of a SARSA(\lambda) learner, each identified by a non-negative int id,
+ * such as a {@link QTable} entry or a value function parameter. Each trace records its id, its eligibility, the value of the
+ * traced quantity when the trace was added, and an auxiliary int the learner may associate with it, in primitive parallel arrays
+ * indexed by trace index. Traces are found by id with an {@link IntHashIndex}, whose index of each id is its trace index.
+ * <p>
+ * Traces keep the order in which they were added, and {@link #removeBelow(double)} removes decayed traces by compacting the
+ * arrays in place, so scanning, finding, adding, and removing traces creates no objects once the arrays are large enough, and the
+ * work of each is bounded by the number of traces rather than by the number of ids ever traced.
+ */
+public class EligibilityTraceStore {
+
+	/**
+	 * The index from trace ids to trace indices
+	 */
+	protected IntHashIndex ids;
+
+	/**
+	 * The eligibility of each trace
+	 */
+	protected double [] eligibilities;
+
+	/**
+	 * The value of the traced quantity when each trace was added
+	 */
+	protected double [] initialValues;
+
+	/**
+	 * The auxiliary int of each trace
+	 */
+	protected int [] tags;
+
+	/**
+	 * Scratch space for the ids of the traces kept by {@link #removeBelow(double)}
+	 */
+	protected int [] keptIds;
+
+
+	/**
+	 * Initializes with room for 16 traces.
+	 */
+	public EligibilityTraceStore() {
+		this(16);
+	}
+
+	/**
+	 * Initializes with room for the given number of traces before the arrays grow.
+	 * @param capacity the initial capacity
+	 */
+	public EligibilityTraceStore(int capacity) {
+		capacity = Math.max(capacity, 4);
+		this.ids = new IntHashIndex(capacity);
+		this.eligibilities = new double[capacity];
+		this.initialValues = new double[capacity];
+		this.tags = new int[capacity];
+		this.keptIds = new int[capacity];
+	}
+
+
+	/**
+	 * Returns the number of traces.
+	 * @return the number of traces
+	 */
+	public int size() {
+		return this.ids.size();
+	}
+
+	/**
+	 * Returns the id of a trace.
+	 * @param i the trace index
+	 * @return the id of the trace
+	 */
+	public int id(int i) {
+		return this.ids.key(i);
+	}
+
+	/**
+	 * Returns the eligibility of a trace.
+	 * @param i the trace index
+	 * @return the eligibility of the trace
+	 */
+	public double eligibility(int i) {
+		return this.eligibilities[i];
+	}
+
+	/**
+	 * Sets the eligibility of a trace.
+	 * @param i the trace index
+	 * @param eligibility the eligibility
+	 */
+	public void setEligibility(int i, double eligibility) {
+		this.eligibilities[i] = eligibility;
+	}
+
+	/**
+	 * Returns the value of the traced quantity when a trace was added.
+	 * @param i the trace index
+	 * @return the value of the traced quantity when the trace was added
+	 */
+	public double initialValue(int i) {
+		return this.initialValues[i];
+	}
+
+	/**
+	 * Returns the auxiliary int of a trace.
+	 * @param i the trace index
+	 * @return the auxiliary int of the trace
+	 */
+	public int tag(int i) {
+		return this.tags[i];
+	}
+
+
+	/**
+	 * Returns the index of the trace with the given id, or -1 if there is none.
+	 * @param id the trace id
+	 * @return the index of the trace, or -1 if there is none
+	 */
+	public int indexOf(int id) {
+		return this.ids.find(id);
+	}
+
+	/**
+	 * Adds a trace for an id that has no trace.
+	 * @param id the trace id
+	 * @param initialValue the current value of the traced quantity
+	 * @param eligibility the eligibility of the trace
+	 * @param tag an auxiliary int to associate with the trace
+	 * @return the index of the new trace
+	 */
+	public int add(int id, double initialValue, double eligibility, int tag) {
+		int i = this.ids.add(id);
+		if(i == this.eligibilities.length){
+			int c = i * 2;
+			this.eligibilities = Arrays.copyOf(this.eligibilities, c);
+			this.initialValues = Arrays.copyOf(this.initialValues, c);
+			this.tags = Arrays.copyOf(this.tags, c);
+			this.keptIds = new int[c];
+		}
+
+		this.eligibilities[i] = eligibility;
+		this.initialValues[i] = initialValue;
+		this.tags[i] = tag;
+		return i;
+	}
+
+	/**
+	 * Adds a trace for an id that has no trace, with an auxiliary int of 0.
+	 * @param id the trace id
+	 * @param initialValue the current value of the traced quantity
+	 * @param eligibility the eligibility of the trace
+	 * @return the index of the new trace
+	 */
+	public int add(int id, double initialValue, double eligibility) {
+		return this.add(id, initialValue, eligibility, 0);
+	}
+
+	/**
+	 * Removes every trace whose eligibility is less than the given threshold, keeping the order of the remaining traces.
+	 * @param threshold the eligibility threshold
+	 */
+	public void removeBelow(double threshold) {
+
+		int size = this.ids.size();
+		int n = 0;
+		for(int i = 0; i < size; i++){
+			if(this.eligibilities[i] >= threshold){
+				n++;
+			}
+		}
+		if(n == size){
+			return;
+		}
+
+		//compact the traces in place, then re-index the remaining ids in their new order
+		int j = 0;
+		for(int i = 0; i < size; i++){
+			if(this.eligibilities[i] >= threshold){
+				this.keptIds[j] = this.ids.key(i);
+				this.eligibilities[j] = this.eligibilities[i];
+				this.initialValues[j] = this.initialValues[i];
+				this.tags[j] = this.tags[i];
+				j++;
+			}
+		}
+		this.ids.clear();
+		for(int i = 0; i < n; i++){
+			this.ids.add(this.keptIds[i]);
+		}
+
+	}
+
+	/**
+	 * Removes all traces.
+	 */
+	public void clear() {
+		this.ids.clear();
+	}
+
+}
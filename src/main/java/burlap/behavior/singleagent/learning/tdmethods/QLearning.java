@@ -15,6 +15,11 @@ import burlap.behavior.valuefunction.ConstantValueFunction;
 import burlap.behavior.valuefunction.QFunction;
 import burlap.behavior.valuefunction.QProvider;
 import burlap.behavior.valuefunction.QValue;
+import burlap.behavior.valuefunction.checkpoint.StateEncoder;
+import burlap.behavior.valuefunction.checkpoint.TableCheckpoint;
+import burlap.behavior.valuefunction.checkpoint.TableCheckpointReader;
+import burlap.behavior.valuefunction.checkpoint.TableCheckpointWriter;
+import burlap.behavior.valuefunction.checkpoint.BinaryStateEncoder;
 import burlap.mdp.core.action.Action;
 import burlap.mdp.core.state.State;
 import burlap.mdp.singleagent.SADomain;
@@ -26,6 +31,7 @@ import burlap.shell.visual.VisualExplorer;
 import burlap.statehashing.HashableState;
 import burlap.statehashing.HashableStateFactory;
 import java.io.*;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +51,10 @@ import org.yaml.snakeyaml.Yaml;
  * If you want to use a custom learning rate decay schedule rather than a constant learning rate, use the
  * {@link #setLearningRateFunction(burlap.behavior.learningrate.LearningRate)}.
  * <p>
+ * By default, Q-values are stored as {@link QValue} objects in a map from hashed states to {@link QLearningStateNode} objects.
+ * For large Q-tables, a more compact storage backend can be set with {@link #setQTable(QTable)}, such as a {@link CompactQTable},
+ * in which case learning updates read and write Q-values without creating or using {@link QValue} objects.
+ * <p>
  * 1. Watkins, Christopher JCH, and Peter Dayan. "Q-learning." Machine learning 8.3-4 (1992): 279-292.
  * <p>
  * 2. Sutton, Richard S., Doina Precup, and Satinder Singh. "Between MDPs and semi-MDPs: A framework for temporal abstraction in
@@ -60,6 +70,16 @@ public class QLearning extends MDPSolver implements QProvider, LearningAgent, Pl
    */
   protected Map<HashableState, QLearningStateNode> qFunction;
 
+  /**
+   * The optional {@link QTable} storage backend. When null, Q-values are stored in {@link #qFunction}.
+   */
+  protected QTable qTable;
+
+  /**
+   * The {@link StateEncoder} used to write and read states in Q-table checkpoints.
+   */
+  protected StateEncoder checkpointStateEncoder = new BinaryStateEncoder();
+
   /**
    * The object that defines how Q-values are initialized.
    */
@@ -301,13 +321,38 @@ public class QLearning extends MDPSolver implements QProvider, LearningAgent, Pl
     this.shouldDecomposeOptions = toggle;
   }
 
+  /**
+   * Sets the {@link QTable} storage backend to use in place of the default {@link QLearningStateNode} map. Any Q-values
+   * currently stored in the map are not transferred. Set to null to revert to the default map storage.
+   *
+   * @param qTable the {@link QTable} storage backend to use, or null to use the default map storage
+   */
+  public void setQTable(QTable qTable) {
+    this.qTable = qTable;
+  }
+
+  /**
+   * Returns the {@link QTable} storage backend in use, or null if the default {@link QLearningStateNode} map is used.
+   *
+   * @return the {@link QTable} storage backend in use, or null if the default map is used.
+   */
+  public QTable getQTable() {
+    return this.qTable;
+  }
+
   @Override
   public List<QValue> qValues(State s) {
+    if (this.qTable != null) {
+      return this.qTable.qValues(this.qTableStateIndex(this.stateHash(s)));
+    }
     return this.getQs(this.stateHash(s));
   }
 
   @Override
   public double qValue(State s, Action a) {
+    if (this.qTable != null) {
+      return this.qTable.q(this.qTableEntry(this.stateHash(s), a));
+    }
     return this.getQ(this.stateHash(s), a).q;
   }
 
@@ -375,6 +420,59 @@ public class QLearning extends MDPSolver implements QProvider, LearningAgent, Pl
 
   }
 
+  /**
+   * Returns the {@link QTable} state index for the given hashed state. If the state is not stored, then it is added with its Q-values
+   * initialized using this objects {@link burlap.behavior.valuefunction.QFunction} data member.
+   *
+   * @param s the hashed state
+   * @return the {@link QTable} state index of the hashed state
+   */
+  protected int qTableStateIndex(HashableState s) {
+
+    int si = this.qTable.stateIndex(s);
+
+    if (si == -1) {
+      List<Action> gas = this.applicableActions(s.s());
+      if (gas.isEmpty()) {
+        throw new RuntimeErrorException(new Error("No possible actions in this state, cannot continue Q-learning"));
+      }
+      double[] qs = new double[gas.size()];
+      for (int i = 0; i < qs.length; i++) {
+        qs[i] = qInitFunction.qValue(s.s(), gas.get(i));
+      }
+      si = this.qTable.addState(s, gas, qs);
+    }
+
+    return si;
+
+  }
+
+  /**
+   * Returns the {@link QTable} entry index for the given hashed state and action, adding the state if it is not stored.
+   *
+   * @param s the hashed state
+   * @param a the action
+   * @return the {@link QTable} entry index of the state-action pair
+   */
+  protected int qTableEntry(HashableState s, Action a) {
+    return this.qTableEntry(this.qTableStateIndex(s), a);
+  }
+
+  /**
+   * Returns the {@link QTable} entry index for the given {@link QTable} state index and action.
+   *
+   * @param stateIndex the {@link QTable} state index
+   * @param a the action
+   * @return the {@link QTable} entry index of the state-action pair
+   */
+  protected int qTableEntry(int stateIndex, Action a) {
+    int entry = this.qTable.entry(stateIndex, a);
+    if (entry == -1) {
+      throw new RuntimeException("QLearning has no Q-value stored for action " + a + " in the queried state.");
+    }
+    return entry;
+  }
+
   /**
    * Returns the maximum Q-value in the hashed state.
    *
@@ -382,6 +480,9 @@ public class QLearning extends MDPSolver implements QProvider, LearningAgent, Pl
    * @return the maximum Q-value in the hashed state.
    */
   protected double getMaxQ(HashableState state) {
+    if (this.qTable != null) {
+      return this.qTable.maxQ(this.qTableStateIndex(state));
+    }
     List<QValue> qs = this.getQs(state);
     double max = Double.NEGATIVE_INFINITY;
     for (QValue q : qs) {
@@ -436,7 +537,13 @@ public class QLearning extends MDPSolver implements QProvider, LearningAgent, Pl
 
       Action action = learningPolicy.action(curState.s());
 
-      QValue curQ = this.getQ(curState, action);
+      QValue curQ = null;
+      int curEntry = -1;
+      if (this.qTable != null) {
+        curEntry = this.qTableEntry(curState, action);
+      } else {
+        curQ = this.getQ(curState, action);
+      }
 
       EnvironmentOutcome eo;
       if (!(action instanceof Option)) {
@@ -483,16 +590,21 @@ public class QLearning extends MDPSolver implements QProvider, LearningAgent, Pl
         ea.appendAndMergeEpisodeAnalysis(((EnvironmentOptionOutcome) eo).episode);
       }
 
-      double oldQ = curQ.q;
+      double oldQ = curQ != null ? curQ.q : this.qTable.q(curEntry);
 
       //update Q-value
-      curQ.q = curQ.q + this.learningRate.pollLearningRate(
+      double newQ = oldQ + this.learningRate.pollLearningRate(
               this.totalNumberOfSteps, // agentTime
               curState.s(), // state
               action)
-              * (r + (discount * maxQ) - curQ.q);
+              * (r + (discount * maxQ) - oldQ);
+      if (curQ != null) {
+        curQ.q = newQ;
+      } else {
+        this.qTable.setQ(curEntry, newQ);
+      }
 
-      double deltaQ = Math.abs(oldQ - curQ.q);
+      double deltaQ = Math.abs(oldQ - newQ);
       if (deltaQ > maxQChangeInLastEpisode) {
         maxQChangeInLastEpisode = deltaQ;
       }
@@ -507,38 +619,202 @@ public class QLearning extends MDPSolver implements QProvider, LearningAgent, Pl
   @Override
   public void resetSolver() {
     this.qFunction.clear();
+    if (this.qTable != null) {
+      this.qTable.clear();
+    }
     this.eStepCounter = 0;
     this.maxQChangeInLastEpisode = Double.POSITIVE_INFINITY;
   }
 
   /**
-   * Writes the q-function table stored in this object to the specified file path. Uses a standard YAML approach, which means the
-   * HashableState and underlying Domain states must have JavaBean like properties; i.e., have a default constructor and getters and setters
-   * (or public data members) for all relevant fields.
+   * Sets the {@link StateEncoder} used to write and read states in Q-table checkpoints. The default is a {@link BinaryStateEncoder};
+   * a domain-specific encoder can be faster and more compact. Checkpoints written by earlier versions with the former default
+   * {@link burlap.behavior.valuefunction.checkpoint.YamlStateEncoder} are still read with it.
+   *
+   * @param checkpointStateEncoder the {@link StateEncoder} to use for Q-table checkpoints
+   */
+  public void setCheckpointStateEncoder(StateEncoder checkpointStateEncoder) {
+    this.checkpointStateEncoder = checkpointStateEncoder;
+  }
+
+  /**
+   * Writes the q-function table stored in this object to the specified file path as an uncompressed, full binary table checkpoint. See
+   * {@link #writeQTable(String, boolean, boolean)}.
    *
    * @param path the path to write the value function
    */
   public void writeQTable(String path) {
-    Yaml yaml = new Yaml();
-    try {
-      yaml.dump(this.qFunction, new BufferedWriter(new FileWriter(path)));
+    this.writeQTable(path, false, false);
+  }
+
+  /**
+   * Writes the q-function table stored in this object to the specified file path in the binary {@link TableCheckpoint} format. Entries
+   * are streamed to the file, so no copy of the table is made. States are written with the {@link StateEncoder} set with
+   * {@link #setCheckpointStateEncoder(StateEncoder)} and actions are identified by their {@link Object#toString()} representation.
+   * <p>
+   * A delta checkpoint only contains the states whose Q-values changed since the last checkpoint was written and requires a
+   * {@link CompactQTable} storage backend, which tracks modifications. Restore a delta checkpoint with {@link #loadQTable(String)}
+   * after restoring the checkpoints that preceded it.
+   *
+   * @param path the path to write the value function
+   * @param compressed whether to GZIP compress the checkpoint
+   * @param delta whether to write a delta checkpoint
+   */
+  public void writeQTable(String path, boolean compressed, boolean delta) {
+
+    if (delta && !(this.qTable instanceof CompactQTable)) {
+      throw new RuntimeException("Delta Q-table checkpoints require a CompactQTable storage backend.");
+    }
+
+    CompactQTable compact = this.qTable instanceof CompactQTable ? (CompactQTable) this.qTable : null;
+    try (TableCheckpointWriter writer = new TableCheckpointWriter(path, TableCheckpoint.Q_TABLE, compressed, delta,
+            this.checkpointStateEncoder)) {
+      if (this.qTable != null) {
+        for (int i = 0; i < this.qTable.numStates(); i++) {
+          if (delta && !compact.isModified(i)) {
+            continue;
+          }
+          int start = this.qTable.firstEntry(i);
+          int n = this.qTable.numActions(i);
+          writer.beginQState(this.qTable.state(i).s(), n);
+          for (int j = start; j < start + n; j++) {
+            writer.writeQ(this.qTable.action(j), this.qTable.q(j));
+          }
+        }
+      } else {
+        for (QLearningStateNode node : this.qFunction.values()) {
+          writer.beginQState(node.state.s(), node.qEntry.size());
+          for (QValue qv : node.qEntry) {
+            writer.writeQ(qv.a, qv.q);
+          }
+        }
+      }
+      writer.finish();
     } catch (IOException e) {
-      e.printStackTrace();
+      throw new RuntimeException("Could not write Q-table checkpoint " + path, e);
+    }
+    //only forget the modifications once they are safely written
+    if (compact != null) {
+      compact.clearModified();
     }
   }
 
   /**
-   * Loads the q-function table located on disk at the specified path. Expects the file to be a Yaml representation of a Java {@link Map}
-   * from {@link HashableState} to {@link QLearningStateNode}.
+   * Loads the q-function table located on disk at the specified path. The file may either be a binary {@link TableCheckpoint} written by
+   * {@link #writeQTable(String, boolean, boolean)}, or a Yaml representation of a Java {@link Map} from {@link HashableState} to
+   * {@link QLearningStateNode} written by earlier versions. A full checkpoint or Yaml file replaces the current Q-values; a delta
+   * checkpoint is applied on top of them. If a {@link QTable} storage backend is set, the loaded Q-values are stored in it.
    *
    * @param path the path to the save value function table
    */
   public void loadQTable(String path) {
+    if (TableCheckpoint.isCheckpoint(path)) {
+      this.loadQTableCheckpoint(path);
+    } else {
+      this.loadYamlQTable(path);
+    }
+  }
+
+  /**
+   * Loads a binary {@link TableCheckpoint} Q-table. Checkpoint actions are resolved against the actions applicable in each loaded state.
+   *
+   * @param path the path to the checkpoint
+   */
+  protected void loadQTableCheckpoint(String path) {
+    try (TableCheckpointReader reader = new TableCheckpointReader(path, this.checkpointStateEncoder)) {
+
+      if (reader.tableType() != TableCheckpoint.Q_TABLE) {
+        throw new RuntimeException(path + " is not a Q-table checkpoint.");
+      }
+      if (!reader.isDelta()) {
+        this.qFunction.clear();
+        if (this.qTable != null) {
+          this.qTable.clear();
+        }
+      }
+
+      double[] qs = new double[0];
+      while (reader.next()) {
+
+        HashableState sh = this.stateHash(reader.state());
+        Map<String, Action> applicable = new HashMap<>();
+        for (Action a : this.applicableActions(sh.s())) {
+          applicable.put(a.toString(), a);
+        }
+        List<Action> actions = new ArrayList<>(reader.numActions());
+        for (int i = 0; i < reader.numActions(); i++) {
+          Action a = applicable.get(reader.actionName(i));
+          if (a == null) {
+            throw new RuntimeException("Q-table checkpoint action " + reader.actionName(i) + " is not applicable in its state.");
+          }
+          actions.add(a);
+        }
+
+        if (this.qTable != null) {
+          int si = this.qTable.stateIndex(sh);
+          if (si == -1) {
+            if (qs.length < actions.size()) {
+              qs = new double[actions.size()];
+            }
+            for (int i = 0; i < actions.size(); i++) {
+              qs[i] = reader.q(i);
+            }
+            this.qTable.addState(sh, actions, qs);
+          } else {
+            for (int i = 0; i < actions.size(); i++) {
+              this.qTable.setQ(this.qTableEntry(si, actions.get(i)), reader.q(i));
+            }
+          }
+        } else {
+          QLearningStateNode node = this.qFunction.get(sh);
+          if (node == null) {
+            node = new QLearningStateNode(sh);
+            for (int i = 0; i < actions.size(); i++) {
+              node.addQValue(actions.get(i), reader.q(i));
+            }
+            this.qFunction.put(sh, node);
+          } else {
+            for (int i = 0; i < actions.size(); i++) {
+              this.getQ(sh, actions.get(i)).q = reader.q(i);
+            }
+          }
+        }
+      }
+
+      if (this.qTable instanceof CompactQTable) {
+        ((CompactQTable) this.qTable).clearModified();
+      }
+
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read Q-table checkpoint " + path, e);
+    }
+  }
+
+  /**
+   * Loads a Yaml representation of a Java {@link Map} from {@link HashableState} to {@link QLearningStateNode}, as written by earlier
+   * versions of {@link #writeQTable(String)}.
+   *
+   * @param path the path to the Yaml file
+   */
+  protected void loadYamlQTable(String path) {
     Yaml yaml = new Yaml();
-    try {
-      this.qFunction = (Map<HashableState, QLearningStateNode>) yaml.load(new FileInputStream(path));
-    } catch (FileNotFoundException e) {
-      e.printStackTrace();
+    try (InputStream in = new BufferedInputStream(new FileInputStream(path))) {
+      this.qFunction = (Map<HashableState, QLearningStateNode>) yaml.load(in);
+      if (this.qTable != null) {
+        this.qTable.clear();
+        for (QLearningStateNode node : this.qFunction.values()) {
+          List<Action> actions = new ArrayList<>(node.qEntry.size());
+          double[] qs = new double[node.qEntry.size()];
+          for (int i = 0; i < qs.length; i++) {
+            actions.add(node.qEntry.get(i).a);
+            qs[i] = node.qEntry.get(i).q;
+          }
+          this.qTable.addState(node.state, actions, qs);
+        }
+        this.qFunction.clear();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read Q-table " + path, e);
     }
   }
 
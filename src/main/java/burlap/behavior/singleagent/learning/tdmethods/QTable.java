@@ -0,0 +1,112 @@
+package burlap.behavior.singleagent.learning.tdmethods;
+
+import burlap.behavior.valuefunction.QValue;
+import burlap.mdp.core.action.Action;
+import burlap.statehashing.HashableState;
+
+import java.util.List;
+
+/**
+ * A storage backend for the tabular Q-function of {@link QLearning} and its subclasses. States are assigned a dense
+ * integer state index when they are added and each state-action pair of a state is assigned a flat integer entry index,
+ * so that learning updates can read and write Q-values by entry without going through {@link QValue} objects. The entries
+ * of a state are contiguous: the entries of state index i are {@link #firstEntry(int)} through
+ * {@link #firstEntry(int)} + {@link #numActions(int)} - 1. Entry and state indices remain valid until {@link #clear()} is called.
+ * <p>
+ * Set a {@link QTable} on a {@link QLearning} instance with {@link QLearning#setQTable(QTable)}.
+ */
+public interface QTable {
+
+	/**
+	 * Returns the state index of the given hashed state, or -1 if the state has not been added.
+	 * @param s the hashed state
+	 * @return the state index of the hashed state, or -1 if it is not stored.
+	 */
+	int stateIndex(HashableState s);
+
+	/**
+	 * Adds a state with the given applicable actions and initial Q-values and returns its new state index.
+	 * @param s the hashed state to add
+	 * @param actions the actions applicable in the state
+	 * @param qs the initial Q-value of each action in the same order as actions
+	 * @return the state index of the added state
+	 */
+	int addState(HashableState s, List<Action> actions, double [] qs);
+
+	/**
+	 * Returns the number of stored states.
+	 * @return the number of stored states.
+	 */
+	int numStates();
+
+	/**
+	 * Returns the hashed state with the given state index.
+	 * @param stateIndex the state index
+	 * @return the hashed state with the given state index.
+	 */
+	HashableState state(int stateIndex);
+
+	/**
+	 * Returns the entry index of the first action of the given state.
+	 * @param stateIndex the state index
+	 * @return the entry index of the first action of the state
+	 */
+	int firstEntry(int stateIndex);
+
+	/**
+	 * Returns the number of actions stored for the given state.
+	 * @param stateIndex the state index
+	 * @return the number of actions stored for the state
+	 */
+	int numActions(int stateIndex);
+
+	/**
+	 * Returns the entry index of the given action in the given state, or -1 if the action is not stored for the state.
+	 * @param stateIndex the state index
+	 * @param a the action
+	 * @return the entry index of the state-action pair, or -1 if it is not stored.
+	 */
+	int entry(int stateIndex, Action a);
+
+	/**
+	 * Returns the action of the given entry.
+	 * @param entry the entry index
+	 * @return the action of the entry
+	 */
+	Action action(int entry);
+
+	/**
+	 * Returns the Q-value of the given entry.
+	 * @param entry the entry index
+	 * @return the Q-value of the entry
+	 */
+	double q(int entry);
+
+	/**
+	 * Sets the Q-value of the given entry.
+	 * @param entry the entry index
+	 * @param q the new Q-value
+	 */
+	void setQ(int entry, double q);
+
+	/**
+	 * Returns the maximum Q-value of the given state.
+	 * @param stateIndex the state index
+	 * @return the maximum Q-value of the state.
+	 */
+	double maxQ(int stateIndex);
+
+	/**
+	 * Returns a new list of {@link QValue} objects holding the current Q-values of the given state. Changes to the returned
+	 * objects are not reflected in this table.
+	 * @param stateIndex the state index
+	 * @return a new list of {@link QValue} objects for the state
+	 */
+	List<QValue> qValues(int stateIndex);
+
+	/**
+	 * Removes all states and Q-values.
+	 */
+	void clear();
+
+}
@@ -14,7 +14,10 @@ import burlap.mdp.singleagent.environment.EnvironmentOutcome;
 import burlap.statehashing.HashableState;
 import burlap.statehashing.HashableStateFactory;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -31,6 +34,11 @@ import java.util.LinkedList;
  * want to use a custom learning rate decay schedule rather than a constant learning rate, use the
  * {@link #setLearningRateFunction(burlap.behavior.learningrate.LearningRate)}.
  * <p>
+ * The eligibility traces of an episode are kept in an {@link EligibilityTraceStore}, and the traces of the current state are found
+ * by looking up the state's Q-values rather than by comparing the state of every trace, so the cost of a step is proportional to the
+ * number of traces. By default traces are kept for the whole episode; use {@link #setMinEligibilityForUpdate(double)} to stop
+ * updating traces once they decay below a threshold.
+ * <p>
  * @author James MacGlashan
  *
  * <p>
@@ -46,6 +54,32 @@ public class SarsaLam extends QLearning {
 	 */
 	protected double				lambda;
 
+	/**
+	 * The minimum eligibility value of a trace that will cause it to be updated
+	 */
+	protected double				minEligibilityForUpdate = 0.;
+
+	/**
+	 * The eligibility traces of the current episode. With the {@link QTable} backend, a trace's id is its entry and its tag is the
+	 * entry's state index; otherwise a trace's id indexes {@link #traceStates} and {@link #traceQs}.
+	 */
+	protected EligibilityTraceStore	traces = new EligibilityTraceStore();
+
+	/**
+	 * The state of each traced Q-value of the current episode, indexed by trace id, when not using the {@link QTable} backend
+	 */
+	protected List<HashableState>	traceStates = new ArrayList<HashableState>();
+
+	/**
+	 * The traced Q-values of the current episode, indexed by trace id, when not using the {@link QTable} backend
+	 */
+	protected List<QValue>			traceQs = new ArrayList<QValue>();
+
+	/**
+	 * The trace id of each traced Q-value of the current episode, when not using the {@link QTable} backend
+	 */
+	protected Map<QValue, Integer>	traceIds = new IdentityHashMap<QValue, Integer>();
+
 
 	/**
 	 * Initializes SARSA(\lambda) with 0.1 epsilon greedy policy, the same Q-value initialization everywhere, and places no limit on the number of steps the
@@ -142,10 +176,24 @@ public class SarsaLam extends QLearning {
 	}
 
 
+	/**
+	 * Sets the minimum eligibility of a trace that will cause it to be updated; traces that decay below it are no longer updated in
+	 * the episode, which bounds the number of traces scanned on each step. The default is 0, which updates every trace.
+	 * @param minEligibilityForUpdate the minimum eligibility of a trace that will cause it to be updated
+	 */
+	public void setMinEligibilityForUpdate(double minEligibilityForUpdate){
+		this.minEligibilityForUpdate = minEligibilityForUpdate;
+	}
+
+
 
 	@Override
 	public Episode runLearningEpisode(Environment env, int maxSteps){
 
+		if(this.qTable != null){
+			return this.runQTableLearningEpisode(env, maxSteps);
+		}
+
 		State initialState = env.currentObservation();
 
 		Episode ea = new Episode(initialState);
@@ -153,7 +201,11 @@ public class SarsaLam extends QLearning {
 
 		HashableState curState = this.stateHash(initialState);
 		eStepCounter = 0;
-		LinkedList<EligibilityTrace> traces = new LinkedList<SarsaLam.EligibilityTrace>();
+		EligibilityTraceStore traces = this.traces;
+		traces.clear();
+		this.traceStates.clear();
+		this.traceQs.clear();
+		this.traceIds.clear();
 
 		Action action = learningPolicy.action(curState.s());
 		QValue curQ = this.getQ(curState, action);
@@ -198,26 +250,38 @@ public class SarsaLam extends QLearning {
 			//delta
 			double delta = r + (discount * nextQV) - curQ.q;
 
-			//update all
+			//replacing traces for the traced Q-values of the current state
 			boolean foundCurrentQTrace = false;
-			for(EligibilityTrace et : traces){
-
-				if(et.sh.equals(curState)){
-					if(et.q.a.equals(action)){
+			List<QValue> curQs = this.getStateNode(curState).qEntry;
+			for(int i = 0; i < curQs.size(); i++){
+				QValue q = curQs.get(i);
+				Integer id = this.traceIds.get(q);
+				int t = id != null ? traces.indexOf(id) : -1;
+				if(t != -1){
+					if(q == curQ){
 						foundCurrentQTrace = true;
-						et.eligibility = 1.; //replacing traces
+						traces.setEligibility(t, 1.);
 					}
 					else{
-						et.eligibility = 0.; //replacing traces
+						traces.setEligibility(t, 0.);
 					}
 				}
+			}
 
-				double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, et.sh.s(), et.q.a);
+			//update all
+			int numTraces = traces.size();
+			for(int t = 0; t < numTraces; t++){
 
-				et.q.q = et.q.q + (learningRate * et.eligibility * delta);
-				et.eligibility = et.eligibility * lambda * discount;
+				int id = traces.id(t);
+				QValue q = this.traceQs.get(id);
+				double eligibility = traces.eligibility(t);
 
-				double deltaQ = Math.abs(et.initialQ - et.q.q);
+				double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, this.traceStates.get(id).s(), q.a);
+
+				q.q = q.q + (learningRate * eligibility * delta);
+				traces.setEligibility(t, eligibility * lambda * discount);
+
+				double deltaQ = Math.abs(traces.initialValue(t) - q.q);
 				if(deltaQ > maxQChangeInLastEpisode){
 					maxQChangeInLastEpisode = deltaQ;
 				}
@@ -228,22 +292,156 @@ public class SarsaLam extends QLearning {
 				//then update and add it
 				double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, curQ.s, curQ.a);
 				curQ.q = curQ.q + (learningRate * delta);
-				EligibilityTrace et = new EligibilityTrace(curState, curQ, lambda*discount);
 
-				traces.add(et);
+				Integer id = this.traceIds.get(curQ);
+				if(id == null){
+					id = this.traceQs.size();
+					this.traceIds.put(curQ, id);
+					this.traceQs.add(curQ);
+					this.traceStates.add(curState);
+				}
+				traces.add(id, curQ.q, lambda*discount);
+
+			}
+
+			traces.removeBelow(this.minEligibilityForUpdate);
+
+
+			//move on
+			curState = nextState;
+			action = nextAction;
+			curQ = nextQ;
+
+			this.totalNumberOfSteps++;
+
+		}
+
+
+		return ea;
+	}
+
+
+	/**
+	 * Runs a learning episode that reads and writes Q-values through the {@link QTable} storage backend. Eligibility traces
+	 * are identified by the {@link QTable} entry index of their state-action pair rather than a {@link QValue} object, and the traces of
+	 * the current state are found by looking up the state's contiguous entries, without comparing hashed states.
+	 * @param env the {@link Environment} in which to learn
+	 * @param maxSteps the maximum number of steps to take, or -1 for no limit
+	 * @return the {@link Episode} of the learning episode
+	 */
+	protected Episode runQTableLearningEpisode(Environment env, int maxSteps){
+
+		State initialState = env.currentObservation();
 
-				double deltaQ = Math.abs(et.initialQ - et.q.q);
+		Episode ea = new Episode(initialState);
+		maxQChangeInLastEpisode = 0.;
+
+		HashableState curState = this.stateHash(initialState);
+		eStepCounter = 0;
+		EligibilityTraceStore traces = this.traces;
+		traces.clear();
+
+		Action action = learningPolicy.action(curState.s());
+		int curStateIndex = this.qTableStateIndex(curState);
+		int curEntry = this.qTableEntry(curStateIndex, action);
+
+
+
+		while(!env.isInTerminalState() && (eStepCounter < maxSteps || maxSteps == -1)){
+
+			EnvironmentOutcome eo;
+			if(!(action instanceof Option)){
+				eo = env.executeAction(action);
+			}
+			else{
+				eo = ((Option)action).control(env, this.gamma);
+			}
+
+			HashableState nextState = this.stateHash(eo.op);
+			Action nextAction = learningPolicy.action(nextState.s());
+			int nextStateIndex = this.qTableStateIndex(nextState);
+			int nextEntry = this.qTableEntry(nextStateIndex, nextAction);
+			double nextQV = this.qTable.q(nextEntry);
+
+			if(env.isInTerminalState()){
+				nextQV = 0.;
+			}
+
+
+			//manage option specifics
+			double r = eo.r;
+			double discount = eo instanceof EnvironmentOptionOutcome ? ((EnvironmentOptionOutcome)eo).discount : this.gamma;
+			int stepInc = eo instanceof EnvironmentOptionOutcome ? ((EnvironmentOptionOutcome)eo).numSteps() : 1;
+			eStepCounter += stepInc;
+
+			if(!(action instanceof Option) || !this.shouldDecomposeOptions){
+				ea.transition(action, nextState.s(), r);
+			}
+			else{
+				ea.appendAndMergeEpisodeAnalysis(((EnvironmentOptionOutcome)eo).episode);
+			}
+
+
+
+			//delta
+			double delta = r + (discount * nextQV) - this.qTable.q(curEntry);
+
+			//the entries of the current state are contiguous
+			int firstEntry = this.qTable.firstEntry(curStateIndex);
+			int endEntry = firstEntry + this.qTable.numActions(curStateIndex);
+
+			//replacing traces for the traced entries of the current state
+			boolean foundCurrentQTrace = false;
+			for(int entry = firstEntry; entry < endEntry; entry++){
+				int t = traces.indexOf(entry);
+				if(t != -1){
+					if(entry == curEntry){
+						foundCurrentQTrace = true;
+						traces.setEligibility(t, 1.);
+					}
+					else{
+						traces.setEligibility(t, 0.);
+					}
+				}
+			}
+
+			//update all
+			int numTraces = traces.size();
+			for(int t = 0; t < numTraces; t++){
+
+				int entry = traces.id(t);
+				double eligibility = traces.eligibility(t);
+
+				double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, this.qTable.state(traces.tag(t)).s(), this.qTable.action(entry));
+
+				double q = this.qTable.q(entry) + (learningRate * eligibility * delta);
+				this.qTable.setQ(entry, q);
+				traces.setEligibility(t, eligibility * lambda * discount);
+
+				double deltaQ = Math.abs(traces.initialValue(t) - q);
 				if(deltaQ > maxQChangeInLastEpisode){
 					maxQChangeInLastEpisode = deltaQ;
 				}
 
 			}
 
+			if(!foundCurrentQTrace){
+				//then update and add it
+				double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, curState.s(), action);
+				double q = this.qTable.q(curEntry) + (learningRate * delta);
+				this.qTable.setQ(curEntry, q);
+				traces.add(curEntry, q, lambda*discount, curStateIndex);
+
+			}
+
+			traces.removeBelow(this.minEligibilityForUpdate);
+
 
 			//move on
 			curState = nextState;
 			action = nextAction;
-			curQ = nextQ;
+			curStateIndex = nextStateIndex;
+			curEntry = nextEntry;
 
 			this.totalNumberOfSteps++;
 
@@ -8,6 +8,8 @@ import burlap.behavior.singleagent.MDPSolver;
 import burlap.behavior.singleagent.learning.LearningAgent;
 import burlap.behavior.singleagent.learning.experiencereplay.ExperienceMemory;
 import burlap.behavior.singleagent.learning.experiencereplay.FixedSizeMemory;
+import burlap.behavior.singleagent.learning.experiencereplay.PrioritizedMemory;
+import burlap.behavior.singleagent.learning.experiencereplay.PrioritizedSample;
 import burlap.behavior.singleagent.options.EnvironmentOptionOutcome;
 import burlap.behavior.valuefunction.QProvider;
 import burlap.behavior.valuefunction.QValue;
@@ -20,6 +22,7 @@ import burlap.mdp.singleagent.environment.Environment;
 import burlap.mdp.singleagent.environment.EnvironmentOutcome;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -35,6 +38,11 @@ import java.util.List;
  * replay. However, you can change these settings with the {@link #useStaleTarget(int)} and {@link #setExperienceReplay(ExperienceMemory, int)}
  * methods.
  * <br><br>
+ * If the experience memory is a {@link PrioritizedMemory}, such as a
+ * {@link burlap.behavior.singleagent.learning.experiencereplay.PrioritizedExperienceMemory}, implementations of
+ * {@link #updateQFunction(List)} should scale the update of each sample by its {@link #sampleWeight(int)} and report its TD error with
+ * {@link #reportTDError(int, double)}; the reported errors update the priorities of the samples after each update.
+ * <br><br>
  * Finally, this implementation also has support for setting a {@link StateMapping} function so that states are transformed
  * from the {@link EnvironmentOutcome} observation into some other representation. By default, not state mapping is performed
  * (uses a {@link ShallowIdentityStateMapping}), but you can change that with the {@link StateMapping} method.
@@ -84,6 +92,16 @@ public abstract class ApproximateQLearning extends MDPSolver implements Learning
 	 */
 	protected int numReplay = 1;
 
+	/**
+	 * The importance-sampling weights of the samples being used for updating; null if they are not from a {@link PrioritizedMemory}
+	 */
+	protected double [] sampleWeights;
+
+	/**
+	 * The TD errors reported for the samples being used for updating; NaN for samples without a reported error
+	 */
+	protected double [] sampleTDErrors = new double[0];
+
 	/**
 	 * The learners policy to use. Typically these will be policies that link back to this object so that they change as the Q-value estimate change.
 	 */
@@ -204,8 +222,21 @@ public abstract class ApproximateQLearning extends MDPSolver implements Learning
 			e.transition(a, eo.op, eo.r);
 
 			//perform learners
-			List<EnvironmentOutcome> samples = this.memory.sampleExperiences(this.numReplay);
-			this.updateQFunction(samples);
+			if(this.memory instanceof PrioritizedMemory){
+				PrioritizedSample sample = ((PrioritizedMemory)this.memory).samplePrioritized(this.numReplay);
+				this.sampleWeights = sample.weights;
+				if(this.sampleTDErrors.length != sample.ids.length){
+					this.sampleTDErrors = new double[sample.ids.length];
+				}
+				Arrays.fill(this.sampleTDErrors, Double.NaN);
+				this.updateQFunction(sample.experiences);
+				((PrioritizedMemory)this.memory).updatePriorities(sample.ids, this.sampleTDErrors);
+			}
+			else{
+				this.sampleWeights = null;
+				List<EnvironmentOutcome> samples = this.memory.sampleExperiences(this.numReplay);
+				this.updateQFunction(samples);
+			}
 
 			//update stale function
 			this.stepsSinceStale++;
@@ -332,6 +363,30 @@ public abstract class ApproximateQLearning extends MDPSolver implements Learning
 	}
 
 
+	/**
+	 * Returns the importance-sampling weight of a sample being used for updating, by which its update should be scaled; 1 if the
+	 * experience memory is not a {@link PrioritizedMemory}.
+	 * @param i the index of the sample in the list given to {@link #updateQFunction(List)}
+	 * @return the importance-sampling weight of the sample
+	 */
+	protected double sampleWeight(int i){
+		return this.sampleWeights == null ? 1. : this.sampleWeights[i];
+	}
+
+
+	/**
+	 * Reports the TD error of a sample being used for updating, which becomes its priority in a {@link PrioritizedMemory}. Has no
+	 * effect if the experience memory is not a {@link PrioritizedMemory}.
+	 * @param i the index of the sample in the list given to {@link #updateQFunction(List)}
+	 * @param tdError the TD error of the sample
+	 */
+	protected void reportTDError(int i, double tdError){
+		if(this.sampleWeights != null){
+			this.sampleTDErrors[i] = tdError;
+		}
+	}
+
+
 	/**
 	 * Causes this objects value function approximation to be updated with respect to the provided experiences. This should result in the
 	 * vfa data member being updated. Updates should be made using target Q-values of the next state from the stale Q-function, which can be accessed
@@ -5,16 +5,16 @@ import burlap.behavior.functionapproximation.FunctionGradient;
 import burlap.behavior.learningrate.ConstantLR;
 import burlap.behavior.learningrate.LearningRate;
 import burlap.behavior.singleagent.options.EnvironmentOptionOutcome;
-import burlap.datastructures.HashedAggregator;
 import burlap.mdp.singleagent.SADomain;
 import burlap.mdp.singleagent.environment.EnvironmentOutcome;
 
 import java.util.List;
-import java.util.Map;
 
 /**
  * An implementation of Gradient Descent Q-learning. By default, updates the Q-function for the most recent example,
- * but because it extends {@link ApproximateQLearning}, it can set to use experience replay and state Q-functions.
+ * but because it extends {@link ApproximateQLearning}, it can set to use experience replay and state Q-functions. With a
+ * {@link burlap.behavior.singleagent.learning.experiencereplay.PrioritizedMemory}, each sample's update is scaled by its
+ * importance-sampling weight and its TD error is reported as its new priority.
  * @author James MacGlashan.
  */
 public class GradientDescentQLearning extends ApproximateQLearning {
@@ -24,6 +24,16 @@ public class GradientDescentQLearning extends ApproximateQLearning {
 	 */
 	protected LearningRate learningRate;
 
+	/**
+	 * The accumulator of the error-weighted gradients of a batch of samples, reused across updates
+	 */
+	protected FunctionGradient.SparseArrayGradient sumGradient = new FunctionGradient.SparseArrayGradient();
+
+	/**
+	 * The gradient of each sample, reused across samples
+	 */
+	protected FunctionGradient.SparseArrayGradient sampleGradient = new FunctionGradient.SparseArrayGradient();
+
 	/**
 	 * Initializes.
 	 * @param domain the learning domain
@@ -60,8 +70,11 @@ public class GradientDescentQLearning extends ApproximateQLearning {
 	@Override
 	public void updateQFunction(List<EnvironmentOutcome> samples) {
 
-		HashedAggregator<Integer> sumGradient = new HashedAggregator<Integer>();
-		for(EnvironmentOutcome eo : samples){
+		FunctionGradient.SparseArrayGradient sumGradient = this.sumGradient;
+		sumGradient.clear();
+		for(int k = 0; k < samples.size(); k++){
+
+			EnvironmentOutcome eo = samples.get(k);
 
 			//get statistics
 			double curQ = this.vfa.evaluate(eo.o, eo.a);
@@ -73,24 +86,22 @@ public class GradientDescentQLearning extends ApproximateQLearning {
 
 			//compute function delta
 			double delta = eo.r + (discount*nextQV) - curQ;
+			this.reportTDError(k, delta);
 
-			//get gradient and add it
-			FunctionGradient gradient = ((DifferentiableStateActionValue)this.vfa).gradient(eo.o, eo.a);
-			for(FunctionGradient.PartialDerivative pd : gradient.getNonZeroPartialDerivatives()){
-				double errorPd = pd.value*delta;
-				sumGradient.add(pd.parameterId, errorPd);
-			}
-
+			//get gradient and add it, scaled by the importance-sampling weight of prioritized samples
+			FunctionGradient gradient = ((DifferentiableStateActionValue)this.vfa).gradient(eo.o, eo.a, this.sampleGradient);
+			sumGradient.addScaled(gradient, delta * this.sampleWeight(k));
 
 		}
 
 		//now update parameters
 		double scalar = 1. / samples.size();
-		for(Map.Entry<Integer, Double> pd : sumGradient.entrySet()){
-			int pind = pd.getKey();
+		int n = sumGradient.numEntries();
+		for(int i = 0; i < n; i++){
+			int pind = sumGradient.parameterIdAt(i);
 			double oldP = this.vfa.getParameter(pind);
 			double lr = this.learningRate.pollLearningRate(this.totalSteps, pind);
-			double errorGrad = pd.getValue();
+			double errorGrad = sumGradient.partialDerivativeAt(i);
 			double nP = oldP + lr * scalar * errorGrad;
 			this.vfa.setParameter(pind, nP);
 		}
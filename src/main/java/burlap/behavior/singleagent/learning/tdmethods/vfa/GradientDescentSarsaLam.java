@@ -1,5 +1,6 @@
 package burlap.behavior.singleagent.learning.tdmethods.vfa;
 
+import burlap.behavior.functionapproximation.ActionOffsetStateActionValue;
 import burlap.behavior.functionapproximation.DifferentiableStateActionValue;
 import burlap.behavior.functionapproximation.FunctionGradient;
 import burlap.behavior.learningrate.ConstantLR;
@@ -10,6 +11,7 @@ import burlap.behavior.policy.Policy;
 import burlap.behavior.singleagent.Episode;
 import burlap.behavior.singleagent.MDPSolver;
 import burlap.behavior.singleagent.learning.LearningAgent;
+import burlap.behavior.singleagent.learning.tdmethods.EligibilityTraceStore;
 import burlap.behavior.singleagent.options.EnvironmentOptionOutcome;
 import burlap.behavior.singleagent.options.Option;
 import burlap.behavior.singleagent.planning.Planner;
@@ -43,6 +45,11 @@ import java.util.*;
  * want to use a custom learning rate decay schedule rather than a constant learning rate, use the
  * {@link #setLearningRate(burlap.behavior.learningrate.LearningRate)}.
  * <p>
+ * The eligibility traces of an episode are kept in an {@link EligibilityTraceStore}, so each step only scans the traces whose
+ * eligibility is at least {@link #minEligibityForUpdate}. With replacing traces, the traces of the other actions in the current state
+ * are found from the action offsets of an {@link ActionOffsetStateActionValue}, such as a {@link burlap.behavior.functionapproximation.dense.DenseLinearVFA};
+ * for other functions, the gradient of each action is computed.
+ * <p>
  * @author James MacGlashan
  * 
  * <p>
@@ -118,6 +125,21 @@ public class GradientDescentSarsaLam extends MDPSolver implements QProvider, Lea
 	 * Whether to use accumulating or replacing eligibility traces.
 	 */
 	protected boolean												useReplacingTraces = false;
+
+	/**
+	 * The eligibility traces of the current episode, identified by VFA parameter
+	 */
+	protected EligibilityTraceStore									traces = new EligibilityTraceStore();
+
+	/**
+	 * The gradient of the current step, reused across steps
+	 */
+	protected FunctionGradient.SparseArrayGradient					stepGradient = new FunctionGradient.SparseArrayGradient();
+
+	/**
+	 * The parameter offsets of the applicable actions when using replacing traces with an {@link ActionOffsetStateActionValue}
+	 */
+	protected int []												actionOffsets = new int[8];
 	
 	/**
 	 * Whether options should be decomposed into actions in the returned {@link Episode} objects.
@@ -330,14 +352,15 @@ public class GradientDescentSarsaLam extends MDPSolver implements QProvider, Lea
 
 		State curState = initialState;
 		eStepCounter = 0;
-		Map <Integer, EligibilityTraceVector> traces = new HashMap<Integer, EligibilityTraceVector>();
+		EligibilityTraceStore traces = this.traces;
+		traces.clear();
 
 		Action action = this.learningPolicy.action(curState);
 		while(!env.isInTerminalState() && (eStepCounter < maxSteps || maxSteps == -1)){
 
 			//get Q-value and gradient
 			double curQ = this.vfa.evaluate(curState, action);
-			FunctionGradient gradient = this.vfa.gradient(curState, action);
+			FunctionGradient gradient = this.vfa.gradient(curState, action, this.stepGradient);
 
 			EnvironmentOutcome eo;
 			if(!(action instanceof Option)){
@@ -376,71 +399,103 @@ public class GradientDescentSarsaLam extends MDPSolver implements QProvider, Lea
 			//also zero out selected action, since it will be put back in later code
 			if(this.useReplacingTraces){
 				List<Action> allActions = this.applicableActions(curState);
-				for(Action oa : allActions){
-
-					//get non-zero parameters and zero them
-					this.vfa.evaluate(curState, oa);
-					FunctionGradient ofg = this.vfa.gradient(curState, oa);
-					for(FunctionGradient.PartialDerivative pds : ofg.getNonZeroPartialDerivatives()){
-						EligibilityTraceVector et = traces.get(pds.parameterId);
-						if(et != null){
-							et.eligibilityValue = 0.;
+				if(this.vfa instanceof ActionOffsetStateActionValue){
+
+					//the other actions' parameters are the selected action's parameters shifted by their offsets
+					ActionOffsetStateActionValue ovfa = (ActionOffsetStateActionValue)this.vfa;
+					int nActions = allActions.size();
+					if(this.actionOffsets.length < nActions){
+						this.actionOffsets = new int[nActions];
+					}
+					for(int j = 0; j < nActions; j++){
+						this.actionOffsets[j] = ovfa.actionParameterOffset(allActions.get(j));
+					}
+					int selectedOffset = ovfa.actionParameterOffset(action);
+					int numEntries = gradient.numEntries();
+					for(int i = 0; i < numEntries; i++){
+						if(gradient.partialDerivativeAt(i) == 0.){
+							continue;
 						}
-						else{
-							//no trace for this yet, so add it
-							et = new EligibilityTraceVector(pds.parameterId, this.vfa.getParameter(pds.parameterId), 0.);
-							traces.put(pds.parameterId, et);
+						int featureId = gradient.parameterIdAt(i) - selectedOffset;
+						for(int j = 0; j < nActions; j++){
+							this.zeroTrace(featureId + this.actionOffsets[j]);
 						}
 					}
 
 				}
+				else{
+					for(Action oa : allActions){
+
+						//get non-zero parameters and zero them
+						this.vfa.evaluate(curState, oa);
+						FunctionGradient ofg = this.vfa.gradient(curState, oa);
+						int numEntries = ofg.numEntries();
+						for(int i = 0; i < numEntries; i++){
+							if(ofg.partialDerivativeAt(i) == 0.){
+								continue;
+							}
+							this.zeroTrace(ofg.parameterIdAt(i));
+						}
+
+					}
+				}
 			}
 			else{
 				//if not using replacing traces, then add any new parameters whose traces need to be set, but set initially
 				//at zero since it will be updated in the next loop
-				for(FunctionGradient.PartialDerivative pds : gradient.getNonZeroPartialDerivatives()){
-					if(!traces.containsKey(pds.parameterId)){
-						traces.put(pds.parameterId, new EligibilityTraceVector(pds.parameterId, this.vfa.getParameter(pds.parameterId), 0.));
+				int numEntries = gradient.numEntries();
+				for(int i = 0; i < numEntries; i++){
+					int pid = gradient.parameterIdAt(i);
+					if(gradient.partialDerivativeAt(i) != 0. && traces.indexOf(pid) == -1){
+						traces.add(pid, this.vfa.getParameter(pid), 0.);
 					}
 				}
 
 			}
 
+			//add the gradient to the traces of its parameters
+			int numEntries = gradient.numEntries();
+			for(int i = 0; i < numEntries; i++){
+				double pd = gradient.partialDerivativeAt(i);
+				if(pd == 0.){
+					continue;
+				}
+				int t = traces.indexOf(gradient.parameterIdAt(i));
+				if(t != -1){
+					traces.setEligibility(t, traces.eligibility(t) + pd);
+				}
+			}
+
 
-			//scan through trace elements, update them, and update parameter
+			//scan through trace elements and update the parameters
 			double learningRate = 0.;
 			if(!this.useFeatureWiseLearningRate){
 				learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, curState, action);
 			}
 
-			Set <Integer> deletedSet = new HashSet<Integer>();
-			for(EligibilityTraceVector et : traces.values()){
+			int numTraces = traces.size();
+			for(int t = 0; t < numTraces; t++){
+				int weight = traces.id(t);
 				if(this.useFeatureWiseLearningRate){
-					learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, et.weight);
+					learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, weight);
 				}
 
-				et.eligibilityValue += gradient.getPartialDerivative(et.weight);
-				double newParam = vfa.getParameter(et.weight) + learningRate * delta * et.eligibilityValue;
-				this.vfa.setParameter(et.weight, newParam);
+				double eligibility = traces.eligibility(t);
+				double newParam = vfa.getParameter(weight) + learningRate * delta * eligibility;
+				this.vfa.setParameter(weight, newParam);
 
-				double deltaW = Math.abs(et.initialWeightValue - newParam);
+				double deltaW = Math.abs(traces.initialValue(t) - newParam);
 				if(deltaW > maxWeightChangeInLastEpisode){
 					maxWeightChangeInLastEpisode = deltaW;
 				}
 
-				//now decay and delete from tracking if too small
-				et.eligibilityValue *= this.lambda*discount;
-				if(et.eligibilityValue < this.minEligibityForUpdate){
-					deletedSet.add(et.weight);
-				}
-
+				//now decay
+				traces.setEligibility(t, eligibility*(this.lambda*discount));
 
 			}
 
-			//delete traces marked for deletion
-			for(Integer t : deletedSet){
-				traces.remove(t);
-			}
+			//stop tracking traces that are too small
+			traces.removeBelow(this.minEligibityForUpdate);
 
 			//move on
 			curState = nextState;
@@ -456,6 +511,22 @@ public class GradientDescentSarsaLam extends MDPSolver implements QProvider, Lea
 	}
 
 
+	/**
+	 * Sets the eligibility of the trace of the given parameter to zero, adding the trace if there is none.
+	 * @param pid the parameter id
+	 */
+	protected void zeroTrace(int pid){
+		int t = this.traces.indexOf(pid);
+		if(t != -1){
+			this.traces.setEligibility(t, 0.);
+		}
+		else{
+			//no trace for this yet, so add it
+			this.traces.add(pid, this.vfa.getParameter(pid), 0.);
+		}
+	}
+
+
 	@Override
 	public List<QValue> qValues(State s) {
 		List<Action> gas = this.applicableActions(s);
@@ -3,6 +3,7 @@ package burlap.behavior.singleagent.options.model;
 import burlap.behavior.policy.support.ActionProb;
 import burlap.behavior.singleagent.options.Option;
 import burlap.datastructures.HashedAggregator;
+import burlap.datastructures.ParallelBlocks;
 import burlap.mdp.core.action.Action;
 import burlap.mdp.core.state.State;
 import burlap.mdp.singleagent.environment.EnvironmentOutcome;
@@ -14,6 +15,9 @@ import burlap.statehashing.HashableState;
 import burlap.statehashing.HashableStateFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A model that can compute a Markov option's transition model, and cache it, from a source {@link SampleModel}. A {@link FullModel} is
@@ -32,6 +36,22 @@ import java.util.*;
  * the compute probabilities are normalized by the amount of the trajectory probability mass computed, given
  * an estimated option transition model.
  * <p>
+ * Because the BFS expands every trajectory separately, its cost grows exponentially with the option's duration. Calling
+ * {@link #toggleDynamicProgramming(boolean)} instead computes the model of an option by dynamic programming over the hashed states the
+ * option can reach while it runs, which merges trajectories that reach the same state. The multi-time model of an option satisfies
+ * Bellman equations like those of a small MDP: for each state x in which the option is running,
+ * R(x) = \sum_a \pi(a | x) \sum_x' p(x' | x, a) [r + \gamma (1 - \beta(x')) R(x')], and
+ * P(y | x) = \sum_a \pi(a | x) \sum_x' p(x' | x, a) \gamma [\beta(x') 1(y = x') + (1 - \beta(x')) P(y | x')],
+ * where \beta is the option's termination probability. These are solved for all reachable states at once with Gauss-Seidel sweeps,
+ * until the largest change is smaller than {@link #setMaxDelta(double)}, so querying one state of a region computes the model of
+ * every state in it. The result is exact up to that tolerance and is not normalized.
+ * <p>
+ * The computed model of each initiation state is cached per option, keeping at most {@link #setMaxCachedStates(int)} states per option and
+ * evicting the least recently used. {@link #precomputeModels(List, List)} computes the models of a set of options ahead of planning, and
+ * {@link #setParallelPrecompute(int)} computes the options in parallel. The cache may be used by concurrent planners, such as
+ * {@link burlap.behavior.singleagent.planning.stochastic.DynamicProgramming} with parallel sweeps, but the source model and options must
+ * then also be safe to call concurrently.
+ * <p>
  * If you need a model for non-Markov options (e.g., a {@link burlap.behavior.singleagent.options.MacroAction}), use
  * the {@link BFSNonMarkovOptionModel} model, which using slightly more memory overhead in the computation to maintain
  * the fully trajectory history.
@@ -45,13 +65,38 @@ public class BFSMarkovOptionModel implements FullModel{
 	protected HashableStateFactory hashingFactory;
 
 
-	protected Map<Option, CachedModel> cachedModels = new HashMap<Option, CachedModel>();
-	protected Set<HashableState> srcTerminateStates = new HashSet<HashableState>();
+	protected Map<Option, CachedModel> cachedModels = new ConcurrentHashMap<Option, CachedModel>();
+	protected Set<HashableState> srcTerminateStates = Collections.newSetFromMap(new ConcurrentHashMap<HashableState, Boolean>());
 
 	protected double minProb = 0.999;
 
 	protected boolean requireMarkov = true;
 
+	/**
+	 * Whether option models are computed by dynamic programming rather than BFS
+	 */
+	protected boolean useDynamicProgramming = false;
+
+	/**
+	 * The largest change in a dynamic programming sweep at which the sweeps stop
+	 */
+	protected double maxDelta = 1e-8;
+
+	/**
+	 * The maximum number of dynamic programming sweeps
+	 */
+	protected int maxIterations = 10000;
+
+	/**
+	 * The maximum number of initiation states whose model is cached for each option
+	 */
+	protected int maxCachedStates = 100000;
+
+	/**
+	 * The executor and number of blocks with which options are precomputed; they are precomputed serially when it has no executor.
+	 */
+	protected ParallelBlocks precomputeBlocks = new ParallelBlocks();
+
 
 	public BFSMarkovOptionModel(SampleModel model, double discount, HashableStateFactory hashingFactory) {
 		this.model = model;
@@ -64,6 +109,64 @@ public class BFSMarkovOptionModel implements FullModel{
 		this.minProb = minProb;
 	}
 
+	/**
+	 * Sets whether option models are computed by dynamic programming over the states the option can reach, rather than by BFS over
+	 * its trajectories. The default is false.
+	 * @param useDynamicProgramming true to use dynamic programming; false to use BFS.
+	 */
+	public void toggleDynamicProgramming(boolean useDynamicProgramming) {
+		this.useDynamicProgramming = useDynamicProgramming;
+	}
+
+	/**
+	 * Sets the largest change in the termination probabilities or expected return of any state at which dynamic programming stops.
+	 * The default is 1e-8.
+	 * @param maxDelta the largest change at which dynamic programming stops
+	 */
+	public void setMaxDelta(double maxDelta) {
+		this.maxDelta = maxDelta;
+	}
+
+	/**
+	 * Sets the maximum number of dynamic programming sweeps for a region of states. The default is 10000.
+	 * @param maxIterations the maximum number of sweeps
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Sets the maximum number of initiation states whose model is cached for each option; when more are computed, the least recently
+	 * used are evicted. The bound also applies to the options already cached, which evict their least recently used states down to it.
+	 * The default is 100000.
+	 * @param maxCachedStates the maximum number of cached states per option
+	 */
+	public void setMaxCachedStates(int maxCachedStates) {
+		this.maxCachedStates = maxCachedStates;
+		for(CachedModel model : this.cachedModels.values()){
+			model.setMaxStates(maxCachedStates);
+		}
+	}
+
+	/**
+	 * Sets {@link #precomputeModels(List, List)} to compute options in parallel across the given number of threads using a new
+	 * {@link ForkJoinPool}. If numThreads is 1 or less, options are computed serially.
+	 * @param numThreads the number of threads to use.
+	 */
+	public void setParallelPrecompute(int numThreads) {
+		this.precomputeBlocks.setThreads(numThreads);
+	}
+
+	/**
+	 * Sets {@link #precomputeModels(List, List)} to compute options on the given executor, with the options split into numPartitions
+	 * contiguous blocks. The source model and the options must be safe to call concurrently.
+	 * @param executor the executor on which blocks are computed, such as a {@link ForkJoinPool}; null to compute serially
+	 * @param numPartitions the number of blocks into which the options are split
+	 */
+	public void setParallelPrecompute(ExecutorService executor, int numPartitions) {
+		this.precomputeBlocks.setExecutor(executor, numPartitions);
+	}
+
 	@Override
 	public List<TransitionProb> transitions(State s, Action a) {
 		if(!(model instanceof FullModel)){
@@ -84,11 +187,16 @@ public class BFSMarkovOptionModel implements FullModel{
 
 
 		CachedModel cmodel = this.getOrCreateModel(o);
-		List<TransitionProb> result = cmodel.cachedExpectations.get(hashingFactory.hashState(s));
+		HashableState sh = hashingFactory.hashState(s);
+		List<TransitionProb> result = cmodel.get(sh);
 		if(result != null){
 			return result;
 		}
 
+		if(this.useDynamicProgramming){
+			return this.solveRegion(o, Collections.singletonList(s), cmodel).get(sh);
+		}
+
 		HashedAggregator <HashableState> possibleTerminations = new HashedAggregator<HashableState>();
 		double [] expectedReturn = new double[]{0.};
 
@@ -106,9 +214,59 @@ public class BFSMarkovOptionModel implements FullModel{
 			transitions.add(tp);
 		}
 
+		cmodel.put(sh, transitions);
+
 		return transitions;
 	}
 
+
+	/**
+	 * Computes and caches the models of the given options for every given state in their initiation sets. With dynamic programming,
+	 * the states of each option are solved together, and the models of all states the option can reach from them are cached too.
+	 * Options are computed in parallel if {@link #setParallelPrecompute(int)} was set.
+	 * @param options the options whose models are computed
+	 * @param states the states from which the options may be initiated
+	 */
+	public void precomputeModels(final List<? extends Option> options, final List<State> states) {
+
+		this.precomputeBlocks.invokeBlocks(options.size(), new ParallelBlocks.Block<Object>() {
+			@Override
+			public Object run(int start, int end) {
+				precomputeModels(options, states, start, end);
+				return null;
+			}
+		}, "computing option models");
+
+	}
+
+
+	/**
+	 * Computes and caches the models of the options in positions [start, end) of the list.
+	 * @param options the options
+	 * @param states the states from which the options may be initiated
+	 * @param start the first option
+	 * @param end one past the last option
+	 */
+	protected void precomputeModels(List<? extends Option> options, List<State> states, int start, int end) {
+		for(int i = start; i < end; i++){
+			Option o = options.get(i);
+			List<State> initiation = new ArrayList<State>();
+			for(State s : states){
+				if(o.inInitiationSet(s)){
+					initiation.add(s);
+				}
+			}
+			if(this.useDynamicProgramming){
+				this.solveRegion(o, initiation, this.getOrCreateModel(o));
+			}
+			else{
+				for(State s : initiation){
+					this.transitions(s, o);
+				}
+			}
+		}
+	}
+
 	@Override
 	public EnvironmentOutcome sample(State s, Action a) {
 		if(!(a instanceof Option)){
@@ -132,9 +290,169 @@ public class BFSMarkovOptionModel implements FullModel{
 		if(model != null){
 			return model;
 		}
-		model = new CachedModel();
-		this.cachedModels.put(o, model);
-		return model;
+		model = new CachedModel(this.maxCachedStates);
+		CachedModel existing = this.cachedModels.putIfAbsent(o, model);
+		return existing != null ? existing : model;
+	}
+
+
+	/**
+	 * Computes the models of the option for the given start states, and every state the option can reach from them while it is running,
+	 * by Gauss-Seidel dynamic programming, and caches them.
+	 * @param o the option
+	 * @param starts the start states
+	 * @param cmodel the cache of the option
+	 * @return the computed models of the states, keyed by their hashed state
+	 */
+	protected Map<HashableState, List<TransitionProb>> solveRegion(Option o, List<State> starts, CachedModel cmodel){
+
+		FullModel fmodel = (FullModel)this.model;
+		Map<HashableState, RegionNode> nodes = new HashMap<HashableState, RegionNode>();
+		List<RegionNode> nodeList = new ArrayList<RegionNode>();
+		List<RegionNode> region = new ArrayList<RegionNode>();
+		Map<HashableState, List<TransitionProb>> results = new HashMap<HashableState, List<TransitionProb>>();
+
+		//start states are running even if the option would terminate in them, unless they are terminal
+		ArrayDeque<RegionNode> queue = new ArrayDeque<RegionNode>();
+		for(State s : starts){
+			RegionNode n = this.regionNode(o, s, nodes, nodeList);
+			if(this.model.terminal(s)){
+				EnvironmentOutcome eo = new EnvironmentOutcome(s, o, s, 0., true);
+				results.put(n.sh, Collections.singletonList(new TransitionProb(1., eo)));
+			}
+			else if(!n.running){
+				n.running = true;
+				region.add(n);
+				queue.addLast(n);
+			}
+		}
+
+		//find the states the option can reach while running, merging paths that reach the same state
+		Map<Integer, Double> successors = new LinkedHashMap<Integer, Double>();
+		while(!queue.isEmpty()){
+			RegionNode src = queue.poll();
+			successors.clear();
+			for(ActionProb ap : o.policyDistribution(src.sh.s(), null)){
+				if(ap.pSelection == 0.){
+					continue;
+				}
+				for(TransitionProb tp : fmodel.transitions(src.sh.s(), ap.ga)){
+					double p = ap.pSelection * tp.p;
+					if(p == 0.){
+						continue;
+					}
+					src.reward += p * tp.eo.r;
+					RegionNode next = this.regionNode(o, tp.eo.op, nodes, nodeList);
+					if(tp.eo.terminated){
+						next.terminated = true;
+						srcTerminateStates.add(next.sh);
+					}
+					Double prev = successors.get(next.id);
+					successors.put(next.id, prev == null ? p : prev + p);
+					if(next.beta < 1. && !next.running){
+						next.running = true;
+						region.add(next);
+						queue.addLast(next);
+					}
+				}
+			}
+			src.successors = new int[successors.size()];
+			src.successorProbs = new double[successors.size()];
+			int i = 0;
+			for(Map.Entry<Integer, Double> e : successors.entrySet()){
+				src.successors[i] = e.getKey();
+				src.successorProbs[i] = e.getValue();
+				i++;
+			}
+		}
+
+		//Gauss-Seidel sweeps, from the states found last, whose models the earlier states depend on
+		double [] dist = new double[nodeList.size()];
+		boolean [] touched = new boolean[nodeList.size()];
+		int [] touchedIds = new int[nodeList.size()];
+		for(int it = 0; it < this.maxIterations; it++){
+			double delta = 0.;
+			for(int i = region.size() - 1; i >= 0; i--){
+				RegionNode x = region.get(i);
+				double r = x.reward;
+				int nTouched = 0;
+				for(int k = 0; k < x.successors.length; k++){
+					RegionNode y = nodeList.get(x.successors[k]);
+					double w = this.discount * x.successorProbs[k];
+					if(y.beta > 0.){
+						if(!touched[y.id]){
+							touched[y.id] = true;
+							touchedIds[nTouched++] = y.id;
+						}
+						dist[y.id] += w * y.beta;
+					}
+					if(y.running && y.beta < 1.){
+						double wc = w * (1. - y.beta);
+						r += wc * y.value;
+						for(int t = 0; t < y.termIds.length; t++){
+							int id = y.termIds[t];
+							if(!touched[id]){
+								touched[id] = true;
+								touchedIds[nTouched++] = id;
+							}
+							dist[id] += wc * y.termProbs[t];
+						}
+					}
+				}
+
+				//the termination probabilities only grow from zero, so the change in their sum is the change of all of them
+				double mass = 0.;
+				if(x.termIds.length != nTouched){
+					x.termIds = new int[nTouched];
+					x.termProbs = new double[nTouched];
+				}
+				for(int t = 0; t < nTouched; t++){
+					int id = touchedIds[t];
+					x.termIds[t] = id;
+					x.termProbs[t] = dist[id];
+					mass += dist[id];
+					dist[id] = 0.;
+					touched[id] = false;
+				}
+				delta = Math.max(delta, Math.max(Math.abs(r - x.value), mass - x.mass));
+				x.value = r;
+				x.mass = mass;
+			}
+			if(delta < this.maxDelta){
+				break;
+			}
+		}
+
+		for(RegionNode x : region){
+			List<TransitionProb> transitions = new ArrayList<TransitionProb>(x.termIds.length);
+			for(int t = 0; t < x.termIds.length; t++){
+				RegionNode y = nodeList.get(x.termIds[t]);
+				EnvironmentOutcome eo = new EnvironmentOutcome(x.sh.s(), o, y.sh.s(), x.value, y.terminated);
+				transitions.add(new TransitionProb(x.termProbs[t], eo));
+			}
+			results.put(x.sh, transitions);
+		}
+		for(Map.Entry<HashableState, List<TransitionProb>> e : results.entrySet()){
+			cmodel.put(e.getKey(), e.getValue());
+		}
+
+		return results;
+	}
+
+
+	/**
+	 * Returns the node of a state in a dynamic programming region, creating it if it is new.
+	 */
+	protected RegionNode regionNode(Option o, State s, Map<HashableState, RegionNode> nodes, List<RegionNode> nodeList){
+		HashableState sh = this.hashingFactory.hashState(s);
+		RegionNode n = nodes.get(sh);
+		if(n == null){
+			double beta = this.model.terminal(s) ? 1. : o.probabilityOfTermination(s, null);
+			n = new RegionNode(nodeList.size(), sh, beta);
+			nodes.put(sh, n);
+			nodeList.add(n);
+		}
+		return n;
 	}
 
 
@@ -206,14 +524,151 @@ public class BFSMarkovOptionModel implements FullModel{
 	public static class CachedModel{
 
 		/**
-		 * The cached transition probabilities from each initiation state
+		 * The cached transition probabilities from each initiation state, in least recently used order
+		 */
+		protected Map<HashableState, List <TransitionProb>> cachedExpectations;
+
+		/**
+		 * The maximum number of cached states
+		 */
+		protected int maxStates;
+
+
+		public CachedModel() {
+			this(Integer.MAX_VALUE);
+		}
+
+		/**
+		 * Initializes a cache that keeps at most the given number of states, evicting the least recently used.
+		 * @param maxStates the maximum number of cached states
+		 */
+		public CachedModel(int maxStates) {
+			this.maxStates = maxStates;
+			this.cachedExpectations = new LinkedHashMap<HashableState, List<TransitionProb>>(16, 0.75f, true){
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<HashableState, List<TransitionProb>> eldest) {
+					return this.size() > CachedModel.this.maxStates;
+				}
+			};
+		}
+
+		/**
+		 * Sets the maximum number of cached states, evicting the least recently used states beyond it.
+		 * @param maxStates the maximum number of cached states
+		 */
+		synchronized public void setMaxStates(int maxStates) {
+			this.maxStates = maxStates;
+			Iterator<HashableState> it = this.cachedExpectations.keySet().iterator();
+			while(this.cachedExpectations.size() > maxStates && it.hasNext()){
+				it.next();
+				it.remove();
+			}
+		}
+
+		/**
+		 * Returns the cached transition probabilities from a state, or null if they are not cached.
+		 * @param sh the hashed state
+		 * @return the cached transition probabilities, or null
+		 */
+		synchronized public List<TransitionProb> get(HashableState sh) {
+			return this.cachedExpectations.get(sh);
+		}
+
+		/**
+		 * Caches the transition probabilities from a state.
+		 * @param sh the hashed state
+		 * @param transitions the transition probabilities
+		 */
+		synchronized public void put(HashableState sh, List<TransitionProb> transitions) {
+			this.cachedExpectations.put(sh, transitions);
+		}
+
+		/**
+		 * Returns the number of cached states.
+		 * @return the number of cached states
 		 */
-		protected Map<HashableState, List <TransitionProb>> cachedExpectations = new HashMap<HashableState, List<TransitionProb>>();
+		synchronized public int size() {
+			return this.cachedExpectations.size();
+		}
 
 
 	}
 
 
+	/**
+	 * A state of a dynamic programming region, with its termination probability, its merged successors if the option runs in it, and
+	 * its current model.
+	 */
+	protected static class RegionNode{
+
+		/**
+		 * The index of this node in its region
+		 */
+		protected int id;
+
+		/**
+		 * The hashed state
+		 */
+		protected HashableState sh;
+
+		/**
+		 * The probability that the option terminates on reaching this state
+		 */
+		protected double beta;
+
+		/**
+		 * Whether the option can be running in this state, so that its model is computed
+		 */
+		protected boolean running;
+
+		/**
+		 * Whether reaching this state terminated the source model
+		 */
+		protected boolean terminated;
+
+		/**
+		 * The node ids of the states reachable in one step, merged across actions and outcomes
+		 */
+		protected int [] successors;
+
+		/**
+		 * The probability of reaching each successor in one step
+		 */
+		protected double [] successorProbs;
+
+		/**
+		 * The expected immediate reward of one step
+		 */
+		protected double reward;
+
+		/**
+		 * The expected discounted return until termination
+		 */
+		protected double value;
+
+		/**
+		 * The node ids of the states in which the option may terminate
+		 */
+		protected int [] termIds = new int[0];
+
+		/**
+		 * The discounted probability of terminating in each of those states
+		 */
+		protected double [] termProbs = new double[0];
+
+		/**
+		 * The sum of {@link #termProbs}
+		 */
+		protected double mass;
+
+		public RegionNode(int id, HashableState sh, double beta) {
+			this.id = id;
+			this.sh = sh;
+			this.beta = beta;
+		}
+	}
+
+
 	public static class OptionScanNode{
 
 		/**
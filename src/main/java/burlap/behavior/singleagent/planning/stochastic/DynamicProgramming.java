@@ -11,6 +11,12 @@ import burlap.behavior.valuefunction.ConstantValueFunction;
 import burlap.behavior.valuefunction.QProvider;
 import burlap.behavior.valuefunction.QValue;
 import burlap.behavior.valuefunction.ValueFunction;
+import burlap.behavior.valuefunction.checkpoint.StateEncoder;
+import burlap.behavior.valuefunction.checkpoint.TableCheckpoint;
+import burlap.behavior.valuefunction.checkpoint.TableCheckpointReader;
+import burlap.behavior.valuefunction.checkpoint.TableCheckpointWriter;
+import burlap.behavior.valuefunction.checkpoint.BinaryStateEncoder;
+import burlap.datastructures.ParallelBlocks;
 import burlap.mdp.core.action.Action;
 import burlap.mdp.core.state.State;
 import burlap.mdp.singleagent.SADomain;
@@ -23,6 +29,8 @@ import org.yaml.snakeyaml.Yaml;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A class for performing dynamic programming operations: updating the value function using a Bellman backup.
@@ -46,6 +54,33 @@ public class DynamicProgramming extends MDPSolver implements ValueFunction, QPro
 
 
 	protected DPOperator operator = new BellmanOperator();
+
+
+	/**
+	 * Whether planning sweeps should be performed over a compiled {@link IndexedTransitionTable} rather than the value function map.
+	 * Default is false.
+	 */
+	protected boolean useIndexedTable = false;
+
+
+	/**
+	 * The compiled transition dynamics and values of the discovered states; null when not compiled or when it has been invalidated
+	 * by a change to the state space.
+	 */
+	protected IndexedTransitionTable indexedTable;
+
+
+	/**
+	 * The executor and number of blocks with which synchronous (Jacobi) sweeps over the {@link IndexedTransitionTable} are performed;
+	 * sweeps are performed serially in place when it has no executor.
+	 */
+	protected ParallelBlocks sweepBlocks = new ParallelBlocks();
+
+
+	/**
+	 * The {@link StateEncoder} used to write and read states in value table checkpoints.
+	 */
+	protected StateEncoder checkpointStateEncoder = new BinaryStateEncoder();
 	
 
 	
@@ -76,6 +111,7 @@ public class DynamicProgramming extends MDPSolver implements ValueFunction, QPro
 	@Override
 	public void resetSolver(){
 		this.valueFunction.clear();
+		this.indexedTable = null;
 	}
 	
 	/**
@@ -111,6 +147,62 @@ public class DynamicProgramming extends MDPSolver implements ValueFunction, QPro
 		this.operator = operator;
 	}
 
+	/**
+	 * Sets whether planning sweeps are performed over a compiled {@link IndexedTransitionTable}. When enabled, after the reachable
+	 * states are found each state is assigned a dense index, the transition dynamics are stored once in primitive arrays
+	 * and values are stored in a double array, so that sweeps perform no state hashing, model queries, or allocation. The
+	 * value function map is updated from the table after planning, and {@link #value(State)} and {@link #qValues(State)} are answered
+	 * from the table with a single index lookup. Requires the model to be a {@link FullModel} and the state space to be small enough to
+	 * hold all transitions in memory.
+	 * @param toggle true to plan over a compiled table; false to plan over the value function map.
+	 */
+	public void toggleIndexedTable(boolean toggle){
+		this.useIndexedTable = toggle;
+		if(!toggle){
+			this.indexedTable = null;
+			this.setParallelSweeps(null, 1);
+		}
+	}
+
+	/**
+	 * Sets planning sweeps to be performed synchronously (Jacobi-style) across the given number of threads using a new
+	 * {@link ForkJoinPool}, with the states split into one contiguous block per thread. This setting
+	 * also enables the compiled {@link IndexedTransitionTable} (see {@link #toggleIndexedTable(boolean)}). Synchronous sweeps
+	 * back up each state from the values of the previous sweep, so results are deterministic and independent of
+	 * the number of threads, but they may require more sweeps to converge than serial in-place sweeps.
+	 * If numThreads is 1 or less, sweeps are performed serially.
+	 * @param numThreads the number of threads to use.
+	 */
+	public void setParallelSweeps(int numThreads){
+		this.sweepBlocks.setThreads(numThreads);
+		if(this.sweepBlocks.isParallel()){
+			this.useIndexedTable = true;
+		}
+	}
+
+	/**
+	 * Sets planning sweeps to be performed synchronously (Jacobi-style) on the given executor, with the states split into
+	 * numPartitions contiguous blocks. This setting also enables the compiled {@link IndexedTransitionTable}
+	 * (see {@link #toggleIndexedTable(boolean)}). Results are deterministic and independent of the executor and the partitioning.
+	 * The {@link DPOperator} used must be safe to call concurrently.
+	 * @param executor the executor on which blocks are backed up, such as a {@link ForkJoinPool}; null to perform sweeps serially
+	 * @param numPartitions the number of blocks into which the states are split
+	 */
+	public void setParallelSweeps(ExecutorService executor, int numPartitions){
+		this.sweepBlocks.setExecutor(executor, numPartitions);
+		if(executor != null){
+			this.useIndexedTable = true;
+		}
+	}
+
+	/**
+	 * Returns whether planning sweeps are performed over a compiled {@link IndexedTransitionTable}.
+	 * @return true if planning is performed over a compiled table; false otherwise.
+	 */
+	public boolean usingIndexedTable(){
+		return this.useIndexedTable;
+	}
+
 	/**
 	 * Returns whether a value for the given state has been computed previously.
 	 * @param s the state to check
@@ -144,6 +236,12 @@ public class DynamicProgramming extends MDPSolver implements ValueFunction, QPro
 	 * @return the value function evaluation of the given state.
 	 */
 	public double value(HashableState sh){
+		if(this.indexedTable != null){
+			int i = this.indexedTable.indexOf(sh);
+			if(i != -1){
+				return this.indexedTable.value(i);
+			}
+		}
 		if(this.model.terminal(sh.s())){
 			return 0.;
 		}
@@ -157,6 +255,17 @@ public class DynamicProgramming extends MDPSolver implements ValueFunction, QPro
 	
 	@Override
 	public List <QValue> qValues(State s){
+
+		int i = this.indexedStateActions(s);
+		if(i != -1){
+			int n = this.indexedTable.numActions(i);
+			int start = this.indexedTable.firstStateAction(i);
+			List<QValue> qs = new ArrayList<QValue>(n);
+			for(int j = start; j < start + n; j++){
+				qs.add(new QValue(s, this.indexedTable.actionAt(j), this.indexedTable.qValue(j, this.indexedTable.values())));
+			}
+			return qs;
+		}
 		
 		List<Action> gas = this.applicableActions(s);
 		List<QValue> qs = new ArrayList<QValue>(gas.size());
@@ -174,6 +283,14 @@ public class DynamicProgramming extends MDPSolver implements ValueFunction, QPro
 	@Override
 	public double qValue(State s, Action a){
 
+		int i = this.indexedStateActions(s);
+		if(i != -1){
+			int j = this.indexedTable.stateActionIndex(i, a);
+			if(j != -1){
+				return this.indexedTable.qValue(j, this.indexedTable.values());
+			}
+		}
+
 		double dq = this.computeQ(s, a);
 		return dq;
 		
@@ -195,6 +312,120 @@ public class DynamicProgramming extends MDPSolver implements ValueFunction, QPro
 	}
 
 
+	/**
+	 * Returns the {@link IndexedTransitionTable} index of the given state if a compiled table exists and the state is a
+	 * non-terminal state whose actions are stored in it; -1 otherwise.
+	 * @param s the state to look up
+	 * @return the table index of the state or -1 if its actions are not compiled.
+	 */
+	protected int indexedStateActions(State s){
+		if(this.indexedTable == null){
+			return -1;
+		}
+		int i = this.indexedTable.indexOf(this.stateHash(s));
+		if(i == -1 || i >= this.indexedTable.numExpanded() || this.indexedTable.isTerminal(i)){
+			return -1;
+		}
+		return i;
+	}
+
+
+	/**
+	 * Compiles the transition dynamics of all states currently stored in the value function into an {@link IndexedTransitionTable},
+	 * which is then used for value lookups and by subclasses for planning sweeps. Successor states that are not stored
+	 * in the value function are indexed with a fixed value: 0 if they are terminal and the value function initialization otherwise.
+	 * The values of stored states are initialized from the value function map.
+	 */
+	protected void compileIndexedTable(){
+
+		IndexedTransitionTable table = new IndexedTransitionTable(this.valueFunction.size());
+
+		//index stored states first so that they occupy the leading indices
+		for(HashableState sh : this.valueFunction.keySet()){
+			table.indexFor(sh);
+		}
+
+		int n = table.numStates();
+		for(int i = 0; i < n; i++){
+
+			HashableState sh = table.stateAt(i);
+			boolean terminal = this.model.terminal(sh.s());
+			table.beginState(i, terminal);
+			if(terminal){
+				//terminal states always have a state value of 0
+				table.setValue(i, 0.);
+				continue;
+			}
+			table.setValue(i, this.valueFunction.get(sh));
+
+			List<Action> gas = this.applicableActions(sh.s());
+			for(Action ga : gas){
+
+				List<TransitionProb> tps = ((FullModel)this.model).transitions(sh.s(), ga);
+
+				if(ga instanceof Option){
+					//for options, expected reward is on state-action level and tp.p is already the discounted probability
+					table.beginAction(ga, tps.get(0).eo.r);
+					for(TransitionProb tp : tps){
+						table.addTransition(this.stateHash(tp.eo.op), tp.p);
+					}
+				}
+				else{
+					double r = 0.;
+					for(TransitionProb tp : tps){
+						r += tp.p * tp.eo.r;
+					}
+					table.beginAction(ga, r);
+					for(TransitionProb tp : tps){
+						table.addTransition(this.stateHash(tp.eo.op), this.gamma * tp.p);
+					}
+				}
+
+			}
+
+		}
+
+		table.finish();
+
+		//successors that are not stored are never backed up, so their value is fixed
+		for(int i = n; i < table.numStates(); i++){
+			State s = table.stateAt(i).s();
+			boolean terminal = this.model.terminal(s);
+			table.setTerminal(i, terminal);
+			table.setValue(i, terminal ? 0. : this.getDefaultValue(s));
+		}
+
+		this.indexedTable = table;
+
+	}
+
+
+	/**
+	 * Performs one sweep of Bellman backups over the compiled {@link IndexedTransitionTable}: synchronously across the
+	 * sweep executor if parallel sweeps are set, and serially in place otherwise.
+	 * @return the maximum change in value of any state
+	 */
+	protected double indexedSweep(){
+		if(this.sweepBlocks.isParallel()){
+			return this.indexedTable.jacobiSweep(this.operator, this.sweepBlocks.executor(), this.sweepBlocks.numPartitions());
+		}
+		return this.indexedTable.sweep(this.operator);
+	}
+
+	/**
+	 * Performs one sweep of fixed-policy backups over the compiled {@link IndexedTransitionTable} for the policy last set
+	 * with {@link IndexedTransitionTable#setPolicy(EnumerablePolicy)}: synchronously across the sweep executor if
+	 * parallel sweeps are set, and serially in place otherwise.
+	 * @return the maximum change in value of any state
+	 */
+	protected double indexedPolicySweep(){
+		if(this.sweepBlocks.isParallel()){
+			return this.indexedTable.jacobiPolicySweep(this.sweepBlocks.executor(), this.sweepBlocks.numPartitions());
+		}
+		return this.indexedTable.policySweep();
+	}
+
+
 	public DynamicProgramming getCopyOfValueFunction(){
 
 		DynamicProgramming dpCopy = new DynamicProgramming();
@@ -205,6 +436,11 @@ public class DynamicProgramming extends MDPSolver implements ValueFunction, QPro
 		for(Map.Entry<HashableState, Double> e : this.valueFunction.entrySet()){
 			dpCopy.valueFunction.put(e.getKey(), e.getValue());
 		}
+
+		//share the compiled transitions so that the copy answers Q-value queries without querying the model
+		if(this.indexedTable != null){
+			dpCopy.indexedTable = this.indexedTable.snapshot();
+		}
 		return dpCopy;
 	}
 
@@ -239,32 +475,90 @@ public class DynamicProgramming extends MDPSolver implements ValueFunction, QPro
 	}
 
 	/**
-	 * Writes the value function table stored in this object to the specified file path.
-	 * Uses a standard YAML approach, which means the HashableState and underlying Domain states
-	 * must have JavaBean like properties; i.e., have a default constructor and getters and setters (or public data
-	 * members) for all relevant fields.
+	 * Sets the {@link StateEncoder} used to write and read states in value table checkpoints. The default is a {@link BinaryStateEncoder};
+	 * a domain-specific encoder can be faster and more compact. Checkpoints written by earlier versions with the former default
+	 * {@link burlap.behavior.valuefunction.checkpoint.YamlStateEncoder} are still read with it.
+	 * @param checkpointStateEncoder the {@link StateEncoder} to use for value table checkpoints
+	 */
+	public void setCheckpointStateEncoder(StateEncoder checkpointStateEncoder) {
+		this.checkpointStateEncoder = checkpointStateEncoder;
+	}
+
+	/**
+	 * Writes the value function table stored in this object to the specified file path as an uncompressed binary table checkpoint.
+	 * See {@link #writeValueTable(String, boolean)}.
 	 * @param path the path to write the value function
 	 */
 	public void writeValueTable(String path){
-		Yaml yaml = new Yaml();
-		try {
-			yaml.dump(this.valueFunction, new BufferedWriter(new FileWriter(path)));
+		this.writeValueTable(path, false);
+	}
+
+	/**
+	 * Writes the value function table stored in this object to the specified file path in the binary {@link TableCheckpoint} format.
+	 * Entries are streamed to the file, so no copy of the table is made. States are written with the {@link StateEncoder} set with
+	 * {@link #setCheckpointStateEncoder(StateEncoder)}.
+	 * @param path the path to write the value function
+	 * @param compressed whether to GZIP compress the checkpoint
+	 */
+	public void writeValueTable(String path, boolean compressed){
+		try(TableCheckpointWriter writer = new TableCheckpointWriter(path, TableCheckpoint.VALUE_TABLE, compressed, false, this.checkpointStateEncoder)){
+			for(Map.Entry<HashableState, Double> e : this.valueFunction.entrySet()){
+				writer.writeValue(e.getKey().s(), e.getValue());
+			}
+			writer.finish();
 		} catch(IOException e) {
-			e.printStackTrace();
+			throw new RuntimeException("Could not write value table checkpoint " + path, e);
 		}
 	}
 
 	/**
-	 * Loads the value function table located on disk at the specified path. Expects the file to be a Yaml
-	 * representation of a Java {@link Map} from {@link HashableState} to {@link Double}.
+	 * Loads the value function table located on disk at the specified path. The file may either be a binary {@link TableCheckpoint}
+	 * written by {@link #writeValueTable(String, boolean)}, or a Yaml representation of a Java {@link Map} from {@link HashableState}
+	 * to {@link Double} written by earlier versions. A full checkpoint or Yaml file replaces the current value function; a delta
+	 * checkpoint is applied on top of it.
 	 * @param path the path to the save value function table
 	 */
 	public void loadValueTable(String path){
+		if(TableCheckpoint.isCheckpoint(path)){
+			this.loadValueTableCheckpoint(path);
+		}
+		else{
+			this.loadYamlValueTable(path);
+		}
+		this.indexedTable = null;
+	}
+
+	/**
+	 * Loads a binary {@link TableCheckpoint} value table.
+	 * @param path the path to the checkpoint
+	 */
+	protected void loadValueTableCheckpoint(String path){
+		try(TableCheckpointReader reader = new TableCheckpointReader(path, this.checkpointStateEncoder)){
+			if(reader.tableType() != TableCheckpoint.VALUE_TABLE){
+				throw new RuntimeException(path + " is not a value table checkpoint.");
+			}
+			if(!reader.isDelta()){
+				this.valueFunction.clear();
+			}
+			while(reader.next()){
+				this.valueFunction.put(this.stateHash(reader.state()), reader.value());
+			}
+		} catch(IOException e) {
+			throw new RuntimeException("Could not read value table checkpoint " + path, e);
+		}
+	}
+
+	/**
+	 * Loads a Yaml representation of a Java {@link Map} from {@link HashableState} to {@link Double}, as written by earlier versions
+	 * of {@link #writeValueTable(String)}.
+	 * @param path the path to the Yaml file
+	 */
+	protected void loadYamlValueTable(String path){
 		Yaml yaml = new Yaml();
-		try {
-			this.valueFunction = (Map<HashableState, Double>)yaml.load(new FileReader(path));
-		} catch(FileNotFoundException e) {
-			e.printStackTrace();
+		try(Reader in = new BufferedReader(new FileReader(path))) {
+			this.valueFunction = (Map<HashableState, Double>)yaml.load(in);
+		} catch(IOException e) {
+			throw new RuntimeException("Could not read value table " + path, e);
 		}
 	}
 
@@ -295,6 +589,7 @@ public class DynamicProgramming extends MDPSolver implements ValueFunction, QPro
 
 		double nv = operator.apply(qs);
 		valueFunction.put(sh, nv);
+		this.setIndexedValue(sh, nv);
 		
 		return nv;
 	}
@@ -339,6 +634,7 @@ public class DynamicProgramming extends MDPSolver implements ValueFunction, QPro
 		
 		
 		valueFunction.put(sh, weightedQ);
+		this.setIndexedValue(sh, weightedQ);
 		
 		return weightedQ;
 		
@@ -347,6 +643,21 @@ public class DynamicProgramming extends MDPSolver implements ValueFunction, QPro
 	
 
 
+	/**
+	 * Sets the value of the given state in the compiled {@link IndexedTransitionTable}, if one exists and indexes the state.
+	 * @param sh the hashed state
+	 * @param v the value of the state
+	 */
+	protected void setIndexedValue(HashableState sh, double v){
+		if(this.indexedTable != null){
+			int i = this.indexedTable.indexOf(sh);
+			if(i != -1){
+				this.indexedTable.setValue(i, v);
+			}
+		}
+	}
+
+
 	/**
 	 * Computes the Q-value This computation
 	 * *is* compatible with {@link burlap.behavior.singleagent.options.Option} objects.
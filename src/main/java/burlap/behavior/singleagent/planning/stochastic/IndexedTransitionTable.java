@@ -0,0 +1,618 @@
+package burlap.behavior.singleagent.planning.stochastic;
+
+import burlap.behavior.policy.EnumerablePolicy;
+import burlap.behavior.policy.PolicyUtils;
+import burlap.behavior.policy.support.ActionProb;
+import burlap.behavior.singleagent.planning.stochastic.dpoperator.DPOperator;
+import burlap.datastructures.ParallelBlocks;
+import burlap.mdp.core.action.Action;
+import burlap.statehashing.HashableState;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+
+/**
+ * A compiled, array-backed representation of the tabular transition dynamics and value function of a finite set of states.
+ * Each state is assigned a dense int index and the transition dynamics are stored once in compressed sparse row (CSR) form:
+ * the actions of state i are indexed by the range [{@link #actionOffsets}[i], {@link #actionOffsets}[i+1]) and the
+ * transitions of state-action j are indexed by the range [{@link #transitionOffsets}[j], {@link #transitionOffsets}[j+1]).
+ * For each state-action the expected (one step or option) reward is stored and for each transition the successor state index and the
+ * discounted probability of reaching it is stored, so that a Q-value is computed as
+ * <p>
+ * Q(s, a) = R(s, a) + sum_t discountedProbabilities[t] * values[successors[t]]
+ * <p>
+ * which means Bellman backups over this table require no state hashing, no model queries and no allocation.
+ * <p>
+ * States are either expanded, in which case their actions and transitions are stored and their value is backed up,
+ * or fixed, in which case they are successors of expanded states whose values remain constant (0 for terminal
+ * states or the value function initialization otherwise). Expanded states always occupy the indices [0, {@link #numExpanded()}).
+ * <p>
+ * Tables are built by first indexing every expanded state with {@link #indexFor(HashableState)}, then for each
+ * expanded state in index order calling {@link #beginState(int, boolean)} followed by {@link #beginAction(Action, double)} and
+ * {@link #addTransition(HashableState, double)} for each of its actions and transitions, and finally calling {@link #finish()}.
+ * {@link DynamicProgramming#compileIndexedTable()} performs these steps from a {@link DynamicProgramming} instance.
+ * <p>
+ * Sweeps may be performed in place (Gauss-Seidel), as with {@link #sweep(DPOperator)}, or synchronously (Jacobi) across
+ * a thread pool, as with {@link #jacobiSweep(DPOperator, ExecutorService, int)}. Synchronous sweeps read only the values of the
+ * previous sweep and write into a second buffer, so their results do not depend on the partitioning or on thread scheduling.
+ */
+public class IndexedTransitionTable {
+
+	/**
+	 * Maps each indexed state to its index
+	 */
+	protected Map<HashableState, Integer>				stateIndex;
+
+	/**
+	 * The states, ordered by index
+	 */
+	protected HashableState []							states;
+
+	/**
+	 * The number of indexed states
+	 */
+	protected int										numStates = 0;
+
+	/**
+	 * The number of expanded states, which occupy the first indices of the table
+	 */
+	protected int										numExpanded = 0;
+
+	/**
+	 * Whether each state is terminal
+	 */
+	protected boolean []								terminal;
+
+	/**
+	 * The offsets into the state-action arrays for each state; has length {@link #numStates} + 1 once finished.
+	 */
+	protected int []									actionOffsets;
+
+	/**
+	 * The action of each state-action
+	 */
+	protected Action []									actions;
+
+	/**
+	 * The expected reward of each state-action
+	 */
+	protected double []									expectedRewards;
+
+	/**
+	 * The offsets into the transition arrays for each state-action; has length {@link #numActions} + 1 once finished.
+	 */
+	protected int []									transitionOffsets;
+
+	/**
+	 * The number of state-actions
+	 */
+	protected int										numActions = 0;
+
+	/**
+	 * The successor state index of each transition
+	 */
+	protected int []									successors;
+
+	/**
+	 * The discounted probability of each transition
+	 */
+	protected double []									discountedProbabilities;
+
+	/**
+	 * The number of transitions
+	 */
+	protected int										numTransitions = 0;
+
+	/**
+	 * The value of each state
+	 */
+	protected double []									values;
+
+	/**
+	 * The policy probability of each state-action used by fixed-policy backups; null until {@link #setPolicy(EnumerablePolicy)} is called.
+	 */
+	protected double []									policyProbabilities;
+
+	/**
+	 * Q-value buffers indexed by the number of actions of a state, so that the {@link DPOperator} can be applied without allocation
+	 */
+	protected double [][]								qBuffers = new double[1][0];
+
+	/**
+	 * The maximum number of actions of any expanded state
+	 */
+	protected int										maxActions = 0;
+
+	/**
+	 * The second value buffer used by synchronous (Jacobi) sweeps; null until the first synchronous sweep.
+	 */
+	protected double []									nextValues;
+
+
+	/**
+	 * Initializes an empty table.
+	 * @param expectedNumStates the expected number of expanded states, used to size the initial storage.
+	 */
+	public IndexedTransitionTable(int expectedNumStates){
+		int cap = Math.max(expectedNumStates, 16);
+		this.stateIndex = new HashMap<HashableState, Integer>(cap * 2);
+		this.states = new HashableState[cap];
+		this.terminal = new boolean[cap];
+		this.values = new double[cap];
+		this.actionOffsets = new int[cap+1];
+		this.actions = new Action[cap];
+		this.expectedRewards = new double[cap];
+		this.transitionOffsets = new int[cap+1];
+		this.successors = new int[cap];
+		this.discountedProbabilities = new double[cap];
+	}
+
+
+	/**
+	 * Returns the index of the given state, indexing it if it has not been indexed before.
+	 * @param sh the hashed state
+	 * @return the index of the state
+	 */
+	public int indexFor(HashableState sh){
+		Integer ind = this.stateIndex.get(sh);
+		if(ind != null){
+			return ind;
+		}
+		if(this.numStates == this.states.length){
+			int ncap = this.states.length * 2;
+			this.states = Arrays.copyOf(this.states, ncap);
+			this.terminal = Arrays.copyOf(this.terminal, ncap);
+			this.values = Arrays.copyOf(this.values, ncap);
+		}
+		int i = this.numStates;
+		this.states[i] = sh;
+		this.stateIndex.put(sh, i);
+		this.numStates++;
+		return i;
+	}
+
+	/**
+	 * Returns the index of the given state or -1 if it is not indexed by this table.
+	 * @param sh the hashed state
+	 * @return the index of the state or -1 if it is not indexed.
+	 */
+	public int indexOf(HashableState sh){
+		Integer ind = this.stateIndex.get(sh);
+		return ind == null ? -1 : ind;
+	}
+
+	/**
+	 * Begins the action definitions of the expanded state with the given index. Expanded states must be begun in index order.
+	 * @param i the index of the expanded state
+	 * @param isTerminal whether the state is terminal. Terminal states should not have any actions added.
+	 */
+	public void beginState(int i, boolean isTerminal){
+		if(i != this.numExpanded){
+			throw new RuntimeException("Expanded states must be compiled in index order; expected state " + this.numExpanded + " but received " + i);
+		}
+		if(this.actionOffsets.length < i + 2){
+			this.actionOffsets = Arrays.copyOf(this.actionOffsets, Math.max(this.actionOffsets.length * 2, i + 2));
+		}
+		this.terminal[i] = isTerminal;
+		this.actionOffsets[i] = this.numActions;
+		this.numExpanded++;
+	}
+
+	/**
+	 * Adds an action to the most recently begun state.
+	 * @param a the action
+	 * @param expectedReward the expected reward of the action; for options this is the expected discounted cumulative reward.
+	 */
+	public void beginAction(Action a, double expectedReward){
+		if(this.numActions == this.actions.length){
+			int ncap = this.actions.length * 2;
+			this.actions = Arrays.copyOf(this.actions, ncap);
+			this.expectedRewards = Arrays.copyOf(this.expectedRewards, ncap);
+			this.transitionOffsets = Arrays.copyOf(this.transitionOffsets, ncap+1);
+		}
+		this.actions[this.numActions] = a;
+		this.expectedRewards[this.numActions] = expectedReward;
+		this.transitionOffsets[this.numActions] = this.numTransitions;
+		this.numActions++;
+	}
+
+	/**
+	 * Adds a transition to the most recently added action.
+	 * @param sh the successor state
+	 * @param discountedProbability the probability of the transition multiplied by the discount factor (or, for options, the discounted termination probability).
+	 */
+	public void addTransition(HashableState sh, double discountedProbability){
+		int si = this.indexFor(sh);
+		if(this.numTransitions == this.successors.length){
+			int ncap = this.successors.length * 2;
+			this.successors = Arrays.copyOf(this.successors, ncap);
+			this.discountedProbabilities = Arrays.copyOf(this.discountedProbabilities, ncap);
+		}
+		this.successors[this.numTransitions] = si;
+		this.discountedProbabilities[this.numTransitions] = discountedProbability;
+		this.numTransitions++;
+	}
+
+	/**
+	 * Closes the offsets of the table after all expanded states have been added and sizes the operator buffers.
+	 * After this method is called, the values of fixed states must be set with {@link #setValue(int, double)}.
+	 */
+	public void finish(){
+		if(this.actionOffsets.length < this.numStates + 1){
+			this.actionOffsets = Arrays.copyOf(this.actionOffsets, this.numStates + 1);
+		}
+		//fixed states have no actions
+		for(int i = this.numExpanded; i <= this.numStates; i++){
+			this.actionOffsets[i] = this.numActions;
+		}
+		this.transitionOffsets[this.numActions] = this.numTransitions;
+
+		this.maxActions = 0;
+		for(int i = 0; i < this.numExpanded; i++){
+			this.maxActions = Math.max(this.maxActions, this.actionOffsets[i+1] - this.actionOffsets[i]);
+		}
+		this.qBuffers = this.newQBuffers();
+		this.nextValues = null;
+	}
+
+	/**
+	 * Creates a new set of Q-value buffers indexed by the number of actions of a state.
+	 * @return a new set of Q-value buffers.
+	 */
+	protected double [][] newQBuffers(){
+		double [][] buffers = new double[this.maxActions+1][];
+		for(int i = 0; i <= this.maxActions; i++){
+			buffers[i] = new double[i];
+		}
+		return buffers;
+	}
+
+	/**
+	 * Returns the number of indexed states.
+	 * @return the number of indexed states.
+	 */
+	public int numStates(){
+		return this.numStates;
+	}
+
+	/**
+	 * Returns the number of expanded states. Expanded states occupy the indices [0, numExpanded()).
+	 * @return the number of expanded states.
+	 */
+	public int numExpanded(){
+		return this.numExpanded;
+	}
+
+	/**
+	 * Returns the state with the given index.
+	 * @param i the state index
+	 * @return the state with the given index.
+	 */
+	public HashableState stateAt(int i){
+		return this.states[i];
+	}
+
+	/**
+	 * Returns whether the state with the given index is terminal.
+	 * @param i the state index
+	 * @return true if the state is terminal; false otherwise.
+	 */
+	public boolean isTerminal(int i){
+		return this.terminal[i];
+	}
+
+	/**
+	 * Marks whether the state with the given index is terminal. Used for fixed states.
+	 * @param i the state index
+	 * @param isTerminal whether the state is terminal.
+	 */
+	public void setTerminal(int i, boolean isTerminal){
+		this.terminal[i] = isTerminal;
+	}
+
+	/**
+	 * Returns the current value of the state with the given index.
+	 * @param i the state index
+	 * @return the value of the state.
+	 */
+	public double value(int i){
+		return this.values[i];
+	}
+
+	/**
+	 * Sets the value of the state with the given index.
+	 * @param i the state index
+	 * @param v the value of the state
+	 */
+	public void setValue(int i, double v){
+		this.values[i] = v;
+		if(this.nextValues != null){
+			this.nextValues[i] = v;
+		}
+	}
+
+	/**
+	 * Returns the backing value array. Indices at or beyond {@link #numStates()} are unused.
+	 * @return the backing value array.
+	 */
+	public double [] values(){
+		return this.values;
+	}
+
+	/**
+	 * Returns the index of the first state-action of the state with the given index. The state-actions of the state
+	 * are the {@link #numActions(int)} consecutive indices starting from it.
+	 * @param i the state index
+	 * @return the index of the first state-action of the state.
+	 */
+	public int firstStateAction(int i){
+		return this.actionOffsets[i];
+	}
+
+	/**
+	 * Returns the action of the given state-action index.
+	 * @param j the state-action index
+	 * @return the action of the state-action
+	 */
+	public Action actionAt(int j){
+		return this.actions[j];
+	}
+
+	/**
+	 * Returns the index of the given action in the state with the given index, or -1 if the state does not have the action.
+	 * @param i the state index
+	 * @param a the action
+	 * @return the state-action index or -1 if the action is not stored for the state.
+	 */
+	public int stateActionIndex(int i, Action a){
+		for(int j = this.actionOffsets[i]; j < this.actionOffsets[i+1]; j++){
+			if(this.actions[j].equals(a)){
+				return j;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Computes the Q-value of the given state-action index using the provided value array.
+	 * @param j the state-action index
+	 * @param v the value array from which successor values are read
+	 * @return the Q-value
+	 */
+	public double qValue(int j, double [] v){
+		double q = this.expectedRewards[j];
+		int end = this.transitionOffsets[j+1];
+		for(int t = this.transitionOffsets[j]; t < end; t++){
+			q += this.discountedProbabilities[t] * v[this.successors[t]];
+		}
+		return q;
+	}
+
+	/**
+	 * Computes the Bellman backup of the expanded state with the given index, reading successor values from the
+	 * source array. The result is returned, not stored.
+	 * @param i the state index
+	 * @param operator the {@link DPOperator} used to reduce Q-values
+	 * @param src the value array from which successor values are read
+	 * @param qs the buffer into which Q-values are written; must have a length equal to the number of actions of the state.
+	 * @return the backed up value
+	 */
+	public double backup(int i, DPOperator operator, double [] src, double [] qs){
+		if(this.terminal[i]){
+			return 0.;
+		}
+		int start = this.actionOffsets[i];
+		int end = this.actionOffsets[i+1];
+		for(int j = start; j < end; j++){
+			qs[j-start] = this.qValue(j, src);
+		}
+		return operator.apply(qs);
+	}
+
+	/**
+	 * Computes the fixed-policy backup of the expanded state with the given index using the policy set with
+	 * {@link #setPolicy(EnumerablePolicy)}, reading successor values from the source array. The result is returned, not stored.
+	 * @param i the state index
+	 * @param src the value array from which successor values are read
+	 * @return the backed up value
+	 */
+	public double policyBackup(int i, double [] src){
+		if(this.terminal[i]){
+			return 0.;
+		}
+		double weightedQ = 0.;
+		int end = this.actionOffsets[i+1];
+		for(int j = this.actionOffsets[i]; j < end; j++){
+			double p = this.policyProbabilities[j];
+			if(p == 0.){
+				continue; //doesn't contribute
+			}
+			weightedQ += p * this.qValue(j, src);
+		}
+		return weightedQ;
+	}
+
+	/**
+	 * Performs one in-place (Gauss-Seidel) sweep of Bellman backups over all expanded states.
+	 * @param operator the {@link DPOperator} used to reduce Q-values
+	 * @return the maximum change in value of any state
+	 */
+	public double sweep(DPOperator operator){
+		double delta = 0.;
+		for(int i = 0; i < this.numExpanded; i++){
+			double [] qs = this.qBuffers[this.actionOffsets[i+1] - this.actionOffsets[i]];
+			double nv = this.backup(i, operator, this.values, qs);
+			delta = Math.max(Math.abs(nv - this.values[i]), delta);
+			this.values[i] = nv;
+		}
+		return delta;
+	}
+
+	/**
+	 * Performs one in-place (Gauss-Seidel) sweep of fixed-policy backups over all expanded states using the policy
+	 * set with {@link #setPolicy(EnumerablePolicy)}.
+	 * @return the maximum change in value of any state
+	 */
+	public double policySweep(){
+		double delta = 0.;
+		for(int i = 0; i < this.numExpanded; i++){
+			double nv = this.policyBackup(i, this.values);
+			delta = Math.max(Math.abs(nv - this.values[i]), delta);
+			this.values[i] = nv;
+		}
+		return delta;
+	}
+
+	/**
+	 * Performs one synchronous (Jacobi) sweep of Bellman backups over all expanded states. The expanded states are split into
+	 * numPartitions contiguous blocks that are backed up concurrently by the given executor; each block reads only the values of the previous sweep
+	 * and writes into a second value buffer, which becomes the current value buffer once all blocks have finished. The
+	 * maximum change of each block is combined into the returned maximum change, so the result is deterministic.
+	 * @param operator the {@link DPOperator} used to reduce Q-values; it must be safe to call from multiple threads.
+	 * @param executor the executor on which the blocks are backed up
+	 * @param numPartitions the number of blocks into which the expanded states are split
+	 * @return the maximum change in value of any state
+	 */
+	public double jacobiSweep(final DPOperator operator, ExecutorService executor, int numPartitions){
+		return this.synchronousSweep(operator, executor, numPartitions);
+	}
+
+	/**
+	 * Performs one synchronous (Jacobi) sweep of fixed-policy backups over all expanded states using the policy set with
+	 * {@link #setPolicy(EnumerablePolicy)}. Partitioning and the combination of the maximum change are the same as
+	 * {@link #jacobiSweep(DPOperator, ExecutorService, int)}.
+	 * @param executor the executor on which the blocks are backed up
+	 * @param numPartitions the number of blocks into which the expanded states are split
+	 * @return the maximum change in value of any state
+	 */
+	public double jacobiPolicySweep(ExecutorService executor, int numPartitions){
+		return this.synchronousSweep(null, executor, numPartitions);
+	}
+
+	/**
+	 * Performs a synchronous sweep; fixed-policy backups are used when the operator is null.
+	 * @param operator the {@link DPOperator} used to reduce Q-values or null for fixed-policy backups
+	 * @param executor the executor on which the blocks are backed up
+	 * @param numPartitions the number of blocks into which the expanded states are split
+	 * @return the maximum change in value of any state
+	 */
+	protected double synchronousSweep(final DPOperator operator, ExecutorService executor, int numPartitions){
+
+		if(this.nextValues == null || this.nextValues.length != this.values.length){
+			//fixed states are never written, so both buffers must start with their values
+			this.nextValues = this.values.clone();
+		}
+
+		final double [] src = this.values;
+		final double [] dst = this.nextValues;
+
+		List<Double> deltas = ParallelBlocks.invokeBlocks(executor, numPartitions, this.numExpanded, new ParallelBlocks.Block<Double>() {
+			@Override
+			public Double run(int from, int to) {
+				double [][] buffers = operator != null ? newQBuffers() : null;
+				double delta = 0.;
+				for(int i = from; i < to; i++){
+					double nv;
+					if(operator != null){
+						nv = backup(i, operator, src, buffers[actionOffsets[i+1] - actionOffsets[i]]);
+					}
+					else{
+						nv = policyBackup(i, src);
+					}
+					delta = Math.max(Math.abs(nv - src[i]), delta);
+					dst[i] = nv;
+				}
+				return delta;
+			}
+		}, "performing a synchronous sweep");
+
+		double delta = 0.;
+		for(double blockDelta : deltas){
+			delta = Math.max(blockDelta, delta);
+		}
+
+		this.values = dst;
+		this.nextValues = src;
+
+		return delta;
+	}
+
+	/**
+	 * Returns a Q-value buffer for the state with the given index.
+	 * @param i the state index
+	 * @return a buffer with length equal to the number of actions of the state.
+	 */
+	public double [] qBufferFor(int i){
+		return this.qBuffers[this.actionOffsets[i+1] - this.actionOffsets[i]];
+	}
+
+	/**
+	 * Returns the number of actions of the state with the given index
+	 * @param i the state index
+	 * @return the number of actions
+	 */
+	public int numActions(int i){
+		return this.actionOffsets[i+1] - this.actionOffsets[i];
+	}
+
+	/**
+	 * Caches the action selection probabilities of the given policy for every expanded state so that fixed-policy
+	 * backups can be performed with {@link #policyBackup(int, double[])} and {@link #policySweep()}.
+	 * @param p the policy to evaluate
+	 */
+	public void setPolicy(EnumerablePolicy p){
+		if(this.policyProbabilities == null || this.policyProbabilities.length < this.numActions){
+			this.policyProbabilities = new double[this.numActions];
+		}
+		for(int i = 0; i < this.numExpanded; i++){
+			if(this.terminal[i]){
+				continue;
+			}
+			List<ActionProb> policyDistribution = p.policyDistribution(this.states[i].s());
+			for(int j = this.actionOffsets[i]; j < this.actionOffsets[i+1]; j++){
+				this.policyProbabilities[j] = PolicyUtils.actionProbGivenDistribution(this.actions[j], policyDistribution);
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of this table that shares its (immutable) transition structure but has its own copy of the values.
+	 * Useful for keeping a snapshot of a value function without recompiling the transition dynamics.
+	 * @return a snapshot copy of this table.
+	 */
+	public IndexedTransitionTable snapshot(){
+		IndexedTransitionTable copy = new IndexedTransitionTable(0);
+		copy.stateIndex = this.stateIndex;
+		copy.states = this.states;
+		copy.numStates = this.numStates;
+		copy.numExpanded = this.numExpanded;
+		copy.terminal = this.terminal;
+		copy.actionOffsets = this.actionOffsets;
+		copy.actions = this.actions;
+		copy.expectedRewards = this.expectedRewards;
+		copy.transitionOffsets = this.transitionOffsets;
+		copy.numActions = this.numActions;
+		copy.successors = this.successors;
+		copy.discountedProbabilities = this.discountedProbabilities;
+		copy.numTransitions = this.numTransitions;
+		copy.maxActions = this.maxActions;
+		copy.qBuffers = this.newQBuffers();
+		copy.values = this.values.clone();
+		return copy;
+	}
+
+	/**
+	 * Writes the values of all expanded states into the given value function map.
+	 * @param valueFunction the map into which values are written
+	 */
+	public void writeValues(Map<HashableState, Double> valueFunction){
+		for(int i = 0; i < this.numExpanded; i++){
+			valueFunction.put(this.states[i], this.values[i]);
+		}
+	}
+
+}
@@ -9,6 +9,7 @@ import burlap.behavior.singleagent.planning.stochastic.montecarlo.uct.UCTActionN
 import burlap.behavior.singleagent.planning.stochastic.montecarlo.uct.UCTStateNode.UCTStateConstructor;
 import burlap.behavior.valuefunction.QProvider;
 import burlap.behavior.valuefunction.QValue;
+import burlap.datastructures.ParallelBlocks;
 import burlap.debugtools.DPrint;
 import burlap.debugtools.RandomFactory;
 import burlap.mdp.auxiliary.stateconditiontest.StateConditionTest;
@@ -20,6 +21,9 @@ import burlap.statehashing.HashableState;
 import burlap.statehashing.HashableStateFactory;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * An implementation of UCT [1]. This class can be augmented with a goal state specification (using a {@link burlap.mdp.auxiliary.stateconditiontest.StateConditionTest})
@@ -36,6 +40,20 @@ import java.util.*;
  * will be more computationally efficient than replanning at each step, but may have degrading performance after each step since
  * each step has a shorter horizon from which to plan and may not have as many samples from which it estimated its Q-value.
  * <p>
+ * Planning can be bounded by wall-clock time in addition to the number of rollouts with {@link #setPlanningTimeBudget(long)}, and
+ * rollouts can be run on multiple threads with {@link #setParallelRollouts(int, ParallelMode)}, in one of two modes:
+ * <ul>
+ *     <li>{@link ParallelMode#ROOT}: each thread builds an independent tree from the initial state, and the visit counts and sample
+ *     returns of the root actions of all trees are summed into the root of the first tree, which becomes this planner's tree.</li>
+ *     <li>{@link ParallelMode#TREE}: all threads perform rollouts in one shared tree. Node statistics are guarded by a lock per node
+ *     and, while a rollout through a state-action pair is in progress, the pair is given a virtual loss (see {@link #setVirtualLoss(double)})
+ *     so that concurrent rollouts are steered to other branches.</li>
+ * </ul>
+ * Each thread performs rollouts with its own worker planner created by {@link #createWorker()}, which subclasses that add configuration
+ * should override. The model is sampled concurrently, so it must be safe to call concurrently. If a rollout seed is set with
+ * {@link #setRolloutSeed(long)}, the random generator of each worker, and the calling thread's {@link RandomFactory} of each worker thread,
+ * are seeded from it, so that with a model whose randomness is drawn per thread, root parallel planning with a rollout budget is reproducible.
+ * <p>
  * 1. Kocsis, Levente, and Csaba Szepesvari. "Bandit based monte-carlo planning." ECML (2006). 282-293.
  * 
  * @author James MacGlashan
@@ -43,6 +61,26 @@ import java.util.*;
  */
 public class UCT extends MDPSolver implements Planner, QProvider {
 
+	/**
+	 * The ways in which rollouts can be parallelized.
+	 */
+	public enum ParallelMode{
+		/**
+		 * Independent trees per thread whose root action statistics are merged.
+		 */
+		ROOT,
+
+		/**
+		 * One shared tree with per-node locking and virtual loss.
+		 */
+		TREE
+	}
+
+	/**
+	 * The {@link RandomFactory} id of the random generator from which UCT and each of its workers draw.
+	 */
+	public static final int RANDOM_ID = 589449;
+
 	protected List<Map<HashableState, UCTStateNode>> 			stateDepthIndex;
 	protected Map <HashableState, List <UCTStateNode>>			statesToStateNodes;
 	protected UCTStateNode										root;
@@ -55,7 +93,7 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 	protected UCTActionConstructor								actionNodeConstructor;
 	
 	protected StateConditionTest								goalCondition;
-	protected boolean											foundGoal;
+	protected volatile boolean									foundGoal;
 	protected boolean											foundGoalOnRollout;
 	
 	protected Set<HashableState>								uniqueStatesInTree;
@@ -65,6 +103,52 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 	
 	protected Random											rand;
 	
+	/**
+	 * The maximum wall-clock planning time in milliseconds; -1 for no time limit.
+	 */
+	protected long												planningTimeBudget = -1;
+	
+	/**
+	 * The {@link System#nanoTime()} at which the current planning stops; -1 for no time limit.
+	 */
+	protected long												planningDeadline = -1;
+	
+	/**
+	 * The executor on which parallel rollouts are run and the number of workers that perform them; rollouts are run on the calling
+	 * thread when it has no executor.
+	 */
+	protected ParallelBlocks									rolloutBlocks = new ParallelBlocks();
+	
+	/**
+	 * How rollouts are parallelized.
+	 */
+	protected ParallelMode										parallelMode = ParallelMode.ROOT;
+	
+	/**
+	 * The loss charged against the sample returns of a state-action pair for each rollout in progress through it in {@link ParallelMode#TREE} mode.
+	 */
+	protected double											virtualLoss = 1.;
+	
+	/**
+	 * Whether rollouts of workers are seeded from {@link #rolloutSeed}.
+	 */
+	protected boolean											seedRollouts = false;
+	
+	/**
+	 * The seed from which the random streams of workers are derived.
+	 */
+	protected long												rolloutSeed;
+	
+	/**
+	 * The planner a worker performs rollouts for; null if this planner is not a worker.
+	 */
+	protected UCT												coordinator;
+	
+	/**
+	 * Whether this worker shares its tree with other workers.
+	 */
+	protected boolean											sharedTree = false;
+	
 	
 	
 	/**
@@ -96,7 +180,7 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 		
 		goalCondition = null;
 		
-		rand = RandomFactory.getMapped(589449);
+		rand = RandomFactory.getMapped(RANDOM_ID);
 		
 	}
 	
@@ -117,6 +201,63 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 	public void useGoalConditionStopCriteria(StateConditionTest gc){
 		this.goalCondition = gc;
 	}
+	
+	
+	/**
+	 * Sets the maximum wall-clock time of planning, which applies in addition to the maximum number of rollouts. Set the
+	 * maximum number of rollouts to -1 to plan for exactly the time budget.
+	 * @param milliseconds the maximum planning time in milliseconds; -1 for no time limit
+	 */
+	public void setPlanningTimeBudget(long milliseconds){
+		this.planningTimeBudget = milliseconds;
+	}
+	
+	
+	/**
+	 * Sets rollouts to be performed by the given number of threads using a new {@link ForkJoinPool}. The maximum number of
+	 * rollouts is split evenly across the threads. If numThreads is 1 or less, rollouts are performed on the calling thread.
+	 * @param numThreads the number of threads to use
+	 * @param mode how rollouts are parallelized
+	 */
+	public void setParallelRollouts(int numThreads, ParallelMode mode){
+		this.rolloutBlocks.setThreads(numThreads);
+		this.parallelMode = mode;
+	}
+	
+	
+	/**
+	 * Sets rollouts to be performed by the given number of workers on the given executor. The maximum number of rollouts is
+	 * split evenly across the workers.
+	 * @param executor the executor on which the workers run, such as a {@link ForkJoinPool}; null to perform rollouts on the calling thread
+	 * @param numWorkers the number of workers
+	 * @param mode how rollouts are parallelized
+	 */
+	public void setParallelRollouts(ExecutorService executor, int numWorkers, ParallelMode mode){
+		this.rolloutBlocks.setExecutor(executor, numWorkers);
+		this.parallelMode = mode;
+	}
+	
+	
+	/**
+	 * Sets the loss charged against the sample returns of a state-action pair for each rollout in progress through it in
+	 * {@link ParallelMode#TREE} mode; a rollout in progress counts as a visit with a return of -virtualLoss. Higher
+	 * values more strongly discourage concurrent rollouts from following the same branch. Default is 1.
+	 * @param virtualLoss the virtual loss of a rollout in progress
+	 */
+	public void setVirtualLoss(double virtualLoss){
+		this.virtualLoss = virtualLoss;
+	}
+	
+	
+	/**
+	 * Sets the seed from which the random generator of each parallel rollout worker is derived. Worker i uses, and sets as
+	 * the {@link RandomFactory} of its thread, a {@link RandomFactory} seeded with seed + i.
+	 * @param seed the seed of the rollout workers
+	 */
+	public void setRolloutSeed(long seed){
+		this.seedRollouts = true;
+		this.rolloutSeed = seed;
+	}
 
 
 	/**
@@ -130,10 +271,33 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 		
 		foundGoal = false;
 		
+		planningDeadline = planningTimeBudget >= 0 ? System.nanoTime() + planningTimeBudget * 1000000L : -1;
+		
+		HashableState shi = this.stateHash(initialState);
+		this.initializeTree(shi);
+		
+		if(this.rolloutBlocks.isParallel() && this.rolloutBlocks.numPartitions() > 1){
+			this.runParallelRollOuts(shi);
+		}
+		else{
+			this.runRollOuts();
+		}
+		
+		DPrint.cl(debugCode, "\nRollouts: " + numRollOutsFromRoot + "; Best Action Expected Return: " + this.bestReturnAction(root).averageReturn());
+
+		return new GreedyQPolicy(this);
+
+	}
+
+	/**
+	 * Creates a new tree containing only a root node for the given state.
+	 * @param shi the hashed state of the root
+	 */
+	protected void initializeTree(HashableState shi){
+		
 		treeSize = 1;
 		numVisits = 0;
 		
-		HashableState shi = this.stateHash(initialState);
 		root = stateNodeConstructor.generate(shi, 0, actionTypes, actionNodeConstructor);
 		
 		uniqueStatesInTree = new HashSet<HashableState>();
@@ -144,6 +308,13 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 		depth0Map.put(shi, root);
 		stateDepthIndex.add(depth0Map);
 		
+	}
+	
+	
+	/**
+	 * Performs rollouts from the root on the calling thread until {@link #stopPlanning()} returns true.
+	 */
+	protected void runRollOuts(){
 		
 		int lastNumUnique = 0;
 		
@@ -163,12 +334,127 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 			}
 
 		}
-		DPrint.cl(debugCode, "\nRollouts: " + numRollOutsFromRoot + "; Best Action Expected Return: " + this.bestReturnAction(root).averageReturn());
-
-		return new GreedyQPolicy(this);
-
+		
 	}
-
+	
+	
+	/**
+	 * Performs rollouts with the number of workers of {@link #rolloutBlocks} on its executor and collects their results in this planner's tree.
+	 * @param shi the hashed initial state
+	 */
+	protected void runParallelRollOuts(HashableState shi){
+		
+		final UCT [] workers = new UCT[this.rolloutBlocks.numPartitions()];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(workers.length);
+		for(int i = 0; i < workers.length; i++){
+			
+			final UCT worker = this.createWorker();
+			worker.coordinator = this;
+			worker.planningDeadline = this.planningDeadline;
+			if(this.maxRollOutsFromRoot != -1){
+				worker.maxRollOutsFromRoot = (int)((long)this.maxRollOutsFromRoot * (i+1) / workers.length - (long)this.maxRollOutsFromRoot * i / workers.length);
+			}
+			
+			if(this.parallelMode == ParallelMode.TREE){
+				worker.sharedTree = true;
+				worker.root = this.root;
+				worker.stateDepthIndex = this.stateDepthIndex;
+				worker.statesToStateNodes = this.statesToStateNodes;
+				worker.uniqueStatesInTree = this.uniqueStatesInTree;
+				worker.treeSize = 0;
+			}
+			else{
+				worker.initializeTree(shi);
+			}
+			
+			workers[i] = worker;
+			final long workerSeed = this.rolloutSeed + i;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					if(seedRollouts){
+						RandomFactory.setThreadFactory(new RandomFactory(workerSeed));
+						worker.rand = RandomFactory.getMapped(RANDOM_ID);
+					}
+					else{
+						worker.rand = new Random();
+					}
+					try{
+						worker.runRollOuts();
+					} finally{
+						if(seedRollouts){
+							RandomFactory.setThreadFactory(null);
+						}
+					}
+					return null;
+				}
+			});
+		}
+		
+		this.rolloutBlocks.invokeAll(tasks, "performing UCT rollouts");
+		
+		if(this.parallelMode == ParallelMode.ROOT){
+			this.root = workers[0].root;
+			this.stateDepthIndex = workers[0].stateDepthIndex;
+			this.statesToStateNodes = workers[0].statesToStateNodes;
+			this.uniqueStatesInTree = workers[0].uniqueStatesInTree;
+			this.treeSize = workers[0].treeSize;
+			for(int i = 1; i < workers.length; i++){
+				this.mergeRootStatistics(workers[i].root);
+			}
+		}
+		
+		this.numRollOutsFromRoot = 0;
+		this.numVisits = 0;
+		for(UCT worker : workers){
+			this.numRollOutsFromRoot += worker.numRollOutsFromRoot;
+			this.numVisits += worker.numVisits;
+			if(this.parallelMode == ParallelMode.TREE){
+				this.treeSize += worker.treeSize;
+			}
+		}
+		
+	}
+	
+	
+	/**
+	 * Adds the visit counts and sample returns of the actions of another tree's root to the actions of this planner's root.
+	 * @param otherRoot the root of the other tree
+	 */
+	protected void mergeRootStatistics(UCTStateNode otherRoot){
+		this.root.n += otherRoot.n;
+		for(UCTActionNode other : otherRoot.actionNodes){
+			for(UCTActionNode anode : this.root.actionNodes){
+				if(anode.action.equals(other.action)){
+					anode.n += other.n;
+					anode.sumReturn += other.sumReturn;
+					break;
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Creates a new planner with the same configuration as this planner that performs rollouts for it in parallel.
+	 * Subclasses that add configuration or change how rollouts are performed should override this method.
+	 * @return a new worker planner
+	 */
+	protected UCT createWorker(){
+		UCT worker = new UCT(this.domain, this.gamma, this.hashingFactory, this.maxHorizon, this.maxRollOutsFromRoot, 0);
+		worker.explorationBias = this.explorationBias;
+		worker.model = this.model;
+		worker.actionTypes = this.actionTypes;
+		worker.usingOptionModel = this.usingOptionModel;
+		worker.debugCode = this.debugCode;
+		worker.stateNodeConstructor = this.stateNodeConstructor;
+		worker.actionNodeConstructor = this.actionNodeConstructor;
+		worker.goalCondition = this.goalCondition;
+		worker.virtualLoss = this.virtualLoss;
+		return worker;
+	}
+	
+	
 	@Override
 	public List<QValue> qValues(State s) {
 
@@ -267,7 +553,15 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 		
 		
 		
-		UCTActionNode anode = this.selectActionNode(node);
+		UCTActionNode anode;
+		synchronized(node){
+			anode = this.selectActionNode(node);
+			if(anode != null && this.sharedTree){
+				//virtual loss until this rollout's return is backed up
+				node.virtualVisits++;
+				anode.virtualVisits++;
+			}
+		}
 		
 		if(anode == null){
 			//no actions can be performed in this state
@@ -295,9 +589,11 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 			
 			//then this state already exists in the tree
 			
-			if(!anode.referencesSuccessor(snprime)){ 
-				//then this successor has not been generated by this state-action pair before and should be indexed
-				anode.addSuccessor(snprime);
+			synchronized(anode){
+				if(!anode.referencesSuccessor(snprime)){ 
+					//then this successor has not been generated by this state-action pair before and should be indexed
+					anode.addSuccessor(snprime);
+				}
 			}
 			
 			futureReturn = this.treeRollOut(snprime, depth + depthChange, childrenLeftToAdd);
@@ -321,13 +617,30 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 			
 		}
 		
-		node.n++;
-		anode.update(sampledReturn);
+		synchronized(node){
+			node.n++;
+			anode.update(sampledReturn);
+			if(this.sharedTree){
+				node.virtualVisits--;
+				anode.virtualVisits--;
+			}
+		}
 		
 		if(shouldConnectNode || foundGoalOnRollout){
-			this.addNodeToIndexTree(snprime);
-			anode.addSuccessor(snprime);
-			uniqueStatesInTree.add(snprime.state);
+			synchronized(stateDepthIndex){
+				//another worker sharing the tree may have connected an equivalent node first
+				UCTStateNode existing = this.sharedTree ? this.queryTreeIndex(snprime.state, snprime.depth) : null;
+				if(existing == null){
+					this.addNodeToIndexTree(snprime);
+					uniqueStatesInTree.add(snprime.state);
+				}
+				else{
+					snprime = existing;
+				}
+			}
+			synchronized(anode){
+				anode.addSuccessor(snprime);
+			}
 		}
 		
 		
@@ -344,6 +657,15 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 	 */
 	public boolean stopPlanning(){
 		if(foundGoal){
+			if(coordinator != null){
+				coordinator.foundGoal = true;
+			}
+			return true;
+		}
+		if(coordinator != null && coordinator.foundGoal){
+			return true;
+		}
+		if(planningDeadline != -1 && System.nanoTime() >= planningDeadline){
 			return true;
 		}
 		if(maxRollOutsFromRoot == -1){
@@ -377,7 +699,7 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 		for(UCTActionNode an : snode.actionNodes){
 			
 			if(!untriedNodes){
-				if(an.n == 0){
+				if(an.n + an.virtualVisits == 0){
 					untriedNodes = true;
 					candidates.clear();
 					candidates.add(an);
@@ -394,7 +716,7 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 					}
 				}
 			}
-			else if(an.n == 0){
+			else if(an.n + an.virtualVisits == 0){
 				candidates.add(an);
 			}
 			
@@ -419,6 +741,12 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 	 * @return the upper confidence Q-value
 	 */
 	protected double computeUCTQ(UCTStateNode snode, UCTActionNode anode){
+		if(anode.virtualVisits > 0){
+			//rollouts in progress count as visits that returned the negated virtual loss
+			int na = anode.n + anode.virtualVisits;
+			double averageReturn = (anode.sumReturn - this.virtualLoss * anode.virtualVisits) / na;
+			return averageReturn + this.explorationQBoost(snode.n + snode.virtualVisits, na);
+		}
 		return anode.averageReturn() + this.explorationQBoost(snode.n, anode.n);
 	}
 	
@@ -442,12 +770,16 @@ public class UCT extends MDPSolver implements Planner, QProvider {
 	 */
 	protected UCTStateNode queryTreeIndex(HashableState sh, int d){
 		
-		if(d >= stateDepthIndex.size()){
-			return null;
+		synchronized(stateDepthIndex){
+			
+			if(d >= stateDepthIndex.size()){
+				return null;
+			}
+			
+			return stateDepthIndex.get(d).get(sh);
+			
 		}
 		
-		return stateDepthIndex.get(d).get(sh);
-		
 	}
 	
 	/**
@@ -30,6 +30,11 @@ public class UCTActionNode {
 	 */
 	public int											n;
 	
+	/**
+	 * The number of rollouts in progress that have taken this action node, which count as visits with a virtual loss in {@link UCT.ParallelMode#TREE} mode
+	 */
+	public int											virtualVisits;
+	
 	/**
 	 * The possible successor states. Stores a list of nodes for the same outcome state
 	 * since options may reach the same outcome state after a different number steps causing a further depth in the tree.
@@ -33,6 +33,11 @@ public class UCTStateNode {
 	 */
 	public int						n;
 	
+	/**
+	 * The number of rollouts in progress through this node, which count as visits in {@link UCT.ParallelMode#TREE} mode
+	 */
+	public int						virtualVisits;
+	
 	/**
 	 * The possible actions (nodes) that can be performed from this state.
 	 */
@@ -28,6 +28,10 @@ import java.util.Set;
  * but you should have already seeded the state space by having called the {@link #evaluatePolicy(EnumerablePolicy, State)}
  * method or the {@link #performReachabilityFrom(State)} method at least once previously,
  * a runtime exception will be thrown.
+ * <p>
+ * Evaluation can be performed over a compiled {@link burlap.behavior.singleagent.planning.stochastic.IndexedTransitionTable}
+ * by calling {@link #toggleIndexedTable(boolean)}, and across multiple threads with synchronous (Jacobi) sweeps by calling
+ * {@link #setParallelSweeps(int)}.
  *
  * @author James MacGlashan.
  */
@@ -83,6 +87,11 @@ public class PolicyEvaluation extends DynamicProgramming {
 		}
 
 
+		if(this.useIndexedTable){
+			this.evaluatePolicyIndexed(policy);
+			return;
+		}
+
 		double maxChangeInPolicyEvaluation = Double.NEGATIVE_INFINITY;
 
 		Set <HashableState> states = valueFunction.keySet();
@@ -112,6 +121,34 @@ public class PolicyEvaluation extends DynamicProgramming {
 	}
 
 
+	/**
+	 * Computes the value function for the given policy over the compiled
+	 * {@link burlap.behavior.singleagent.planning.stochastic.IndexedTransitionTable}, compiling it first if the state space
+	 * has changed since it was last compiled. The policy is queried once per state and the resulting values are written to the value function map.
+	 * @param policy the {@link burlap.behavior.policy.Policy} to evaluate
+	 */
+	protected void evaluatePolicyIndexed(EnumerablePolicy policy){
+
+		if(this.indexedTable == null){
+			this.compileIndexedTable();
+		}
+		this.indexedTable.setPolicy(policy);
+
+		for(int i = 0; i < this.maxEvalIterations; i++){
+
+			double delta = this.indexedPolicySweep();
+
+			if(delta < this.maxEvalDelta){
+				break; //approximated well enough; stop iterating
+			}
+
+		}
+
+		this.indexedTable.writeValues(this.valueFunction);
+
+	}
+
+
 	/**
 	 * This method will find all reachable states that will be used when computing the value function.
 	 * This method will not do anything if all reachable states from the input state have been discovered from previous calls to this method.
@@ -169,6 +206,7 @@ public class PolicyEvaluation extends DynamicProgramming {
 
 		DPrint.cl(this.debugCode, "Finished reachability analysis; # states: " + valueFunction.size());
 
+		this.indexedTable = null;
 
 		return true;
 
@@ -207,6 +207,10 @@ public class PolicyIteration extends DynamicProgramming implements Planner {
 			throw new RuntimeException("Cannot run VI until the reachable states have been found. Use planFromState method at least once or instead.");
 		}
 		
+		if(this.useIndexedTable){
+			return this.evaluatePolicyIndexed();
+		}
+		
 		double maxChangeInPolicyEvaluation = Double.NEGATIVE_INFINITY;
 		
 		Set <HashableState> states = valueFunction.keySet();
@@ -243,6 +247,46 @@ public class PolicyIteration extends DynamicProgramming implements Planner {
 	
 	
 	
+	/**
+	 * Computes the value function under the current evaluative policy over the compiled
+	 * {@link burlap.behavior.singleagent.planning.stochastic.IndexedTransitionTable}, compiling it first if the state space
+	 * has changed since it was last compiled. The policy is queried once per state and the resulting values are written to the value function map.
+	 * @return the maximum single iteration change in the value function
+	 */
+	protected double evaluatePolicyIndexed(){
+
+		if(this.indexedTable == null){
+			DPrint.cl(this.debugCode, "Compiling transition table");
+			this.compileIndexedTable();
+		}
+		this.indexedTable.setPolicy(this.evaluativePolicy);
+
+		double maxChangeInPolicyEvaluation = Double.NEGATIVE_INFINITY;
+
+		int i;
+		for(i = 0; i < this.maxIterations; i++){
+
+			double delta = this.indexedPolicySweep();
+
+			maxChangeInPolicyEvaluation = Math.max(delta, maxChangeInPolicyEvaluation);
+
+			if(delta < this.maxEvalDelta){
+				i++;
+				break; //approximated well enough; stop iterating
+			}
+
+		}
+
+		this.indexedTable.writeValues(this.valueFunction);
+
+		DPrint.cl(this.debugCode, "Iterations in inner VI for policy eval: " + i);
+		this.totalValueIterations += i;
+
+		return maxChangeInPolicyEvaluation;
+
+	}
+	
+	
 	/**
 	 * This method will find all reachable states that will be used when computing the value function.
 	 * This method will not do anything if all reachable states from the input state have been discovered from previous calls to this method.
@@ -302,6 +346,7 @@ public class PolicyIteration extends DynamicProgramming implements Planner {
 		DPrint.cl(this.debugCode, "Finished reachability analysis; # states: " + valueFunction.size());
 		
 		this.foundReachableStates = true;
+		this.indexedTable = null;
 		
 		return true;
 		
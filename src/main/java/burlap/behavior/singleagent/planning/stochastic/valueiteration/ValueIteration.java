@@ -27,6 +27,11 @@ import java.util.Set;
  * that VI does not pass over non-reachable states.
  * 
  * This implementation is compatible with options.
+ * <p>
+ * For large state spaces, {@link #toggleIndexedTable(boolean)} can be used to compile the reachable state space into an
+ * {@link burlap.behavior.singleagent.planning.stochastic.IndexedTransitionTable} so that sweeps are performed over primitive arrays
+ * without state hashing or allocation, and {@link #setParallelSweeps(int)} can be used to perform synchronous (Jacobi) sweeps
+ * over that table across multiple threads.
  * 
  * 
  * @author James MacGlashan
@@ -133,6 +138,11 @@ public class ValueIteration extends DynamicProgramming implements Planner {
 			throw new RuntimeException("Cannot run VI until the reachable states have been found. Use the planFromState or performReachabilityFrom method at least once before calling runVI.");
 		}
 		
+		if(this.useIndexedTable){
+			this.runIndexedVI();
+			return;
+		}
+		
 		Set <HashableState> states = valueFunction.keySet();
 		
 		int i;
@@ -160,6 +170,37 @@ public class ValueIteration extends DynamicProgramming implements Planner {
 	}
 	
 	
+	/**
+	 * Runs VI over the compiled {@link burlap.behavior.singleagent.planning.stochastic.IndexedTransitionTable}, compiling it first if the
+	 * reachable state space has changed since it was last compiled, and then writes the resulting values to the value function map.
+	 */
+	protected void runIndexedVI(){
+
+		if(this.indexedTable == null){
+			DPrint.cl(this.debugCode, "Compiling transition table");
+			this.compileIndexedTable();
+		}
+
+		int i;
+		for(i = 0; i < this.maxIterations; i++){
+
+			double delta = this.indexedSweep();
+
+			if(delta < this.maxDelta){
+				break; //approximated well enough; stop iterating
+			}
+
+		}
+
+		this.indexedTable.writeValues(this.valueFunction);
+
+		DPrint.cl(this.debugCode, "Passes: " + i);
+
+		this.hasRunVI = true;
+
+	}
+	
+	
 	/**
 	 * This method will find all reachable states that will be used by the {@link #runVI()} method and will cache all the transition dynamics.
 	 * This method will not do anything if all reachable states from the input state have been discovered from previous calls to this method.
@@ -220,6 +261,7 @@ public class ValueIteration extends DynamicProgramming implements Planner {
 		
 		this.foundReachableStates = true;
 		this.hasRunVI = false;
+		this.indexedTable = null;
 		
 		return true;
 		
@@ -6,14 +6,21 @@ import burlap.behavior.singleagent.MDPSolver;
 import burlap.behavior.singleagent.planning.Planner;
 import burlap.behavior.singleagent.planning.stochastic.sparsesampling.SparseSampling;
 import burlap.behavior.valuefunction.*;
+import burlap.datastructures.ParallelBlocks;
 import burlap.debugtools.DPrint;
+import burlap.debugtools.RandomFactory;
 import burlap.mdp.core.action.Action;
 import burlap.mdp.core.state.State;
 import burlap.mdp.singleagent.SADomain;
+import burlap.mdp.singleagent.model.SampleModel;
+import burlap.statehashing.HashableStateFactory;
 import burlap.statehashing.simple.SimpleHashableStateFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A class for performing Fitted Value Iteration [1]. This is a variant of value iteration that takes a set of
@@ -39,6 +46,15 @@ import java.util.List;
  * the depth used to return the Q-values). See the {@link #setPlanningDepth(int)}, {@link #setControlDepth(int)}, and
  * {@link #setPlanningAndControlDepth(int)} methods for controlling the depth. By default, the depth will be 1.
  *
+ * <p>
+ * The {@link SparseSampling} planners are reused: each planning worker and the control planner forget a sample's tree once
+ * its Q-values are computed, so memory is bounded by a single tree rather than growing with the number of samples, and the
+ * control planner caches only the Q-values of the most recently queried state until the value function changes.
+ * The targets of an iteration can be computed across a thread pool with {@link #setParallelBackups(int)}, with one planner
+ * per block of samples. In that case, the model and the current value function approximation are queried concurrently,
+ * so they must be safe to query concurrently. If a backup seed is set with {@link #setBackupSeed(long)}, each block runs with
+ * its thread's {@link RandomFactory} seeded from the seed, the iteration, and the block, so that with a model whose randomness
+ * is drawn per thread, the targets for a given number of blocks are reproducible.
  *
  *
  * <p>
@@ -108,6 +124,38 @@ public class FittedVI extends MDPSolver implements ValueFunction, QProvider, Pla
 	protected double maxDelta;
 
 
+	/**
+	 * The reusable {@link SparseSampling} planner of each block of samples used to compute the Bellman operator during value iteration.
+	 */
+	protected SparseSampling [] planningWorkers;
+
+	/**
+	 * The reusable {@link SparseSampling} planner used to compute Q-values for control; null when it must be rebuilt.
+	 */
+	protected SparseSampling controlPlanner;
+
+	/**
+	 * The executor and number of blocks with which the targets of each iteration are computed; they are computed serially when it
+	 * has no executor.
+	 */
+	protected ParallelBlocks backupBlocks = new ParallelBlocks();
+
+	/**
+	 * Whether the blocks of each iteration are seeded from {@link #backupSeed}.
+	 */
+	protected boolean seedBackups = false;
+
+	/**
+	 * The seed from which the random streams of the blocks are derived.
+	 */
+	protected long backupSeed;
+
+	/**
+	 * The number of iterations run since the solver was last reset.
+	 */
+	protected int iterationsRun = 0;
+
+
 	/**
 	 * Initializes. Note that you will need to set the state samples to use for planning with the {@link #setSamples(java.util.List)} method before
 	 * calling {@link #planFromState(State)}, {@link #runIteration()}, or {@link #runVI()}, otherwise a runtime exception
@@ -173,6 +221,7 @@ public class FittedVI extends MDPSolver implements ValueFunction, QProvider, Pla
 			this.valueFunction = vinit;
 		}
 		this.vinit = vinit;
+		this.clearPlanners();
 	}
 
 
@@ -208,6 +257,7 @@ public class FittedVI extends MDPSolver implements ValueFunction, QProvider, Pla
 	 */
 	public void setControlDepth(int controlDepth) {
 		this.controlDepth = controlDepth;
+		this.controlPlanner = null;
 	}
 
 
@@ -218,6 +268,7 @@ public class FittedVI extends MDPSolver implements ValueFunction, QProvider, Pla
 	public void setPlanningAndControlDepth(int depth){
 		this.planningDepth = depth;
 		this.controlDepth = depth;
+		this.controlPlanner = null;
 	}
 
 
@@ -238,6 +289,36 @@ public class FittedVI extends MDPSolver implements ValueFunction, QProvider, Pla
 	}
 
 
+	/**
+	 * Sets the targets of each iteration to be computed across the given number of threads using a new {@link ForkJoinPool}, with
+	 * the samples split into one contiguous block per thread. If numThreads is 1 or less, they are computed serially.
+	 * @param numThreads the number of threads to use.
+	 */
+	public void setParallelBackups(int numThreads){
+		this.backupBlocks.setThreads(numThreads);
+	}
+
+	/**
+	 * Sets the targets of each iteration to be computed on the given executor, with the samples split into numPartitions contiguous blocks,
+	 * each of which uses its own {@link SparseSampling} planner.
+	 * @param executor the executor on which blocks are computed, such as a {@link ForkJoinPool}; null to compute serially
+	 * @param numPartitions the number of blocks into which the samples are split
+	 */
+	public void setParallelBackups(ExecutorService executor, int numPartitions){
+		this.backupBlocks.setExecutor(executor, numPartitions);
+	}
+
+	/**
+	 * Sets the seed from which the random streams of the backups are derived. Block b of the k'th iteration since the solver was
+	 * last reset runs with the {@link RandomFactory} of its thread set to a factory seeded with seed + k * numBlocks + b.
+	 * @param seed the seed of the backups
+	 */
+	public void setBackupSeed(long seed){
+		this.seedBackups = true;
+		this.backupSeed = seed;
+	}
+
+
 	/**
 	 * Runs value iteration. Note that if the state samples have not been set, it will throw a runtime exception.
 	 */
@@ -262,19 +343,45 @@ public class FittedVI extends MDPSolver implements ValueFunction, QProvider, Pla
 			throw new RuntimeException("FittedVI cannot run value iteration because the state samples have not been set. Use the setSamples method or the constructor to set them.");
 		}
 
-		SparseSampling ss = new SparseSampling(this.domain, this.gamma, this.hashingFactory, this.planningDepth, this.transitionSamples);
-		ss.setModel(this.model);
-		ss.setValueForLeafNodes(this.leafNodeInit);
-		ss.toggleDebugPrinting(false);
+		final int n = this.samples.size();
+		final double [] targets = new double[n];
+		int numBlocks = this.backupBlocks.isParallel() ? Math.max(1, Math.min(this.backupBlocks.numPartitions(), n)) : 1;
+		this.preparePlanningWorkers(numBlocks);
 
-		List <SupervisedVFA.SupervisedVFAInstance> instances = new ArrayList<SupervisedVFA.SupervisedVFAInstance>(this.samples.size());
-		List <Double> oldVs = new ArrayList<Double>(this.samples.size());
-		for(State s : this.samples){
+		final long iterationSeed = this.backupSeed + (long)this.iterationsRun * numBlocks;
+		this.iterationsRun++;
+
+		if(numBlocks == 1){
+			this.computeTargets(this.planningWorkers[0], targets, 0, n, iterationSeed);
+		}
+		else{
+			List<Callable<Object>> blocks = new ArrayList<Callable<Object>>(numBlocks);
+			for(int b = 0; b < numBlocks; b++){
+				final SparseSampling ss = this.planningWorkers[b];
+				final int start = (int)((long)n * b / numBlocks);
+				final int end = (int)((long)n * (b+1) / numBlocks);
+				final long blockSeed = iterationSeed + b;
+				blocks.add(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						computeTargets(ss, targets, start, end, blockSeed);
+						return null;
+					}
+				});
+			}
+			this.backupBlocks.invokeAll(blocks, "computing FittedVI targets");
+		}
+
+		List <SupervisedVFA.SupervisedVFAInstance> instances = new ArrayList<SupervisedVFA.SupervisedVFAInstance>(n);
+		List <Double> oldVs = new ArrayList<Double>(n);
+		for(int i = 0; i < n; i++){
+			State s = this.samples.get(i);
 			oldVs.add(this.valueFunction.value(s));
-			instances.add(new SupervisedVFA.SupervisedVFAInstance(s, Helper.maxQ(ss, s)));
+			instances.add(new SupervisedVFA.SupervisedVFAInstance(s, targets[i]));
 		}
 
 		this.valueFunction = this.valueFunctionTrainer.train(instances);
+		this.controlPlanner = null;
 
 		double maxDiff = 0.;
 		for(int i = 0; i < this.samples.size(); i++){
@@ -288,6 +395,82 @@ public class FittedVI extends MDPSolver implements ValueFunction, QProvider, Pla
 	}
 
 
+	/**
+	 * Computes the Bellman operator target of the samples in the range [start, end) with the given planner. If backups are seeded,
+	 * the calling thread's {@link RandomFactory} is set to a factory seeded with the given seed while they are computed.
+	 * @param ss the planner
+	 * @param targets the array in which the targets are stored
+	 * @param start the first sample index
+	 * @param end one past the last sample index
+	 * @param seed the seed of the block
+	 */
+	protected void computeTargets(SparseSampling ss, double [] targets, int start, int end, long seed){
+		RandomFactory previous = RandomFactory.getThreadFactory();
+		if(this.seedBackups){
+			RandomFactory.setThreadFactory(new RandomFactory(seed));
+		}
+		try{
+			for(int i = start; i < end; i++){
+				targets[i] = Helper.maxQ(ss, this.samples.get(i));
+			}
+		} finally{
+			if(this.seedBackups){
+				RandomFactory.setThreadFactory(previous);
+			}
+		}
+	}
+
+
+	/**
+	 * Makes sure there are at least the given number of planning workers and resets them with the current planning settings,
+	 * since the value function at their leaves changes every iteration.
+	 * @param numWorkers the number of planning workers needed
+	 */
+	protected void preparePlanningWorkers(int numWorkers){
+		if(this.planningWorkers == null || this.planningWorkers.length < numWorkers){
+			this.planningWorkers = new SparseSampling[numWorkers];
+		}
+		for(int i = 0; i < numWorkers; i++){
+			if(this.planningWorkers[i] == null){
+				this.planningWorkers[i] = this.newSparseSampling(this.planningDepth);
+			}
+			SparseSampling ss = this.planningWorkers[i];
+			ss.setH(this.planningDepth);
+			ss.resetSolver();
+		}
+	}
+
+
+	/**
+	 * Returns a new {@link SparseSampling} planner that uses the current value function approximation at its leaves and
+	 * forgets each tree after it is planned.
+	 * @param depth the depth of the tree
+	 * @return the new planner
+	 */
+	protected SparseSampling newSparseSampling(int depth){
+		SparseSampling ss = new SparseSampling(this.domain, this.gamma, this.hashingFactory, depth, this.transitionSamples);
+		ss.setModel(this.model);
+		ss.setValueForLeafNodes(this.leafNodeInit);
+		ss.setForgetPreviousPlanResults(true);
+		ss.toggleDebugPrinting(false);
+		return ss;
+	}
+
+
+	/**
+	 * Returns the control planner, creating it if needed.
+	 * @return the control planner
+	 */
+	protected SparseSampling getControlPlanner(){
+		SparseSampling ss = this.controlPlanner;
+		if(ss == null){
+			ss = this.newSparseSampling(this.controlDepth);
+			this.controlPlanner = ss;
+		}
+		return ss;
+	}
+
+
 	/**
 	 * Plans from the input state and then returns a {@link burlap.behavior.policy.GreedyQPolicy} that greedily
 	 * selects the action with the highest Q-value and breaks ties uniformly randomly.
@@ -300,27 +483,59 @@ public class FittedVI extends MDPSolver implements ValueFunction, QProvider, Pla
 		return new GreedyQPolicy(this);
 	}
 
+	@Override
+	public void setDomain(SADomain domain) {
+		super.setDomain(domain);
+		this.clearPlanners();
+	}
+
+	@Override
+	public void setModel(SampleModel model) {
+		super.setModel(model);
+		this.clearPlanners();
+	}
+
+	@Override
+	public void setGamma(double gamma) {
+		super.setGamma(gamma);
+		this.clearPlanners();
+	}
+
+	@Override
+	public void setHashingFactory(HashableStateFactory hashingFactory) {
+		super.setHashingFactory(hashingFactory);
+		this.clearPlanners();
+	}
+
+	/**
+	 * Discards the reusable planners so that they are rebuilt with the current settings.
+	 */
+	protected void clearPlanners(){
+		this.planningWorkers = null;
+		this.controlPlanner = null;
+	}
+
 	@Override
 	public void resetSolver() {
 		this.valueFunction = this.vinit;
+		this.controlPlanner = null;
+		this.iterationsRun = 0;
 	}
 
 	@Override
 	public List<QValue> qValues(State s) {
-		SparseSampling ss = new SparseSampling(this.domain, this.gamma, this.hashingFactory, this.controlDepth, this.transitionSamples);
-		ss.setModel(model);
-		ss.setValueForLeafNodes(this.leafNodeInit);
-		ss.toggleDebugPrinting(false);
-		return ss.qValues(s);
+		SparseSampling ss = this.getControlPlanner();
+		synchronized(ss){
+			return new ArrayList<QValue>(ss.qValues(s));
+		}
 	}
 
 	@Override
 	public double qValue(State s, Action a) {
-		SparseSampling ss = new SparseSampling(this.domain, this.gamma, this.hashingFactory, this.controlDepth, this.transitionSamples);
-		ss.setModel(model);
-		ss.setValueForLeafNodes(this.leafNodeInit);
-		ss.toggleDebugPrinting(false);
-		return ss.qValue(s, a);
+		SparseSampling ss = this.getControlPlanner();
+		synchronized(ss){
+			return ss.qValue(s, a);
+		}
 	}
 
 	@Override
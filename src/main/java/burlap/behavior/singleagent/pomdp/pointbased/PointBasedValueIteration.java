@@ -0,0 +1,928 @@
+package burlap.behavior.singleagent.pomdp.pointbased;
+
+import burlap.behavior.policy.GreedyQPolicy;
+import burlap.behavior.policy.Policy;
+import burlap.behavior.singleagent.MDPSolver;
+import burlap.behavior.singleagent.auxiliary.StateEnumerator;
+import burlap.behavior.singleagent.planning.Planner;
+import burlap.behavior.valuefunction.QProvider;
+import burlap.behavior.valuefunction.QValue;
+import burlap.datastructures.ParallelBlocks;
+import burlap.debugtools.DPrint;
+import burlap.debugtools.RandomFactory;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.model.FullModel;
+import burlap.mdp.singleagent.model.TransitionProb;
+import burlap.mdp.singleagent.pomdp.PODomain;
+import burlap.mdp.singleagent.pomdp.beliefstate.DenseBeliefVector;
+import burlap.mdp.singleagent.pomdp.beliefstate.EnumerableBeliefState;
+import burlap.mdp.singleagent.pomdp.observations.DiscreteObservationFunction;
+import burlap.statehashing.HashableStateFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * A point-based value iteration POMDP planner that represents the value function as a set of alpha vectors, each a dense
+ * double array over the enumerated hidden states labeled with the action that produces it, and performs Bellman backups only
+ * at a finite set of belief points. Two backup schemes are supported (see {@link BackupMode}): PBVI [1], which backs up every
+ * belief point each iteration, and Perseus [2], which backs up randomly selected belief points until the value of every belief
+ * point has improved.
+ * <p>
+ * The POMDP must provide a {@link StateEnumerator}, a {@link FullModel} and a {@link DiscreteObservationFunction}. The first time
+ * the planner is used, every state reachable from the enumerated states is enumerated and the transition dynamics, expected rewards,
+ * and observation probabilities are copied into primitive arrays. Each iteration then precomputes the projection of every alpha vector
+ * through every action-observation pair, g_{a,o}(s) = sum_{s'} T(s,a,s') O(o|s',a) alpha(s'), so that each belief point backup is
+ * a series of dot products. Projections take |A| |O| |alpha| |S| doubles of memory. With {@link #setParallelBackups(int)}, the
+ * projections and the PBVI belief point backups are split across a thread pool.
+ * <p>
+ * Planning is anytime: alpha vectors are kept between calls to {@link #planFromState(State)}, so each call continues to improve
+ * the value function, and each call stops after the maximum number of iterations, when the value of no belief point changes more
+ * than the maximum delta, or when the planning time budget (see {@link #setPlanningTimeBudget(long)}) runs out. If no belief points
+ * have been set, they are sampled by random walks from the input belief state; otherwise the input belief state is added to them.
+ * <p>
+ * Q-values of a belief state are the maximum dot product with the alpha vectors of each action, so selecting the greedy action
+ * with {@link GreedyQPolicy}, for example with a {@link burlap.behavior.singleagent.pomdp.BeliefPolicyAgent}, takes
+ * O(|alpha| |S|) time. Actions that label no alpha vector have a Q-value of negative infinity. All actions are assumed to be
+ * applicable in every hidden state, as the agent cannot observe the hidden state.
+ * <p>
+ * 1. Pineau, Joelle, Geoff Gordon, and Sebastian Thrun. "Point-based value iteration: An anytime algorithm for POMDPs." IJCAI. 2003.
+ * <p>
+ * 2. Spaan, Matthijs TJ, and Nikos Vlassis. "Perseus: Randomized point-based value iteration for POMDPs." JAIR 24 (2005): 195-220.
+ */
+public class PointBasedValueIteration extends MDPSolver implements Planner, QProvider {
+
+	/**
+	 * The scheme with which belief points are backed up each iteration.
+	 */
+	public enum BackupMode{
+		/**
+		 * Every belief point is backed up each iteration.
+		 */
+		PBVI,
+
+		/**
+		 * Randomly selected belief points are backed up until the value of every belief point has improved.
+		 */
+		PERSEUS
+	}
+
+
+	/**
+	 * The state enumerator of the POMDP
+	 */
+	protected StateEnumerator stateEnumerator;
+
+	/**
+	 * The actions of the POMDP, indexed by action index
+	 */
+	protected List<Action> actions;
+
+	/**
+	 * The number of enumerated hidden states covered by the model arrays
+	 */
+	protected int numStates;
+
+	/**
+	 * The number of observations
+	 */
+	protected int numObservations;
+
+	/**
+	 * The successor state ids of each action and state, indexed [action][state]
+	 */
+	protected int [][][] transitionStates;
+
+	/**
+	 * The probability of each successor state, indexed like {@link #transitionStates}
+	 */
+	protected double [][][] transitionProbs;
+
+	/**
+	 * The expected reward of each action and state, indexed [action][state]
+	 */
+	protected double [][] rewards;
+
+	/**
+	 * The probability of each observation in each successor state, indexed [action][observation][state]
+	 */
+	protected double [][][] observationProbs;
+
+	/**
+	 * Whether each hidden state is terminal
+	 */
+	protected boolean [] terminal;
+
+	/**
+	 * The belief points at which backups are performed
+	 */
+	protected List<double[]> beliefPoints = new ArrayList<double[]>();
+
+	/**
+	 * The current alpha vectors
+	 */
+	protected List<AlphaVector> alphaVectors = new ArrayList<AlphaVector>();
+
+	/**
+	 * The backup scheme
+	 */
+	protected BackupMode backupMode = BackupMode.PBVI;
+
+	/**
+	 * The number of belief points sampled when none have been set
+	 */
+	protected int numBeliefPoints;
+
+	/**
+	 * The maximum number of iterations per call to {@link #planFromState(State)}
+	 */
+	protected int maxIterations;
+
+	/**
+	 * When the maximum change in the value of any belief point is smaller than this value, planning stops.
+	 */
+	protected double maxDelta;
+
+	/**
+	 * The maximum wall-clock time of each call to {@link #planFromState(State)} in milliseconds; -1 for no limit
+	 */
+	protected long planningTimeBudget = -1;
+
+	/**
+	 * The executor and number of blocks with which projections and backups are computed; they are computed serially when it has
+	 * no executor.
+	 */
+	protected ParallelBlocks backupBlocks = new ParallelBlocks();
+
+	/**
+	 * The random number generator used to sample belief points and to select Perseus backups
+	 */
+	protected Random rand = RandomFactory.getMapped(0);
+
+
+	/**
+	 * Initializes.
+	 * @param domain the POMDP domain; it must provide a {@link StateEnumerator}, a {@link FullModel} and a {@link DiscreteObservationFunction}
+	 * @param discount the discount factor; must be less than 1
+	 * @param hashingFactory the hashing factory
+	 * @param numBeliefPoints the number of belief points sampled when none have been set
+	 * @param maxDelta when the maximum change in the value of any belief point is smaller than this value, planning stops
+	 * @param maxIterations the maximum number of iterations per call to {@link #planFromState(State)}
+	 */
+	public PointBasedValueIteration(PODomain domain, double discount, HashableStateFactory hashingFactory, int numBeliefPoints, double maxDelta, int maxIterations){
+		this.solverInit(domain, discount, hashingFactory);
+		if(!domain.providesStateEnumerator()){
+			throw new RuntimeException("PointBasedValueIteration requires a PODomain that provides a StateEnumerator.");
+		}
+		if(!(domain.getObservationFunction() instanceof DiscreteObservationFunction)){
+			throw new RuntimeException("PointBasedValueIteration requires a DiscreteObservationFunction.");
+		}
+		if(!(domain.getModel() instanceof FullModel)){
+			throw new RuntimeException("PointBasedValueIteration requires a FullModel.");
+		}
+		if(discount >= 1.){
+			throw new RuntimeException("PointBasedValueIteration requires a discount factor less than 1; got " + discount);
+		}
+		this.stateEnumerator = domain.getStateEnumerator();
+		this.numBeliefPoints = numBeliefPoints;
+		this.maxDelta = maxDelta;
+		this.maxIterations = maxIterations;
+	}
+
+
+	/**
+	 * Sets the scheme with which belief points are backed up. Default is {@link BackupMode#PBVI}.
+	 * @param backupMode the backup scheme
+	 */
+	public void setBackupMode(BackupMode backupMode) {
+		this.backupMode = backupMode;
+	}
+
+	public BackupMode getBackupMode() {
+		return backupMode;
+	}
+
+	/**
+	 * Sets the maximum wall-clock time of each call to {@link #planFromState(State)}, which applies in addition to the maximum
+	 * number of iterations. An iteration that has started is always completed.
+	 * @param milliseconds the maximum planning time in milliseconds; -1 for no time limit
+	 */
+	public void setPlanningTimeBudget(long milliseconds){
+		this.planningTimeBudget = milliseconds;
+	}
+
+	/**
+	 * Sets projections and backups to be computed across the given number of threads using a new {@link ForkJoinPool}, with
+	 * the work split into one contiguous block per thread. If numThreads is 1 or less, they are computed serially.
+	 * @param numThreads the number of threads to use.
+	 */
+	public void setParallelBackups(int numThreads){
+		this.backupBlocks.setThreads(numThreads);
+	}
+
+	/**
+	 * Sets projections and backups to be computed on the given executor, with the work split into numPartitions contiguous blocks.
+	 * @param executor the executor on which blocks are computed, such as a {@link ForkJoinPool}; null to compute serially
+	 * @param numPartitions the number of blocks into which the work is split
+	 */
+	public void setParallelBackups(ExecutorService executor, int numPartitions){
+		this.backupBlocks.setExecutor(executor, numPartitions);
+	}
+
+	/**
+	 * Sets the belief points at which backups are performed. Each belief point is a dense belief vector indexed by the
+	 * state enumeration ids.
+	 * @param beliefPoints the belief points
+	 */
+	public void setBeliefPoints(List<double[]> beliefPoints){
+		this.initializeModel();
+		this.beliefPoints = new ArrayList<double[]>(beliefPoints.size());
+		for(double [] b : beliefPoints){
+			this.beliefPoints.add(this.padded(b));
+		}
+	}
+
+	/**
+	 * Returns the belief points at which backups are performed.
+	 * @return the belief points at which backups are performed.
+	 */
+	public List<double[]> getBeliefPoints(){
+		return this.beliefPoints;
+	}
+
+	/**
+	 * Returns the current alpha vectors.
+	 * @return the current alpha vectors.
+	 */
+	public List<AlphaVector> getAlphaVectors(){
+		return this.alphaVectors;
+	}
+
+	/**
+	 * Returns the action of the given alpha vector.
+	 * @param alpha the alpha vector
+	 * @return the action of the alpha vector
+	 */
+	public Action actionFor(AlphaVector alpha){
+		return this.actions.get(alpha.action);
+	}
+
+
+	@Override
+	public Policy planFromState(State initialState) {
+
+		this.initializeModel();
+		double [] b0 = this.beliefVector(initialState);
+
+		if(this.beliefPoints.isEmpty()){
+			this.sampleBeliefPoints(b0, this.numBeliefPoints);
+		}
+		else if(!this.containsBeliefPoint(b0)){
+			this.beliefPoints.add(b0);
+		}
+
+		if(this.alphaVectors.isEmpty()){
+			this.alphaVectors.add(this.lowerBoundAlphaVector());
+		}
+
+		long deadline = this.planningTimeBudget >= 0 ? System.currentTimeMillis() + this.planningTimeBudget : Long.MAX_VALUE;
+		int i;
+		for(i = 0; i < this.maxIterations; i++){
+			if(System.currentTimeMillis() >= deadline){
+				break;
+			}
+			double delta = this.backupMode == BackupMode.PBVI ? this.pbviIteration() : this.perseusIteration();
+			DPrint.cl(this.debugCode, "Finished iteration " + i + " with " + this.alphaVectors.size() + " alpha vectors; delta: " + delta);
+			if(delta < this.maxDelta){
+				i++;
+				break;
+			}
+		}
+
+		DPrint.cl(this.debugCode, "Point-based planning performed " + i + " iterations over " + this.beliefPoints.size() + " belief points.");
+
+		return new GreedyQPolicy(this);
+	}
+
+
+	@Override
+	public void resetSolver() {
+		this.beliefPoints = new ArrayList<double[]>();
+		this.alphaVectors = new ArrayList<AlphaVector>();
+	}
+
+
+	@Override
+	public List<QValue> qValues(State s) {
+		double [] qs = this.beliefQValues(s);
+		List<QValue> res = new ArrayList<QValue>(qs.length);
+		for(int a = 0; a < qs.length; a++){
+			res.add(new QValue(s, this.actions.get(a), qs[a]));
+		}
+		return res;
+	}
+
+	@Override
+	public double qValue(State s, Action a) {
+		int ai = this.actions.indexOf(a);
+		if(ai == -1){
+			throw new RuntimeException("PointBasedValueIteration does not know action " + a);
+		}
+		return this.beliefQValues(s)[ai];
+	}
+
+	@Override
+	public double value(State s) {
+		this.initializeModel();
+		double [] b = this.beliefVector(s);
+		int [] support = support(b);
+		double max = Double.NEGATIVE_INFINITY;
+		for(AlphaVector alpha : this.alphaVectors){
+			max = Math.max(max, dot(b, support, alpha.values));
+		}
+		return max;
+	}
+
+
+	/**
+	 * Returns the maximum dot product of the belief state with the alpha vectors of each action, indexed by action index.
+	 * @param s the belief state
+	 * @return the Q-value of each action
+	 */
+	protected double [] beliefQValues(State s){
+		this.initializeModel();
+		double [] b = this.beliefVector(s);
+		int [] support = support(b);
+		double [] qs = new double[this.actions.size()];
+		Arrays.fill(qs, Double.NEGATIVE_INFINITY);
+		for(AlphaVector alpha : this.alphaVectors){
+			qs[alpha.action] = Math.max(qs[alpha.action], dot(b, support, alpha.values));
+		}
+		return qs;
+	}
+
+
+	/**
+	 * Enumerates every state reachable from the enumerated states and copies the transition dynamics, expected rewards,
+	 * and observation probabilities into primitive arrays. Does nothing if the model has already been initialized.
+	 */
+	protected void initializeModel(){
+
+		if(this.transitionStates != null){
+			return;
+		}
+
+		PODomain poDomain = (PODomain)this.domain;
+		FullModel fmodel = (FullModel)this.model;
+		if(this.stateEnumerator.numStatesEnumerated() == 0){
+			throw new RuntimeException("PointBasedValueIteration requires the StateEnumerator to have enumerated at least one state.");
+		}
+
+		this.actions = this.applicableActions(this.stateEnumerator.getStateForEnumerationId(0));
+		int nA = this.actions.size();
+
+		List<int[][]> nextStates = new ArrayList<int[][]>();
+		List<double[][]> nextProbs = new ArrayList<double[][]>();
+		List<double[]> expectedRewards = new ArrayList<double[]>();
+		List<Boolean> terminalStates = new ArrayList<Boolean>();
+
+		//the enumerator grows as successors are enumerated, so this finds the closure of the enumerated states
+		for(int s = 0; s < this.stateEnumerator.numStatesEnumerated(); s++){
+			State hs = this.stateEnumerator.getStateForEnumerationId(s);
+			boolean isTerminal = fmodel.terminal(hs);
+			int [][] sNext = new int[nA][];
+			double [][] sProbs = new double[nA][];
+			double [] sRewards = new double[nA];
+			for(int a = 0; a < nA; a++){
+				if(isTerminal){
+					sNext[a] = new int[0];
+					sProbs[a] = new double[0];
+					continue;
+				}
+				List<TransitionProb> tps = fmodel.transitions(hs, this.actions.get(a));
+				sNext[a] = new int[tps.size()];
+				sProbs[a] = new double[tps.size()];
+				for(int i = 0; i < tps.size(); i++){
+					TransitionProb tp = tps.get(i);
+					sNext[a][i] = this.stateEnumerator.getEnumeratedID(tp.eo.op);
+					sProbs[a][i] = tp.p;
+					sRewards[a] += tp.p * tp.eo.r;
+				}
+			}
+			nextStates.add(sNext);
+			nextProbs.add(sProbs);
+			expectedRewards.add(sRewards);
+			terminalStates.add(isTerminal);
+		}
+
+		int nS = nextStates.size();
+		DiscreteObservationFunction of = (DiscreteObservationFunction)poDomain.getObservationFunction();
+		List<State> observations = of.allObservations();
+		int nO = observations.size();
+
+		this.transitionStates = new int[nA][nS][];
+		this.transitionProbs = new double[nA][nS][];
+		this.rewards = new double[nA][nS];
+		this.observationProbs = new double[nA][nO][nS];
+		this.terminal = new boolean[nS];
+		for(int s = 0; s < nS; s++){
+			this.terminal[s] = terminalStates.get(s);
+			State hs = this.stateEnumerator.getStateForEnumerationId(s);
+			for(int a = 0; a < nA; a++){
+				this.transitionStates[a][s] = nextStates.get(s)[a];
+				this.transitionProbs[a][s] = nextProbs.get(s)[a];
+				this.rewards[a][s] = expectedRewards.get(s)[a];
+				for(int o = 0; o < nO; o++){
+					this.observationProbs[a][o][s] = of.probability(observations.get(o), hs, this.actions.get(a));
+				}
+			}
+		}
+
+		this.numStates = nS;
+		this.numObservations = nO;
+
+		DPrint.cl(this.debugCode, "Initialized POMDP model with " + nS + " states, " + nA + " actions, and " + nO + " observations.");
+
+	}
+
+
+	/**
+	 * Samples belief points with random walks that start from the given belief, selecting actions uniformly at random and
+	 * restarting when a terminal state is reached. Duplicate belief points are discarded.
+	 * @param initialBelief the dense belief vector from which random walks start
+	 * @param n the number of belief points to sample
+	 */
+	protected void sampleBeliefPoints(double [] initialBelief, int n){
+
+		this.beliefPoints.add(initialBelief);
+		double [] b = initialBelief;
+		int attempts = 0;
+		int maxAttempts = 100 * Math.max(1, n);
+		while(this.beliefPoints.size() < n && attempts < maxAttempts){
+			attempts++;
+
+			int s = sampleIndex(b, this.rand);
+			int a = this.rand.nextInt(this.actions.size());
+			if(this.terminal[s]){
+				b = initialBelief;
+				continue;
+			}
+			int sp = this.transitionStates[a][s][sampleIndex(this.transitionProbs[a][s], this.rand)];
+			double [] oProbs = new double[this.numObservations];
+			for(int o = 0; o < this.numObservations; o++){
+				oProbs[o] = this.observationProbs[a][o][sp];
+			}
+			int o = sampleIndex(oProbs, this.rand);
+
+			b = this.updateBelief(b, a, o);
+			if(!this.containsBeliefPoint(b)){
+				this.beliefPoints.add(b);
+			}
+		}
+
+		DPrint.cl(this.debugCode, "Sampled " + this.beliefPoints.size() + " belief points.");
+
+	}
+
+
+	/**
+	 * Returns the belief that results from taking the given action in the given belief and receiving the given observation.
+	 * @param b the dense belief vector
+	 * @param a the action index
+	 * @param o the observation index
+	 * @return the updated dense belief vector
+	 */
+	protected double [] updateBelief(double [] b, int a, int o){
+		double [] next = new double[this.numStates];
+		for(int s = 0; s < this.numStates; s++){
+			if(b[s] == 0.){
+				continue;
+			}
+			int [] sNext = this.transitionStates[a][s];
+			double [] sProbs = this.transitionProbs[a][s];
+			for(int i = 0; i < sNext.length; i++){
+				next[sNext[i]] += b[s] * sProbs[i];
+			}
+		}
+		double sum = 0.;
+		for(int s = 0; s < this.numStates; s++){
+			next[s] *= this.observationProbs[a][o][s];
+			sum += next[s];
+		}
+		if(sum == 0.){
+			return b;
+		}
+		for(int s = 0; s < this.numStates; s++){
+			next[s] /= sum;
+		}
+		return next;
+	}
+
+
+	/**
+	 * Returns an alpha vector whose value is a lower bound on the value of every belief: the minimum expected reward divided
+	 * by 1 - gamma in non-terminal states, or 0 if the minimum expected reward is positive, and 0 in terminal states.
+	 * @return the lower bound alpha vector
+	 */
+	protected AlphaVector lowerBoundAlphaVector(){
+		double minR = 0.;
+		for(int a = 0; a < this.actions.size(); a++){
+			for(int s = 0; s < this.numStates; s++){
+				if(!this.terminal[s]){
+					minR = Math.min(minR, this.rewards[a][s]);
+				}
+			}
+		}
+		double [] values = new double[this.numStates];
+		for(int s = 0; s < this.numStates; s++){
+			values[s] = this.terminal[s] ? 0. : minR / (1. - this.gamma);
+		}
+		return new AlphaVector(values, 0);
+	}
+
+
+	/**
+	 * Performs a PBVI iteration that backs up every belief point and replaces the alpha vectors with the distinct backed up vectors.
+	 * @return the maximum change in the value of any belief point
+	 */
+	protected double pbviIteration(){
+
+		final double [][][][] projections = this.computeProjections();
+		final int nB = this.beliefPoints.size();
+		final AlphaVector [] backedUp = new AlphaVector[nB];
+		final double [] oldValues = new double[nB];
+
+		this.backupBlocks.invokeBlocks(nB, new ParallelBlocks.Block<Object>() {
+			@Override
+			public Object run(int start, int end) {
+				for(int i = start; i < end; i++){
+					double [] b = beliefPoints.get(i);
+					int [] support = support(b);
+					oldValues[i] = maxValue(b, support, alphaVectors);
+					backedUp[i] = backup(b, support, projections);
+				}
+				return null;
+			}
+		}, "performing point-based backups");
+
+		List<AlphaVector> next = new ArrayList<AlphaVector>(nB);
+		double delta = 0.;
+		for(int i = 0; i < nB; i++){
+			double [] b = this.beliefPoints.get(i);
+			delta = Math.max(delta, Math.abs(dot(b, support(b), backedUp[i].values) - oldValues[i]));
+			if(!containsAlphaVector(next, backedUp[i])){
+				next.add(backedUp[i]);
+			}
+		}
+		this.alphaVectors = next;
+
+		return delta;
+	}
+
+
+	/**
+	 * Performs a Perseus iteration: randomly selected belief points whose value has not yet improved are backed up, keeping the
+	 * backed up vector if it improves the value of its belief point and the previous best vector of the belief point otherwise,
+	 * until the value of no belief point is lower than before the iteration.
+	 * @return the maximum change in the value of any belief point
+	 */
+	protected double perseusIteration(){
+
+		double [][][][] projections = this.computeProjections();
+		int nB = this.beliefPoints.size();
+		int [][] supports = new int[nB][];
+		double [] oldValues = new double[nB];
+		double [] newValues = new double[nB];
+		List<Integer> remaining = new ArrayList<Integer>(nB);
+		for(int i = 0; i < nB; i++){
+			supports[i] = support(this.beliefPoints.get(i));
+			oldValues[i] = maxValue(this.beliefPoints.get(i), supports[i], this.alphaVectors);
+			newValues[i] = Double.NEGATIVE_INFINITY;
+			remaining.add(i);
+		}
+
+		List<AlphaVector> next = new ArrayList<AlphaVector>();
+		while(!remaining.isEmpty()){
+
+			int i = remaining.get(this.rand.nextInt(remaining.size()));
+			double [] b = this.beliefPoints.get(i);
+			AlphaVector alpha = this.backup(b, supports[i], projections);
+			if(dot(b, supports[i], alpha.values) < oldValues[i]){
+				alpha = bestAlphaVector(b, supports[i], this.alphaVectors);
+			}
+			if(containsAlphaVector(next, alpha)){
+				//can only happen from numerical ties; drop the belief point so that the iteration terminates
+				remaining.remove(Integer.valueOf(i));
+				continue;
+			}
+			next.add(alpha);
+
+			List<Integer> stillRemaining = new ArrayList<Integer>(remaining.size());
+			for(int j : remaining){
+				newValues[j] = Math.max(newValues[j], dot(this.beliefPoints.get(j), supports[j], alpha.values));
+				if(newValues[j] < oldValues[j]){
+					stillRemaining.add(j);
+				}
+			}
+			remaining = stillRemaining;
+
+		}
+
+		double delta = 0.;
+		for(int i = 0; i < nB; i++){
+			double v = maxValue(this.beliefPoints.get(i), supports[i], next);
+			delta = Math.max(delta, Math.abs(v - oldValues[i]));
+		}
+		this.alphaVectors = next;
+
+		return delta;
+	}
+
+
+	/**
+	 * Computes the projection of every current alpha vector through every action-observation pair.
+	 * @return the projections, indexed [action][observation][alpha vector][state]
+	 */
+	protected double [][][][] computeProjections(){
+
+		final int nA = this.actions.size();
+		final int nAlpha = this.alphaVectors.size();
+		final double [][][][] projections = new double[nA][this.numObservations][nAlpha][];
+
+		this.backupBlocks.invokeBlocks(nAlpha, new ParallelBlocks.Block<Object>() {
+			@Override
+			public Object run(int start, int end) {
+				double [] weighted = new double[numStates];
+				for(int k = start; k < end; k++){
+					double [] alpha = alphaVectors.get(k).values;
+					for(int a = 0; a < nA; a++){
+						for(int o = 0; o < numObservations; o++){
+							double [] oProbs = observationProbs[a][o];
+							for(int sp = 0; sp < numStates; sp++){
+								weighted[sp] = oProbs[sp] * alpha[sp];
+							}
+							double [] g = new double[numStates];
+							for(int s = 0; s < numStates; s++){
+								int [] sNext = transitionStates[a][s];
+								double [] sProbs = transitionProbs[a][s];
+								double sum = 0.;
+								for(int i = 0; i < sNext.length; i++){
+									sum += sProbs[i] * weighted[sNext[i]];
+								}
+								g[s] = sum;
+							}
+							projections[a][o][k] = g;
+						}
+					}
+				}
+				return null;
+			}
+		}, "computing alpha vector projections");
+
+		return projections;
+	}
+
+
+	/**
+	 * Performs a point-based Bellman backup at the given belief and returns the resulting alpha vector.
+	 * @param b the dense belief vector
+	 * @param support the indices of the non-zero entries of b
+	 * @param projections the alpha vector projections returned by {@link #computeProjections()}
+	 * @return the backed up alpha vector
+	 */
+	protected AlphaVector backup(double [] b, int [] support, double [][][][] projections){
+
+		AlphaVector best = null;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for(int a = 0; a < this.actions.size(); a++){
+			double [] values = this.rewards[a].clone();
+			for(int o = 0; o < this.numObservations; o++){
+				double [][] g = projections[a][o];
+				int bestK = 0;
+				double bestKValue = Double.NEGATIVE_INFINITY;
+				for(int k = 0; k < g.length; k++){
+					double v = dot(b, support, g[k]);
+					if(v > bestKValue){
+						bestKValue = v;
+						bestK = k;
+					}
+				}
+				double [] gBest = g[bestK];
+				for(int s = 0; s < this.numStates; s++){
+					values[s] += this.gamma * gBest[s];
+				}
+			}
+			double v = dot(b, support, values);
+			if(v > bestValue){
+				bestValue = v;
+				best = new AlphaVector(values, a);
+			}
+		}
+
+		return best;
+	}
+
+
+	/**
+	 * Returns the dense belief vector of the given belief state over the enumerated states.
+	 * @param s the belief state; must be an {@link EnumerableBeliefState}
+	 * @return the dense belief vector
+	 */
+	protected double [] beliefVector(State s){
+		if(s instanceof DenseBeliefVector){
+			return this.padded(((DenseBeliefVector)s).beliefVector());
+		}
+		if(!(s instanceof EnumerableBeliefState)){
+			throw new RuntimeException("PointBasedValueIteration requires an EnumerableBeliefState, but got " + s.getClass().getName());
+		}
+		double [] b = new double[this.numStates];
+		for(EnumerableBeliefState.StateBelief sb : ((EnumerableBeliefState)s).nonZeroBeliefs()){
+			int id = this.stateEnumerator.getEnumeratedID(sb.s);
+			if(id >= this.numStates){
+				throw new RuntimeException("PointBasedValueIteration was given a belief over a state that was not reachable when its model was initialized.");
+			}
+			b[id] += sb.belief;
+		}
+		return b;
+	}
+
+
+	/**
+	 * Returns a copy of the given belief vector extended with zeros to the number of enumerated states. The copy keeps the
+	 * stored belief points independent of the caller's arrays.
+	 * @param b the dense belief vector
+	 * @return a new belief vector with the number of enumerated states as its dimension
+	 */
+	protected double [] padded(double [] b){
+		if(b.length > this.numStates){
+			throw new RuntimeException("PointBasedValueIteration was given a belief vector of dimension " + b.length
+					+ ", but its model has only " + this.numStates + " states.");
+		}
+		return Arrays.copyOf(b, this.numStates);
+	}
+
+
+	/**
+	 * Returns whether a belief point within a small L1 distance of the given belief exists.
+	 * @param b the dense belief vector
+	 * @return true if an equivalent belief point exists; false otherwise.
+	 */
+	protected boolean containsBeliefPoint(double [] b){
+		for(double [] other : this.beliefPoints){
+			double dist = 0.;
+			for(int s = 0; s < b.length && dist <= 1e-9; s++){
+				dist += Math.abs(b[s] - other[s]);
+			}
+			if(dist <= 1e-9){
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * Returns the indices of the non-zero entries of the given belief vector.
+	 * @param b the dense belief vector
+	 * @return the indices of the non-zero entries
+	 */
+	protected static int [] support(double [] b){
+		int n = 0;
+		for(double v : b){
+			if(v != 0.){
+				n++;
+			}
+		}
+		int [] support = new int[n];
+		int j = 0;
+		for(int s = 0; s < b.length; s++){
+			if(b[s] != 0.){
+				support[j++] = s;
+			}
+		}
+		return support;
+	}
+
+	/**
+	 * Returns the dot product of the belief vector and the given vector over the support of the belief.
+	 * @param b the dense belief vector
+	 * @param support the indices of the non-zero entries of b
+	 * @param v the vector
+	 * @return the dot product
+	 */
+	protected static double dot(double [] b, int [] support, double [] v){
+		double sum = 0.;
+		for(int s : support){
+			sum += b[s] * v[s];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the value of a belief under a set of alpha vectors, the maximum of their dot products with the belief.
+	 * @param b the dense belief vector
+	 * @param support the indices of the non-zero entries of b
+	 * @param alphas the alpha vectors
+	 * @return the maximum dot product; negative infinity if there are no alpha vectors
+	 */
+	protected static double maxValue(double [] b, int [] support, List<AlphaVector> alphas){
+		double max = Double.NEGATIVE_INFINITY;
+		for(AlphaVector alpha : alphas){
+			max = Math.max(max, dot(b, support, alpha.values));
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the alpha vector with the maximum dot product with a belief, the first one in list order on ties.
+	 * @param b the dense belief vector
+	 * @param support the indices of the non-zero entries of b
+	 * @param alphas the alpha vectors
+	 * @return the best alpha vector; null if there are no alpha vectors
+	 */
+	protected static AlphaVector bestAlphaVector(double [] b, int [] support, List<AlphaVector> alphas){
+		AlphaVector best = null;
+		double max = Double.NEGATIVE_INFINITY;
+		for(AlphaVector alpha : alphas){
+			double v = dot(b, support, alpha.values);
+			if(v > max){
+				max = v;
+				best = alpha;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns whether a list contains an alpha vector with the same action and values as the given one.
+	 * @param alphas the alpha vectors
+	 * @param alpha the alpha vector to look for
+	 * @return true if an equal alpha vector is in the list; false otherwise.
+	 */
+	protected static boolean containsAlphaVector(List<AlphaVector> alphas, AlphaVector alpha){
+		for(AlphaVector other : alphas){
+			if(other.action == alpha.action && Arrays.equals(other.values, alpha.values)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Samples an index with probability proportional to its entry.
+	 * @param probs the non-negative weights of each index
+	 * @param rand the random number generator
+	 * @return the sampled index
+	 */
+	protected static int sampleIndex(double [] probs, Random rand){
+		double sum = 0.;
+		for(double p : probs){
+			sum += p;
+		}
+		double r = rand.nextDouble() * sum;
+		double cumulative = 0.;
+		int last = -1;
+		for(int i = 0; i < probs.length; i++){
+			if(probs[i] > 0.){
+				last = i;
+				cumulative += probs[i];
+				if(r < cumulative){
+					return i;
+				}
+			}
+		}
+		if(last == -1){
+			throw new RuntimeException("Cannot sample from a distribution with no probability mass.");
+		}
+		return last;
+	}
+
+
+	/**
+	 * A linear value function over hidden states that is labeled with the action whose backup produced it.
+	 */
+	public static class AlphaVector{
+
+		/**
+		 * The value of each hidden state, indexed by state enumeration id
+		 */
+		public double [] values;
+
+		/**
+		 * The action index of this alpha vector; see {@link PointBasedValueIteration#actionFor(AlphaVector)}
+		 */
+		public int action;
+
+		public AlphaVector(double [] values, int action) {
+			this.values = values;
+			this.action = action;
+		}
+	}
+
+}
@@ -18,6 +18,8 @@ import burlap.mdp.singleagent.pomdp.BeliefMDPGenerator;
 import burlap.mdp.singleagent.pomdp.PODomain;
 import burlap.mdp.singleagent.pomdp.SimulatedPOEnvironment;
 import burlap.mdp.singleagent.pomdp.beliefstate.BeliefState;
+import burlap.mdp.singleagent.pomdp.beliefstate.BeliefUpdate;
+import burlap.mdp.singleagent.pomdp.beliefstate.TabularBeliefUpdate;
 import burlap.statehashing.HashableStateFactory;
 import burlap.statehashing.ReflectiveHashableStateFactory;
 
@@ -51,9 +53,26 @@ public class BeliefSparseSampling extends MDPSolver implements Planner, QProvide
 	 * @param c the number of samples {@link burlap.behavior.singleagent.planning.stochastic.sparsesampling.SparseSampling} will use. Set to -1 to use the full BeliefMDP transition dynamics.
 	 */
 	public BeliefSparseSampling(PODomain domain, double discount, HashableStateFactory hashingFactory, int h, int c){
+		this(domain, discount, hashingFactory, h, c, new TabularBeliefUpdate(domain));
+	}
+
+
+	/**
+	 * Initializes the planner with the given {@link BeliefUpdate} for the Belief MDP. For example, use a
+	 * {@link burlap.mdp.singleagent.pomdp.beliefstate.ParticleFilterBeliefUpdate} to plan from
+	 * {@link burlap.mdp.singleagent.pomdp.beliefstate.ParticleBeliefState} beliefs, in which case c must be positive, since
+	 * the full Belief MDP transition dynamics require {@link burlap.mdp.singleagent.pomdp.beliefstate.TabularBeliefState} beliefs.
+	 * @param domain the POMDP domain
+	 * @param discount the discount factor
+	 * @param hashingFactory the Belief MDP {@link burlap.statehashing.HashableStateFactory} that {@link burlap.behavior.singleagent.planning.stochastic.sparsesampling.SparseSampling} will use.
+	 * @param h the height of the {@link burlap.behavior.singleagent.planning.stochastic.sparsesampling.SparseSampling} tree.
+	 * @param c the number of samples {@link burlap.behavior.singleagent.planning.stochastic.sparsesampling.SparseSampling} will use. Set to -1 to use the full BeliefMDP transition dynamics.
+	 * @param updater the belief update of the Belief MDP
+	 */
+	public BeliefSparseSampling(PODomain domain, double discount, HashableStateFactory hashingFactory, int h, int c, BeliefUpdate updater){
 	
 		this.solverInit(domain, discount, hashingFactory);
-		BeliefMDPGenerator bdgen = new BeliefMDPGenerator(domain);
+		BeliefMDPGenerator bdgen = new BeliefMDPGenerator(domain, updater);
 		this.beliefMDP = (SADomain)bdgen.generateDomain();
 		
 		this.mdpPlanner = new SparseSampling(this.beliefMDP, discount, hashingFactory, h, Math.max(1, c));
@@ -0,0 +1,32 @@
+package burlap.behavior.valuefunction.checkpoint;
+
+import burlap.mdp.core.state.State;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads {@link State} objects to and from the binary stream of a table checkpoint. Implementations must read back exactly the
+ * bytes they write. A domain-specific encoder that writes state variables directly will be much faster than the general
+ * {@link YamlStateEncoder}.
+ */
+public interface StateEncoder {
+
+	/**
+	 * Writes a state to the output.
+	 * @param s the state to write
+	 * @param out the output to which the state is written
+	 * @throws IOException if the output cannot be written
+	 */
+	void write(State s, DataOutput out) throws IOException;
+
+	/**
+	 * Reads a state written by {@link #write(State, DataOutput)} from the input.
+	 * @param in the input from which the state is read
+	 * @return the read state
+	 * @throws IOException if the input cannot be read
+	 */
+	State read(DataInput in) throws IOException;
+
+}
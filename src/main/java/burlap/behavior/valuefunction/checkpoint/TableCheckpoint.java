@@ -0,0 +1,92 @@
+package burlap.behavior.valuefunction.checkpoint;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Constants and utilities for the versioned binary table checkpoint format written by {@link TableCheckpointWriter} and
+ * read by {@link TableCheckpointReader}. The format is used to snapshot value function tables and Q-value tables.
+ * <p>
+ * A checkpoint begins with an uncompressed header made of the int {@link #MAGIC}, the int format {@link #VERSION},
+ * a table type byte ({@link #VALUE_TABLE} or {@link #Q_TABLE}) and a flags byte ({@link #FLAG_COMPRESSED}, {@link #FLAG_DELTA}).
+ * The header is followed by a body, which is GZIP compressed if the compressed flag is set. The body is a stream of records,
+ * each starting with a tag byte:
+ * <ul>
+ *     <li>{@link #RECORD_STATE}: a state written with a {@link StateEncoder}, followed by a double value for value tables, or for
+ *     Q-tables by an int number of actions and that many (int action id, double Q-value) pairs. Action ids are assigned in order
+ *     of first use, starting at 0; the first use of an id is followed by a UTF string of the action's {@link Object#toString()}
+ *     representation before its Q-value.</li>
+ *     <li>{@link #RECORD_END}: a long count of the state records in the checkpoint; no records follow.</li>
+ * </ul>
+ * A delta checkpoint contains only the states that changed since the previous checkpoint and is meant to be applied on top
+ * of the table restored from the preceding checkpoints. A full checkpoint replaces the table.
+ */
+public class TableCheckpoint {
+
+	/**
+	 * The magic number identifying a table checkpoint file.
+	 */
+	public static final int MAGIC = 0x4254424C;
+
+	/**
+	 * The current version of the format.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Table type of state value function tables.
+	 */
+	public static final byte VALUE_TABLE = 1;
+
+	/**
+	 * Table type of state-action Q-value tables.
+	 */
+	public static final byte Q_TABLE = 2;
+
+	/**
+	 * Flag indicating a GZIP compressed body.
+	 */
+	public static final byte FLAG_COMPRESSED = 1;
+
+	/**
+	 * Flag indicating a delta checkpoint.
+	 */
+	public static final byte FLAG_DELTA = 2;
+
+	/**
+	 * Record tag ending the body.
+	 */
+	public static final byte RECORD_END = 0;
+
+	/**
+	 * Record tag of a state entry.
+	 */
+	public static final byte RECORD_STATE = 1;
+
+
+	private TableCheckpoint() {
+		// do nothing
+	}
+
+
+	/**
+	 * Returns whether the file at the given path begins with the table checkpoint magic number. Use this to distinguish
+	 * checkpoints from the YAML table files written by earlier versions.
+	 * @param path the path of the file
+	 * @return true if the file is a table checkpoint; false otherwise.
+	 */
+	public static boolean isCheckpoint(String path){
+		try(InputStream in = Files.newInputStream(Paths.get(path))){
+			return new DataInputStream(in).readInt() == MAGIC;
+		} catch(EOFException e){
+			return false;
+		} catch(IOException e){
+			throw new RuntimeException("Could not read table file " + path, e);
+		}
+	}
+
+}
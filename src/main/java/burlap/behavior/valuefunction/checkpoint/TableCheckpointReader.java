@@ -0,0 +1,263 @@
+package burlap.behavior.valuefunction.checkpoint;
+
+import burlap.mdp.core.state.State;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a table checkpoint written by {@link TableCheckpointWriter} one state entry at a time. The file is read through a read-only memory map,
+ * so reading does not copy the file into the heap. Call {@link #next()} to advance to each state entry and then use
+ * {@link #state()} and {@link #value()} for value tables, or {@link #numActions()}, {@link #actionName(int)} and {@link #q(int)} for Q-tables.
+ * The arrays backing the Q-values of an entry are reused between entries.
+ */
+public class TableCheckpointReader implements Closeable {
+
+	protected FileChannel channel;
+	protected DataInputStream in;
+	protected StateEncoder encoder;
+
+	protected byte tableType;
+	protected boolean compressed;
+	protected boolean delta;
+
+	/**
+	 * The string representations of the actions defined so far, indexed by action id
+	 */
+	protected List<String> actionNames = new ArrayList<String>();
+
+	protected long numStatesRead = 0;
+	protected State state;
+	protected double value;
+	protected int numActions;
+	protected int [] actionIds = new int[16];
+	protected double [] qs = new double[16];
+
+
+	/**
+	 * Opens the checkpoint at the given path and reads its header.
+	 * @param path the path of the checkpoint file
+	 * @param encoder the {@link StateEncoder} used to read states; it must match the one used to write the checkpoint
+	 * @throws IOException if the file cannot be read or is not a valid checkpoint
+	 */
+	public TableCheckpointReader(String path, StateEncoder encoder) throws IOException {
+		this.encoder = encoder;
+		this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+		try{
+			InputStream is = new MappedInputStream(this.channel);
+			DataInputStream header = new DataInputStream(is);
+			if(header.readInt() != TableCheckpoint.MAGIC){
+				throw new IOException(path + " is not a table checkpoint file.");
+			}
+			int version = header.readInt();
+			if(version != TableCheckpoint.VERSION){
+				throw new IOException("Unsupported table checkpoint version " + version + " in " + path);
+			}
+			this.tableType = header.readByte();
+			byte flags = header.readByte();
+			this.compressed = (flags & TableCheckpoint.FLAG_COMPRESSED) != 0;
+			this.delta = (flags & TableCheckpoint.FLAG_DELTA) != 0;
+			if(this.compressed){
+				is = new BufferedInputStream(new GZIPInputStream(is, TableCheckpointWriter.BUFFER_SIZE), TableCheckpointWriter.BUFFER_SIZE);
+			}
+			this.in = new DataInputStream(is);
+		} catch(IOException e){
+			this.channel.close();
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Advances to the next state entry.
+	 * @return true if a state entry was read; false if the end of the checkpoint was reached.
+	 * @throws IOException if the entry cannot be read or the checkpoint is truncated
+	 */
+	public boolean next() throws IOException {
+		byte tag = this.in.readByte();
+		if(tag == TableCheckpoint.RECORD_END){
+			long expected = this.in.readLong();
+			if(expected != this.numStatesRead){
+				throw new IOException("Table checkpoint declares " + expected + " states but " + this.numStatesRead + " were read.");
+			}
+			return false;
+		}
+		if(tag != TableCheckpoint.RECORD_STATE){
+			throw new IOException("Corrupt table checkpoint: unknown record tag " + tag);
+		}
+
+		this.state = this.encoder.read(this.in);
+		if(this.tableType == TableCheckpoint.VALUE_TABLE){
+			this.value = this.in.readDouble();
+		}
+		else{
+			this.numActions = this.in.readInt();
+			if(this.numActions > this.qs.length){
+				this.actionIds = Arrays.copyOf(this.actionIds, this.numActions);
+				this.qs = Arrays.copyOf(this.qs, this.numActions);
+			}
+			for(int i = 0; i < this.numActions; i++){
+				int id = this.in.readInt();
+				if(id == this.actionNames.size()){
+					this.actionNames.add(this.in.readUTF());
+				}
+				else if(id > this.actionNames.size() || id < 0){
+					throw new IOException("Corrupt table checkpoint: undefined action id " + id);
+				}
+				this.actionIds[i] = id;
+				this.qs[i] = this.in.readDouble();
+			}
+		}
+		this.numStatesRead++;
+
+		return true;
+	}
+
+
+	/**
+	 * Returns the table type, {@link TableCheckpoint#VALUE_TABLE} or {@link TableCheckpoint#Q_TABLE}.
+	 * @return the table type
+	 */
+	public byte tableType(){
+		return this.tableType;
+	}
+
+	/**
+	 * Returns whether the checkpoint body is compressed.
+	 * @return whether the checkpoint body is compressed.
+	 */
+	public boolean isCompressed(){
+		return this.compressed;
+	}
+
+	/**
+	 * Returns whether this is a delta checkpoint.
+	 * @return whether this is a delta checkpoint.
+	 */
+	public boolean isDelta(){
+		return this.delta;
+	}
+
+	/**
+	 * Returns the state of the current entry.
+	 * @return the state of the current entry.
+	 */
+	public State state(){
+		return this.state;
+	}
+
+	/**
+	 * Returns the value of the current value table entry.
+	 * @return the value of the current value table entry.
+	 */
+	public double value(){
+		return this.value;
+	}
+
+	/**
+	 * Returns the number of actions of the current Q-table entry.
+	 * @return the number of actions of the current Q-table entry.
+	 */
+	public int numActions(){
+		return this.numActions;
+	}
+
+	/**
+	 * Returns the {@link Object#toString()} representation of the i'th action of the current Q-table entry.
+	 * @param i the action position in the entry
+	 * @return the string representation of the action
+	 */
+	public String actionName(int i){
+		return this.actionNames.get(this.actionIds[i]);
+	}
+
+	/**
+	 * Returns the Q-value of the i'th action of the current Q-table entry.
+	 * @param i the action position in the entry
+	 * @return the Q-value of the action
+	 */
+	public double q(int i){
+		return this.qs[i];
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+
+	/**
+	 * An {@link InputStream} over a read-only memory map of a file channel. Files larger than a single mapping are mapped in consecutive regions.
+	 */
+	protected static class MappedInputStream extends InputStream {
+
+		protected static final long REGION_SIZE = 1L << 30;
+
+		protected FileChannel channel;
+		protected long size;
+		protected long regionStart = 0;
+		protected MappedByteBuffer region;
+
+		public MappedInputStream(FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.size = channel.size();
+			this.region = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(REGION_SIZE, this.size));
+		}
+
+		/**
+		 * Maps the next region if the current one is exhausted.
+		 * @return false if the end of the file has been reached; true otherwise.
+		 * @throws IOException if the next region cannot be mapped
+		 */
+		protected boolean ensureRemaining() throws IOException {
+			if(this.region.hasRemaining()){
+				return true;
+			}
+			long next = this.regionStart + this.region.capacity();
+			if(next >= this.size){
+				return false;
+			}
+			this.regionStart = next;
+			this.region = this.channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(REGION_SIZE, this.size - next));
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if(!this.ensureRemaining()){
+				return -1;
+			}
+			return this.region.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0){
+				return 0;
+			}
+			if(!this.ensureRemaining()){
+				return -1;
+			}
+			int n = Math.min(len, this.region.remaining());
+			this.region.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int)Math.min(Integer.MAX_VALUE, this.size - this.regionStart - this.region.position());
+		}
+	}
+
+}
@@ -0,0 +1,273 @@
+package burlap.behavior.valuefunction.checkpoint;
+
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.state.State;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a table checkpoint to a file in the format described by {@link TableCheckpoint}. Entries are written as they are provided
+ * through a buffered file channel, so a table never needs to be copied in memory to be written. For value tables, call
+ * {@link #writeValue(State, double)} for each state; for Q-tables, call {@link #beginQState(State, int)} followed by
+ * {@link #writeQ(Action, double)} for each of its actions. Call {@link #finish()} to complete the checkpoint, and {@link #close()}
+ * in all cases.
+ * <p>
+ * The checkpoint is written to a temporary file in the same directory, which {@link #finish()} moves over the target path atomically,
+ * so an existing checkpoint at the path is never left partially overwritten. If the writer is closed without finishing, for example because
+ * an exception was thrown while the table was written, the temporary file is deleted and the target path is left untouched.
+ */
+public class TableCheckpointWriter implements Closeable {
+
+	/**
+	 * The default size of the write buffer in bytes
+	 */
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	protected FileChannel channel;
+	protected Path path;
+	protected Path tempPath;
+	protected OutputStream fileStream;
+	protected GZIPOutputStream gzip;
+	protected DataOutputStream out;
+	protected StateEncoder encoder;
+	protected byte tableType;
+
+	/**
+	 * The ids of the actions defined so far, keyed by their string representation
+	 */
+	protected Map<String, Integer> actionIds = new HashMap<String, Integer>();
+
+	/**
+	 * The number of state records written
+	 */
+	protected long numStates = 0;
+
+	/**
+	 * The number of Q-values still expected for the current Q-table state
+	 */
+	protected int remainingQs = 0;
+
+	/**
+	 * Whether a write failed, after which the checkpoint cannot be finished
+	 */
+	protected boolean failed = false;
+
+	/**
+	 * Whether the checkpoint has been finished and moved to its path
+	 */
+	protected boolean finished = false;
+
+
+	/**
+	 * Opens a new temporary checkpoint file next to the path and writes its header. Any existing file at the path is only replaced by {@link #finish()}.
+	 * @param path the path of the checkpoint file
+	 * @param tableType the table type, {@link TableCheckpoint#VALUE_TABLE} or {@link TableCheckpoint#Q_TABLE}
+	 * @param compressed whether the body should be GZIP compressed
+	 * @param delta whether this is a delta checkpoint
+	 * @param encoder the {@link StateEncoder} used to write states
+	 * @throws IOException if the file cannot be opened or written
+	 */
+	public TableCheckpointWriter(String path, byte tableType, boolean compressed, boolean delta, StateEncoder encoder) throws IOException {
+		if(tableType != TableCheckpoint.VALUE_TABLE && tableType != TableCheckpoint.Q_TABLE){
+			throw new RuntimeException("Unknown table checkpoint type " + tableType);
+		}
+		this.tableType = tableType;
+		this.encoder = encoder;
+		this.path = Paths.get(path).toAbsolutePath();
+		this.tempPath = Files.createTempFile(this.path.getParent(), this.path.getFileName().toString() + ".", ".tmp");
+		this.channel = FileChannel.open(this.tempPath, StandardOpenOption.WRITE);
+
+		boolean opened = false;
+		try{
+			this.out = this.openStream(tableType, compressed, delta);
+			opened = true;
+		} finally{
+			if(!opened){
+				this.discard();
+			}
+		}
+	}
+
+	protected DataOutputStream openStream(byte tableType, boolean compressed, boolean delta) throws IOException {
+		this.fileStream = new BufferedOutputStream(Channels.newOutputStream(this.channel), BUFFER_SIZE);
+		OutputStream os = this.fileStream;
+		DataOutputStream header = new DataOutputStream(os);
+		header.writeInt(TableCheckpoint.MAGIC);
+		header.writeInt(TableCheckpoint.VERSION);
+		header.writeByte(tableType);
+		header.writeByte((compressed ? TableCheckpoint.FLAG_COMPRESSED : 0) | (delta ? TableCheckpoint.FLAG_DELTA : 0));
+		if(compressed){
+			header.flush();
+			this.gzip = new GZIPOutputStream(os, BUFFER_SIZE);
+			os = new BufferedOutputStream(this.gzip, BUFFER_SIZE);
+		}
+		return new DataOutputStream(os);
+	}
+
+
+	/**
+	 * Writes the value of a state to a value table checkpoint.
+	 * @param s the state
+	 * @param v the value of the state
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void writeValue(State s, double v) throws IOException {
+		if(this.tableType != TableCheckpoint.VALUE_TABLE){
+			throw new RuntimeException("State values can only be written to a value table checkpoint.");
+		}
+		this.checkWritable();
+		this.failed = true;
+		this.out.writeByte(TableCheckpoint.RECORD_STATE);
+		this.encoder.write(s, this.out);
+		this.out.writeDouble(v);
+		this.failed = false;
+		this.numStates++;
+	}
+
+
+	/**
+	 * Begins the entry of a state in a Q-table checkpoint. It must be followed by exactly numActions calls to {@link #writeQ(Action, double)}.
+	 * @param s the state
+	 * @param numActions the number of Q-values that will be written for the state
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void beginQState(State s, int numActions) throws IOException {
+		if(this.tableType != TableCheckpoint.Q_TABLE){
+			throw new RuntimeException("Q-values can only be written to a Q-table checkpoint.");
+		}
+		if(this.remainingQs != 0){
+			throw new RuntimeException("Cannot begin a new Q-table state before all Q-values of the previous state are written.");
+		}
+		this.checkWritable();
+		this.failed = true;
+		this.out.writeByte(TableCheckpoint.RECORD_STATE);
+		this.encoder.write(s, this.out);
+		this.out.writeInt(numActions);
+		this.failed = false;
+		this.remainingQs = numActions;
+		this.numStates++;
+	}
+
+
+	/**
+	 * Writes the Q-value of an action of the current Q-table state.
+	 * @param a the action
+	 * @param q the Q-value
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void writeQ(Action a, double q) throws IOException {
+		if(this.remainingQs <= 0){
+			throw new RuntimeException("More Q-values written than declared for the current state.");
+		}
+		this.checkWritable();
+		this.failed = true;
+		String key = a.toString();
+		Integer id = this.actionIds.get(key);
+		if(id == null){
+			//the first use of an action defines the next id inline
+			id = this.actionIds.size();
+			this.actionIds.put(key, id);
+			this.out.writeInt(id);
+			this.out.writeUTF(key);
+		}
+		else{
+			this.out.writeInt(id);
+		}
+		this.out.writeDouble(q);
+		this.failed = false;
+		this.remainingQs--;
+	}
+
+
+	/**
+	 * Writes the end record, forces the checkpoint to disk, and atomically moves it to its path, replacing any existing file.
+	 * @throws IOException if the file cannot be written or moved
+	 */
+	public void finish() throws IOException {
+		this.checkWritable();
+		if(this.remainingQs != 0){
+			throw new RuntimeException("Cannot finish a Q-table checkpoint with " + this.remainingQs + " Q-values of the last state unwritten.");
+		}
+		this.failed = true;
+		this.out.writeByte(TableCheckpoint.RECORD_END);
+		this.out.writeLong(this.numStates);
+		this.out.flush();
+		if(this.gzip != null){
+			this.gzip.finish();
+		}
+		this.fileStream.flush();
+		this.channel.force(true);
+		this.channel.close();
+		try{
+			Files.move(this.tempPath, this.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch(AtomicMoveNotSupportedException e){
+			Files.move(this.tempPath, this.path, StandardCopyOption.REPLACE_EXISTING);
+		}
+		this.failed = false;
+		this.finished = true;
+	}
+
+
+	/**
+	 * Closes the checkpoint file. If {@link #finish()} was not successfully called, the temporary file is deleted and no checkpoint is written.
+	 * @throws IOException if the file cannot be closed or deleted
+	 */
+	@Override
+	public void close() throws IOException {
+		if(!this.finished){
+			this.discard();
+		}
+	}
+
+
+	/**
+	 * Returns whether the checkpoint has been finished and moved to its path.
+	 * @return true if the checkpoint has been finished; false otherwise.
+	 */
+	public boolean isFinished(){
+		return this.finished;
+	}
+
+	protected void checkWritable(){
+		if(this.finished){
+			throw new RuntimeException("The table checkpoint has already been finished.");
+		}
+		if(this.failed){
+			throw new RuntimeException("Cannot continue a table checkpoint after a failed write.");
+		}
+	}
+
+	protected void discard() throws IOException {
+		this.failed = true;
+		try{
+			this.channel.close();
+		} finally{
+			Files.deleteIfExists(this.tempPath);
+		}
+	}
+
+
+	/**
+	 * Returns the number of state entries written so far.
+	 * @return the number of state entries written so far.
+	 */
+	public long numStates(){
+		return this.numStates;
+	}
+
+}
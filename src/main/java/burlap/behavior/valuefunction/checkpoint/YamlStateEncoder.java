@@ -0,0 +1,33 @@
+package burlap.behavior.valuefunction.checkpoint;
+
+import burlap.mdp.core.state.State;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link StateEncoder} that writes each state as a length-prefixed UTF-8 YAML document. Like the YAML table files this format replaces,
+ * it requires states to have JavaBean like properties; i.e., have a default constructor and getters and setters
+ * (or public data members) for all relevant fields. Unlike them, only one state is held in memory as YAML at a time.
+ */
+public class YamlStateEncoder implements StateEncoder {
+
+	protected Yaml yaml = new Yaml();
+
+	@Override
+	public void write(State s, DataOutput out) throws IOException {
+		byte [] bytes = this.yaml.dump(s).getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	@Override
+	public State read(DataInput in) throws IOException {
+		byte [] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return (State)this.yaml.load(new String(bytes, StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,172 @@
+package burlap.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing (linear probing) hash index from int keys to the dense indices 0, 1, ..., {@link #size()}-1, in the order the
+ * keys were added, stored in primitive int arrays. Owners keep their own data in parallel arrays indexed by the same indices and use
+ * this class to find the index of a key without creating any objects.
+ * <p>
+ * Keys need not be unique: when several indices share a key, {@link #find(int)} returns the first of them in probe order and
+ * {@link #findNext(int, int)} the following ones, so a key may also be the hash code of an object that the owner compares itself.
+ * Keys are spread with a golden ratio multiplicative hash, so consecutive keys do not cluster. The table has at least twice as many
+ * slots as indices and grows as needed. {@link #clear()} empties only the slots in use, so clearing a small index in a large table
+ * is cheap.
+ */
+public class IntHashIndex {
+
+	/**
+	 * The key of each index
+	 */
+	protected int [] keys;
+
+	/**
+	 * The table slot of each index
+	 */
+	protected int [] indexSlots;
+
+	/**
+	 * The table slots, holding index + 1, or 0 for an empty slot. The length is always a power of two.
+	 */
+	protected int [] slots;
+
+	/**
+	 * The number of indices
+	 */
+	protected int size;
+
+
+	/**
+	 * Initializes with room for 16 keys.
+	 */
+	public IntHashIndex() {
+		this(16);
+	}
+
+	/**
+	 * Initializes with room for the given number of keys before the arrays grow.
+	 * @param capacity the initial capacity
+	 */
+	public IntHashIndex(int capacity) {
+		capacity = Math.max(4, capacity);
+		this.keys = new int[capacity];
+		this.indexSlots = new int[capacity];
+		this.slots = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+	}
+
+
+	/**
+	 * Returns the number of indices.
+	 * @return the number of indices
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the key of an index.
+	 * @param index the index
+	 * @return the key of the index
+	 */
+	public int key(int index) {
+		return this.keys[index];
+	}
+
+	/**
+	 * Returns the first index with the given key, or -1 if there is none.
+	 * @param key the key
+	 * @return the first index with the key, or -1 if there is none
+	 */
+	public int find(int key) {
+		return this.probe(key, mix(key) & (this.slots.length - 1));
+	}
+
+	/**
+	 * Returns the next index with the given key after an index returned by {@link #find(int)} or this method, or -1 if there is none.
+	 * @param key the key
+	 * @param index the previous index with the key
+	 * @return the next index with the key, or -1 if there is none
+	 */
+	public int findNext(int key, int index) {
+		return this.probe(key, (this.indexSlots[index] + 1) & (this.slots.length - 1));
+	}
+
+	/**
+	 * Adds a key and returns its index, which is the number of indices before it was added.
+	 * @param key the key
+	 * @return the index of the key
+	 */
+	public int add(int key) {
+		if(this.size == this.keys.length){
+			int capacity = this.size * 2;
+			this.keys = Arrays.copyOf(this.keys, capacity);
+			this.indexSlots = Arrays.copyOf(this.indexSlots, capacity);
+		}
+		if((this.size + 1) * 2 > this.slots.length){
+			this.slots = new int[this.slots.length * 2];
+			for(int i = 0; i < this.size; i++){
+				this.insertSlot(i);
+			}
+		}
+		int index = this.size++;
+		this.keys[index] = key;
+		this.insertSlot(index);
+		return index;
+	}
+
+	/**
+	 * Removes all keys, keeping the allocated arrays.
+	 */
+	public void clear() {
+		for(int i = 0; i < this.size; i++){
+			this.slots[this.indexSlots[i]] = 0;
+		}
+		this.size = 0;
+	}
+
+
+	/**
+	 * Returns the first index with the given key in the probe sequence from a slot, or -1 if an empty slot is reached first.
+	 * @param key the key
+	 * @param slot the slot at which probing starts
+	 * @return the index, or -1 if there is none
+	 */
+	protected int probe(int key, int slot) {
+		int mask = this.slots.length - 1;
+		for(; ; slot = (slot + 1) & mask){
+			int i = this.slots[slot];
+			if(i == 0){
+				return -1;
+			}
+			if(this.keys[i - 1] == key){
+				return i - 1;
+			}
+		}
+	}
+
+	/**
+	 * Places an index in the first free slot of the probe sequence of its key.
+	 * @param index the index
+	 */
+	protected void insertSlot(int index) {
+		int mask = this.slots.length - 1;
+		int slot = mix(this.keys[index]) & mask;
+		while(this.slots[slot] != 0){
+			slot = (slot + 1) & mask;
+		}
+		this.slots[slot] = index + 1;
+		this.indexSlots[index] = slot;
+	}
+
+	/**
+	 * Spreads the bits of a key with a golden ratio multiplicative hash, so that linear probing behaves well with consecutive keys
+	 * and weak hash codes.
+	 * @param key the key
+	 * @return the mixed key
+	 */
+	public static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
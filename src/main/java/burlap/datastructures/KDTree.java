@@ -0,0 +1,392 @@
+package burlap.datastructures;
+
+/**
+ * A static KD-tree over a set of points stored in a row-major double array, supporting exact k-nearest neighbor and fixed-radius
+ * queries under Euclidean distance. The tree is built by recursively splitting the points at the median of the dimension with the
+ * largest spread until at most leafSize points remain, so building takes O(n log n) time and, for low dimensional data,
+ * queries take roughly O(log n) time.
+ * <p>
+ * Points are referred to by their row index in the array given to the constructor. The tree stores only a permutation of the
+ * row indices and the split of each node, so it holds a reference to the point array, which should not be modified afterwards.
+ * Queries do not modify the tree, so they may be made concurrently.
+ */
+public class KDTree {
+
+	/**
+	 * The row-major points
+	 */
+	protected double [] points;
+
+	/**
+	 * The number of points
+	 */
+	protected int n;
+
+	/**
+	 * The dimension of the points
+	 */
+	protected int dim;
+
+	/**
+	 * The maximum number of points in a leaf
+	 */
+	protected int leafSize;
+
+	/**
+	 * The permutation of the point indices; the points of each node are contiguous in it.
+	 */
+	protected int [] index;
+
+	/**
+	 * The first position in {@link #index} of the points of each node
+	 */
+	protected int [] nodeStart;
+
+	/**
+	 * One past the last position in {@link #index} of the points of each node
+	 */
+	protected int [] nodeEnd;
+
+	/**
+	 * The split dimension of each node; -1 for leaves.
+	 */
+	protected int [] splitDim;
+
+	/**
+	 * The split value of each node. Points in the left child have a value less than or equal to it in the split dimension
+	 * and points in the right child have a value greater than or equal to it.
+	 */
+	protected double [] splitValue;
+
+	/**
+	 * The left child of each node
+	 */
+	protected int [] left;
+
+	/**
+	 * The right child of each node
+	 */
+	protected int [] right;
+
+	/**
+	 * The number of nodes
+	 */
+	protected int numNodes;
+
+
+	/**
+	 * Builds a tree over the points with a leaf size of 16.
+	 * @param points the row-major points
+	 * @param n the number of points
+	 * @param dim the dimension of the points
+	 */
+	public KDTree(double [] points, int n, int dim){
+		this(points, n, dim, 16);
+	}
+
+	/**
+	 * Builds a tree over the points.
+	 * @param points the row-major points
+	 * @param n the number of points
+	 * @param dim the dimension of the points
+	 * @param leafSize the maximum number of points in a leaf
+	 */
+	public KDTree(double [] points, int n, int dim, int leafSize){
+		if(points.length < n*dim){
+			throw new RuntimeException("KDTree was given " + points.length + " values for " + n + " points of dimension " + dim);
+		}
+		this.points = points;
+		this.n = n;
+		this.dim = dim;
+		this.leafSize = Math.max(1, leafSize);
+		this.index = new int[n];
+		for(int i = 0; i < n; i++){
+			this.index[i] = i;
+		}
+
+		//every leaf holds at least leafSize / 2 points, so there are at most 4n / leafSize nodes
+		int maxNodes = 4 * ((n + this.leafSize - 1) / this.leafSize) + 4;
+		this.nodeStart = new int[maxNodes];
+		this.nodeEnd = new int[maxNodes];
+		this.splitDim = new int[maxNodes];
+		this.splitValue = new double[maxNodes];
+		this.left = new int[maxNodes];
+		this.right = new int[maxNodes];
+
+		this.build(0, n);
+	}
+
+	/**
+	 * Returns the number of points.
+	 * @return the number of points.
+	 */
+	public int size(){
+		return this.n;
+	}
+
+	/**
+	 * Returns the dimension of the points.
+	 * @return the dimension of the points.
+	 */
+	public int dimension(){
+		return this.dim;
+	}
+
+
+	/**
+	 * Finds the k points nearest to the query point. The results are stored in order of increasing distance.
+	 * @param query the query point
+	 * @param k the number of neighbors to find
+	 * @param neighbors the array in which the row indices of the neighbors are stored; must have length at least k
+	 * @param sqDistances the array in which the squared distances of the neighbors are stored; must have length at least k
+	 * @return the number of neighbors found, which is the minimum of k and the number of points
+	 */
+	public int nearest(double [] query, int k, int [] neighbors, double [] sqDistances){
+
+		k = Math.min(k, this.n);
+		if(k <= 0){
+			return 0;
+		}
+
+		//neighbors and sqDistances hold a max heap on squared distance while searching
+		int [] count = new int[]{0};
+		this.search(0, query, k, neighbors, sqDistances, count);
+
+		//heap sort into increasing distance
+		for(int end = k-1; end > 0; end--){
+			swap(neighbors, sqDistances, 0, end);
+			siftDown(neighbors, sqDistances, 0, end);
+		}
+
+		return k;
+	}
+
+
+	/**
+	 * Finds every point within the given Euclidean distance of the query point and passes it to the visitor, in no particular order.
+	 * @param query the query point
+	 * @param radius the largest distance of the points found
+	 * @param visitor the visitor that receives each point found
+	 */
+	public void withinRadius(double [] query, double radius, RangeVisitor visitor){
+		if(this.n > 0){
+			this.searchRadius(0, query, radius*radius, visitor);
+		}
+	}
+
+
+	/**
+	 * Recursively searches the given node for points within the squared radius.
+	 */
+	protected void searchRadius(int node, double [] query, double sqRadius, RangeVisitor visitor){
+
+		int sd = this.splitDim[node];
+		if(sd == -1){
+			for(int p = this.nodeStart[node]; p < this.nodeEnd[node]; p++){
+				int id = this.index[p];
+				int row = id*this.dim;
+				double dist = 0.;
+				for(int j = 0; j < this.dim; j++){
+					double diff = query[j] - this.points[row+j];
+					dist += diff*diff;
+				}
+				if(dist <= sqRadius){
+					visitor.visit(id, dist);
+				}
+			}
+			return;
+		}
+
+		double diff = query[sd] - this.splitValue[node];
+		int near = diff < 0 ? this.left[node] : this.right[node];
+		int far = diff < 0 ? this.right[node] : this.left[node];
+		this.searchRadius(near, query, sqRadius, visitor);
+		if(diff*diff <= sqRadius){
+			this.searchRadius(far, query, sqRadius, visitor);
+		}
+	}
+
+
+	/**
+	 * Recursively searches the given node for neighbors.
+	 */
+	protected void search(int node, double [] query, int k, int [] heapIds, double [] heapDists, int [] count){
+
+		int sd = this.splitDim[node];
+		if(sd == -1){
+			for(int p = this.nodeStart[node]; p < this.nodeEnd[node]; p++){
+				int id = this.index[p];
+				int row = id*this.dim;
+				double dist = 0.;
+				for(int j = 0; j < this.dim; j++){
+					double diff = query[j] - this.points[row+j];
+					dist += diff*diff;
+				}
+				if(count[0] < k){
+					int c = count[0]++;
+					heapIds[c] = id;
+					heapDists[c] = dist;
+					siftUp(heapIds, heapDists, c);
+				}
+				else if(dist < heapDists[0]){
+					heapIds[0] = id;
+					heapDists[0] = dist;
+					siftDown(heapIds, heapDists, 0, k);
+				}
+			}
+			return;
+		}
+
+		double diff = query[sd] - this.splitValue[node];
+		int near = diff < 0 ? this.left[node] : this.right[node];
+		int far = diff < 0 ? this.right[node] : this.left[node];
+		this.search(near, query, k, heapIds, heapDists, count);
+		if(count[0] < k || diff*diff < heapDists[0]){
+			this.search(far, query, k, heapIds, heapDists, count);
+		}
+	}
+
+
+	/**
+	 * Builds the node for the points in positions [start, end) of the index.
+	 * @return the node id
+	 */
+	protected int build(int start, int end){
+
+		int node = this.numNodes++;
+		this.nodeStart[node] = start;
+		this.nodeEnd[node] = end;
+
+		if(end - start <= this.leafSize){
+			this.splitDim[node] = -1;
+			return node;
+		}
+
+		//split on the dimension with the largest spread
+		int bestDim = 0;
+		double bestSpread = -1.;
+		for(int j = 0; j < this.dim; j++){
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for(int p = start; p < end; p++){
+				double v = this.points[this.index[p]*this.dim+j];
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+			}
+			if(max - min > bestSpread){
+				bestSpread = max - min;
+				bestDim = j;
+			}
+		}
+
+		if(bestSpread <= 0.){
+			//all points are identical
+			this.splitDim[node] = -1;
+			return node;
+		}
+
+		int mid = (start + end) >>> 1;
+		this.select(start, end-1, mid, bestDim);
+		this.splitDim[node] = bestDim;
+		this.splitValue[node] = this.points[this.index[mid]*this.dim+bestDim];
+
+		int l = this.build(start, mid);
+		int r = this.build(mid, end);
+		this.left[node] = l;
+		this.right[node] = r;
+
+		return node;
+	}
+
+
+	/**
+	 * Rearranges the index positions [lo, hi] so that position k holds the point with the k'th smallest value in the given dimension,
+	 * with smaller or equal values before it and larger or equal values after it.
+	 */
+	protected void select(int lo, int hi, int k, int d){
+		while(hi > lo){
+			double pivot = this.points[this.index[(lo+hi) >>> 1]*this.dim+d];
+			int i = lo;
+			int j = hi;
+			while(i <= j){
+				while(this.points[this.index[i]*this.dim+d] < pivot){
+					i++;
+				}
+				while(this.points[this.index[j]*this.dim+d] > pivot){
+					j--;
+				}
+				if(i <= j){
+					int tmp = this.index[i];
+					this.index[i] = this.index[j];
+					this.index[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if(k <= j){
+				hi = j;
+			}
+			else if(k >= i){
+				lo = i;
+			}
+			else{
+				return;
+			}
+		}
+	}
+
+
+	protected static void siftUp(int [] ids, double [] dists, int c){
+		while(c > 0){
+			int parent = (c-1) >>> 1;
+			if(dists[parent] >= dists[c]){
+				return;
+			}
+			swap(ids, dists, parent, c);
+			c = parent;
+		}
+	}
+
+	protected static void siftDown(int [] ids, double [] dists, int c, int size){
+		while(true){
+			int l = 2*c+1;
+			if(l >= size){
+				return;
+			}
+			int largest = l;
+			if(l+1 < size && dists[l+1] > dists[l]){
+				largest = l+1;
+			}
+			if(dists[c] >= dists[largest]){
+				return;
+			}
+			swap(ids, dists, c, largest);
+			c = largest;
+		}
+	}
+
+	protected static void swap(int [] ids, double [] dists, int i, int j){
+		int ti = ids[i];
+		ids[i] = ids[j];
+		ids[j] = ti;
+		double td = dists[i];
+		dists[i] = dists[j];
+		dists[j] = td;
+	}
+
+
+	/**
+	 * Receives the points found by {@link KDTree#withinRadius(double[], double, RangeVisitor)}.
+	 */
+	public interface RangeVisitor {
+
+		/**
+		 * Called for a point found by the query.
+		 * @param id the row index of the point
+		 * @param sqDistance the squared distance of the point from the query point
+		 */
+		void visit(int id, double sqDistance);
+
+	}
+
+}
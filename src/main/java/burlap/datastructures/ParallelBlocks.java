@@ -0,0 +1,192 @@
+package burlap.datastructures;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The parallel execution setting of an algorithm that splits its work over a range of indices into contiguous blocks and runs
+ * them on an executor. The executor is either supplied by the caller with {@link #setExecutor(ExecutorService, int)} or
+ * created by {@link #setThreads(int)}, in which case this object owns it and shuts it down when it is replaced.
+ * <p>
+ * {@link #invokeBlocks(int, Block, String)} splits the range [0, n) into at most {@link #numPartitions()} blocks and returns the result
+ * of each block in block order, so results do not depend on the order in which blocks finish. Without an executor, or with a
+ * single partition, the whole range is run as one block on the calling thread. {@link #invokeAll(List, String)} runs arbitrary tasks
+ * on the executor with the same error handling.
+ */
+public class ParallelBlocks {
+
+	/**
+	 * The executor on which blocks are run; null when they are run on the calling thread
+	 */
+	protected ExecutorService executor;
+
+	/**
+	 * The pool created by {@link #setThreads(int)}, which is shut down when it is replaced
+	 */
+	protected ForkJoinPool ownedPool;
+
+	/**
+	 * The maximum number of blocks into which a range is split
+	 */
+	protected int numPartitions = 1;
+
+
+	/**
+	 * A task over a contiguous block of indices.
+	 * @param <T> the result type of a block
+	 */
+	public interface Block<T> {
+
+		/**
+		 * Runs the task over the indices [start, end).
+		 * @param start the first index of the block
+		 * @param end one past the last index of the block
+		 * @return the result of the block
+		 */
+		T run(int start, int end);
+	}
+
+
+	/**
+	 * Sets blocks to be run across the given number of threads using a new {@link ForkJoinPool} owned by this object, with one
+	 * block per thread. If numThreads is 1 or less, blocks are run on the calling thread.
+	 * @param numThreads the number of threads to use
+	 */
+	public void setThreads(int numThreads){
+		if(numThreads <= 1){
+			this.setExecutor(null, 1);
+			return;
+		}
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		this.setExecutor(pool, numThreads);
+		this.ownedPool = pool;
+	}
+
+	/**
+	 * Sets blocks to be run on the given executor, splitting each range into at most numPartitions blocks. A pool previously
+	 * created by {@link #setThreads(int)} is shut down unless it is the given executor.
+	 * @param executor the executor on which blocks are run, such as a {@link ForkJoinPool}; null to run them on the calling thread
+	 * @param numPartitions the maximum number of blocks into which a range is split
+	 */
+	public void setExecutor(ExecutorService executor, int numPartitions){
+		if(this.ownedPool != null && this.ownedPool != executor){
+			this.ownedPool.shutdown();
+			this.ownedPool = null;
+		}
+		this.executor = executor;
+		this.numPartitions = Math.max(1, numPartitions);
+	}
+
+	/**
+	 * Returns the executor on which blocks are run.
+	 * @return the executor, or null if blocks are run on the calling thread
+	 */
+	public ExecutorService executor(){
+		return this.executor;
+	}
+
+	/**
+	 * Returns the maximum number of blocks into which a range is split.
+	 * @return the maximum number of blocks
+	 */
+	public int numPartitions(){
+		return this.numPartitions;
+	}
+
+	/**
+	 * Returns whether an executor is set.
+	 * @return true if an executor is set; false if blocks are run on the calling thread
+	 */
+	public boolean isParallel(){
+		return this.executor != null;
+	}
+
+
+	/**
+	 * Splits the range [0, n) into contiguous blocks and runs them on the executor, or runs the whole range on the calling thread
+	 * if there is no executor, a single partition or fewer than two indices.
+	 * @param n the size of the range
+	 * @param block the task run on each block
+	 * @param description what the blocks do, used in the message of an exception thrown when a block fails or the calling thread is interrupted
+	 * @param <T> the result type of a block
+	 * @return the result of each block in block order
+	 */
+	public <T> List<T> invokeBlocks(int n, Block<T> block, String description){
+		return invokeBlocks(this.executor, this.numPartitions, n, block, description);
+	}
+
+	/**
+	 * Runs the tasks on the executor and returns their results in task order. The executor must be set.
+	 * @param tasks the tasks to run
+	 * @param description what the tasks do, used in the message of an exception thrown when a task fails or the calling thread is interrupted
+	 * @param <T> the result type of a task
+	 * @return the result of each task in task order
+	 */
+	public <T> List<T> invokeAll(List<Callable<T>> tasks, String description){
+		return invokeAll(this.executor, tasks, description);
+	}
+
+
+	/**
+	 * Splits the range [0, n) into at most numPartitions contiguous blocks and runs them on the executor, or runs the whole range
+	 * on the calling thread if the executor is null, numPartitions is 1 or less, or there are fewer than two indices.
+	 * @param executor the executor on which blocks are run, or null
+	 * @param numPartitions the maximum number of blocks
+	 * @param n the size of the range
+	 * @param block the task run on each block
+	 * @param description what the blocks do, used in the message of an exception thrown when a block fails or the calling thread is interrupted
+	 * @param <T> the result type of a block
+	 * @return the result of each block in block order
+	 */
+	public static <T> List<T> invokeBlocks(ExecutorService executor, int numPartitions, int n, final Block<T> block, String description){
+
+		if(executor == null || numPartitions <= 1 || n < 2){
+			return Collections.singletonList(block.run(0, n));
+		}
+
+		int numBlocks = Math.min(numPartitions, n);
+		List<Callable<T>> tasks = new ArrayList<Callable<T>>(numBlocks);
+		for(int b = 0; b < numBlocks; b++){
+			final int start = (int)((long)n * b / numBlocks);
+			final int end = (int)((long)n * (b+1) / numBlocks);
+			tasks.add(new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					return block.run(start, end);
+				}
+			});
+		}
+
+		return invokeAll(executor, tasks, description);
+	}
+
+	/**
+	 * Runs the tasks on the executor and returns their results in task order.
+	 * @param executor the executor on which the tasks are run
+	 * @param tasks the tasks to run
+	 * @param description what the tasks do, used in the message of an exception thrown when a task fails or the calling thread is interrupted
+	 * @param <T> the result type of a task
+	 * @return the result of each task in task order
+	 */
+	public static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks, String description){
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			for(Future<T> result : executor.invokeAll(tasks)){
+				results.add(result.get());
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while " + description + ".", e);
+		} catch(ExecutionException e) {
+			throw new RuntimeException("Error while " + description + ".", e.getCause());
+		}
+		return results;
+	}
+
+}
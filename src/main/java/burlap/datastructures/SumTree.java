@@ -0,0 +1,141 @@
+package burlap.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * A fixed capacity sum-tree over non-negative priorities, stored in flat arrays. Each leaf holds the priority of one slot, and each
+ * internal node holds the sum (and the minimum) of the priorities below it, so setting a priority, finding the slot at a given
+ * cumulative priority, and querying the total or smallest priority take O(log n) time or less, without any per-node objects.
+ * <p>
+ * Sampling a slot with probability proportional to its priority is done by passing a uniform value in [0, {@link #total()}) to
+ * {@link #find(double)}. Unlike {@link StochasticTree}, slots are identified by their index rather than by element objects, and the
+ * capacity is fixed at construction.
+ */
+public class SumTree {
+
+	/**
+	 * The number of slots
+	 */
+	protected int capacity;
+
+	/**
+	 * The index of the first leaf; the number of leaves, a power of two at least the capacity
+	 */
+	protected int firstLeaf;
+
+	/**
+	 * The sum of the priorities below each node, with the root at index 1 and the children of node i at 2i and 2i+1
+	 */
+	protected double [] sums;
+
+	/**
+	 * The smallest priority below each node, counting only slots that have been set
+	 */
+	protected double [] mins;
+
+
+	/**
+	 * Initializes with all slots empty.
+	 * @param capacity the number of slots
+	 */
+	public SumTree(int capacity) {
+		if(capacity < 1){
+			throw new RuntimeException("SumTree requires capacity > 0; was requested capacity of " + capacity);
+		}
+		this.capacity = capacity;
+		this.firstLeaf = Integer.highestOneBit(capacity);
+		if(this.firstLeaf < capacity){
+			this.firstLeaf <<= 1;
+		}
+		this.sums = new double[2 * this.firstLeaf];
+		this.mins = new double[2 * this.firstLeaf];
+		Arrays.fill(this.mins, Double.POSITIVE_INFINITY);
+	}
+
+
+	/**
+	 * Sets the priority of a slot.
+	 * @param slot the slot
+	 * @param priority the non-negative priority
+	 */
+	public void set(int slot, double priority) {
+		if(slot < 0 || slot >= this.capacity){
+			throw new RuntimeException("SumTree slot " + slot + " is out of bounds for capacity " + this.capacity);
+		}
+		if(!(priority >= 0.) || Double.isInfinite(priority)){
+			throw new RuntimeException("SumTree priorities must be finite and non-negative; was given " + priority);
+		}
+		int i = slot + this.firstLeaf;
+		this.sums[i] = priority;
+		this.mins[i] = priority;
+		//recompute sums from the children rather than adding a difference, so rounding errors do not accumulate
+		for(i >>= 1; i > 0; i >>= 1){
+			this.sums[i] = this.sums[2*i] + this.sums[2*i+1];
+			this.mins[i] = Math.min(this.mins[2*i], this.mins[2*i+1]);
+		}
+	}
+
+	/**
+	 * Returns the priority of a slot; 0 if it has not been set.
+	 * @param slot the slot
+	 * @return the priority of the slot
+	 */
+	public double get(int slot) {
+		return this.sums[slot + this.firstLeaf];
+	}
+
+	/**
+	 * Returns the sum of all priorities.
+	 * @return the sum of all priorities
+	 */
+	public double total() {
+		return this.sums[1];
+	}
+
+	/**
+	 * Returns the smallest priority of the slots that have been set, or positive infinity if none have.
+	 * @return the smallest priority
+	 */
+	public double min() {
+		return this.mins[1];
+	}
+
+	/**
+	 * Returns the slot at which the cumulative priority, summed over slots in index order, first exceeds the given value. If the value
+	 * is drawn uniformly from [0, {@link #total()}), each slot is returned with probability proportional to its priority. Values beyond
+	 * the total return the last slot with a positive priority, so a slot with priority 0 is never returned unless all priorities are 0.
+	 * @param value the cumulative priority
+	 * @return the slot
+	 */
+	public int find(double value) {
+		int i = 1;
+		while(i < this.firstLeaf){
+			int left = 2*i;
+			if(value < this.sums[left] || this.sums[left+1] == 0.){
+				i = left;
+			}
+			else{
+				value -= this.sums[left];
+				i = left + 1;
+			}
+		}
+		return Math.min(i - this.firstLeaf, this.capacity - 1);
+	}
+
+	/**
+	 * Returns the number of slots.
+	 * @return the number of slots
+	 */
+	public int capacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Sets all slots empty.
+	 */
+	public void clear() {
+		Arrays.fill(this.sums, 0.);
+		Arrays.fill(this.mins, Double.POSITIVE_INFINITY);
+	}
+
+}
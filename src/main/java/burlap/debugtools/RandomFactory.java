@@ -14,6 +14,11 @@ import java.util.*;
  * To synchronize, just seed either a mapped random generator or the default in the
  * main method and use the get method to retrieve the random object for all other
  * classes. To break the fixed sequence, just construct it without a seed
+ * <p>
+ * The static methods normally use a single global factory. A thread may instead be given its own factory with
+ * {@link #setThreadFactory(RandomFactory)}, which is useful for running independent, reproducible computations
+ * concurrently. A factory constructed with a master seed ({@link #RandomFactory(long)}) seeds every generator it lazily creates
+ * from the master seed and the generator's id, so that the same sequence of requests produces the same random streams.
  * 
  * 
  * @author James MacGlashan
@@ -22,6 +27,16 @@ import java.util.*;
 public class RandomFactory {
 
 	private static RandomFactory factory = new RandomFactory();
+
+	/**
+	 * The factory used by the static methods on each thread that has been given its own factory
+	 */
+	private static final ThreadLocal<RandomFactory> threadFactory = new ThreadLocal<RandomFactory>();
+
+	/**
+	 * The master seed from which lazily created generators are seeded; null if they are unseeded
+	 */
+	Long masterSeed;
 	
 	/**
 	 * A default random number generator
@@ -67,7 +82,7 @@ public class RandomFactory {
 	 * @return the default random number generator.
 	 */
 	public static Random getDefault(){
-		return factory.ingetDefault();
+		return current().ingetDefault();
 	}
 	
 	/**
@@ -76,7 +91,7 @@ public class RandomFactory {
 	 * @return the default random number generator
 	 */
 	public static Random seedDefault(long seed){
-		return factory.inseedDefault(seed);
+		return current().inseedDefault(seed);
 	}
 	
 	
@@ -86,7 +101,7 @@ public class RandomFactory {
 	 * @return the default random generator
 	 */
 	public static Random getOrSeedDefault(long seed){
-		return factory.ingetOrSeedDefault(seed);
+		return current().ingetOrSeedDefault(seed);
 	}
 	
 	/**
@@ -95,7 +110,7 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public static Random getMapped(int id){
-		return factory.ingetMapped(id);
+		return current().ingetMapped(id);
 	}
 	
 	
@@ -106,7 +121,7 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public static Random seedMapped(int id, long seed){
-		return factory.inseedMapped(id, seed);
+		return current().inseedMapped(id, seed);
 	}
 	
 	
@@ -117,7 +132,7 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public static Random getOrSeedMapped(int id, long seed){
-		return factory.ingetOrSeedMapped(id, seed);
+		return current().ingetOrSeedMapped(id, seed);
 	}
 	
 	
@@ -128,7 +143,7 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public static Random getMapped(String id){
-		return factory.ingetMapped(id);
+		return current().ingetMapped(id);
 	}
 	
 	
@@ -139,7 +154,7 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public static Random seedMapped(String id, long seed){
-		return factory.inseedMapped(id, seed);
+		return current().inseedMapped(id, seed);
 	}
 	
 	
@@ -150,7 +165,7 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public static Random getOrSeedMapped(String id, long seed){
-		return factory.ingetOrSeedMapped(id, seed);
+		return current().ingetOrSeedMapped(id, seed);
 	}
 	
 	
@@ -163,6 +178,40 @@ public class RandomFactory {
 	
 	
 	
+	/**
+	 * Sets the factory used by the static methods on the calling thread. Set to null to revert the calling thread to the global factory.
+	 * @param threadRandomFactory the factory to use on the calling thread, or null to use the global factory
+	 */
+	public static void setThreadFactory(RandomFactory threadRandomFactory){
+		if(threadRandomFactory == null){
+			threadFactory.remove();
+		}
+		else{
+			threadFactory.set(threadRandomFactory);
+		}
+	}
+
+
+	/**
+	 * Returns the factory set for the calling thread with {@link #setThreadFactory(RandomFactory)}, or null if the calling thread
+	 * uses the global factory.
+	 * @return the factory set for the calling thread, or null if none is set
+	 */
+	public static RandomFactory getThreadFactory(){
+		return threadFactory.get();
+	}
+
+
+	/**
+	 * Returns the factory used by the static methods on the calling thread.
+	 * @return the factory used by the static methods on the calling thread.
+	 */
+	public static RandomFactory current(){
+		RandomFactory f = threadFactory.get();
+		return f != null ? f : factory;
+	}
+
+
 	/**
 	 * Initializes the map structures
 	 */
@@ -171,6 +220,31 @@ public class RandomFactory {
 		intMapped = new HashMap<Integer, Random>();
 		stringMapped = new HashMap<String, Random>();
 	}
+
+
+	/**
+	 * Initializes the map structures with a master seed from which every lazily created generator is seeded.
+	 * @param masterSeed the master seed
+	 */
+	public RandomFactory(long masterSeed){
+		this();
+		this.masterSeed = masterSeed;
+	}
+
+
+	/**
+	 * Creates a new generator for a lazily created entry, seeded from the master seed and the given salt if there is a master seed.
+	 * @param salt a value identifying the entry
+	 * @return a new random generator
+	 */
+	protected Random newRandom(long salt){
+		if(masterSeed == null){
+			return new Random();
+		}
+		long z = masterSeed + salt * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+		return new Random(z ^ (z >>> 33));
+	}
 	
 	
 	/**
@@ -179,7 +253,7 @@ public class RandomFactory {
 	 */
 	public Random ingetDefault(){
 		if(defaultRandom_ == null){
-			defaultRandom_ = new Random();
+			defaultRandom_ = newRandom(Long.MIN_VALUE);
 		}
 		return defaultRandom_;
 	}
@@ -221,7 +295,7 @@ public class RandomFactory {
 			return r;
 		}
 		else{
-			r = new Random();
+			r = newRandom(id);
 			intMapped.put(id, r);
 		}
 		return r;
@@ -267,12 +341,12 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public Random ingetMapped(String id){
-		Random r = intMapped.get(id);
+		Random r = stringMapped.get(id);
 		if(r != null){
 			return r;
 		}
 		else{
-			r = new Random();
+			r = newRandom(((long)id.hashCode() << 32) | 0x5A5A5A5AL);
 			stringMapped.put(id, r);
 		}
 		return r;
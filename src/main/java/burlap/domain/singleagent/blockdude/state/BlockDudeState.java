@@ -153,16 +153,16 @@ public class BlockDudeState implements MutableOOState {
 		OOVariableKey key = OOStateUtilities.generateKey(variableKey);
 		if(key.obName.equals(CLASS_AGENT)){
 			this.agent = this.agent.copy();
-			if(variableKey.equals(VAR_X)){
+			if(key.obVarKey.equals(VAR_X)){
 				agent.x = StateUtilities.stringOrNumber(value).intValue();
 			}
-			else if(variableKey.equals(VAR_Y)){
+			else if(key.obVarKey.equals(VAR_Y)){
 				agent.y = StateUtilities.stringOrNumber(value).intValue();
 			}
-			else if(variableKey.equals(VAR_DIR)) {
+			else if(key.obVarKey.equals(VAR_DIR)) {
 				agent.dir = StateUtilities.stringOrNumber(value).intValue();
 			}
-			else if(variableKey.equals(VAR_HOLD)){
+			else if(key.obVarKey.equals(VAR_HOLD)){
 				agent.holding = StateUtilities.stringOrBoolean(value);
 			}
 		}
@@ -171,11 +171,12 @@ public class BlockDudeState implements MutableOOState {
 			this.map.map = (int[][])value;
 		}
 		else if(key.obName.equals(exit.name())){
+			this.exit = this.exit.copy();
 			Integer iv = StateUtilities.stringOrNumber(value).intValue();
-			if(variableKey.equals(VAR_X)){
+			if(key.obVarKey.equals(VAR_X)){
 				exit.x = iv;
 			}
-			else if(variableKey.equals(VAR_Y)){
+			else if(key.obVarKey.equals(VAR_Y)){
 				exit.y = iv;
 			}
 		}
@@ -186,10 +187,10 @@ public class BlockDudeState implements MutableOOState {
 				this.blocks = new ArrayList<BlockDudeCell>(blocks);
 				this.blocks.set(ind, block);
 				Integer iv = StateUtilities.stringOrNumber(value).intValue();
-				if(variableKey.equals(VAR_X)){
+				if(key.obVarKey.equals(VAR_X)){
 					block.x = iv;
 				}
-				else if(variableKey.equals(VAR_Y)){
+				else if(key.obVarKey.equals(VAR_Y)){
 					block.y = iv;
 				}
 			}
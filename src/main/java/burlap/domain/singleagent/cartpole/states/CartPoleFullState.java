@@ -44,11 +44,11 @@ public class CartPoleFullState extends CartPoleState {
 	}
 
 	@Override
-	public Object get(Object variableKey) {
+	public double getNumeric(Object variableKey) {
 		if(variableKey.equals(VAR_NORM_SGN)){
 			return this.normSign;
 		}
-		return super.get(variableKey);
+		return super.getNumeric(variableKey);
 	}
 
 	@Override
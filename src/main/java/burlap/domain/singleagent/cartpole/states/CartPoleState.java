@@ -50,14 +50,14 @@ public class CartPoleState extends InvertedPendulumState {
 	}
 
 	@Override
-	public Object get(Object variableKey) {
+	public double getNumeric(Object variableKey) {
 		if(variableKey.equals(VAR_X)){
 			return x;
 		}
 		else if(variableKey.equals(VAR_V)){
 			return v;
 		}
-		return super.get(variableKey);
+		return super.getNumeric(variableKey);
 	}
 
 	@Override
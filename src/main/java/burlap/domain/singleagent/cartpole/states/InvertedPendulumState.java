@@ -1,6 +1,7 @@
 package burlap.domain.singleagent.cartpole.states;
 
 import burlap.mdp.core.state.MutableState;
+import burlap.mdp.core.state.NumericVariableState;
 import burlap.mdp.core.state.State;
 import burlap.mdp.core.state.StateUtilities;
 import burlap.mdp.core.state.annotations.DeepCopyState;
@@ -14,7 +15,7 @@ import static burlap.domain.singleagent.cartpole.CartPoleDomain.*;
  * @author James MacGlashan.
  */
 @DeepCopyState
-public class InvertedPendulumState implements MutableState {
+public class InvertedPendulumState implements MutableState, NumericVariableState {
 
 	public double angle;
 	public double angleV;
@@ -57,6 +58,11 @@ public class InvertedPendulumState implements MutableState {
 
 	@Override
 	public Object get(Object variableKey) {
+		return this.getNumeric(variableKey);
+	}
+
+	@Override
+	public double getNumeric(Object variableKey) {
 		if(!(variableKey instanceof String)){
 			throw new RuntimeException("Variable key must be a String");
 		}
@@ -1,6 +1,7 @@
 package burlap.domain.singleagent.mountaincar;
 
 import burlap.mdp.core.state.MutableState;
+import burlap.mdp.core.state.NumericVariableState;
 import burlap.mdp.core.state.State;
 import burlap.mdp.core.state.StateUtilities;
 import burlap.mdp.core.state.annotations.DeepCopyState;
@@ -15,7 +16,7 @@ import static burlap.domain.singleagent.mountaincar.MountainCar.ATT_X;
  * @author James MacGlashan.
  */
 @DeepCopyState
-public class MCState implements MutableState {
+public class MCState implements MutableState, NumericVariableState {
 
 	public double x;
 	public double v;
@@ -70,6 +71,11 @@ public class MCState implements MutableState {
 
 	@Override
 	public Object get(Object variableKey) {
+		return this.getNumeric(variableKey);
+	}
+
+	@Override
+	public double getNumeric(Object variableKey) {
 
 		if(variableKey instanceof String){
 			if(variableKey.equals(ATT_X)){
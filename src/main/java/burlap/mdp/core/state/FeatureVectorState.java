@@ -0,0 +1,90 @@
+package burlap.mdp.core.state;
+
+import burlap.mdp.core.state.annotations.DeepCopyState;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link State} that is a fixed-length vector of doubles, such as the feature vector of some other state. The variable keys are the
+ * Integer indices of the vector. This state can stand in for the states from which its vector was computed when only their features
+ * are needed, for example when experiences are stored as feature vectors rather than as state objects; a
+ * {@link burlap.behavior.functionapproximation.dense.NumericVariableFeatures} over it returns the vector.
+ */
+@DeepCopyState
+public class FeatureVectorState implements NumericVariableState {
+
+	/**
+	 * The vector
+	 */
+	protected double [] values;
+
+
+	/**
+	 * Initializes with the given vector, which is not copied.
+	 * @param values the vector
+	 */
+	public FeatureVectorState(double [] values) {
+		this.values = values;
+	}
+
+	/**
+	 * Returns the vector. The returned array must not be modified.
+	 * @return the vector
+	 */
+	public double [] values() {
+		return this.values;
+	}
+
+	@Override
+	public List<Object> variableKeys() {
+		return new AbstractList<Object>() {
+			@Override
+			public Object get(int index) {
+				return index;
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+		};
+	}
+
+	@Override
+	public Object get(Object variableKey) {
+		return this.getNumeric(variableKey);
+	}
+
+	@Override
+	public double getNumeric(Object variableKey) {
+		if(!(variableKey instanceof Integer)){
+			throw new RuntimeException("FeatureVectorState variable keys are Integer indices; was given " + variableKey);
+		}
+		return this.values[(Integer)variableKey];
+	}
+
+	@Override
+	public FeatureVectorState copy() {
+		return new FeatureVectorState(this.values.clone());
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o) return true;
+		if(o == null || getClass() != o.getClass()) return false;
+		return Arrays.equals(this.values, ((FeatureVectorState)o).values);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.values);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(this.values);
+	}
+
+}
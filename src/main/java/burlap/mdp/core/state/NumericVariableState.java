@@ -0,0 +1,17 @@
+package burlap.mdp.core.state;
+
+/**
+ * A {@link State} whose variables have numeric values that it can return as a primitive double, without boxing them as
+ * {@link #get(Object)} does. Feature extractors, such as {@link burlap.behavior.functionapproximation.dense.NumericVariableFeatures},
+ * that read every variable of every state use {@link #getNumeric(Object)} when a state implements this interface.
+ */
+public interface NumericVariableState extends State {
+
+	/**
+	 * Returns the value for the given variable key as a double.
+	 * @param variableKey the variable key
+	 * @return the value for the given variable key
+	 */
+	double getNumeric(Object variableKey);
+
+}
@@ -0,0 +1,15 @@
+package burlap.mdp.singleagent.environment;
+
+/**
+ * A factory interface for generating {@link Environment} instances. This is useful when independent copies of an environment are needed,
+ * such as when the trials of a {@link burlap.behavior.singleagent.auxiliary.performance.LearningAlgorithmExperimenter} are run concurrently.
+ */
+public interface EnvironmentFactory {
+
+	/**
+	 * Generates a new {@link Environment} and returns it.
+	 * @return a new {@link Environment}
+	 */
+	Environment generateEnvironment();
+
+}
@@ -0,0 +1,307 @@
+package burlap.mdp.singleagent.environment;
+
+import burlap.behavior.policy.Policy;
+import burlap.datastructures.ParallelBlocks;
+import burlap.mdp.auxiliary.StateGenerator;
+import burlap.mdp.auxiliary.common.ConstantStateGenerator;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.SADomain;
+import burlap.mdp.singleagent.model.SampleModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Holds N independent {@link Environment} instances and steps them in lockstep with a single call to {@link #executeActions(Action[])},
+ * which takes one action per environment and returns one {@link EnvironmentOutcome} per environment. This is useful for collecting
+ * batches of experience for batch learning algorithms like LSPI or fitted value iteration.
+ * <p>
+ * By default, a sub-environment that transitions to a terminal state is automatically reset after the step, so that every call
+ * steps every environment; the returned outcome still records the terminal transition, and {@link #episodesCompleted()} counts
+ * the completed episodes. Auto-reset can be disabled with {@link #setAutoReset(boolean)}, in which case the actions of environments
+ * in a terminal state are ignored and a null outcome is returned for them.
+ * <p>
+ * Stepping can be spread across a thread pool with {@link #setParallelStepping(int)}. In that case, each sub-environment is only ever
+ * stepped by one thread at a time, but the {@link SampleModel} of the sub-environments is called concurrently, so it must be safe to
+ * call concurrently. Most models draw from a shared {@link java.util.Random} obtained from {@link burlap.debugtools.RandomFactory}, which
+ * is thread safe, but with concurrent stepping the order of draws, and therefore the sampled outcomes, are not reproducible.
+ */
+public class VectorizedEnvironment {
+
+	/**
+	 * The sub-environments
+	 */
+	protected Environment [] envs;
+
+	/**
+	 * Whether sub-environments are reset after they reach a terminal state
+	 */
+	protected boolean autoReset = true;
+
+	/**
+	 * The number of episodes that have been completed across all sub-environments
+	 */
+	protected long episodesCompleted = 0;
+
+	/**
+	 * The executor and number of blocks with which the sub-environments are stepped; they are stepped serially when it has no executor.
+	 */
+	protected ParallelBlocks stepBlocks = new ParallelBlocks();
+
+
+	/**
+	 * Initializes with the given sub-environments.
+	 * @param envs the sub-environments
+	 */
+	public VectorizedEnvironment(Environment... envs) {
+		if(envs.length == 0){
+			throw new RuntimeException("VectorizedEnvironment requires at least one sub-environment.");
+		}
+		this.envs = envs.clone();
+	}
+
+
+	/**
+	 * Initializes with n {@link SimulatedEnvironment} instances over the model of the given domain that all start in, and reset to,
+	 * the given initial state.
+	 * @param domain the domain whose model is sampled
+	 * @param initialState the initial state of every sub-environment
+	 * @param n the number of sub-environments
+	 */
+	public VectorizedEnvironment(SADomain domain, State initialState, int n) {
+		this(domain.getModel(), constantGenerators(initialState, n));
+	}
+
+
+	/**
+	 * Initializes with one {@link SimulatedEnvironment} over the model of the given domain for each given {@link StateGenerator}.
+	 * Use separate generators to give the sub-environments separate initial state streams.
+	 * @param domain the domain whose model is sampled
+	 * @param generators the initial state generator of each sub-environment
+	 */
+	public VectorizedEnvironment(SADomain domain, StateGenerator... generators) {
+		this(domain.getModel(), generators);
+	}
+
+
+	/**
+	 * Initializes with one {@link SimulatedEnvironment} over the given model for each given {@link StateGenerator}.
+	 * @param model the model that is sampled
+	 * @param generators the initial state generator of each sub-environment
+	 */
+	public VectorizedEnvironment(SampleModel model, StateGenerator... generators) {
+		if(model == null){
+			throw new RuntimeException("VectorizedEnvironment requires a model, but none was specified.");
+		}
+		if(generators.length == 0){
+			throw new RuntimeException("VectorizedEnvironment requires at least one sub-environment.");
+		}
+		this.envs = new Environment[generators.length];
+		for(int i = 0; i < generators.length; i++){
+			this.envs[i] = new SimulatedEnvironment(model, generators[i]);
+		}
+	}
+
+
+	protected static StateGenerator [] constantGenerators(State initialState, int n){
+		StateGenerator [] generators = new StateGenerator[n];
+		for(int i = 0; i < n; i++){
+			generators[i] = new ConstantStateGenerator(initialState);
+		}
+		return generators;
+	}
+
+
+	/**
+	 * Returns the number of sub-environments.
+	 * @return the number of sub-environments.
+	 */
+	public int size(){
+		return this.envs.length;
+	}
+
+	/**
+	 * Returns the i'th sub-environment.
+	 * @param i the index of the sub-environment
+	 * @return the i'th sub-environment.
+	 */
+	public Environment get(int i){
+		return this.envs[i];
+	}
+
+	/**
+	 * Sets whether sub-environments are reset after they reach a terminal state. Default is true.
+	 * @param autoReset if true, sub-environments are reset after reaching a terminal state
+	 */
+	public void setAutoReset(boolean autoReset){
+		this.autoReset = autoReset;
+	}
+
+	/**
+	 * Returns the number of episodes that have been completed across all sub-environments.
+	 * @return the number of episodes that have been completed across all sub-environments.
+	 */
+	public long episodesCompleted(){
+		return this.episodesCompleted;
+	}
+
+	/**
+	 * Sets the sub-environments to be stepped across the given number of threads using a new {@link ForkJoinPool}, with
+	 * the sub-environments split into one contiguous block per thread. If numThreads is 1 or less, they are stepped serially.
+	 * @param numThreads the number of threads to use.
+	 */
+	public void setParallelStepping(int numThreads){
+		this.stepBlocks.setThreads(numThreads);
+	}
+
+	/**
+	 * Sets the sub-environments to be stepped on the given executor, with the sub-environments split into numPartitions contiguous blocks.
+	 * @param executor the executor on which blocks are stepped, such as a {@link ForkJoinPool}; null to step serially
+	 * @param numPartitions the number of blocks into which the sub-environments are split
+	 */
+	public void setParallelStepping(ExecutorService executor, int numPartitions){
+		this.stepBlocks.setExecutor(executor, numPartitions);
+	}
+
+
+	/**
+	 * Returns the current observation of every sub-environment.
+	 * @return the current observation of every sub-environment.
+	 */
+	public State [] currentObservations(){
+		State [] obs = new State[this.envs.length];
+		for(int i = 0; i < this.envs.length; i++){
+			obs[i] = this.envs[i].currentObservation();
+		}
+		return obs;
+	}
+
+	/**
+	 * Returns whether the i'th sub-environment is in a terminal state. With auto-reset enabled, this is never true after a step.
+	 * @param i the index of the sub-environment
+	 * @return true if the i'th sub-environment is in a terminal state; false otherwise.
+	 */
+	public boolean isInTerminalState(int i){
+		return this.envs[i].isInTerminalState();
+	}
+
+	/**
+	 * Resets every sub-environment.
+	 */
+	public void resetEnvironments(){
+		for(Environment env : this.envs){
+			env.resetEnvironment();
+		}
+	}
+
+
+	/**
+	 * Executes one action in each sub-environment.
+	 * @param actions the action for each sub-environment, indexed like the sub-environments
+	 * @return the outcome of each sub-environment.
+	 */
+	public EnvironmentOutcome [] executeActions(Action [] actions){
+		return this.executeActions(actions, new EnvironmentOutcome[this.envs.length]);
+	}
+
+
+	/**
+	 * Executes one action in each sub-environment, storing the outcomes in the given array.
+	 * @param actions the action for each sub-environment, indexed like the sub-environments
+	 * @param outcomes the array in which the outcome of each sub-environment is stored
+	 * @return the outcomes array
+	 */
+	public EnvironmentOutcome [] executeActions(final Action [] actions, final EnvironmentOutcome [] outcomes){
+
+		if(actions.length != this.envs.length || outcomes.length != this.envs.length){
+			throw new RuntimeException("VectorizedEnvironment has " + this.envs.length + " sub-environments, but was given " + actions.length
+					+ " actions and " + outcomes.length + " outcome slots.");
+		}
+
+		List<Integer> completed = this.stepBlocks.invokeBlocks(this.envs.length, new ParallelBlocks.Block<Integer>() {
+			@Override
+			public Integer run(int start, int end) {
+				return stepRange(actions, outcomes, start, end);
+			}
+		}, "stepping sub-environments");
+		for(int c : completed){
+			this.episodesCompleted += c;
+		}
+
+		return outcomes;
+	}
+
+
+	/**
+	 * Queries the policy for an action in the current observation of each sub-environment and executes the actions.
+	 * The policy is queried serially, so it does not need to be safe to call concurrently.
+	 * @param p the policy that selects the actions
+	 * @return the outcome of each sub-environment.
+	 */
+	public EnvironmentOutcome [] executePolicy(Policy p){
+		Action [] actions = new Action[this.envs.length];
+		for(int i = 0; i < this.envs.length; i++){
+			actions[i] = p.action(this.envs[i].currentObservation());
+		}
+		return this.executeActions(actions);
+	}
+
+
+	/**
+	 * Collects at least numSamples transitions by following the policy in every sub-environment, stepping all of them each round.
+	 * If auto-reset is disabled, collection stops early once every sub-environment is in a terminal state, so fewer than numSamples
+	 * transitions are returned.
+	 * @param p the policy that selects the actions
+	 * @param numSamples the minimum number of transitions to collect
+	 * @return the collected transitions
+	 */
+	public List<EnvironmentOutcome> collectSamples(Policy p, int numSamples){
+		List<EnvironmentOutcome> samples = new ArrayList<EnvironmentOutcome>(numSamples + this.envs.length);
+		while(samples.size() < numSamples){
+			int before = samples.size();
+			for(EnvironmentOutcome eo : this.executePolicy(p)){
+				if(eo != null){
+					samples.add(eo);
+				}
+			}
+			if(samples.size() == before){
+				//every sub-environment is terminal and none will be reset
+				break;
+			}
+		}
+		return samples;
+	}
+
+
+	/**
+	 * Steps the sub-environments in the range [start, end).
+	 * @param actions the action for each sub-environment
+	 * @param outcomes the array in which outcomes are stored
+	 * @param start the first sub-environment index
+	 * @param end one past the last sub-environment index
+	 * @return the number of episodes completed in the range
+	 */
+	protected int stepRange(Action [] actions, EnvironmentOutcome [] outcomes, int start, int end){
+		int completed = 0;
+		for(int i = start; i < end; i++){
+			Environment env = this.envs[i];
+			if(env.isInTerminalState() && !this.autoReset){
+				outcomes[i] = null;
+				continue;
+			}
+			EnvironmentOutcome eo = env.executeAction(actions[i]);
+			outcomes[i] = eo;
+			if(eo.terminated){
+				completed++;
+				if(this.autoReset){
+					env.resetEnvironment();
+				}
+			}
+		}
+		return completed;
+	}
+
+}
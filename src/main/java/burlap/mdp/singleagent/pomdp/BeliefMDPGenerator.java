@@ -20,8 +20,10 @@ import java.util.Map;
 
 /**
  * A class for taking an input POMDP (defined by a {@link burlap.mdp.singleagent.pomdp.PODomain} and turning it into
- * a BeliefMDP, which can then be input to any MDP solver to solve the POMDP. This conversion only works if
- * your belief states are {@link TabularBeliefState} instances.
+ * a BeliefMDP, which can then be input to any MDP solver to solve the POMDP. The full Belief MDP transition dynamics
+ * are only available if your belief states are {@link TabularBeliefState} instances, but the Belief MDP can be sampled with
+ * any belief state for which the {@link BeliefUpdate} is defined, such as a {@link ParticleBeliefState} with a
+ * {@link ParticleFilterBeliefUpdate}, which lets sampling based solvers plan over very large or continuous hidden state spaces.
  * <p>
  * For more information on Belief MDPs, see the POMDP wikipedia page: https://en.wikipedia.org/wiki/Partially_observable_Markov_decision_process#Belief_MDP
  *
@@ -33,6 +35,11 @@ public class BeliefMDPGenerator implements DomainGenerator {
 	 */
 	protected PODomain							podomain;
 
+	/**
+	 * The belief update of the Belief MDP
+	 */
+	protected BeliefUpdate						updater;
+
 
 
 	/**
@@ -40,7 +47,17 @@ public class BeliefMDPGenerator implements DomainGenerator {
 	 * @param podomain the input POMDP domain that will be turned into a Belief MDP.
 	 */
 	public BeliefMDPGenerator(PODomain podomain){
+		this(podomain, new TabularBeliefUpdate(podomain));
+	}
+
+	/**
+	 * Initializes
+	 * @param podomain the input POMDP domain that will be turned into a Belief MDP.
+	 * @param updater the {@link BeliefUpdate} with which sampled belief transitions are computed
+	 */
+	public BeliefMDPGenerator(PODomain podomain, BeliefUpdate updater){
 		this.podomain = podomain;
+		this.updater = updater;
 	}
 	
 	
@@ -54,7 +71,7 @@ public class BeliefMDPGenerator implements DomainGenerator {
 			domain.addActionType(mdpActionType);
 		}
 
-		domain.setModel(new BeliefModel(podomain));
+		domain.setModel(new BeliefModel(podomain, this.updater));
 		
 		return domain;
 	}
@@ -68,8 +85,12 @@ public class BeliefMDPGenerator implements DomainGenerator {
 		protected BeliefUpdate						updater;
 
 		public BeliefModel(PODomain poDomain) {
+			this(poDomain, new TabularBeliefUpdate(poDomain));
+		}
+
+		public BeliefModel(PODomain poDomain, BeliefUpdate updater) {
 			this.poDomain = poDomain;
-			this.updater = new TabularBeliefUpdate(poDomain);
+			this.updater = updater;
 		}
 
 		@Override
@@ -159,23 +180,25 @@ public class BeliefMDPGenerator implements DomainGenerator {
 		@Override
 		public EnvironmentOutcome sample(State s, Action a) {
 
-			FullModel model = (FullModel) poDomain.getModel();
+			State curS = ((BeliefState) s).sample();
+			EnvironmentOutcome hiddenEO = poDomain.getModel().sample(curS, a);
+			State obs = this.poDomain.obsevationFunction.sample(hiddenEO.op, a);
 
-			double sumR = 0.;
-			for(EnumerableBeliefState.StateBelief sb : ((EnumerableBeliefState) s).nonZeroBeliefs()) {
-				double sumTransR = 0.;
-				List<TransitionProb> tps = model.transitions(sb.s, a);
-				for(TransitionProb tp : tps) {
-					sumTransR += tp.p * tp.eo.r;
+			//use the expected reward when the full hidden model is available; otherwise the sampled hidden reward
+			double sumR = hiddenEO.r;
+			if(s instanceof EnumerableBeliefState && poDomain.getModel() instanceof FullModel) {
+				FullModel model = (FullModel) poDomain.getModel();
+				sumR = 0.;
+				for(EnumerableBeliefState.StateBelief sb : ((EnumerableBeliefState) s).nonZeroBeliefs()) {
+					double sumTransR = 0.;
+					List<TransitionProb> tps = model.transitions(sb.s, a);
+					for(TransitionProb tp : tps) {
+						sumTransR += tp.p * tp.eo.r;
+					}
+					sumR += sb.belief * sumTransR;
 				}
-				sumR += sb.belief * sumTransR;
 			}
 
-
-			State curS = ((BeliefState) s).sample();
-			EnvironmentOutcome hiddenEO = model.sample(curS, a);
-			State obs = this.poDomain.obsevationFunction.sample(hiddenEO.op, a);
-
 			BeliefState nbs = this.updater.update((BeliefState)s, obs, a);
 			EnvironmentOutcome eo = new EnvironmentOutcome(s, a, nbs, sumR, false);
 
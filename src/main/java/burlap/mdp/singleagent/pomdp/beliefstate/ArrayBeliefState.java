@@ -0,0 +1,425 @@
+package burlap.mdp.singleagent.pomdp.beliefstate;
+
+import burlap.behavior.singleagent.auxiliary.StateEnumerator;
+import burlap.debugtools.RandomFactory;
+import burlap.mdp.core.state.MutableState;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.pomdp.PODomain;
+import burlap.statehashing.HashableState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The base class of tabular belief states that store their belief vector in primitive arrays rather than a {@link java.util.Map},
+ * indexed by the state ids of a {@link StateEnumerator}. See {@link DenseArrayBeliefState}, which stores a double array over all
+ * states, and {@link SparseArrayBeliefState}, which stores the ids and beliefs of the states with non-zero belief in parallel arrays.
+ * <p>
+ * Subclasses expose their storage as a sequence of entries (see {@link #numEntries()}, {@link #entryId(int)} and {@link #entryValue(int)}),
+ * which {@link TensorBeliefUpdate} iterates directly. {@link #sample()} draws from a cumulative distribution over the entries with a binary
+ * search, so after the distribution is built, which happens on the first draw after a change, each draw takes O(log n) time.
+ * <p>
+ * Like {@link TabularBeliefState}, if using a BeliefMDP solver with these belief states, it is recommended that you use
+ * the {@link burlap.statehashing.ReflectiveHashableStateFactory}, since they implement {@link HashableState}.
+ */
+public abstract class ArrayBeliefState implements BeliefState, EnumerableBeliefState, DenseBeliefVector, MutableState, HashableState {
+
+	/**
+	 * A state enumerator for determining the index of MDP states in the belief vector.
+	 */
+	protected StateEnumerator stateEnumerator;
+
+	/**
+	 * The POMDP domain with which this belief state is associated.
+	 */
+	protected PODomain domain;
+
+	/**
+	 * The state ids of the cumulative distribution used for sampling; null when it must be rebuilt.
+	 */
+	protected int [] cdfIds;
+
+	/**
+	 * The cumulative belief of each id in {@link #cdfIds}
+	 */
+	protected double [] cdf;
+
+
+	public ArrayBeliefState() {
+	}
+
+	/**
+	 * Initializes with the state enumerator of the domain, which must provide one.
+	 * @param domain the {@link burlap.mdp.singleagent.pomdp.PODomain} domain to which the belief state is associated.
+	 */
+	public ArrayBeliefState(PODomain domain){
+		if(!domain.providesStateEnumerator()){
+			throw new RuntimeException(this.getClass().getSimpleName() + "(PODomain domain) constructor requires that " +
+					"the PODomain provides a StateEnumerator, but it does not.");
+		}
+		this.domain = domain;
+		this.stateEnumerator = domain.getStateEnumerator();
+	}
+
+	/**
+	 * Initializes.
+	 * @param domain the {@link burlap.mdp.singleagent.pomdp.PODomain} domain to which the belief state is associated.
+	 * @param stateEnumerator a {@link burlap.behavior.singleagent.auxiliary.StateEnumerator} to index the states in the belief vector.
+	 */
+	public ArrayBeliefState(PODomain domain, StateEnumerator stateEnumerator){
+		this.domain = domain;
+		this.stateEnumerator = stateEnumerator;
+	}
+
+
+	/**
+	 * Returns the number of stored entries.
+	 * @return the number of stored entries.
+	 */
+	public abstract int numEntries();
+
+	/**
+	 * Returns the state id of the i'th stored entry.
+	 * @param i the entry index
+	 * @return the state id of the entry
+	 */
+	public abstract int entryId(int i);
+
+	/**
+	 * Returns the belief of the i'th stored entry, which may be zero.
+	 * @param i the entry index
+	 * @return the belief of the entry
+	 */
+	public abstract double entryValue(int i);
+
+	/**
+	 * Returns the belief of the state with the given id.
+	 * @param stateId the state id
+	 * @return the belief of the state
+	 */
+	public abstract double belief(int stateId);
+
+	/**
+	 * Sets the belief of the state with the given id. Note that using this method will not ensure that the total
+	 * probability mass across this belief state sums to 1.
+	 * @param stateId the state id
+	 * @param b the belief of the state
+	 */
+	public abstract void setBelief(int stateId, double b);
+
+	/**
+	 * Sets this belief state to have zero probability mass for all underlying MDP states.
+	 */
+	public abstract void zeroOutBeliefVector();
+
+
+	public StateEnumerator getStateEnumerator() {
+		return stateEnumerator;
+	}
+
+	public void setStateEnumerator(StateEnumerator stateEnumerator) {
+		this.stateEnumerator = stateEnumerator;
+	}
+
+	public PODomain getDomain() {
+		return domain;
+	}
+
+	public void setDomain(PODomain domain) {
+		this.domain = domain;
+	}
+
+	@Override
+	public double belief(State s) {
+		return this.belief(this.stateEnumerator.getEnumeratedID(s));
+	}
+
+	/**
+	 * Sets the probability mass (belief) associated with the underlying MDP state, enumerating the state if it has not
+	 * been enumerated.
+	 * @param s the underlying MDP state
+	 * @param b the probability mass to assign to the underlying MDP state.
+	 */
+	public void setBelief(State s, double b){
+		this.setBelief(this.stateEnumerator.getEnumeratedID(s), b);
+	}
+
+	/**
+	 * Returns the size of the observed underlying MDP state space.
+	 * @return the size of the observed underlying MDP state space.
+	 */
+	public int numStates(){
+		return this.stateEnumerator.numStatesEnumerated();
+	}
+
+	/**
+	 * Returns the corresponding MDP state for the provided unique identifier.
+	 * @param id the MDP state identifier
+	 * @return the corresponding MDP state
+	 */
+	public State stateForId(int id){
+		return this.stateEnumerator.getStateForEnumerationId(id);
+	}
+
+	/**
+	 * Initializes this belief state to a uniform distribution over the enumerated states.
+	 */
+	public void initializeBeliefsUniformly(){
+		int n = this.numStates();
+		for(int i = 0; i < n; i++){
+			this.setBelief(i, 1. / n);
+		}
+	}
+
+
+	@Override
+	public State sample() {
+		return this.stateForId(this.sampleId());
+	}
+
+	/**
+	 * Samples the id of an MDP state from this belief distribution.
+	 * @return the sampled state id
+	 */
+	public int sampleId(){
+
+		if(this.cdfIds == null){
+			this.buildCDF();
+		}
+		if(this.cdfIds.length == 0){
+			throw new RuntimeException("Error; could not sample from belief state because it has no probability mass.");
+		}
+
+		double r = RandomFactory.getMapped(0).nextDouble() * this.cdf[this.cdf.length-1];
+		int lo = 0;
+		int hi = this.cdf.length-1;
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(r < this.cdf[mid]){
+				hi = mid;
+			}
+			else{
+				lo = mid+1;
+			}
+		}
+		return this.cdfIds[lo];
+	}
+
+	/**
+	 * Builds the cumulative distribution over the entries with non-zero belief.
+	 */
+	protected void buildCDF(){
+		int n = this.numEntries();
+		int [] ids = new int[n];
+		double [] cumulative = new double[n];
+		int j = 0;
+		double sum = 0.;
+		for(int i = 0; i < n; i++){
+			double v = this.entryValue(i);
+			if(v > 0.){
+				sum += v;
+				ids[j] = this.entryId(i);
+				cumulative[j] = sum;
+				j++;
+			}
+		}
+		this.cdfIds = Arrays.copyOf(ids, j);
+		this.cdf = Arrays.copyOf(cumulative, j);
+	}
+
+	/**
+	 * Marks the sampling distribution as stale. Subclasses call this whenever a belief changes.
+	 */
+	protected void invalidateCDF(){
+		this.cdfIds = null;
+		this.cdf = null;
+	}
+
+
+	@Override
+	public List<StateBelief> nonZeroBeliefs() {
+		int n = this.numEntries();
+		List<StateBelief> result = new ArrayList<StateBelief>(n);
+		for(int i = 0; i < n; i++){
+			double v = this.entryValue(i);
+			if(v != 0.){
+				result.add(new StateBelief(this.stateForId(this.entryId(i)), v));
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public double[] beliefVector() {
+		double [] b = new double[this.numStates()];
+		int n = this.numEntries();
+		for(int i = 0; i < n; i++){
+			int id = this.entryId(i);
+			if(id < b.length){
+				b[id] = this.entryValue(i);
+			}
+		}
+		return b;
+	}
+
+	@Override
+	public void setBeliefVector(double[] b) {
+		if(b.length != this.numStates()){
+			throw new RuntimeException("Error; cannot set belief state with provided vector because dimensionality does not match." +
+					"Provided vector of dimension " + b.length + " need dimension " + this.numStates());
+		}
+		this.zeroOutBeliefVector();
+		for(int i = 0; i < b.length; i++){
+			if(b[i] != 0.){
+				this.setBelief(i, b[i]);
+			}
+		}
+	}
+
+
+	@Override
+	public MutableState set(Object variableKey, Object value) {
+
+		if(!(value instanceof Double)){
+			throw new RuntimeException("Cannot set belief state value, because the value is a " + value.getClass().getName() + " not a Double");
+		}
+
+		Double val = (Double)value;
+
+		if(variableKey instanceof Integer){
+			this.setBelief((Integer)variableKey, val);
+		}
+		else if(variableKey instanceof State){
+			this.setBelief((State)variableKey, val);
+		}
+		else if(variableKey instanceof String){
+			try{
+				this.setBelief(Integer.parseInt((String)variableKey), val);
+			}catch(NumberFormatException e){
+				throw new RuntimeException("Could not set belief for " + this.getClass().getSimpleName() + " because the key is a String, but does not parse into an int; it is " + variableKey);
+			}
+		}
+		else{
+			throw new RuntimeException("Cannot set belief for " + this.getClass().getSimpleName() + " because the key is a " + variableKey.getClass().getName() + " rather than an Integer, State, or String representation of an int");
+		}
+
+		return this;
+	}
+
+	@Override
+	public List<Object> variableKeys() {
+		int max = this.stateEnumerator.numStatesEnumerated();
+		List<Object> keys = new ArrayList<Object>(max);
+		for(int i = 0; i < max; i++){
+			keys.add(i);
+		}
+		return keys;
+	}
+
+	@Override
+	public Object get(Object variableKey) {
+
+		if(variableKey instanceof Integer){
+			return this.belief((Integer)variableKey);
+		}
+		else if(variableKey instanceof State){
+			return this.belief((State)variableKey);
+		}
+		else if(variableKey instanceof String){
+			try{
+				return this.belief(Integer.parseInt((String)variableKey));
+			}catch(NumberFormatException e){
+				throw new RuntimeException("Could not return belief for " + this.getClass().getSimpleName() + " because the key is a String, but does not parse into an int; it is " + variableKey);
+			}
+		}
+
+		throw new RuntimeException("Could not return belief value for key, because it is a " + variableKey.getClass().getName() + " rather than an Integer, State, or String representation of an integer");
+	}
+
+	@Override
+	public State s() {
+		return this;
+	}
+
+	/**
+	 * Hashes the ids of the states with non-zero belief, so that belief states that are equal within the tolerance
+	 * of {@link #equals(Object)} have the same hash code.
+	 */
+	@Override
+	public int hashCode() {
+		int h = 0;
+		int n = this.numEntries();
+		for(int i = 0; i < n; i++){
+			if(this.entryValue(i) != 0.){
+				h += 31 * this.entryId(i) + 17;
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Two array belief states, dense or sparse, are equal if they assign the same belief, within 1e-10, to every state
+	 * and have the same states with non-zero belief.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+
+		if(obj == this){
+			return true;
+		}
+
+		if(!(obj instanceof ArrayBeliefState)){
+			return false;
+		}
+
+		ArrayBeliefState other = (ArrayBeliefState)obj;
+		if(this.countNonZero() != other.countNonZero()){
+			return false;
+		}
+		int n = this.numEntries();
+		for(int i = 0; i < n; i++){
+			double v = this.entryValue(i);
+			if(v == 0.){
+				continue;
+			}
+			double ov = other.belief(this.entryId(i));
+			if(ov == 0. || Math.abs(ov - v) > 1e-10){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of states with non-zero belief.
+	 * @return the number of states with non-zero belief.
+	 */
+	protected int countNonZero(){
+		int c = 0;
+		int n = this.numEntries();
+		for(int i = 0; i < n; i++){
+			if(this.entryValue(i) != 0.){
+				c++;
+			}
+		}
+		return c;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder("{");
+		int n = this.numEntries();
+		for(int i = 0; i < n; i++){
+			double v = this.entryValue(i);
+			if(v != 0.){
+				if(buf.length() > 1){
+					buf.append(", ");
+				}
+				buf.append(this.entryId(i)).append("=").append(v);
+			}
+		}
+		return buf.append("}").toString();
+	}
+
+}
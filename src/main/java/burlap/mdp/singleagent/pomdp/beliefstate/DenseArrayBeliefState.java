@@ -0,0 +1,128 @@
+package burlap.mdp.singleagent.pomdp.beliefstate;
+
+import burlap.behavior.singleagent.auxiliary.StateEnumerator;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.pomdp.PODomain;
+
+import java.util.Arrays;
+
+/**
+ * An {@link ArrayBeliefState} that stores the belief of every enumerated state in a double array indexed by state id.
+ * The array grows if a belief is set for a state enumerated after the array was created. This representation is best
+ * when the belief is spread over a large fraction of the state space.
+ */
+public class DenseArrayBeliefState extends ArrayBeliefState {
+
+	/**
+	 * The belief of each state, indexed by state id
+	 */
+	protected double [] values;
+
+
+	public DenseArrayBeliefState() {
+		this.values = new double[0];
+	}
+
+	/**
+	 * Constructs a new {@link DenseArrayBeliefState} from a source belief state. Changes to the new state or source
+	 * state will not affect the other.
+	 * @param src the source belief state to copy.
+	 */
+	public DenseArrayBeliefState(DenseArrayBeliefState src){
+		this(src.domain, src.stateEnumerator, src.values.clone());
+	}
+
+	/**
+	 * Initializes with zero belief over the states enumerated by the domain's state enumerator, which it must provide.
+	 * @param domain the {@link burlap.mdp.singleagent.pomdp.PODomain} domain to which the belief state is associated.
+	 */
+	public DenseArrayBeliefState(PODomain domain){
+		super(domain);
+		this.values = new double[this.numStates()];
+	}
+
+	/**
+	 * Initializes with zero belief over the currently enumerated states.
+	 * @param domain the {@link burlap.mdp.singleagent.pomdp.PODomain} domain to which the belief state is associated.
+	 * @param stateEnumerator a {@link burlap.behavior.singleagent.auxiliary.StateEnumerator} to index the states in the belief vector.
+	 */
+	public DenseArrayBeliefState(PODomain domain, StateEnumerator stateEnumerator){
+		super(domain, stateEnumerator);
+		this.values = new double[this.numStates()];
+	}
+
+	/**
+	 * Initializes with the given belief vector, which is used directly rather than copied.
+	 * @param domain the {@link burlap.mdp.singleagent.pomdp.PODomain} domain to which the belief state is associated.
+	 * @param stateEnumerator a {@link burlap.behavior.singleagent.auxiliary.StateEnumerator} to index the states in the belief vector.
+	 * @param values the belief of each state, indexed by state id
+	 */
+	public DenseArrayBeliefState(PODomain domain, StateEnumerator stateEnumerator, double [] values){
+		super(domain, stateEnumerator);
+		this.values = values;
+	}
+
+
+	@Override
+	public int numEntries() {
+		return this.values.length;
+	}
+
+	@Override
+	public int entryId(int i) {
+		return i;
+	}
+
+	@Override
+	public double entryValue(int i) {
+		return this.values[i];
+	}
+
+	@Override
+	public double belief(int stateId) {
+		return stateId < this.values.length ? this.values[stateId] : 0.;
+	}
+
+	@Override
+	public void setBelief(int stateId, double b) {
+		if(stateId < 0 || stateId >= this.numStates()){
+			throw new RuntimeException("Error; cannot set belief value for state id " + stateId + "; belief vector is of dimension " + this.numStates());
+		}
+		if(stateId >= this.values.length){
+			if(b == 0.){
+				return;
+			}
+			this.values = Arrays.copyOf(this.values, this.numStates());
+		}
+		this.values[stateId] = b;
+		this.invalidateCDF();
+	}
+
+	@Override
+	public void zeroOutBeliefVector() {
+		Arrays.fill(this.values, 0.);
+		this.invalidateCDF();
+	}
+
+	@Override
+	public double[] beliefVector() {
+		if(this.values.length == this.numStates()){
+			return this.values.clone();
+		}
+		return super.beliefVector();
+	}
+
+	/**
+	 * Returns the backing belief array, without copying. Entries beyond its length have zero belief.
+	 * @return the backing belief array
+	 */
+	public double [] values(){
+		return this.values;
+	}
+
+	@Override
+	public State copy() {
+		return new DenseArrayBeliefState(this);
+	}
+
+}
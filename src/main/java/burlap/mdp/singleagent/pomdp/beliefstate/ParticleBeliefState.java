@@ -0,0 +1,319 @@
+package burlap.mdp.singleagent.pomdp.beliefstate;
+
+import burlap.debugtools.RandomFactory;
+import burlap.mdp.auxiliary.StateGenerator;
+import burlap.mdp.core.state.State;
+import burlap.statehashing.HashableState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A belief state represented by a fixed-size array of weighted particles, each a hidden MDP state. Unlike {@link TabularBeliefState},
+ * it requires no {@link burlap.behavior.singleagent.auxiliary.StateEnumerator}, so it can represent beliefs over very large or
+ * continuous hidden state spaces. Particles are updated with {@link ParticleFilterBeliefUpdate}.
+ * <p>
+ * The belief of a state is the normalized weight of the particles equal to it, and {@link #nonZeroBeliefs()} returns one
+ * entry per particle, which may include the same state more than once; expectations over the returned list, such as those
+ * computed by {@link burlap.behavior.singleagent.pomdp.qmdp.QMDP}, are therefore correct. When all weights are equal,
+ * {@link #sample()} draws a particle uniformly in constant time; otherwise it draws from a cached cumulative distribution
+ * with a binary search.
+ * <p>
+ * Particle states are shared, not copied, by {@link #copy()} and by {@link ParticleFilterBeliefUpdate}, so they should not be
+ * modified after they are added to a belief state. Two particle belief states are equal when they hold equal particles with
+ * equal weights in the same order.
+ */
+public class ParticleBeliefState implements BeliefState, EnumerableBeliefState, HashableState {
+
+	/**
+	 * The particles
+	 */
+	protected State [] particles;
+
+	/**
+	 * The weight of each particle; null when all weights are equal.
+	 */
+	protected double [] weights;
+
+	/**
+	 * The cumulative weight of each particle, used for sampling; null when it must be built.
+	 */
+	protected double [] cumulativeWeights;
+
+	/**
+	 * The sum of the weights; NaN when it must be computed.
+	 */
+	protected double totalWeight = Double.NaN;
+
+
+	/**
+	 * Initializes with equally weighted particles. The array is used directly rather than copied.
+	 * @param particles the particles
+	 */
+	public ParticleBeliefState(State [] particles){
+		this(particles, null);
+	}
+
+	/**
+	 * Initializes with weighted particles. The arrays are used directly rather than copied.
+	 * @param particles the particles
+	 * @param weights the non-negative, not necessarily normalized, weight of each particle; null for equal weights
+	 */
+	public ParticleBeliefState(State [] particles, double [] weights){
+		if(particles.length == 0){
+			throw new RuntimeException("ParticleBeliefState requires at least one particle.");
+		}
+		if(weights != null && weights.length != particles.length){
+			throw new RuntimeException("ParticleBeliefState was given " + particles.length + " particles but " + weights.length + " weights.");
+		}
+		this.particles = particles;
+		this.weights = weights;
+	}
+
+	/**
+	 * Initializes with n equally weighted particles drawn from the given state generator, such as the initial state
+	 * distribution of the POMDP.
+	 * @param generator the generator of the hidden states
+	 * @param n the number of particles
+	 */
+	public ParticleBeliefState(StateGenerator generator, int n){
+		this(generateParticles(generator, n));
+	}
+
+	/**
+	 * Returns a new {@link ParticleBeliefState} with n equally weighted particles sampled from the given belief state.
+	 * @param belief the belief state to approximate
+	 * @param n the number of particles
+	 * @return a particle approximation of the belief state
+	 */
+	public static ParticleBeliefState fromBelief(BeliefState belief, int n){
+		State [] particles = new State[n];
+		for(int i = 0; i < n; i++){
+			particles[i] = belief.sample();
+		}
+		return new ParticleBeliefState(particles);
+	}
+
+	protected static State [] generateParticles(StateGenerator generator, int n){
+		State [] particles = new State[n];
+		for(int i = 0; i < n; i++){
+			particles[i] = generator.generateState();
+		}
+		return particles;
+	}
+
+
+	/**
+	 * Returns the number of particles.
+	 * @return the number of particles.
+	 */
+	public int numParticles(){
+		return this.particles.length;
+	}
+
+	/**
+	 * Returns the i'th particle.
+	 * @param i the particle index
+	 * @return the i'th particle
+	 */
+	public State particle(int i){
+		return this.particles[i];
+	}
+
+	/**
+	 * Returns the normalized weight of the i'th particle.
+	 * @param i the particle index
+	 * @return the normalized weight of the i'th particle
+	 */
+	public double weight(int i){
+		if(this.weights == null){
+			return 1. / this.particles.length;
+		}
+		return this.weights[i] / this.totalWeight();
+	}
+
+	/**
+	 * Returns whether all particles have equal weight.
+	 * @return true if all particles have equal weight; false otherwise.
+	 */
+	public boolean hasUniformWeights(){
+		return this.weights == null;
+	}
+
+	/**
+	 * Returns the backing particle array, without copying.
+	 * @return the backing particle array
+	 */
+	public State [] particles(){
+		return this.particles;
+	}
+
+	/**
+	 * Returns the backing unnormalized weight array, without copying, or null if all particles have equal weight. If the
+	 * returned array is modified, {@link #weightsChanged()} must be called afterwards.
+	 * @return the backing weight array, or null for equal weights
+	 */
+	public double [] weights(){
+		return this.weights;
+	}
+
+	/**
+	 * Discards the cached total and cumulative weights, which must be done after the array returned by {@link #weights()} is modified.
+	 */
+	public void weightsChanged(){
+		this.totalWeight = Double.NaN;
+		this.cumulativeWeights = null;
+	}
+
+	/**
+	 * Returns the effective sample size of the particles, 1 / sum_i w_i^2 for normalized weights w_i, which is the number of
+	 * particles when all weights are equal.
+	 * @return the effective sample size
+	 */
+	public double effectiveSampleSize(){
+		if(this.weights == null){
+			return this.particles.length;
+		}
+		double total = 0.;
+		double sumSq = 0.;
+		for(double w : this.weights){
+			total += w;
+			sumSq += w*w;
+		}
+		return total*total / sumSq;
+	}
+
+
+	@Override
+	public double belief(State s) {
+		double sum = 0.;
+		for(int i = 0; i < this.particles.length; i++){
+			if(this.particles[i].equals(s)){
+				sum += this.weights == null ? 1. : this.weights[i];
+			}
+		}
+		return sum / this.totalWeight();
+	}
+
+	@Override
+	public State sample() {
+		return this.particles[this.sampleIndex()];
+	}
+
+	/**
+	 * Samples the index of a particle with probability proportional to its weight.
+	 * @return the sampled particle index
+	 */
+	public int sampleIndex(){
+		if(this.weights == null){
+			return RandomFactory.getMapped(0).nextInt(this.particles.length);
+		}
+		if(this.cumulativeWeights == null){
+			double [] cumulative = new double[this.weights.length];
+			double sum = 0.;
+			for(int i = 0; i < this.weights.length; i++){
+				sum += this.weights[i];
+				cumulative[i] = sum;
+			}
+			this.cumulativeWeights = cumulative;
+		}
+		double r = RandomFactory.getMapped(0).nextDouble() * this.cumulativeWeights[this.cumulativeWeights.length-1];
+		int i = Arrays.binarySearch(this.cumulativeWeights, r);
+		i = i >= 0 ? i+1 : -(i+1);
+		return Math.min(i, this.particles.length-1);
+	}
+
+	@Override
+	public List<StateBelief> nonZeroBeliefs() {
+		List<StateBelief> result = new ArrayList<StateBelief>(this.particles.length);
+		double total = this.totalWeight();
+		for(int i = 0; i < this.particles.length; i++){
+			double w = this.weights == null ? 1. : this.weights[i];
+			if(w > 0.){
+				result.add(new StateBelief(this.particles[i], w / total));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the sum of the unnormalized weights, which is computed once and cached until {@link #weightsChanged()} is called.
+	 * @return the sum of the weights
+	 */
+	protected double totalWeight(){
+		if(this.weights == null){
+			return this.particles.length;
+		}
+		if(Double.isNaN(this.totalWeight)){
+			double sum = 0.;
+			for(double w : this.weights){
+				sum += w;
+			}
+			this.totalWeight = sum;
+		}
+		return this.totalWeight;
+	}
+
+
+	@Override
+	public List<Object> variableKeys() {
+		List<Object> keys = new ArrayList<Object>(this.particles.length);
+		for(int i = 0; i < this.particles.length; i++){
+			keys.add(i);
+		}
+		return keys;
+	}
+
+	/**
+	 * Returns the particle at the given index, specified as an Integer or a String representation of an int.
+	 * @param variableKey the particle index
+	 * @return the particle
+	 */
+	@Override
+	public Object get(Object variableKey) {
+		if(variableKey instanceof Integer){
+			return this.particles[(Integer)variableKey];
+		}
+		else if(variableKey instanceof String){
+			try{
+				return this.particles[Integer.parseInt((String)variableKey)];
+			}catch(NumberFormatException e){
+				throw new RuntimeException("Could not return particle for ParticleBeliefState because the key is a String, but does not parse into an int; it is " + variableKey);
+			}
+		}
+		throw new RuntimeException("Could not return particle for key, because it is a " + variableKey.getClass().getName() + " rather than an Integer or String representation of an integer");
+	}
+
+	@Override
+	public State copy() {
+		return new ParticleBeliefState(this.particles.clone(), this.weights == null ? null : this.weights.clone());
+	}
+
+	@Override
+	public State s() {
+		return this;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(this.particles) + Arrays.hashCode(this.weights);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(obj == this){
+			return true;
+		}
+		if(!(obj instanceof ParticleBeliefState)){
+			return false;
+		}
+		ParticleBeliefState o = (ParticleBeliefState)obj;
+		return Arrays.equals(this.particles, o.particles) && Arrays.equals(this.weights, o.weights);
+	}
+
+	@Override
+	public String toString() {
+		return "ParticleBeliefState{" + this.particles.length + " particles, effective sample size " + this.effectiveSampleSize() + "}";
+	}
+}
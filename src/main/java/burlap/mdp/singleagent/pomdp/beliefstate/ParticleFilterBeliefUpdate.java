@@ -0,0 +1,225 @@
+package burlap.mdp.singleagent.pomdp.beliefstate;
+
+import burlap.datastructures.ParallelBlocks;
+import burlap.debugtools.RandomFactory;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.model.SampleModel;
+import burlap.mdp.singleagent.pomdp.PODomain;
+import burlap.mdp.singleagent.pomdp.observations.ObservationFunction;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A {@link BeliefUpdate} that performs a sequential importance resampling particle filter update on {@link ParticleBeliefState}
+ * instances. Each particle is propagated by sampling the POMDP's {@link SampleModel}, so no full transition dynamics or
+ * state enumeration are required, and is then weighted by the probability (or density) of the observation in its new state
+ * according to the {@link ObservationFunction}. When the effective sample size of the weighted particles falls below a fraction
+ * of the number of particles (see {@link #setResampleThreshold(double)}), the particles are resampled with low-variance
+ * (systematic) resampling, which draws a single random number and produces equally weighted particles.
+ * <p>
+ * The updated belief always has the same, fixed number of particles, so the memory of belief tracking stays constant per step.
+ * If the prior belief is not a {@link ParticleBeliefState}, it is first approximated with particles sampled from it.
+ * Particles in terminal states are not propagated. If every particle has zero observation probability, the update throws
+ * an exception, as {@link TabularBeliefUpdate} does.
+ * <p>
+ * Use this updater with a {@link burlap.mdp.singleagent.pomdp.BeliefAgent} by calling
+ * {@link burlap.mdp.singleagent.pomdp.BeliefAgent#setUpdater(BeliefUpdate)}, and with a Belief MDP by passing it to
+ * {@link burlap.mdp.singleagent.pomdp.BeliefMDPGenerator#BeliefMDPGenerator(PODomain, BeliefUpdate)}.
+ * <p>
+ * Propagation can be spread across a thread pool with {@link #setParallelPropagation(int)}. In that case, the model and
+ * observation function are called concurrently, so they must be safe to call concurrently, and the sampled particles are not
+ * reproducible.
+ */
+public class ParticleFilterBeliefUpdate implements BeliefUpdate {
+
+	protected PODomain domain;
+
+	/**
+	 * The number of particles of each updated belief
+	 */
+	protected int numParticles;
+
+	/**
+	 * The fraction of the number of particles below which the effective sample size triggers resampling
+	 */
+	protected double resampleThreshold = 1.;
+
+	/**
+	 * The executor and number of blocks with which particles are propagated; they are propagated serially when it has no executor.
+	 */
+	protected ParallelBlocks propagationBlocks = new ParallelBlocks();
+
+
+	/**
+	 * Initializes.
+	 * @param domain the POMDP domain whose model and observation function are sampled
+	 * @param numParticles the number of particles of each updated belief
+	 */
+	public ParticleFilterBeliefUpdate(PODomain domain, int numParticles) {
+		if(numParticles < 1){
+			throw new RuntimeException("ParticleFilterBeliefUpdate requires at least one particle.");
+		}
+		this.domain = domain;
+		this.numParticles = numParticles;
+	}
+
+	public PODomain getDomain() {
+		return domain;
+	}
+
+	public int getNumParticles() {
+		return numParticles;
+	}
+
+	/**
+	 * Sets the fraction of the number of particles below which the effective sample size of the weighted particles triggers
+	 * resampling. Default is 1, which resamples after every update unless all weights are equal; 0 never resamples.
+	 * @param resampleThreshold the fraction of the number of particles in [0, 1]
+	 */
+	public void setResampleThreshold(double resampleThreshold) {
+		this.resampleThreshold = resampleThreshold;
+	}
+
+	/**
+	 * Sets particles to be propagated across the given number of threads using a new {@link ForkJoinPool}, with
+	 * the particles split into one contiguous block per thread. If numThreads is 1 or less, they are propagated serially.
+	 * @param numThreads the number of threads to use.
+	 */
+	public void setParallelPropagation(int numThreads){
+		this.propagationBlocks.setThreads(numThreads);
+	}
+
+	/**
+	 * Sets particles to be propagated on the given executor, with the particles split into numPartitions contiguous blocks.
+	 * @param executor the executor on which blocks are propagated, such as a {@link ForkJoinPool}; null to propagate serially
+	 * @param numPartitions the number of blocks into which the particles are split
+	 */
+	public void setParallelPropagation(ExecutorService executor, int numPartitions){
+		this.propagationBlocks.setExecutor(executor, numPartitions);
+	}
+
+
+	@Override
+	public BeliefState update(BeliefState belief, State observation, Action a) {
+
+		ParticleBeliefState prior = belief instanceof ParticleBeliefState ? (ParticleBeliefState)belief : ParticleBeliefState.fromBelief(belief, this.numParticles);
+		if(prior.numParticles() != this.numParticles){
+			prior = this.resample(prior.particles(), prior.weights(), this.numParticles);
+		}
+
+		int n = this.numParticles;
+		State [] next = new State[n];
+		double [] weights = new double[n];
+		double total = this.propagate(prior, observation, a, next, weights);
+
+		if(total == 0.){
+			throw new RuntimeException("Cannot get updated belief state, because the observation has zero probability under every particle.");
+		}
+
+		ParticleBeliefState posterior = new ParticleBeliefState(next, weights);
+		if(posterior.effectiveSampleSize() < this.resampleThreshold * n){
+			return this.resample(next, weights, n);
+		}
+		return posterior;
+	}
+
+
+	/**
+	 * Propagates every particle of the prior and weights it by the observation probability, running blocks of particles
+	 * on the executor if one is set.
+	 * @param prior the prior particles
+	 * @param observation the observation
+	 * @param a the action
+	 * @param next the array in which the propagated particles are stored
+	 * @param weights the array in which the weights of the propagated particles are stored
+	 * @return the total weight
+	 */
+	protected double propagate(final ParticleBeliefState prior, final State observation, final Action a, final State [] next, final double [] weights){
+
+		List<Double> totals = this.propagationBlocks.invokeBlocks(next.length, new ParallelBlocks.Block<Double>() {
+			@Override
+			public Double run(int start, int end) {
+				return propagateRange(prior, observation, a, next, weights, start, end);
+			}
+		}, "propagating particles");
+
+		double total = 0.;
+		for(double t : totals){
+			total += t;
+		}
+		return total;
+	}
+
+
+	/**
+	 * Propagates and weights the particles in the range [start, end).
+	 * @param prior the prior particles
+	 * @param observation the observation
+	 * @param a the action
+	 * @param next the array in which the propagated particles are stored
+	 * @param weights the array in which the weights of the propagated particles are stored
+	 * @param start the first particle index
+	 * @param end one past the last particle index
+	 * @return the total weight of the range
+	 */
+	protected double propagateRange(ParticleBeliefState prior, State observation, Action a, State [] next, double [] weights, int start, int end){
+		SampleModel model = this.domain.getModel();
+		ObservationFunction of = this.domain.getObservationFunction();
+		double [] priorWeights = prior.weights();
+		double total = 0.;
+		for(int i = start; i < end; i++){
+			State s = prior.particle(i);
+			double w = priorWeights == null ? 1. : priorWeights[i];
+			if(w == 0.){
+				next[i] = s;
+				weights[i] = 0.;
+				continue;
+			}
+			State ns = model.terminal(s) ? s : model.sample(s, a).op;
+			next[i] = ns;
+			weights[i] = w * of.probability(observation, ns, a);
+			total += weights[i];
+		}
+		return total;
+	}
+
+
+	/**
+	 * Draws n equally weighted particles from the given weighted particles with low-variance resampling: a single offset
+	 * u is drawn uniformly from [0, W/n), where W is the total weight, and the particle covering each point u + m W/n is selected.
+	 * @param particles the particles
+	 * @param weights the weight of each particle; null for equal weights
+	 * @param n the number of particles to draw
+	 * @return the resampled belief state
+	 */
+	protected ParticleBeliefState resample(State [] particles, double [] weights, int n){
+
+		int m = particles.length;
+		double total = 0.;
+		for(int i = 0; i < m; i++){
+			total += weights == null ? 1. : weights[i];
+		}
+
+		Random rand = RandomFactory.getMapped(0);
+		double step = total / n;
+		double u = rand.nextDouble() * step;
+		State [] resampled = new State[n];
+		int i = 0;
+		double cumulative = weights == null ? 1. : weights[0];
+		for(int k = 0; k < n; k++){
+			double target = u + k * step;
+			while(target >= cumulative && i < m-1){
+				i++;
+				cumulative += weights == null ? 1. : weights[i];
+			}
+			resampled[k] = particles[i];
+		}
+
+		return new ParticleBeliefState(resampled);
+	}
+
+}
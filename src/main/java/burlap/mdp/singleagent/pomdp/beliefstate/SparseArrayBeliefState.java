@@ -0,0 +1,150 @@
+package burlap.mdp.singleagent.pomdp.beliefstate;
+
+import burlap.behavior.singleagent.auxiliary.StateEnumerator;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.pomdp.PODomain;
+
+import java.util.Arrays;
+
+/**
+ * An {@link ArrayBeliefState} that stores only the states with non-zero belief, as a sorted array of state ids and a parallel
+ * array of beliefs. Looking up the belief of a state is a binary search. This representation is best when the belief is
+ * concentrated on a small fraction of the state space.
+ */
+public class SparseArrayBeliefState extends ArrayBeliefState {
+
+	/**
+	 * The sorted ids of the states with non-zero belief; only the first {@link #size} entries are used.
+	 */
+	protected int [] ids;
+
+	/**
+	 * The belief of each state in {@link #ids}
+	 */
+	protected double [] values;
+
+	/**
+	 * The number of stored states
+	 */
+	protected int size;
+
+
+	public SparseArrayBeliefState() {
+		this.ids = new int[4];
+		this.values = new double[4];
+	}
+
+	/**
+	 * Constructs a new {@link SparseArrayBeliefState} from a source belief state. Changes to the new state or source
+	 * state will not affect the other.
+	 * @param src the source belief state to copy.
+	 */
+	public SparseArrayBeliefState(SparseArrayBeliefState src){
+		this(src.domain, src.stateEnumerator, Arrays.copyOf(src.ids, src.size), Arrays.copyOf(src.values, src.size), src.size);
+	}
+
+	/**
+	 * Initializes with no belief mass, using the state enumerator of the domain, which it must provide.
+	 * @param domain the {@link burlap.mdp.singleagent.pomdp.PODomain} domain to which the belief state is associated.
+	 */
+	public SparseArrayBeliefState(PODomain domain){
+		super(domain);
+		this.ids = new int[4];
+		this.values = new double[4];
+	}
+
+	/**
+	 * Initializes with no belief mass.
+	 * @param domain the {@link burlap.mdp.singleagent.pomdp.PODomain} domain to which the belief state is associated.
+	 * @param stateEnumerator a {@link burlap.behavior.singleagent.auxiliary.StateEnumerator} to index the states in the belief vector.
+	 */
+	public SparseArrayBeliefState(PODomain domain, StateEnumerator stateEnumerator){
+		super(domain, stateEnumerator);
+		this.ids = new int[4];
+		this.values = new double[4];
+	}
+
+	/**
+	 * Initializes with the given entries, which are used directly rather than copied.
+	 * @param domain the {@link burlap.mdp.singleagent.pomdp.PODomain} domain to which the belief state is associated.
+	 * @param stateEnumerator a {@link burlap.behavior.singleagent.auxiliary.StateEnumerator} to index the states in the belief vector.
+	 * @param ids the state ids, sorted in increasing order, whose first size entries are used
+	 * @param values the belief of each state id, all non-zero
+	 * @param size the number of entries
+	 */
+	public SparseArrayBeliefState(PODomain domain, StateEnumerator stateEnumerator, int [] ids, double [] values, int size){
+		super(domain, stateEnumerator);
+		if(ids.length < size || values.length < size){
+			throw new RuntimeException("SparseArrayBeliefState was given fewer ids or values than its size of " + size);
+		}
+		this.ids = ids.length == 0 ? new int[4] : ids;
+		this.values = values.length == 0 ? new double[4] : values;
+		this.size = size;
+	}
+
+
+	@Override
+	public int numEntries() {
+		return this.size;
+	}
+
+	@Override
+	public int entryId(int i) {
+		return this.ids[i];
+	}
+
+	@Override
+	public double entryValue(int i) {
+		return this.values[i];
+	}
+
+	@Override
+	public double belief(int stateId) {
+		int i = Arrays.binarySearch(this.ids, 0, this.size, stateId);
+		return i >= 0 ? this.values[i] : 0.;
+	}
+
+	@Override
+	public void setBelief(int stateId, double b) {
+		if(stateId < 0 || stateId >= this.numStates()){
+			throw new RuntimeException("Error; cannot set belief value for state id " + stateId + "; belief vector is of dimension " + this.numStates());
+		}
+
+		int i = Arrays.binarySearch(this.ids, 0, this.size, stateId);
+		if(i >= 0){
+			if(b != 0.){
+				this.values[i] = b;
+			}
+			else{
+				System.arraycopy(this.ids, i+1, this.ids, i, this.size-i-1);
+				System.arraycopy(this.values, i+1, this.values, i, this.size-i-1);
+				this.size--;
+			}
+		}
+		else if(b != 0.){
+			int insert = -(i+1);
+			if(this.size == this.ids.length){
+				this.ids = Arrays.copyOf(this.ids, this.size*2);
+				this.values = Arrays.copyOf(this.values, this.size*2);
+			}
+			System.arraycopy(this.ids, insert, this.ids, insert+1, this.size-insert);
+			System.arraycopy(this.values, insert, this.values, insert+1, this.size-insert);
+			this.ids[insert] = stateId;
+			this.values[insert] = b;
+			this.size++;
+		}
+		this.invalidateCDF();
+	}
+
+	@Override
+	public void zeroOutBeliefVector() {
+		this.size = 0;
+		this.invalidateCDF();
+	}
+
+	@Override
+	public State copy() {
+		return new SparseArrayBeliefState(this);
+	}
+
+}
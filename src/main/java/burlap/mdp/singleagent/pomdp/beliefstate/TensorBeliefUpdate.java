@@ -0,0 +1,339 @@
+package burlap.mdp.singleagent.pomdp.beliefstate;
+
+import burlap.behavior.singleagent.auxiliary.StateEnumerator;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.action.ActionUtils;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.model.FullModel;
+import burlap.mdp.singleagent.model.TransitionProb;
+import burlap.mdp.singleagent.pomdp.PODomain;
+import burlap.mdp.singleagent.pomdp.observations.ObservationFunction;
+import burlap.statehashing.HashableState;
+import burlap.statehashing.HashableStateFactory;
+import burlap.statehashing.simple.SimpleHashableStateFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link BeliefUpdate} that performs the same exact Bayesian update as {@link TabularBeliefUpdate}, but from a transition tensor
+ * and observation tensor indexed by state id, so that an update is a sparse matrix-vector product followed by an elementwise
+ * multiplication with the observation likelihoods, with no calls to the model and no state hashing.
+ * <p>
+ * On construction, every state reachable from the states enumerated by the {@link StateEnumerator} is enumerated and the transition
+ * probabilities of every action are stored as one compressed sparse row matrix per action. The likelihood of an observation
+ * in every state is computed from the {@link ObservationFunction} the first time the observation is received after an action, and
+ * cached. Actions are those applicable in the first enumerated state and are assumed to be applicable in every state.
+ * <p>
+ * The updated belief is a {@link DenseArrayBeliefState} if the prior is a {@link DenseArrayBeliefState}, and a {@link SparseArrayBeliefState}
+ * otherwise. Priors may be any {@link EnumerableBeliefState} over the enumerated states, such as {@link TabularBeliefState}.
+ */
+public class TensorBeliefUpdate implements BeliefUpdate {
+
+	protected PODomain domain;
+	protected StateEnumerator stateEnumerator;
+
+	/**
+	 * The hashing factory used to index observations
+	 */
+	protected HashableStateFactory hashingFactory;
+
+	/**
+	 * The actions, indexed by action id
+	 */
+	protected List<Action> actions;
+
+	/**
+	 * The id of each action
+	 */
+	protected Map<Action, Integer> actionIds = new HashMap<Action, Integer>();
+
+	/**
+	 * The number of states covered by the tensors
+	 */
+	protected int numStates;
+
+	/**
+	 * The first transition entry of each state for each action, indexed [action][state]; entry rowStart[a][s+1] is one past the last
+	 */
+	protected int [][] rowStart;
+
+	/**
+	 * The successor state id of each transition entry, indexed [action][entry]
+	 */
+	protected int [][] nextStates;
+
+	/**
+	 * The probability of each transition entry, indexed [action][entry]
+	 */
+	protected double [][] probs;
+
+	/**
+	 * The cached likelihood of each observation in every state for each action, indexed by action id
+	 */
+	protected List<Map<HashableState, double[]>> observationLikelihoods;
+
+
+	/**
+	 * Initializes with the domain's state enumerator, which it must provide, and a {@link SimpleHashableStateFactory} to index observations.
+	 * @param domain the POMDP domain, which must have a {@link FullModel}
+	 */
+	public TensorBeliefUpdate(PODomain domain) {
+		this(domain, domain.getStateEnumerator(), new SimpleHashableStateFactory());
+	}
+
+	/**
+	 * Initializes.
+	 * @param domain the POMDP domain, which must have a {@link FullModel}
+	 * @param stateEnumerator the state enumerator that indexes hidden states
+	 * @param hashingFactory the hashing factory used to index observations
+	 */
+	public TensorBeliefUpdate(PODomain domain, StateEnumerator stateEnumerator, HashableStateFactory hashingFactory) {
+		if(stateEnumerator == null){
+			throw new RuntimeException("TensorBeliefUpdate requires a StateEnumerator.");
+		}
+		if(!(domain.getModel() instanceof FullModel)){
+			throw new RuntimeException("TensorBeliefUpdate requires a FullModel.");
+		}
+		this.domain = domain;
+		this.stateEnumerator = stateEnumerator;
+		this.hashingFactory = hashingFactory;
+		this.buildTransitionTensor();
+	}
+
+	public PODomain getDomain() {
+		return domain;
+	}
+
+	public StateEnumerator getStateEnumerator() {
+		return stateEnumerator;
+	}
+
+	/**
+	 * Returns the number of states covered by the transition tensor.
+	 * @return the number of states covered by the transition tensor.
+	 */
+	public int numStates(){
+		return this.numStates;
+	}
+
+
+	@Override
+	public BeliefState update(BeliefState belief, State observation, Action a) {
+
+		Integer ai = this.actionIds.get(a);
+		if(ai == null){
+			throw new RuntimeException("TensorBeliefUpdate does not know action " + a);
+		}
+		int [] aRowStart = this.rowStart[ai];
+		int [] aNext = this.nextStates[ai];
+		double [] aProbs = this.probs[ai];
+		double [] likelihoods = this.observationLikelihoods(ai, observation);
+
+		boolean dense = belief instanceof DenseArrayBeliefState;
+		double [] next = new double[this.numStates];
+		int [] touched = dense ? null : new int[16];
+		int numTouched = 0;
+
+		//sparse matrix-vector product over the prior's entries; zero products are skipped so that each successor is touched once
+		if(belief instanceof ArrayBeliefState){
+			ArrayBeliefState b = (ArrayBeliefState)belief;
+			int n = b.numEntries();
+			for(int i = 0; i < n; i++){
+				double v = b.entryValue(i);
+				if(v == 0.){
+					continue;
+				}
+				int s = this.checkedId(b.entryId(i));
+				for(int k = aRowStart[s]; k < aRowStart[s+1]; k++){
+					double p = v * aProbs[k];
+					if(p == 0.){
+						continue;
+					}
+					int sp = aNext[k];
+					if(!dense && next[sp] == 0.){
+						if(numTouched == touched.length){
+							touched = Arrays.copyOf(touched, numTouched*2);
+						}
+						touched[numTouched++] = sp;
+					}
+					next[sp] += p;
+				}
+			}
+		}
+		else if(belief instanceof EnumerableBeliefState){
+			for(EnumerableBeliefState.StateBelief sb : ((EnumerableBeliefState)belief).nonZeroBeliefs()){
+				int s = this.checkedId(this.stateEnumerator.getEnumeratedID(sb.s));
+				for(int k = aRowStart[s]; k < aRowStart[s+1]; k++){
+					double p = sb.belief * aProbs[k];
+					if(p == 0.){
+						continue;
+					}
+					int sp = aNext[k];
+					if(next[sp] == 0.){
+						if(numTouched == touched.length){
+							touched = Arrays.copyOf(touched, numTouched*2);
+						}
+						touched[numTouched++] = sp;
+					}
+					next[sp] += p;
+				}
+			}
+		}
+		else{
+			throw new RuntimeException("TensorBeliefUpdate requires an EnumerableBeliefState, but got " + belief.getClass().getName());
+		}
+
+		//elementwise observation likelihood and normalization
+		double norm = 0.;
+		if(dense){
+			for(int s = 0; s < this.numStates; s++){
+				next[s] *= likelihoods[s];
+				norm += next[s];
+			}
+		}
+		else{
+			for(int i = 0; i < numTouched; i++){
+				int s = touched[i];
+				next[s] *= likelihoods[s];
+				norm += next[s];
+			}
+		}
+
+		if(norm == 0){
+			throw new RuntimeException("Cannot get updated belief state, because probabilities summed to 0");
+		}
+
+		if(dense){
+			for(int s = 0; s < this.numStates; s++){
+				next[s] /= norm;
+			}
+			return new DenseArrayBeliefState(this.domain, this.stateEnumerator, next);
+		}
+
+		Arrays.sort(touched, 0, numTouched);
+		int [] ids = new int[numTouched];
+		double [] values = new double[numTouched];
+		int size = 0;
+		for(int i = 0; i < numTouched; i++){
+			int s = touched[i];
+			if(next[s] > 0.){
+				ids[size] = s;
+				values[size] = next[s] / norm;
+				size++;
+			}
+		}
+		return new SparseArrayBeliefState(this.domain, this.stateEnumerator, ids, values, size);
+	}
+
+
+	/**
+	 * Returns the likelihood of the given observation in every state after taking the given action, computing and caching it
+	 * if the observation has not been received after the action before.
+	 * @param ai the action id
+	 * @param observation the observation
+	 * @return the likelihood of the observation in each state, indexed by state id
+	 */
+	protected double [] observationLikelihoods(int ai, State observation){
+		Map<HashableState, double[]> cache = this.observationLikelihoods.get(ai);
+		HashableState ho = this.hashingFactory.hashState(observation);
+		double [] likelihoods = cache.get(ho);
+		if(likelihoods == null){
+			ObservationFunction of = this.domain.getObservationFunction();
+			Action a = this.actions.get(ai);
+			likelihoods = new double[this.numStates];
+			for(int s = 0; s < this.numStates; s++){
+				likelihoods[s] = of.probability(observation, this.stateEnumerator.getStateForEnumerationId(s), a);
+			}
+			cache.put(ho, likelihoods);
+		}
+		return likelihoods;
+	}
+
+
+	/**
+	 * Enumerates every state reachable from the enumerated states and stores the transition probabilities of every action
+	 * as compressed sparse row matrices.
+	 */
+	protected void buildTransitionTensor(){
+
+		if(this.stateEnumerator.numStatesEnumerated() == 0){
+			throw new RuntimeException("TensorBeliefUpdate requires the StateEnumerator to have enumerated at least one state.");
+		}
+
+		FullModel model = (FullModel)this.domain.getModel();
+		this.actions = ActionUtils.allApplicableActionsForTypes(this.domain.getActionTypes(), this.stateEnumerator.getStateForEnumerationId(0));
+		int nA = this.actions.size();
+		for(int a = 0; a < nA; a++){
+			this.actionIds.put(this.actions.get(a), a);
+		}
+
+		//the enumerator grows as successors are enumerated, so this finds the closure of the enumerated states
+		List<int[][]> allSuccessorIds = new ArrayList<int[][]>();
+		List<double[][]> allSuccessorProbs = new ArrayList<double[][]>();
+		for(int s = 0; s < this.stateEnumerator.numStatesEnumerated(); s++){
+			State hs = this.stateEnumerator.getStateForEnumerationId(s);
+			int [][] successorIds = new int[nA][];
+			double [][] successorProbs = new double[nA][];
+			for(int a = 0; a < nA; a++){
+				List<TransitionProb> tps = model.transitions(hs, this.actions.get(a));
+				successorIds[a] = new int[tps.size()];
+				successorProbs[a] = new double[tps.size()];
+				for(int k = 0; k < tps.size(); k++){
+					successorIds[a][k] = this.stateEnumerator.getEnumeratedID(tps.get(k).eo.op);
+					successorProbs[a][k] = tps.get(k).p;
+				}
+			}
+			allSuccessorIds.add(successorIds);
+			allSuccessorProbs.add(successorProbs);
+		}
+
+		int n = allSuccessorIds.size();
+		this.numStates = n;
+		this.rowStart = new int[nA][n+1];
+		this.nextStates = new int[nA][];
+		this.probs = new double[nA][];
+		this.observationLikelihoods = new ArrayList<Map<HashableState, double[]>>(nA);
+		for(int a = 0; a < nA; a++){
+			int nnz = 0;
+			for(int s = 0; s < n; s++){
+				nnz += allSuccessorIds.get(s)[a].length;
+			}
+			this.nextStates[a] = new int[nnz];
+			this.probs[a] = new double[nnz];
+			int k = 0;
+			for(int s = 0; s < n; s++){
+				this.rowStart[a][s] = k;
+				int [] ids = allSuccessorIds.get(s)[a];
+				double [] sProbs = allSuccessorProbs.get(s)[a];
+				for(int j = 0; j < ids.length; j++){
+					this.nextStates[a][k] = ids[j];
+					this.probs[a][k] = sProbs[j];
+					k++;
+				}
+			}
+			this.rowStart[a][n] = k;
+			this.observationLikelihoods.add(new ConcurrentHashMap<HashableState, double[]>());
+		}
+
+	}
+
+
+	/**
+	 * Returns the given state id, throwing an exception if it is not covered by the transition tensor.
+	 * @param id the state id
+	 * @return the state id
+	 */
+	protected int checkedId(int id){
+		if(id >= this.numStates){
+			throw new RuntimeException("TensorBeliefUpdate was given a belief over state id " + id
+					+ ", which was not reachable when its transition tensor was built.");
+		}
+		return id;
+	}
+
+}
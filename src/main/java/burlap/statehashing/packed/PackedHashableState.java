@@ -0,0 +1,91 @@
+package burlap.statehashing.packed;
+
+import burlap.mdp.core.state.State;
+import burlap.statehashing.HashableState;
+
+import java.util.Arrays;
+
+/**
+ * A {@link HashableState} produced by a {@link PackedHashableStateFactory} whose identity is a packed bit encoding of the
+ * hashing-relevant variables of a state. Hashing and equality are performed on the primitive key alone, and unless the factory
+ * is set to retain source states, the source {@link State} is not referenced: {@link #s()} decodes a new {@link State} from the key
+ * on each call.
+ */
+public class PackedHashableState implements HashableState {
+
+	/**
+	 * The packed key
+	 */
+	protected final long [] key;
+
+	/**
+	 * The hash code of the packed key
+	 */
+	protected final int hashCode;
+
+	/**
+	 * The factory that produced the key and that is used to decode it
+	 */
+	protected final PackedHashableStateFactory factory;
+
+	/**
+	 * The source state; null if the factory does not retain source states.
+	 */
+	protected final State source;
+
+
+	/**
+	 * Initializes.
+	 * @param key the packed key
+	 * @param factory the factory that produced the key
+	 * @param source the source state, or null if it is not retained
+	 */
+	public PackedHashableState(long [] key, PackedHashableStateFactory factory, State source) {
+		this.key = key;
+		this.hashCode = Arrays.hashCode(key);
+		this.factory = factory;
+		this.source = source;
+	}
+
+	/**
+	 * Returns the source state if it was retained; otherwise decodes a new state from the packed key.
+	 * @return the {@link State} this object represents
+	 */
+	@Override
+	public State s() {
+		if(this.source != null){
+			return this.source;
+		}
+		return this.factory.decode(this.key);
+	}
+
+	/**
+	 * Returns the packed key. The returned array must not be modified.
+	 * @return the packed key
+	 */
+	public long [] key() {
+		return this.key;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(obj == this){
+			return true;
+		}
+		if(!(obj instanceof PackedHashableState)){
+			return false;
+		}
+		PackedHashableState o = (PackedHashableState)obj;
+		return this.hashCode == o.hashCode && this.factory == o.factory && Arrays.equals(this.key, o.key);
+	}
+
+	@Override
+	public String toString() {
+		return this.s().toString();
+	}
+}
@@ -0,0 +1,758 @@
+package burlap.statehashing.packed;
+
+import burlap.mdp.core.oo.state.OOState;
+import burlap.mdp.core.oo.state.OOVariableKey;
+import burlap.mdp.core.oo.state.ObjectInstance;
+import burlap.mdp.core.state.MutableState;
+import burlap.mdp.core.state.State;
+import burlap.mdp.core.state.vardomain.StateDomain;
+import burlap.mdp.core.state.vardomain.VariableDomain;
+import burlap.statehashing.HashableState;
+import burlap.statehashing.HashableStateFactory;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link HashableStateFactory} that packs the variables of a state into a compact long[] bit key, producing
+ * {@link PackedHashableState}s whose hash codes and equality checks are plain primitive array operations. Unless source states are retained
+ * (see {@link #PackedHashableStateFactory(boolean, boolean)}), a {@link PackedHashableState} holds only its key and decodes a new
+ * {@link State} on demand, which makes it well suited as the key of very large tabular value functions and Q-tables.
+ * <p>
+ * The layout of the key is determined from the first state hashed, so this factory requires every hashed state to have the
+ * same structure: the same variable keys for flat states, or, for {@link OOState}s, the same number of objects of each class with the same
+ * variable keys. Variables are packed according to the type of their value:
+ * <ul>
+ *     <li>Integer, Long, Short, Byte and Character values use as many bits as their type, or only as many bits as necessary if a
+ *     {@link VariableDomain} is known for the variable, either because it was set with {@link #setVariableDomain(Object, VariableDomain)} or because the
+ *     state (or object) implements {@link StateDomain}.</li>
+ *     <li>Boolean values use 1 bit.</li>
+ *     <li>Double and Float values use 64 and 32 bits, respectively.</li>
+ *     <li>All other values, including Strings and arrays, are interned by this factory and use 32 bits for their intern code.</li>
+ * </ul>
+ * Decoding a state requires the states to implement {@link MutableState}: a copy of the first hashed state is made and each
+ * variable is set to its decoded value. If states are not mutable, source states must be retained.
+ * <p>
+ * Like {@link burlap.statehashing.simple.SimpleHashableStateFactory}, this factory is object identifier independent for {@link OOState}s
+ * by default, which is achieved by sorting the packed values of objects of the same class. Identifier dependence may be set with the
+ * constructor {@link #PackedHashableStateFactory(boolean)}.
+ */
+public class PackedHashableStateFactory implements HashableStateFactory {
+
+	/**
+	 * Whether state evaluations of OO-MDPs are object identifier independent (the names of objects don't matter). By
+	 * default it is independent.
+	 */
+	protected boolean identifierIndependent = true;
+
+	/**
+	 * Whether produced {@link PackedHashableState}s keep a reference to their source state. By default they do not.
+	 */
+	protected boolean retainSourceStates = false;
+
+	/**
+	 * User specified numeric domains of variables, keyed by the variable key (for {@link OOState}s, the object variable key).
+	 */
+	protected Map<Object, VariableDomain> variableDomains = new HashMap<Object, VariableDomain>();
+
+	/**
+	 * The key layout; null until the first state is hashed.
+	 */
+	protected volatile Layout layout;
+
+	/**
+	 * The intern codes of values that are not packed directly
+	 */
+	protected final Map<Object, Integer> internCodes = new HashMap<Object, Integer>();
+
+	/**
+	 * The interned values, indexed by their intern code
+	 */
+	protected final List<Object> internedValues = new ArrayList<Object>();
+
+
+	/**
+	 * Default constructor: object identifier independent and source states are not retained.
+	 */
+	public PackedHashableStateFactory() {
+	}
+
+	/**
+	 * Initializes without retaining source states.
+	 * @param identifierIndependent if true then state evaluations for {@link OOState}s are object identifier independent; if false then dependent.
+	 */
+	public PackedHashableStateFactory(boolean identifierIndependent) {
+		this.identifierIndependent = identifierIndependent;
+	}
+
+	/**
+	 * Initializes.
+	 * @param identifierIndependent if true then state evaluations for {@link OOState}s are object identifier independent; if false then dependent.
+	 * @param retainSourceStates if true then produced {@link PackedHashableState}s keep a reference to their source state rather than decoding it on demand.
+	 */
+	public PackedHashableStateFactory(boolean identifierIndependent, boolean retainSourceStates) {
+		this.identifierIndependent = identifierIndependent;
+		this.retainSourceStates = retainSourceStates;
+	}
+
+
+	/**
+	 * Sets the numeric domain of an integer valued variable so that it is packed using only as many bits as its domain requires.
+	 * Values outside of the domain cannot be hashed. Must be called before the first state is hashed.
+	 * @param key the variable key; for {@link OOState}s, the object variable key (e.g., "x").
+	 * @param domain the domain of the variable
+	 */
+	public void setVariableDomain(Object key, VariableDomain domain){
+		if(this.layout != null){
+			throw new RuntimeException("Variable domains must be set before the first state is hashed.");
+		}
+		this.variableDomains.put(key, domain);
+	}
+
+
+	public boolean objectIdentifierIndependent() {
+		return this.identifierIndependent;
+	}
+
+	/**
+	 * Returns whether produced {@link PackedHashableState}s keep a reference to their source state.
+	 * @return true if source states are retained; false if they are decoded on demand.
+	 */
+	public boolean retainingSourceStates() {
+		return this.retainSourceStates;
+	}
+
+	/**
+	 * Returns the number of bits used by the key of each state, or -1 if no state has been hashed yet.
+	 * @return the number of bits used by the key of each state.
+	 */
+	public int keyBits(){
+		Layout l = this.layout;
+		return l == null ? -1 : l.totalBits;
+	}
+
+
+	@Override
+	public HashableState hashState(State s) {
+		if(s instanceof PackedHashableState && ((PackedHashableState)s).factory == this){
+			return (HashableState)s;
+		}
+		Layout l = this.layoutFor(s);
+		long [] key = this.encode(l, s);
+		return new PackedHashableState(key, this, this.retainSourceStates ? s : null);
+	}
+
+
+	/**
+	 * Decodes a new {@link State} from a key produced by this factory.
+	 * @param key the packed key
+	 * @return the decoded {@link State}
+	 */
+	public State decode(long [] key){
+
+		Layout l = this.layout;
+		if(!(l.prototype instanceof MutableState)){
+			throw new RuntimeException("Cannot decode packed states because " + l.prototype.getClass().getName() + " does not implement MutableState; " +
+					"use a PackedHashableStateFactory that retains source states instead.");
+		}
+
+		MutableState s = (MutableState)l.prototype.copy();
+		int pos = 0;
+		for(ClassLayout cl : l.classes){
+			for(String obName : cl.objectNames){
+				for(int j = 0; j < cl.keys.size(); j++){
+					VariableCodec codec = cl.codecs[j];
+					long code = readBits(key, pos, codec.bits);
+					pos += codec.bits;
+					Object varKey = cl.keys.get(j);
+					s.set(obName != null ? new OOVariableKey(obName, varKey) : varKey, this.decodeValue(codec, code));
+				}
+			}
+		}
+
+		return s;
+	}
+
+
+	/**
+	 * Returns the layout of this factory, building it from the given state if this is the first state hashed.
+	 * @param s the state being hashed
+	 * @return the layout
+	 */
+	protected Layout layoutFor(State s){
+		Layout l = this.layout;
+		if(l == null){
+			synchronized(this){
+				l = this.layout;
+				if(l == null){
+					l = this.buildLayout(s);
+					this.layout = l;
+				}
+			}
+		}
+		return l;
+	}
+
+
+	/**
+	 * Builds the key layout from a prototype state.
+	 * @param s the prototype state
+	 * @return the layout
+	 */
+	protected Layout buildLayout(State s){
+
+		if(!this.retainSourceStates && !(s instanceof MutableState)){
+			throw new RuntimeException("PackedHashableStateFactory can only decode states that implement MutableState; " +
+					s.getClass().getName() + " does not, so source states must be retained.");
+		}
+
+		Layout l = new Layout();
+		l.prototype = s.copy();
+
+		List<ClassLayout> classes = new ArrayList<ClassLayout>();
+		if(s instanceof OOState){
+			Map<String, List<ObjectInstance>> byClass = new LinkedHashMap<String, List<ObjectInstance>>();
+			for(ObjectInstance o : ((OOState)s).objects()){
+				List<ObjectInstance> obs = byClass.get(o.className());
+				if(obs == null){
+					obs = new ArrayList<ObjectInstance>();
+					byClass.put(o.className(), obs);
+				}
+				obs.add(o);
+			}
+			for(Map.Entry<String, List<ObjectInstance>> e : byClass.entrySet()){
+				ObjectInstance first = e.getValue().get(0);
+				String [] names = new String[e.getValue().size()];
+				for(int i = 0; i < names.length; i++){
+					names[i] = e.getValue().get(i).name();
+				}
+				classes.add(this.buildClassLayout(e.getKey(), names, first));
+			}
+			l.numObjects = ((OOState)s).numObjects();
+		}
+		else{
+			classes.add(this.buildClassLayout(null, new String[]{null}, s));
+		}
+
+		l.classes = classes.toArray(new ClassLayout[classes.size()]);
+		for(ClassLayout cl : l.classes){
+			l.totalBits += cl.objectBits * cl.objectNames.length;
+		}
+		l.words = Math.max(1, (l.totalBits + 63) / 64);
+
+		return l;
+	}
+
+	/**
+	 * Builds the layout of the objects of one class (or a flat state) from a prototype object.
+	 * @param className the object class name, or null for flat states
+	 * @param objectNames the names of the prototype objects of the class
+	 * @param prototype the prototype object or flat state
+	 * @return the class layout
+	 */
+	protected ClassLayout buildClassLayout(String className, String [] objectNames, State prototype){
+		ClassLayout cl = new ClassLayout();
+		cl.className = className;
+		cl.objectNames = objectNames;
+		cl.keys = new ArrayList<Object>(prototype.variableKeys());
+		cl.codecs = new VariableCodec[cl.keys.size()];
+		for(int j = 0; j < cl.codecs.length; j++){
+			Object key = cl.keys.get(j);
+			VariableDomain domain = this.variableDomains.get(key);
+			if(domain == null && prototype instanceof StateDomain){
+				domain = ((StateDomain)prototype).domain(key);
+			}
+			cl.codecs[j] = VariableCodec.forValue(prototype.get(key), domain);
+			cl.objectBits += cl.codecs[j].bits;
+		}
+		return cl;
+	}
+
+
+	/**
+	 * Encodes a state into a packed key.
+	 * @param l the layout
+	 * @param s the state to encode
+	 * @return the packed key
+	 */
+	protected long [] encode(Layout l, State s){
+
+		long [] key = new long[l.words];
+		int pos = 0;
+
+		if(l.classes[0].className == null){
+			this.encodeObject(l.classes[0], s, key, pos);
+			return key;
+		}
+
+		if(!(s instanceof OOState) || ((OOState)s).numObjects() != l.numObjects){
+			throw new RuntimeException("State does not match the structure of the first state hashed by this PackedHashableStateFactory.");
+		}
+		OOState os = (OOState)s;
+
+		for(ClassLayout cl : l.classes){
+			int n = cl.objectNames.length;
+			if(!this.identifierIndependent){
+				for(String name : cl.objectNames){
+					ObjectInstance o = os.object(name);
+					if(o == null){
+						throw new RuntimeException("State does not have object " + name + " of the first state hashed by this PackedHashableStateFactory.");
+					}
+					pos = this.encodeObject(cl, o, key, pos);
+				}
+				continue;
+			}
+
+			List<ObjectInstance> obs = os.objectsOfClass(cl.className);
+			if(obs.size() != n){
+				throw new RuntimeException("State does not have the same number of " + cl.className + " objects as the first state hashed by this PackedHashableStateFactory.");
+			}
+			if(n == 1){
+				pos = this.encodeObject(cl, obs.get(0), key, pos);
+				continue;
+			}
+
+			//sort the codes of objects of the same class for invariance to their names
+			long [][] codes = new long[n][cl.codecs.length];
+			for(int i = 0; i < n; i++){
+				this.objectCodes(cl, obs.get(i), codes[i]);
+			}
+			Arrays.sort(codes, CODE_ORDER);
+			for(long [] oc : codes){
+				for(int j = 0; j < oc.length; j++){
+					writeBits(key, pos, cl.codecs[j].bits, oc[j]);
+					pos += cl.codecs[j].bits;
+				}
+			}
+		}
+
+		return key;
+	}
+
+	/**
+	 * Writes the codes of the variables of an object (or flat state) into the key.
+	 * @param cl the class layout
+	 * @param o the object or flat state
+	 * @param key the key being written
+	 * @param pos the bit position at which to start writing
+	 * @return the bit position after the object's codes
+	 */
+	protected int encodeObject(ClassLayout cl, State o, long [] key, int pos){
+		List<Object> keys = o.variableKeys();
+		if(keys.size() != cl.codecs.length){
+			throw new RuntimeException("State does not have the same variables as the first state hashed by this PackedHashableStateFactory.");
+		}
+		for(int j = 0; j < cl.codecs.length; j++){
+			VariableCodec codec = cl.codecs[j];
+			writeBits(key, pos, codec.bits, this.encodeValue(codec, o.get(cl.keys.get(j))));
+			pos += codec.bits;
+		}
+		return pos;
+	}
+
+	/**
+	 * Computes the codes of the variables of an object.
+	 * @param cl the class layout
+	 * @param o the object
+	 * @param codes the array into which the codes are written
+	 */
+	protected void objectCodes(ClassLayout cl, State o, long [] codes){
+		if(o.variableKeys().size() != cl.codecs.length){
+			throw new RuntimeException("State does not have the same variables as the first state hashed by this PackedHashableStateFactory.");
+		}
+		for(int j = 0; j < cl.codecs.length; j++){
+			codes[j] = this.encodeValue(cl.codecs[j], o.get(cl.keys.get(j)));
+		}
+	}
+
+
+	/**
+	 * Encodes a variable value into its code.
+	 * @param codec the codec of the variable
+	 * @param v the value
+	 * @return the code of the value
+	 */
+	protected long encodeValue(VariableCodec codec, Object v){
+		if(codec.kind == Kind.INTERNED){
+			return this.internCode(v);
+		}
+		return codec.encode(v);
+	}
+
+	/**
+	 * Decodes a variable value from its code.
+	 * @param codec the codec of the variable
+	 * @param code the code of the value
+	 * @return the decoded value
+	 */
+	protected Object decodeValue(VariableCodec codec, long code){
+		if(codec.kind == Kind.INTERNED){
+			Object v;
+			synchronized(this.internCodes){
+				v = this.internedValues.get((int)code);
+			}
+			if(v instanceof ArrayKey){
+				return copyArray(((ArrayKey)v).array);
+			}
+			return v;
+		}
+		return codec.decode(code);
+	}
+
+	/**
+	 * Returns the intern code of a value, interning it if it has not been seen before. Arrays are interned by their contents.
+	 * @param v the value
+	 * @return the intern code of the value
+	 */
+	protected int internCode(Object v){
+		Object k = v != null && v.getClass().isArray() ? new ArrayKey(v) : v;
+		synchronized(this.internCodes){
+			Integer code = this.internCodes.get(k);
+			if(code == null){
+				if(k instanceof ArrayKey){
+					//snapshot arrays so that later modification of the source does not change the interned value
+					k = new ArrayKey(copyArray(v));
+				}
+				code = this.internedValues.size();
+				this.internedValues.add(k);
+				this.internCodes.put(k, code);
+			}
+			return code;
+		}
+	}
+
+
+	/**
+	 * Writes the low nbits of a value into a bit key at the given bit position.
+	 * @param words the key
+	 * @param pos the bit position
+	 * @param nbits the number of bits to write
+	 * @param value the value
+	 */
+	protected static void writeBits(long [] words, int pos, int nbits, long value){
+		if(nbits < 64){
+			value &= (1L << nbits) - 1;
+		}
+		int w = pos >>> 6;
+		int off = pos & 63;
+		words[w] |= value << off;
+		if(off + nbits > 64){
+			words[w+1] |= value >>> (64 - off);
+		}
+	}
+
+	/**
+	 * Reads nbits from a bit key at the given bit position.
+	 * @param words the key
+	 * @param pos the bit position
+	 * @param nbits the number of bits to read
+	 * @return the read value
+	 */
+	protected static long readBits(long [] words, int pos, int nbits){
+		int w = pos >>> 6;
+		int off = pos & 63;
+		long v = words[w] >>> off;
+		if(off + nbits > 64){
+			v |= words[w+1] << (64 - off);
+		}
+		if(nbits < 64){
+			v &= (1L << nbits) - 1;
+		}
+		return v;
+	}
+
+	/**
+	 * Returns a deep copy of an array.
+	 * @param a the array
+	 * @return the copy
+	 */
+	protected static Object copyArray(Object a){
+		int n = Array.getLength(a);
+		Object c = Array.newInstance(a.getClass().getComponentType(), n);
+		if(!(a instanceof Object[])){
+			System.arraycopy(a, 0, c, 0, n);
+			return c;
+		}
+		Object [] src = (Object[])a;
+		Object [] dst = (Object[])c;
+		for(int i = 0; i < n; i++){
+			Object e = src[i];
+			dst[i] = e != null && e.getClass().isArray() ? copyArray(e) : e;
+		}
+		return c;
+	}
+
+
+	/**
+	 * Lexicographic order over object codes.
+	 */
+	protected static final Comparator<long[]> CODE_ORDER = new Comparator<long[]>() {
+		@Override
+		public int compare(long[] o1, long[] o2) {
+			for(int i = 0; i < o1.length; i++){
+				int c = Long.compare(o1[i], o2[i]);
+				if(c != 0){
+					return c;
+				}
+			}
+			return 0;
+		}
+	};
+
+
+	/**
+	 * The layout of a packed key.
+	 */
+	protected static class Layout{
+
+		/**
+		 * A copy of the first hashed state, from which decoded states are copied
+		 */
+		public State prototype;
+
+		/**
+		 * The class layouts in key order; a single layout with a null class name for flat states
+		 */
+		public ClassLayout [] classes;
+
+		/**
+		 * The number of objects of {@link OOState}s
+		 */
+		public int numObjects;
+
+		/**
+		 * The total number of bits of a key
+		 */
+		public int totalBits;
+
+		/**
+		 * The number of long words of a key
+		 */
+		public int words;
+	}
+
+
+	/**
+	 * The layout of the objects of one class, or of a flat state.
+	 */
+	protected static class ClassLayout{
+
+		/**
+		 * The object class name; null for flat states
+		 */
+		public String className;
+
+		/**
+		 * The names of the prototype objects, in key order; a single null name for flat states
+		 */
+		public String [] objectNames;
+
+		/**
+		 * The variable keys of the objects
+		 */
+		public List<Object> keys;
+
+		/**
+		 * The codec of each variable
+		 */
+		public VariableCodec [] codecs;
+
+		/**
+		 * The number of bits used by each object
+		 */
+		public int objectBits;
+	}
+
+
+	/**
+	 * The kinds of packed values
+	 */
+	protected enum Kind{
+		INTEGER, LONG, SHORT, BYTE, CHARACTER, BOOLEAN, DOUBLE, FLOAT, INTERNED
+	}
+
+
+	/**
+	 * Specifies how a variable value is converted to and from its code.
+	 */
+	protected static class VariableCodec{
+
+		/**
+		 * The kind of value
+		 */
+		public Kind kind;
+
+		/**
+		 * The number of bits of the code
+		 */
+		public int bits;
+
+		/**
+		 * Whether the code is an offset from the lower bound of a known domain
+		 */
+		public boolean bounded;
+
+		/**
+		 * The lower bound of the domain of a bounded value
+		 */
+		public long offset;
+
+
+		/**
+		 * Creates the codec for a prototype value.
+		 * @param v the prototype value
+		 * @param domain the domain of the variable, or null if unknown
+		 * @return the codec
+		 */
+		public static VariableCodec forValue(Object v, VariableDomain domain){
+			VariableCodec c = new VariableCodec();
+			if(v instanceof Integer){
+				c.kind = Kind.INTEGER;
+				c.bits = 32;
+			}
+			else if(v instanceof Long){
+				c.kind = Kind.LONG;
+				c.bits = 64;
+			}
+			else if(v instanceof Short){
+				c.kind = Kind.SHORT;
+				c.bits = 16;
+			}
+			else if(v instanceof Byte){
+				c.kind = Kind.BYTE;
+				c.bits = 8;
+			}
+			else if(v instanceof Character){
+				c.kind = Kind.CHARACTER;
+				c.bits = 16;
+			}
+			else if(v instanceof Boolean){
+				c.kind = Kind.BOOLEAN;
+				c.bits = 1;
+			}
+			else if(v instanceof Double){
+				c.kind = Kind.DOUBLE;
+				c.bits = 64;
+			}
+			else if(v instanceof Float){
+				c.kind = Kind.FLOAT;
+				c.bits = 32;
+			}
+			else{
+				c.kind = Kind.INTERNED;
+				c.bits = 32;
+			}
+
+			if(domain != null && c.kind.ordinal() <= Kind.CHARACTER.ordinal()){
+				c.bounded = true;
+				c.offset = (long)Math.floor(domain.lower);
+				long span = (long)Math.ceil(domain.upper) - c.offset;
+				c.bits = Math.max(1, 64 - Long.numberOfLeadingZeros(span));
+			}
+
+			return c;
+		}
+
+		/**
+		 * Encodes a value that is not interned.
+		 * @param v the value
+		 * @return the code
+		 */
+		public long encode(Object v){
+			switch(this.kind){
+				case BOOLEAN:
+					return (Boolean)v ? 1L : 0L;
+				case DOUBLE:
+					return Double.doubleToLongBits((Double)v);
+				case FLOAT:
+					return Float.floatToIntBits((Float)v);
+				case CHARACTER:
+					return this.encodeIntegral((Character)v);
+				default:
+					return this.encodeIntegral(((Number)v).longValue());
+			}
+		}
+
+		/**
+		 * Encodes an integral value, checking that it lies in the domain if it is bounded.
+		 * @param v the value
+		 * @return the code
+		 */
+		protected long encodeIntegral(long v){
+			if(!this.bounded){
+				return v;
+			}
+			long code = v - this.offset;
+			if(code < 0 || (this.bits < 64 && code >= (1L << this.bits))){
+				throw new RuntimeException("Value " + v + " lies outside of the variable domain used by PackedHashableStateFactory.");
+			}
+			return code;
+		}
+
+		/**
+		 * Decodes a value that is not interned.
+		 * @param code the code
+		 * @return the value
+		 */
+		public Object decode(long code){
+			switch(this.kind){
+				case BOOLEAN:
+					return code == 1L;
+				case DOUBLE:
+					return Double.longBitsToDouble(code);
+				case FLOAT:
+					return Float.intBitsToFloat((int)code);
+				default:
+					break;
+			}
+			long v = this.bounded ? code + this.offset : code;
+			switch(this.kind){
+				case INTEGER:
+					return (int)v;
+				case LONG:
+					return v;
+				case SHORT:
+					return (short)v;
+				case BYTE:
+					return (byte)v;
+				default:
+					return (char)v;
+			}
+		}
+	}
+
+
+	/**
+	 * Wraps an array so that it is hashed and compared by its contents.
+	 */
+	protected static class ArrayKey{
+
+		public final Object array;
+		protected final int hashCode;
+
+		public ArrayKey(Object array) {
+			this.array = array;
+			this.hashCode = Arrays.deepHashCode(new Object[]{array});
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof ArrayKey)){
+				return false;
+			}
+			return Arrays.deepEquals(new Object[]{this.array}, new Object[]{((ArrayKey)obj).array});
+		}
+	}
+
+}
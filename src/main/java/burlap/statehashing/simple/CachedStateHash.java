@@ -0,0 +1,67 @@
+package burlap.statehashing.simple;
+
+import burlap.mdp.core.oo.state.OOState;
+import burlap.mdp.core.state.State;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * The memoized hash code and variable keys of a wrapped state, shared by {@link IISimpleCachedHashableState} and
+ * {@link IDSimpleCachedHashableState}. The hash code is computed with the wrapper's hashing function the first time it is requested,
+ * and the variable keys of a state that is not an {@link OOState} are fetched the first time they are requested. Both are
+ * recomputed after {@link #clear()}, which the wrappers call when their state is replaced.
+ */
+public final class CachedStateHash {
+
+	/**
+	 * The memoized hash code; valid only when {@link #hashComputed} is true.
+	 */
+	private int hashCode;
+
+	/**
+	 * Whether {@link #hashCode} has been computed
+	 */
+	private boolean hashComputed;
+
+	/**
+	 * The memoized variable keys; null until they are needed
+	 */
+	private List<Object> keys;
+
+
+	/**
+	 * Returns the memoized hash code of a state, computing it with the given function if it has not been computed.
+	 * @param s the wrapped state
+	 * @param hashFunction the function that computes the hash code of the state
+	 * @return the hash code of the state
+	 */
+	public int hashCode(State s, ToIntFunction<State> hashFunction) {
+		if(!this.hashComputed){
+			this.hashCode = hashFunction.applyAsInt(s);
+			this.hashComputed = true;
+		}
+		return this.hashCode;
+	}
+
+	/**
+	 * Returns the memoized variable keys of a state, fetching them if they have not been fetched.
+	 * @param s the wrapped state
+	 * @return the variable keys of the state
+	 */
+	public List<Object> keys(State s) {
+		if(this.keys == null){
+			this.keys = s.variableKeys();
+		}
+		return this.keys;
+	}
+
+	/**
+	 * Forgets the memoized hash code and variable keys.
+	 */
+	public void clear() {
+		this.hashComputed = false;
+		this.keys = null;
+	}
+
+}
@@ -0,0 +1,57 @@
+package burlap.statehashing.simple;
+
+import burlap.mdp.core.oo.state.OOState;
+import burlap.mdp.core.state.State;
+
+/**
+ * An {@link IDSimpleHashableState} that computes its hash code once and memoizes it. Equality checks against
+ * other {@link IDSimpleCachedHashableState} instances first compare the memoized hash codes so that most unequal states are
+ * rejected without inspecting their variables. For states that are not {@link OOState}s, the variable keys are also fetched once, so
+ * equality checks between two cached wrappers do not request the key lists again.
+ * <p>
+ * Because the hash code is memoized, the wrapped {@link State} must not be modified after it is wrapped. States produced by
+ * {@link burlap.mdp.singleagent.model.SampleModel}s are copies of their source state and are safe to wrap; if a state may be modified
+ * later, wrap a copy of it instead.
+ */
+public class IDSimpleCachedHashableState extends IDSimpleHashableState {
+
+	/**
+	 * The memoized hash code and variable keys of the wrapped state
+	 */
+	protected CachedStateHash cache = new CachedStateHash();
+
+	public IDSimpleCachedHashableState() {
+	}
+
+	public IDSimpleCachedHashableState(State s) {
+		super(s);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.cache.hashCode(this.s, this::computeHashCode);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(obj == this){
+			return true;
+		}
+		if(obj != null && obj.getClass() == this.getClass()){
+			IDSimpleCachedHashableState that = (IDSimpleCachedHashableState)obj;
+			if(that.hashCode() != this.hashCode()){
+				return false;
+			}
+			if(!(this.s instanceof OOState) && !(that.s instanceof OOState)){
+				return this.s == that.s || flatStatesEqual(this.s, this.cache.keys(this.s), that.s, that.cache.keys(that.s));
+			}
+		}
+		return super.equals(obj);
+	}
+
+	@Override
+	public void setS(State s) {
+		super.setS(s);
+		this.cache.clear();
+	}
+}
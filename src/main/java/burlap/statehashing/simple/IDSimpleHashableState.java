@@ -122,8 +122,12 @@ public class IDSimpleHashableState extends WrappedHashableState {
 		}
 
 		List<ObjectInstance> theseObjects = s1.objects();
-		for(ObjectInstance ob : theseObjects){
-			ObjectInstance oByName = s2.object(ob.name());
+		List<ObjectInstance> thoseObjects = s2.objects();
+		for(int i = 0; i < theseObjects.size(); i++){
+			ObjectInstance ob = theseObjects.get(i);
+			//objects are commonly listed in the same order, which avoids a lookup by name
+			ObjectInstance candidate = thoseObjects.get(i);
+			ObjectInstance oByName = candidate.name().equals(ob.name()) ? candidate : s2.object(ob.name());
 			if(oByName == null){
 				return false;
 			}
@@ -141,14 +145,27 @@ public class IDSimpleHashableState extends WrappedHashableState {
 			return true;
 		}
 
-		List<Object> keys1 = s1.variableKeys();
-		List<Object> keys2 = s2.variableKeys();
+		return flatStatesEqual(s1, s1.variableKeys(), s2, s2.variableKeys());
 
-		if(keys1.size() != keys2.size()){
+	}
+
+	/**
+	 * Returns true if two flat states, whose variable keys are given, have equal values for every variable. States of the same
+	 * class commonly share one key list, in which case the lists are not compared; the keys are walked by index, so no iterator is created.
+	 * @param s1 a {@link State}
+	 * @param keys1 the variable keys of s1
+	 * @param s2 another {@link State} with which to compare
+	 * @param keys2 the variable keys of s2
+	 * @return true if s1 equals s2, false otherwise.
+	 */
+	protected boolean flatStatesEqual(State s1, List<Object> keys1, State s2, List<Object> keys2){
+
+		if(keys1 != keys2 && keys1.size() != keys2.size()){
 			return false;
 		}
 
-		for(Object key : keys1){
+		for(int i = 0; i < keys1.size(); i++){
+			Object key = keys1.get(i);
 			Object v1 = s1.get(key);
 			Object v2 = s2.get(key);
 			if(!this.valuesEqual(key, v1, v2)){
@@ -117,6 +117,11 @@ public class IISimpleHashableState extends WrappedHashableState {
 			return false;
 		}
 
+		//objects listed in the same order match without needing to search for a matching assignment
+		if(this.orderedObjectsEqual(s1, s2)){
+			return true;
+		}
+
 		Set<String> matchedObjects = new HashSet<String>();
 		for(Map.Entry<String, List<ObjectInstance>> e1 : OOStateUtilities.objectsByClass(s1).entrySet()){
 			String oclass = e1.getKey();
@@ -150,20 +155,54 @@ public class IISimpleHashableState extends WrappedHashableState {
 		return true;
 	}
 
+	/**
+	 * Returns true if each object of s1 is of the same class and has the same values as the object at the same position in s2.
+	 * Since this defines a class-preserving assignment between the objects of the states, it is sufficient (but not necessary)
+	 * for identifier independent equality and it does not build any matching data structures.
+	 * @param s1 an {@link OOState}
+	 * @param s2 another {@link OOState} with the same number of objects
+	 * @return true if the objects of the states are equal position by position; false otherwise.
+	 */
+	protected boolean orderedObjectsEqual(OOState s1, OOState s2){
+		List<ObjectInstance> objects1 = s1.objects();
+		List<ObjectInstance> objects2 = s2.objects();
+		for(int i = 0; i < objects1.size(); i++){
+			ObjectInstance o1 = objects1.get(i);
+			ObjectInstance o2 = objects2.get(i);
+			if(!o1.className().equals(o2.className()) || !flatStatesEqual(o1, o2)){
+				return false;
+			}
+		}
+		return true;
+	}
+
 	protected boolean flatStatesEqual(State s1, State s2){
 
 		if(s1 == s2){
 			return true;
 		}
 
-		List<Object> keys1 = s1.variableKeys();
-		List<Object> keys2 = s2.variableKeys();
+		return flatStatesEqual(s1, s1.variableKeys(), s2, s2.variableKeys());
+
+	}
+
+	/**
+	 * Returns true if two flat states, whose variable keys are given, have equal values for every variable. States of the same
+	 * class commonly share one key list, in which case the lists are not compared; the keys are walked by index, so no iterator is created.
+	 * @param s1 a {@link State}
+	 * @param keys1 the variable keys of s1
+	 * @param s2 another {@link State} with which to compare
+	 * @param keys2 the variable keys of s2
+	 * @return true if s1 equals s2, false otherwise.
+	 */
+	protected boolean flatStatesEqual(State s1, List<Object> keys1, State s2, List<Object> keys2){
 
-		if(keys1.size() != keys2.size()){
+		if(keys1 != keys2 && keys1.size() != keys2.size()){
 			return false;
 		}
 
-		for(Object key : keys1){
+		for(int i = 0; i < keys1.size(); i++){
+			Object key = keys1.get(i);
 			Object v1 = s1.get(key);
 			Object v2 = s2.get(key);
 			if(!this.valuesEqual(key, v1, v2)){
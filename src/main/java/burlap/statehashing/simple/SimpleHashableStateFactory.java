@@ -18,6 +18,10 @@ import burlap.statehashing.HashableStateFactory;
  * (the names of objects don't affect the state identity). However, you may disable identifier independence
  * by using the constructor {@link #SimpleHashableStateFactory(boolean)}. If your domain is relational, it may be
  * important to be identifier *dependent* (that is, set the parameter in the constructor to false).
+ * <p>
+ * Hash codes may also be cached by using the constructor {@link #SimpleHashableStateFactory(boolean, boolean)}, in which case
+ * a {@link IISimpleCachedHashableState} or {@link IDSimpleCachedHashableState} is produced that computes its hash code only once.
+ * When caching is enabled, states must not be modified after they are hashed, since their hash codes would become stale.
  * @author James MacGlashan.
  */
 public class SimpleHashableStateFactory implements HashableStateFactory {
@@ -28,6 +32,12 @@ public class SimpleHashableStateFactory implements HashableStateFactory {
 	 */
 	protected boolean identifierIndependent = true;
 
+	/**
+	 * Whether hash codes are computed once and cached in the produced {@link burlap.statehashing.HashableState}. By default,
+	 * they are not cached.
+	 */
+	protected boolean useCaching = false;
+
 
 	/**
 	 * Default constructor: object identifier independent and no hash code caching.
@@ -44,6 +54,16 @@ public class SimpleHashableStateFactory implements HashableStateFactory {
 		this.identifierIndependent = identifierIndependent;
 	}
 
+	/**
+	 * Initializes.
+	 * @param identifierIndependent if true then state evaluations for {@link burlap.mdp.core.oo.state.OOState}s are object identifier independent; if false then dependent.
+	 * @param useCaching if true then hash codes are computed once and cached, which requires that hashed states are not subsequently modified; if false then hash codes are computed on every call.
+	 */
+	public SimpleHashableStateFactory(boolean identifierIndependent, boolean useCaching){
+		this.identifierIndependent = identifierIndependent;
+		this.useCaching = useCaching;
+	}
+
 
 	@Override
 	public HashableState hashState(State s) {
@@ -51,6 +71,13 @@ public class SimpleHashableStateFactory implements HashableStateFactory {
 			return (HashableState)s;
 		}
 
+		if(useCaching){
+			if(identifierIndependent){
+				return new IISimpleCachedHashableState(s);
+			}
+			return new IDSimpleCachedHashableState(s);
+		}
+
 		if(identifierIndependent){
 			return new IISimpleHashableState(s);
 		}
@@ -62,6 +89,14 @@ public class SimpleHashableStateFactory implements HashableStateFactory {
 		return this.identifierIndependent;
 	}
 
+	/**
+	 * Returns whether produced {@link burlap.statehashing.HashableState}s cache their hash codes.
+	 * @return true if hash codes are cached; false otherwise.
+	 */
+	public boolean usingCaching() {
+		return this.useCaching;
+	}
+
 
 
 
@@ -0,0 +1,165 @@
+package burlap.benchmarks;
+
+import burlap.behavior.functionapproximation.FunctionGradient;
+import burlap.behavior.functionapproximation.dense.DenseLinearVFA;
+import burlap.behavior.functionapproximation.dense.NormalizedVariableFeatures;
+import burlap.behavior.functionapproximation.dense.fourier.FourierBasis;
+import burlap.behavior.singleagent.learning.LearningAgent;
+import burlap.behavior.singleagent.learning.tdmethods.vfa.GradientDescentQLearning;
+import burlap.behavior.singleagent.learning.tdmethods.vfa.GradientDescentSarsaLam;
+import burlap.datastructures.HashedAggregator;
+import burlap.debugtools.RandomFactory;
+import burlap.domain.singleagent.gridworld.GridWorldDomain;
+import burlap.domain.singleagent.gridworld.state.GridAgent;
+import burlap.domain.singleagent.gridworld.state.GridLocation;
+import burlap.domain.singleagent.gridworld.state.GridWorldState;
+import burlap.mdp.auxiliary.common.SinglePFTF;
+import burlap.mdp.core.oo.propositional.PropositionalFunction;
+import burlap.mdp.core.state.vardomain.VariableDomain;
+import burlap.mdp.singleagent.common.UniformCostRF;
+import burlap.mdp.singleagent.environment.SimulatedEnvironment;
+import burlap.mdp.singleagent.oo.OOSADomain;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the per-step cost of gradient descent value function updates in the four rooms grid world with a Fourier basis
+ * of order 4 over the agent position.
+ * <p>
+ * {@link #mapGradientUpdate(GradientState, Blackhole)} and {@link #arrayGradientUpdate(GradientState, Blackhole)} compare a single
+ * update's gradient handling with the map backed {@link FunctionGradient.SparseGradient} summed into a {@link HashedAggregator} through
+ * its set of partial derivatives, against a {@link FunctionGradient.DenseGradient} added into a reused
+ * {@link FunctionGradient.SparseArrayGradient} accumulator. {@link #learningEpisode(LearnerState, StepCounter)} measures the full per-step
+ * cost of the gradient descent learners, reported as steps per second by the step counter.
+ * <p>
+ * The benchmarks are excluded from the regular test build. Compile and run them with the jmh profile:
+ * <pre>
+ * mvn -Pjmh test-compile dependency:build-classpath -Dmdep.outputFile=target/jmh.classpath
+ * java -cp target/classes:target/test-classes:$(cat target/jmh.classpath) org.openjdk.jmh.Main GradientUpdateBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GradientUpdateBenchmark {
+
+	protected static OOSADomain fourRooms(){
+		GridWorldDomain gw = new GridWorldDomain(11, 11);
+		gw.setMapToFourRooms();
+		gw.setRf(new UniformCostRF());
+		gw.setTf(new SinglePFTF(PropositionalFunction.findPF(gw.generatePfs(), GridWorldDomain.PF_AT_LOCATION)));
+		return gw.generateDomain();
+	}
+
+	protected static FourierBasis fourierBasis(){
+		NormalizedVariableFeatures inputFeatures = new NormalizedVariableFeatures()
+				.variableDomain("agent:x", new VariableDomain(0, 10))
+				.variableDomain("agent:y", new VariableDomain(0, 10));
+		return new FourierBasis(inputFeatures, 4);
+	}
+
+	protected static GridWorldState initialState(){
+		return new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+	}
+
+
+	@State(Scope.Thread)
+	public static class GradientState {
+
+		protected double [] features;
+		protected FunctionGradient.SparseArrayGradient accumulator = new FunctionGradient.SparseArrayGradient();
+
+		@Setup(Level.Trial)
+		public void setup(){
+			this.features = fourierBasis().features(initialState());
+		}
+	}
+
+
+	@State(Scope.Thread)
+	public static class LearnerState {
+
+		@Param({"sarsa", "sarsa-replacing", "q"})
+		public String learner;
+
+		protected LearningAgent agent;
+		protected SimulatedEnvironment env;
+
+		@Setup(Level.Trial)
+		public void setup(){
+			RandomFactory.seedMapped(0, 0);
+			OOSADomain domain = fourRooms();
+			DenseLinearVFA vfa = new DenseLinearVFA(fourierBasis(), 0.);
+			if(this.learner.startsWith("sarsa")){
+				GradientDescentSarsaLam sarsa = new GradientDescentSarsaLam(domain, 0.99, vfa, 0.01, 0.9);
+				sarsa.setUseReplaceTraces(this.learner.endsWith("replacing"));
+				this.agent = sarsa;
+			}
+			else{
+				this.agent = new GradientDescentQLearning(domain, 0.99, vfa, 0.01);
+			}
+			this.env = new SimulatedEnvironment(domain, initialState());
+		}
+	}
+
+
+	/**
+	 * Counts the environment steps taken, so that learner throughput is reported in steps per second.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class StepCounter {
+
+		public long steps;
+
+		@Setup(Level.Iteration)
+		public void reset(){
+			this.steps = 0;
+		}
+	}
+
+
+	@Benchmark
+	public void mapGradientUpdate(GradientState state, Blackhole bh){
+		FunctionGradient.SparseGradient gradient = new FunctionGradient.SparseGradient(state.features.length);
+		for(int i = 0; i < state.features.length; i++){
+			gradient.put(i, state.features[i]);
+		}
+		HashedAggregator<Integer> sum = new HashedAggregator<Integer>();
+		for(FunctionGradient.PartialDerivative pd : gradient.getNonZeroPartialDerivatives()){
+			sum.add(pd.parameterId, 0.5 * pd.value);
+		}
+		bh.consume(sum);
+	}
+
+	@Benchmark
+	public void arrayGradientUpdate(GradientState state, Blackhole bh){
+		FunctionGradient.DenseGradient gradient = new FunctionGradient.DenseGradient(state.features);
+		state.accumulator.clear();
+		state.accumulator.addScaled(gradient, 0.5);
+		bh.consume(state.accumulator);
+	}
+
+	@Benchmark
+	public void learningEpisode(LearnerState state, StepCounter counter){
+		counter.steps += state.agent.runLearningEpisode(state.env, 500).maxTimeStep();
+		state.env.resetEnvironment();
+	}
+
+}
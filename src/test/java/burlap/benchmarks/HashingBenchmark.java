@@ -0,0 +1,96 @@
+package burlap.benchmarks;
+
+import burlap.domain.singleagent.gridworld.state.GridAgent;
+import burlap.domain.singleagent.gridworld.state.GridLocation;
+import burlap.domain.singleagent.gridworld.state.GridWorldState;
+import burlap.statehashing.HashableState;
+import burlap.statehashing.simple.SimpleHashableStateFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of {@link SimpleHashableStateFactory} with and without hash code caching, over all states of an 11x11 grid world.
+ * Comparing the useCaching parameter values gives the cost of hashing with and without memoized hash codes and keys.
+ * <p>
+ * {@link #lookup(Lookups, Blackhole)} hashes each state and probes a hash map with it twice, as a learner or planner reading and
+ * then writing a value does. {@link #equalOOStates(Lookups, Blackhole)} compares the wrappers of equal states whose objects are
+ * listed in a different order, which takes the identifier independent matching path.
+ * <p>
+ * The benchmarks are excluded from the regular test build. Compile and run them with the jmh profile:
+ * <pre>
+ * mvn -Pjmh test-compile dependency:build-classpath -Dmdep.outputFile=target/jmh.classpath
+ * java -cp target/classes:target/test-classes:$(cat target/jmh.classpath) org.openjdk.jmh.Main HashingBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HashingBenchmark {
+
+	@State(Scope.Thread)
+	public static class Lookups {
+
+		@Param({"false", "true"})
+		public boolean useCaching;
+
+		@Param({"true", "false"})
+		public boolean identifierIndependent;
+
+		protected SimpleHashableStateFactory factory;
+		protected List<GridWorldState> states = new ArrayList<GridWorldState>();
+		protected Map<HashableState, Double> values = new HashMap<HashableState, Double>();
+		protected HashableState ordered;
+		protected HashableState reordered;
+
+		@Setup(Level.Trial)
+		public void setup(){
+			this.factory = new SimpleHashableStateFactory(this.identifierIndependent, this.useCaching);
+			for(int x = 0; x < 11; x++){
+				for(int y = 0; y < 11; y++){
+					GridWorldState s = new GridWorldState(new GridAgent(x, y), new GridLocation(10, 10, 0, "loc0"),
+							new GridLocation(0, 10, 1, "loc1"));
+					this.states.add(s);
+					this.values.put(this.factory.hashState(s), (double)(x + y));
+				}
+			}
+			GridWorldState s = this.states.get(0);
+			this.ordered = this.factory.hashState(s);
+			this.reordered = this.factory.hashState(new GridWorldState(s.agent, s.locations.get(1), s.locations.get(0)));
+		}
+	}
+
+
+	@Benchmark
+	public void lookup(Lookups state, Blackhole bh){
+		for(GridWorldState s : state.states){
+			HashableState sh = state.factory.hashState(s);
+			bh.consume(state.values.get(sh));
+			bh.consume(state.values.containsKey(sh));
+		}
+	}
+
+	@Benchmark
+	public void equalOOStates(Lookups state, Blackhole bh){
+		bh.consume(state.ordered.equals(state.reordered));
+	}
+
+}
@@ -0,0 +1,229 @@
+package burlap.testing;
+
+import burlap.behavior.policy.EpsilonGreedy;
+import burlap.behavior.policy.Policy;
+import burlap.behavior.singleagent.auxiliary.performance.LearningAlgorithmExperimenter;
+import burlap.behavior.singleagent.auxiliary.performance.TrialMetrics;
+import burlap.behavior.singleagent.learning.LearningAgent;
+import burlap.behavior.singleagent.learning.LearningAgentFactory;
+import burlap.behavior.singleagent.learning.tdmethods.QLearning;
+import burlap.behavior.singleagent.planning.stochastic.valueiteration.ValueIteration;
+import burlap.domain.singleagent.gridworld.GridWorldDomain;
+import burlap.domain.singleagent.gridworld.state.GridAgent;
+import burlap.domain.singleagent.gridworld.state.GridLocation;
+import burlap.domain.singleagent.gridworld.state.GridWorldState;
+import burlap.mdp.auxiliary.common.SinglePFTF;
+import burlap.mdp.core.TerminalFunction;
+import burlap.mdp.core.oo.propositional.PropositionalFunction;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.common.UniformCostRF;
+import burlap.mdp.singleagent.environment.Environment;
+import burlap.mdp.singleagent.environment.EnvironmentFactory;
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+import burlap.mdp.singleagent.environment.SimulatedEnvironment;
+import burlap.mdp.singleagent.environment.VectorizedEnvironment;
+import burlap.mdp.singleagent.oo.OOSADomain;
+import burlap.statehashing.simple.SimpleHashableStateFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static burlap.domain.singleagent.gridworld.GridWorldDomain.PF_AT_LOCATION;
+
+public class TestExperiment {
+
+  GridWorldDomain gw;
+  OOSADomain domain;
+  SimpleHashableStateFactory hashingFactory;
+
+  @Before
+  public void setup() {
+    this.gw = new GridWorldDomain(11, 11);
+    this.gw.setMapToFourRooms();
+    this.gw.setRf(new UniformCostRF());
+    TerminalFunction tf = new SinglePFTF(PropositionalFunction.findPF(gw.generatePfs(), PF_AT_LOCATION));
+    this.gw.setTf(tf);
+    this.domain = this.gw.generateDomain();
+    this.hashingFactory = new SimpleHashableStateFactory();
+  }
+
+  @Test
+  public void testVectorizedEnvironment() {
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+
+    ValueIteration vi = new ValueIteration(this.domain, 0.99, this.hashingFactory, 0.0001, 200);
+    Policy p = vi.planFromState(initialState);
+
+    VectorizedEnvironment envs = new VectorizedEnvironment(this.domain, initialState, 6);
+    envs.setParallelStepping(3);
+    int optimalSteps = this.gw.getHeight() + this.gw.getWidth() - 2;
+    for (int i = 0; i < optimalSteps; i++) {
+      EnvironmentOutcome[] outcomes = envs.executePolicy(p);
+      Assert.assertEquals(6, outcomes.length);
+      for (EnvironmentOutcome eo : outcomes) {
+        Assert.assertEquals(i == optimalSteps - 1, eo.terminated);
+      }
+    }
+    Assert.assertEquals(6, envs.episodesCompleted());
+    for (State s : envs.currentObservations()) {
+      Assert.assertEquals(false, domain.getModel().terminal(s));
+    }
+
+    List<EnvironmentOutcome> samples = envs.collectSamples(p, 100);
+    Assert.assertTrue(samples.size() >= 100);
+
+    // without auto-reset, collection ends once every sub-environment has finished its episode
+    envs.setAutoReset(false);
+    envs.setParallelStepping(1);
+    envs.resetEnvironments();
+    samples = envs.collectSamples(p, 10000);
+    Assert.assertEquals(6 * optimalSteps, samples.size());
+    for (int i = 0; i < envs.size(); i++) {
+      Assert.assertTrue(envs.isInTerminalState(i));
+    }
+  }
+
+  @Test
+  public void testSeededTrialsAreReproducible() throws IOException {
+    final GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+    EnvironmentFactory stochasticFactory = new EnvironmentFactory() {
+      @Override
+      public Environment generateEnvironment() {
+        GridWorldDomain stochastic = new GridWorldDomain(11, 11);
+        stochastic.setMapToFourRooms();
+        stochastic.setProbSucceedTransitionDynamics(0.8);
+        stochastic.setRf(new UniformCostRF());
+        stochastic.setTf(new SinglePFTF(PropositionalFunction.findPF(stochastic.generatePfs(), PF_AT_LOCATION)));
+        return new SimulatedEnvironment(stochastic.generateDomain(), initialState);
+      }
+    };
+    EnvironmentFactory deterministicFactory = new EnvironmentFactory() {
+      @Override
+      public Environment generateEnvironment() {
+        return new SimulatedEnvironment(domain, initialState);
+      }
+    };
+
+    // independent trials write identical CSVs for any number of threads
+    List<byte[]> serial = this.runSeededExperiment(stochasticFactory, 1, initialState);
+    List<byte[]> parallel = this.runSeededExperiment(stochasticFactory, 3, initialState);
+    for (int i = 0; i < serial.size(); i++) {
+      Assert.assertArrayEquals(serial.get(i), parallel.get(i));
+    }
+
+    // in a deterministic environment, seeded trials in the test environment match seeded independent trials
+    List<byte[]> independent = this.runSeededExperiment(deterministicFactory, 3, initialState);
+    List<byte[]> testEnvironment = this.runSeededExperiment(null, 1, initialState);
+    for (int i = 0; i < independent.size(); i++) {
+      Assert.assertArrayEquals(independent.get(i), testEnvironment.get(i));
+    }
+  }
+
+  protected List<byte[]> runSeededExperiment(EnvironmentFactory envFactory, int numThreads, GridWorldState initialState) throws IOException {
+    LearningAgentFactory factory = new LearningAgentFactory() {
+      @Override
+      public String getAgentName() {
+        return "Q";
+      }
+
+      @Override
+      public LearningAgent generateAgent() {
+        QLearning agent = new QLearning(domain, 0.99, hashingFactory, 0., 0.5);
+        agent.setLearningPolicy(new EpsilonGreedy(agent, 0.2));
+        return agent;
+      }
+    };
+    LearningAlgorithmExperimenter exp = new LearningAlgorithmExperimenter(new SimulatedEnvironment(this.domain, initialState), 4, 5, factory);
+    exp.toggleVisualPlots(false);
+    if (envFactory != null) {
+      exp.setParallelTrials(envFactory, numThreads);
+    }
+    exp.setTrialSeed(5);
+    exp.startExperiment();
+
+    File written = File.createTempFile("seeded", "");
+    written.delete();
+    exp.writeStepAndEpisodeDataToCSV(written.getPath());
+    List<byte[]> csvs = new ArrayList<byte[]>();
+    for (String suffix : new String[]{"Steps.csv", "Episodes.csv"}) {
+      File file = new File(written.getPath() + suffix);
+      csvs.add(Files.readAllBytes(file.toPath()));
+      file.delete();
+    }
+    return csvs;
+  }
+
+  @Test
+  public void testHeadlessMetricsCollection() throws IOException {
+    final GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+    LearningAgentFactory[] factories = new LearningAgentFactory[2];
+    for (int i = 0; i < 2; i++) {
+      final double learningRate = i == 0 ? 0.5 : 0.9;
+      factories[i] = new LearningAgentFactory() {
+        @Override
+        public String getAgentName() {
+          return "Q-" + learningRate;
+        }
+
+        @Override
+        public LearningAgent generateAgent() {
+          return new QLearning(domain, 0.99, hashingFactory, 0., learningRate);
+        }
+      };
+    }
+    EnvironmentFactory envFactory = new EnvironmentFactory() {
+      @Override
+      public Environment generateEnvironment() {
+        return new SimulatedEnvironment(domain, initialState);
+      }
+    };
+
+    //sequential trials in the test environment and concurrent independent trials
+    for (int mode = 0; mode < 2; mode++) {
+      LearningAlgorithmExperimenter exp = new LearningAlgorithmExperimenter(new SimulatedEnvironment(this.domain, initialState), 3, 6, factories);
+      exp.toggleVisualPlots(false);
+      if (mode == 1) {
+        exp.setParallelTrials(envFactory, 3);
+        exp.setTrialSeed(11);
+      }
+      File streamed = File.createTempFile("streamed", "");
+      File written = File.createTempFile("written", "");
+      exp.streamMetricsToCSV(streamed.getPath());
+      exp.startExperiment();
+      exp.writeStepAndEpisodeDataToCSV(written.getPath());
+
+      for (String suffix : new String[]{"Steps.csv", "Episodes.csv"}) {
+        File streamedFile = new File(streamed.getPath() + suffix);
+        File writtenFile = new File(written.getPath() + suffix);
+        streamedFile.deleteOnExit();
+        writtenFile.deleteOnExit();
+        List<String> streamedLines = Files.readAllLines(streamedFile.toPath());
+        List<String> writtenLines = Files.readAllLines(writtenFile.toPath());
+        Collections.sort(streamedLines);
+        Collections.sort(writtenLines);
+        Assert.assertEquals(writtenLines, streamedLines);
+      }
+      streamed.delete();
+      written.delete();
+
+      for (LearningAgentFactory factory : factories) {
+        List<TrialMetrics> trials = exp.getMetricsCollector().getTrials(factory.getAgentName());
+        Assert.assertEquals(3, trials.size());
+        for (TrialMetrics trial : trials) {
+          Assert.assertEquals(6, trial.numEpisodes());
+          Assert.assertEquals(trial.numSteps(), trial.numCompletedSteps());
+          Assert.assertEquals(trial.numSteps(), trial.cumulativeStepEpisode(5), 0.);
+          //uniform cost rewards
+          Assert.assertEquals(-trial.numSteps(), trial.cumulativeStepReward(trial.numSteps() - 1), 0.);
+          Assert.assertEquals(-1., trial.medianEpisodeReward(5), 0.);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,453 @@
+package burlap.testing;
+
+import burlap.behavior.policy.Policy;
+import burlap.behavior.functionapproximation.DifferentiableStateActionValue;
+import burlap.behavior.functionapproximation.FeatureBatches;
+import burlap.behavior.functionapproximation.FunctionGradient;
+import burlap.behavior.functionapproximation.dense.DenseCrossProductFeatures;
+import burlap.behavior.functionapproximation.dense.DenseStateFeatures;
+import burlap.behavior.functionapproximation.dense.NumericVariableFeatures;
+import burlap.behavior.functionapproximation.dense.fourier.FourierBasis;
+import burlap.behavior.functionapproximation.dense.rbf.RBF;
+import burlap.behavior.functionapproximation.dense.rbf.RBFFeatures;
+import burlap.behavior.functionapproximation.dense.rbf.SparseGaussianRBFFeatures;
+import burlap.behavior.functionapproximation.dense.rbf.functions.GaussianRBF;
+import burlap.behavior.functionapproximation.dense.NormalizedVariableFeatures;
+import burlap.behavior.functionapproximation.dense.SparseToDenseFeatures;
+import burlap.behavior.functionapproximation.sparse.SparseFeatureMatrix;
+import burlap.behavior.functionapproximation.sparse.StateFeature;
+import burlap.behavior.functionapproximation.sparse.tilecoding.HashedTileCodingFeatures;
+import burlap.behavior.functionapproximation.sparse.tilecoding.TileCodingFeatures;
+import burlap.behavior.functionapproximation.sparse.tilecoding.TilingArrangement;
+import burlap.behavior.functionapproximation.supervised.KNNRegressionVFA;
+import burlap.behavior.functionapproximation.supervised.RegressionForestVFA;
+import burlap.behavior.functionapproximation.supervised.RidgeRegressionVFA;
+import burlap.behavior.functionapproximation.supervised.SupervisedVFA;
+import burlap.behavior.singleagent.Episode;
+import burlap.behavior.singleagent.learning.tdmethods.vfa.GradientDescentSarsaLam;
+import burlap.behavior.singleagent.planning.stochastic.valueiteration.ValueIteration;
+import burlap.behavior.singleagent.planning.vfa.fittedvi.FittedVI;
+import burlap.datastructures.KDTree;
+import burlap.debugtools.RandomFactory;
+import burlap.domain.singleagent.gridworld.GridWorldDomain;
+import burlap.domain.singleagent.gridworld.state.GridAgent;
+import burlap.domain.singleagent.gridworld.state.GridLocation;
+import burlap.domain.singleagent.gridworld.state.GridWorldState;
+import burlap.domain.singleagent.mountaincar.MCState;
+import burlap.domain.singleagent.mountaincar.MountainCar;
+import burlap.mdp.auxiliary.common.SinglePFTF;
+import burlap.mdp.core.TerminalFunction;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.action.SimpleAction;
+import burlap.mdp.core.oo.propositional.PropositionalFunction;
+import burlap.mdp.core.state.State;
+import burlap.mdp.core.state.vardomain.VariableDomain;
+import burlap.mdp.singleagent.common.UniformCostRF;
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+import burlap.mdp.singleagent.environment.SimulatedEnvironment;
+import burlap.mdp.singleagent.model.SampleModel;
+import burlap.mdp.singleagent.oo.OOSADomain;
+import burlap.statehashing.simple.SimpleHashableStateFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static burlap.behavior.policy.PolicyUtils.rollout;
+import static burlap.domain.singleagent.gridworld.GridWorldDomain.PF_AT_LOCATION;
+
+public class TestFunctionApproximation {
+
+  GridWorldDomain gw;
+  OOSADomain domain;
+  SimpleHashableStateFactory hashingFactory;
+
+  @Before
+  public void setup() {
+    this.gw = new GridWorldDomain(11, 11);
+    this.gw.setMapToFourRooms();
+    this.gw.setRf(new UniformCostRF());
+    TerminalFunction tf = new SinglePFTF(PropositionalFunction.findPF(gw.generatePfs(), PF_AT_LOCATION));
+    this.gw.setTf(tf);
+    this.domain = this.gw.generateDomain();
+    this.hashingFactory = new SimpleHashableStateFactory();
+  }
+
+  @Test
+  public void testSupervisedVFARegressors() {
+    NumericVariableFeatures features = new NumericVariableFeatures("agent:x", "agent:y");
+    List<SupervisedVFA.SupervisedVFAInstance> data = new ArrayList<SupervisedVFA.SupervisedVFAInstance>();
+    for (int x = 0; x <= 10; x++) {
+      for (int y = 0; y <= 10; y++) {
+        data.add(new SupervisedVFA.SupervisedVFAInstance(new GridWorldState(x, y), 2 * x - y + 3));
+      }
+    }
+    State query = new GridWorldState(4, 7);
+
+    RidgeRegressionVFA ridge = new RidgeRegressionVFA(features, 1e-6);
+    Assert.assertEquals(4., ridge.train(data).value(query), 1e-3);
+
+    KNNRegressionVFA knn = new KNNRegressionVFA(features, 1);
+    knn.setLeafSize(4);
+    Assert.assertEquals(4., knn.train(data).value(query), TestPlanning.delta);
+    KNNRegressionVFA knn5 = new KNNRegressionVFA(features, 5);
+    Assert.assertEquals(4., knn5.train(data).value(new GridWorldState(4, 7)), 1.);
+
+    RegressionForestVFA tree = new RegressionForestVFA(features, 1, 20, 1);
+    Assert.assertEquals(4., tree.train(data).value(query), TestPlanning.delta);
+
+    RandomFactory.seedMapped(0, 0);
+    RegressionForestVFA forest = new RegressionForestVFA(features, 20, 8, 2);
+    forest.setParallelTraining(2);
+    Assert.assertEquals(4., forest.train(data).value(query), 1.5);
+
+    //retraining on the same states with new targets reuses the cached features
+    for (SupervisedVFA.SupervisedVFAInstance inst : data) {
+      inst.v = -inst.v;
+    }
+    Assert.assertEquals(-4., ridge.train(data).value(query), 1e-3);
+    Assert.assertEquals(-4., knn.train(data).value(query), TestPlanning.delta);
+    Assert.assertEquals(-4., tree.train(data).value(query), TestPlanning.delta);
+  }
+
+  @Test
+  public void testParallelFittedVI() {
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+    ValueIteration vi = new ValueIteration(this.domain, 0.99, this.hashingFactory, 0.0001, 200);
+    vi.toggleDebugPrinting(false);
+    vi.planFromState(initialState);
+    List<State> samples = new ArrayList<State>(vi.getAllStates());
+
+    FittedVI fvi = new FittedVI(this.domain, 0.99, new KNNRegressionVFA(new NumericVariableFeatures("agent:x", "agent:y"), 1), samples, -1, 0.0001, 200);
+    fvi.toggleDebugPrinting(false);
+    fvi.setParallelBackups(2);
+    Policy p = fvi.planFromState(initialState);
+
+    for (State s : samples) {
+      if (!domain.getModel().terminal(s)) {
+        Assert.assertEquals(vi.value(s), fvi.value(s), 0.01);
+      }
+    }
+    Episode analysis = rollout(p, initialState, domain.getModel());
+    Assert.assertEquals(this.gw.getHeight() + this.gw.getWidth() - 1, analysis.stateSequence.size());
+    Assert.assertTrue(domain.getModel().terminal(analysis.stateSequence.get(analysis.stateSequence.size() - 1)));
+
+    // with a model that draws from the thread's random streams, seeded parallel targets are reproducible
+    final SampleModel deterministic = domain.getModel();
+    SampleModel slippery = new SampleModel() {
+      @Override
+      public EnvironmentOutcome sample(State s, Action a) {
+        Random r = RandomFactory.getMapped(0);
+        if (r.nextDouble() < 0.3) {
+          a = new SimpleAction(GridWorldDomain.ACTION_NORTH);
+        }
+        return deterministic.sample(s, a);
+      }
+
+      @Override
+      public boolean terminal(State s) {
+        return deterministic.terminal(s);
+      }
+    };
+    double[][] values = new double[2][samples.size()];
+    for (int run = 0; run < 2; run++) {
+      FittedVI seeded = new FittedVI(this.domain, 0.99, new KNNRegressionVFA(new NumericVariableFeatures("agent:x", "agent:y"), 1), samples, 2, 0.0001, 5);
+      seeded.toggleDebugPrinting(false);
+      seeded.setModel(slippery);
+      seeded.setParallelBackups(3);
+      seeded.setBackupSeed(17);
+      seeded.runVI();
+      seeded.setParallelBackups(1);
+      for (int i = 0; i < samples.size(); i++) {
+        values[run][i] = seeded.value(samples.get(i));
+      }
+    }
+    Assert.assertArrayEquals(values[0], values[1], 0.);
+  }
+
+  @Test
+  public void testGradientRepresentations() {
+    FunctionGradient.DenseGradient dense = new FunctionGradient.DenseGradient(new double[]{0., 2., -1.}, 3);
+    Assert.assertEquals(3, dense.numEntries());
+    Assert.assertEquals(4, dense.parameterIdAt(1));
+    Assert.assertEquals(2., dense.getPartialDerivative(4), TestPlanning.delta);
+    Assert.assertEquals(0., dense.getPartialDerivative(0), TestPlanning.delta);
+    Assert.assertEquals(2, dense.numNonZeroPDs());
+    Assert.assertEquals(2, dense.getNonZeroPartialDerivatives().size());
+
+    FunctionGradient.SparseGradient sparse = new FunctionGradient.SparseGradient();
+    sparse.put(7, 1.5);
+    sparse.put(2, -0.5);
+    double sparseSum = 0.;
+    for (int i = 0; i < sparse.numEntries(); i++) {
+      sparseSum += sparse.parameterIdAt(i) * sparse.partialDerivativeAt(i);
+    }
+    Assert.assertEquals(7 * 1.5 - 2 * 0.5, sparseSum, TestPlanning.delta);
+
+    //a gradient that only implements the required methods is copied once to be iterated by index
+    final FunctionGradient.SparseGradient backing = sparse;
+    FunctionGradient setOnly = new FunctionGradient() {
+      @Override
+      public void put(int parameterId, double partialDerivative) {
+        backing.put(parameterId, partialDerivative);
+      }
+
+      @Override
+      public double getPartialDerivative(int parameterId) {
+        return backing.getPartialDerivative(parameterId);
+      }
+
+      @Override
+      public Set<FunctionGradient.PartialDerivative> getNonZeroPartialDerivatives() {
+        return backing.getNonZeroPartialDerivatives();
+      }
+
+      @Override
+      public int numNonZeroPDs() {
+        return backing.numNonZeroPDs();
+      }
+    };
+    FunctionGradient indexed = setOnly.asIndexed();
+    Assert.assertTrue(indexed instanceof FunctionGradient.SparseArrayGradient);
+    Assert.assertEquals(2, indexed.numEntries());
+    Assert.assertEquals(1.5, indexed.getPartialDerivative(7), TestPlanning.delta);
+    Assert.assertEquals(-0.5, indexed.getPartialDerivative(2), TestPlanning.delta);
+    Assert.assertSame(sparse, sparse.asIndexed());
+    Assert.assertSame(dense, dense.asIndexed());
+
+    FunctionGradient.SparseArrayGradient sum = new FunctionGradient.SparseArrayGradient(2);
+    sum.addScaled(dense, 2.);
+    sum.addScaled(sparse, -1.);
+    Assert.assertEquals(4, sum.numEntries());
+    Assert.assertEquals(4., sum.getPartialDerivative(4), TestPlanning.delta);
+    Assert.assertEquals(-1.5, sum.getPartialDerivative(7), TestPlanning.delta);
+    Assert.assertEquals(0., sum.getPartialDerivative(3), TestPlanning.delta);
+
+    //grow well past the initial capacity with widely spaced ids
+    sum.clear();
+    Assert.assertEquals(0, sum.numEntries());
+    for (int i = 0; i < 100; i++) {
+      sum.add(i * 1000003, i);
+      sum.add(i * 1000003, 1.);
+    }
+    Assert.assertEquals(100, sum.numEntries());
+    Assert.assertEquals(100, sum.numNonZeroPDs());
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(i + 1., sum.getPartialDerivative(i * 1000003), TestPlanning.delta);
+    }
+    sum.put(5, 0.);
+    Assert.assertEquals(100, sum.numEntries());
+    sum.scale(0.5);
+    Assert.assertEquals(50., sum.getPartialDerivative(99 * 1000003), TestPlanning.delta);
+  }
+
+  @Test
+  public void testHashedTileCoding() {
+    NumericVariableFeatures fv = new NumericVariableFeatures("agent:x", "agent:y");
+    HashedTileCodingFeatures hashed = new HashedTileCodingFeatures(fv, 4096);
+    hashed.addTilingsForAllDimensionsWithWidths(new double[]{2., 2.}, 4, TilingArrangement.UNIFORM);
+    int[] tiles = new int[4];
+    int[] again = new int[4];
+    Assert.assertEquals(4, hashed.activeTiles(new GridWorldState(3, 5), tiles));
+    hashed.activeTiles(new GridWorldState(3, 5), again);
+    Assert.assertArrayEquals(tiles, again);
+    Assert.assertEquals(4, new HashSet<Integer>(Arrays.asList(tiles[0], tiles[1], tiles[2], tiles[3])).size());
+    hashed.activeTiles(new GridWorldState(3, 5), 1, again);
+    Assert.assertNotEquals(tiles[0], again[0]);
+
+    //a full index table shares indices instead of growing
+    HashedTileCodingFeatures small = new HashedTileCodingFeatures(fv, 8);
+    small.addTilingsForAllDimensionsWithWidths(new double[]{1., 1.}, 2, TilingArrangement.RANDOM_JITTER);
+    for (int x = 0; x <= 10; x++) {
+      small.activeTiles(new GridWorldState(x, x), tiles);
+      Assert.assertTrue(tiles[0] >= 0 && tiles[0] < 8 && tiles[1] >= 0 && tiles[1] < 8);
+    }
+    Assert.assertTrue(small.numOverflows() > 0);
+
+    //with one unit-width tiling and no collisions, learning matches the map-based tile coding
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+    double[] goalQs = new double[2];
+    for (int i = 0; i < 2; i++) {
+      RandomFactory.seedMapped(0, 7);
+      DifferentiableStateActionValue vfa;
+      if (i == 0) {
+        TileCodingFeatures tc = new TileCodingFeatures(fv);
+        tc.addTilingsForAllDimensionsWithWidths(new double[]{1., 1.}, 1, TilingArrangement.UNIFORM);
+        vfa = tc.generateVFA(0.);
+      } else {
+        HashedTileCodingFeatures htc = new HashedTileCodingFeatures(fv, 1024);
+        htc.addTilingsForAllDimensionsWithWidths(new double[]{1., 1.}, 1, TilingArrangement.UNIFORM);
+        vfa = htc.generateVFA(0.);
+      }
+      GradientDescentSarsaLam agent = new GradientDescentSarsaLam(this.domain, 0.99, vfa, 0.5, 0.5);
+      SimulatedEnvironment env = new SimulatedEnvironment(this.domain, initialState);
+      for (int e = 0; e < 30; e++) {
+        agent.runLearningEpisode(env, 500);
+        env.resetEnvironment();
+      }
+      goalQs[i] = agent.qValue(new GridWorldState(new GridAgent(9, 10), new GridLocation(10, 10, 0, "loc0")), new SimpleAction(GridWorldDomain.ACTION_EAST));
+    }
+    Assert.assertEquals(goalQs[0], goalQs[1], TestPlanning.delta);
+    Assert.assertTrue(goalQs[0] < 0.);
+  }
+
+  @Test
+  public void testBatchFeatureExtraction() {
+    List<State> states = new ArrayList<State>();
+    for (int x = 0; x <= 10; x++) {
+      for (int y = 0; y <= 10; y++) {
+        for (int copy = 0; copy < 3; copy++) {
+          states.add(new GridWorldState(x, y));
+        }
+      }
+    }
+    NumericVariableFeatures fv = new NumericVariableFeatures("agent:x", "agent:y");
+    NormalizedVariableFeatures nf = new NormalizedVariableFeatures()
+            .variableDomain("agent:x", new VariableDomain(0, 10))
+            .variableDomain("agent:y", new VariableDomain(0, 10));
+    HashedTileCodingFeatures hashed = new HashedTileCodingFeatures(fv, 512, false);
+    hashed.addTilingsForAllDimensionsWithWidths(new double[]{2., 2.}, 4, TilingArrangement.RANDOM_JITTER);
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      for (DenseStateFeatures features : Arrays.asList(fv, new FourierBasis(nf, 2), new SparseToDenseFeatures(hashed))) {
+        double[] first = features.features(states.get(0));
+        int d = first.length;
+        double[] buffer = new double[d + 2];
+        for (State s : states) {
+          Assert.assertEquals(d, features.features(s, buffer, 2));
+          Assert.assertArrayEquals(features.features(s), Arrays.copyOfRange(buffer, 2, d + 2), 0.);
+        }
+        double[] serial = FeatureBatches.denseMatrix(features, states);
+        double[] parallel = FeatureBatches.denseMatrix(features, states, executor, 4);
+        Assert.assertEquals(states.size() * d, serial.length);
+        Assert.assertArrayEquals(serial, parallel, 0.);
+        for (int i = 0; i < states.size(); i += 37) {
+          Assert.assertArrayEquals(features.features(states.get(i)), Arrays.copyOfRange(serial, i * d, (i + 1) * d), 0.);
+        }
+      }
+
+      SparseFeatureMatrix serial = FeatureBatches.sparseMatrix(hashed, states);
+      SparseFeatureMatrix parallel = FeatureBatches.sparseMatrix(hashed, states, executor, 4);
+      Assert.assertEquals(states.size(), serial.numRows());
+      Assert.assertEquals(states.size(), parallel.numRows());
+      for (int i = 0; i < states.size(); i++) {
+        List<StateFeature> expected = hashed.features(states.get(i));
+        Assert.assertEquals(expected.size(), serial.rowLength(i));
+        for (int j = 0; j < expected.size(); j++) {
+          Assert.assertEquals(expected.get(j).id, serial.id(serial.rowStart(i) + j));
+          Assert.assertEquals(expected.get(j).id, parallel.id(parallel.rowStart(i) + j));
+          Assert.assertEquals(1., parallel.value(parallel.rowStart(i) + j), 0.);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    //numeric states are read without boxing and give the same features
+    NumericVariableFeatures mcFeatures = new NumericVariableFeatures(MountainCar.ATT_X, MountainCar.ATT_V);
+    double[] mc = new double[2];
+    mcFeatures.features(new MCState(-0.5, 0.01), mc, 0);
+    Assert.assertArrayEquals(new double[]{-0.5, 0.01}, mc, 0.);
+
+    //state-action features written into a reused buffer match freshly allocated ones
+    DenseCrossProductFeatures cross = new DenseCrossProductFeatures(fv, 3);
+    double[] saBuffer = new double[6];
+    for (String a : Arrays.asList(GridWorldDomain.ACTION_NORTH, GridWorldDomain.ACTION_SOUTH, GridWorldDomain.ACTION_EAST, GridWorldDomain.ACTION_NORTH)) {
+      State s = new GridWorldState(4, 7);
+      Assert.assertEquals(6, cross.features(s, new SimpleAction(a), saBuffer, 0));
+      Assert.assertArrayEquals(cross.features(s, new SimpleAction(a)), saBuffer, 0.);
+    }
+  }
+
+  @Test
+  public void testFourierAndSparseRBFFeatures() {
+    NormalizedVariableFeatures nf = new NormalizedVariableFeatures()
+            .variableDomain(MountainCar.ATT_X, new VariableDomain(-1.2, 0.5))
+            .variableDomain(MountainCar.ATT_V, new VariableDomain(-0.07, 0.07));
+    List<State> states = new ArrayList<State>();
+    for (int x = 0; x <= 10; x++) {
+      for (int v = 0; v <= 10; v++) {
+        states.add(new MCState(-1.2 + 0.17 * x, -0.07 + 0.014 * v));
+      }
+    }
+
+    //the packed coefficient matrix gives the same values as each basis function, and the fast cosine is within its error bound
+    FourierBasis exact = new FourierBasis(nf, 5);
+    FourierBasis fast = new FourierBasis(nf, 5);
+    fast.toggleFastCosine(true);
+    for (State s : states) {
+      double[] input = nf.features(s);
+      double[] f = exact.features(s);
+      double[] ff = fast.features(s);
+      Assert.assertEquals(36, f.length);
+      for (int i = 0; i < f.length; i++) {
+        Assert.assertEquals(exact.basisValue(input, i), f[i], 0.);
+        Assert.assertEquals(f[i], ff[i], 1e-10);
+      }
+    }
+    for (double t = -40.; t <= 40.; t += 0.0137) {
+      Assert.assertEquals(Math.cos(t * Math.PI), FourierBasis.fastCosPi(t), 1e-10);
+    }
+
+    //a radius query finds exactly the points within the radius
+    Random rand = new Random(3);
+    double[] points = new double[500 * 3];
+    for (int i = 0; i < points.length; i++) {
+      points[i] = rand.nextDouble();
+    }
+    KDTree tree = new KDTree(points, 500, 3, 8);
+    final List<Integer> found = new ArrayList<Integer>();
+    double[] query = {0.4, 0.5, 0.6};
+    tree.withinRadius(query, 0.2, new KDTree.RangeVisitor() {
+      @Override
+      public void visit(int id, double sqDistance) {
+        found.add(id);
+      }
+    });
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 500; i++) {
+      double d = 0.;
+      for (int j = 0; j < 3; j++) {
+        d += (query[j] - points[i * 3 + j]) * (query[j] - points[i * 3 + j]);
+      }
+      if (d <= 0.04) {
+        expected.add(i);
+      }
+    }
+    Collections.sort(found);
+    Assert.assertEquals(expected, found);
+
+    //sparse Gaussian RBFs match the dense responses within the cutoff and omit only responses below the minimum
+    List<RBF> units = GaussianRBF.generateGaussianRBFsForStates(states, nf, 0.08);
+    RBFFeatures dense = new RBFFeatures(nf, true);
+    dense.addRBFs(units);
+    double minResponse = 1e-4;
+    SparseGaussianRBFFeatures sparse = new SparseGaussianRBFFeatures(nf, SparseGaussianRBFFeatures.cutoffForMinResponse(0.08, minResponse), true);
+    sparse.addRBFs(units);
+    Assert.assertEquals(dense.features(states.get(0)).length, sparse.numFeatures());
+    for (State s : Arrays.asList(states.get(0), states.get(17), new MCState(-0.33, 0.013), new MCState(0.5, -0.07))) {
+      double[] d = dense.features(s);
+      List<StateFeature> sf = sparse.features(s);
+      Assert.assertTrue(sf.size() < d.length / 2);
+      double[] fromSparse = new double[d.length];
+      for (StateFeature f : sf) {
+        fromSparse[f.id] = f.value;
+      }
+      for (int i = 0; i < d.length; i++) {
+        Assert.assertEquals(d[i], fromSparse[i], minResponse);
+        if (fromSparse[i] != 0.) {
+          Assert.assertEquals(d[i], fromSparse[i], 1e-12);
+        }
+      }
+    }
+  }
+}
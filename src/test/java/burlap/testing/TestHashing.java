@@ -13,6 +13,7 @@ import burlap.mdp.singleagent.model.FullModel;
 import burlap.mdp.singleagent.model.TransitionProb;
 import burlap.statehashing.HashableState;
 import burlap.statehashing.HashableStateFactory;
+import burlap.statehashing.packed.PackedHashableStateFactory;
 import burlap.statehashing.simple.SimpleHashableStateFactory;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.junit.Before;
@@ -79,6 +80,69 @@ public class TestHashing {
 	}
 
 
+	@Test
+	public void testCachedSimpleHashFactory() {
+		SADomain domain = (SADomain)this.gridWorldTest.getDomain();
+		State startState = this.gridWorldTest.generateState();
+
+		HashableStateFactory factory = new SimpleHashableStateFactory(true, true);
+		Set<HashableState> hashedStates = this.getReachableHashedStates(startState, domain, factory);
+		assert(hashedStates.size() == 104);
+		Set<HashableState> renamedStates = new HashSet<HashableState>();
+		for (HashableState state : hashedStates) {
+			renamedStates.add(factory.hashState(this.renameObjects((GridWorldState)state.s().copy())));
+		}
+		hashedStates.addAll(renamedStates);
+		assert(hashedStates.size() == 104);
+
+		factory = new SimpleHashableStateFactory(false, true);
+		hashedStates = this.getReachableHashedStates(startState, domain, factory);
+		assert(hashedStates.size() == 104);
+		renamedStates = new HashSet<HashableState>();
+		for (HashableState state : hashedStates) {
+			renamedStates.add(factory.hashState(this.renameObjects((GridWorldState)state.s().copy())));
+		}
+		hashedStates.addAll(renamedStates);
+		assert(hashedStates.size() == 208);
+	}
+
+	@Test
+	public void testCachedSimpleHashFactoryFlatStates() {
+		//flat states compare by their memoized keys, and a state whose hash code is 0 is cached like any other
+		for (boolean identifierIndependent : new boolean[]{true, false}) {
+			HashableStateFactory cached = new SimpleHashableStateFactory(identifierIndependent, true);
+			HashableStateFactory uncached = new SimpleHashableStateFactory(identifierIndependent, false);
+			GridAgent zeroHash = new GridAgent(-526, -31);
+			assert(uncached.hashState(zeroHash).hashCode() == 0);
+			HashableState h1 = cached.hashState(zeroHash);
+			HashableState h2 = cached.hashState(zeroHash.copy());
+			assert(h1.hashCode() == 0);
+			assert(h1.equals(h2) && h2.equals(h1));
+			assert(h1.equals(uncached.hashState(zeroHash)));
+			assert(!h1.equals(cached.hashState(new GridAgent(-526, -30))));
+		}
+	}
+
+	@Test
+	public void testPackedHashFactory() {
+		SADomain domain = (SADomain)this.gridWorldTest.getDomain();
+		State startState = this.gridWorldTest.generateState();
+
+		PackedHashableStateFactory factory = new PackedHashableStateFactory();
+		Set<HashableState> hashedStates = this.getReachableHashedStates(startState, domain, factory);
+		assert(hashedStates.size() == 104);
+
+		HashableStateFactory simpleFactory = new SimpleHashableStateFactory();
+		Set<HashableState> renamedStates = new HashSet<HashableState>();
+		for (HashableState state : hashedStates) {
+			State decoded = state.s();
+			assert(simpleFactory.hashState(decoded).equals(simpleFactory.hashState(factory.hashState(decoded).s())));
+			renamedStates.add(factory.hashState(this.renameObjects((GridWorldState)decoded.copy())));
+		}
+		hashedStates.addAll(renamedStates);
+		assert(hashedStates.size() == 104);
+	}
+
 	
 	@Test
 	public void testSimpleHashFactoryLargeState() {
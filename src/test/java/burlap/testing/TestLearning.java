@@ -0,0 +1,517 @@
+package burlap.testing;
+
+import burlap.behavior.policy.Policy;
+import burlap.behavior.functionapproximation.DifferentiableStateActionValue;
+import burlap.behavior.functionapproximation.FunctionGradient;
+import burlap.behavior.functionapproximation.dense.DenseLinearVFA;
+import burlap.behavior.functionapproximation.dense.DenseCrossProductFeatures;
+import burlap.behavior.functionapproximation.dense.DenseStateFeatures;
+import burlap.behavior.functionapproximation.dense.NumericVariableFeatures;
+import burlap.behavior.functionapproximation.dense.fourier.FourierBasis;
+import burlap.behavior.functionapproximation.dense.NormalizedVariableFeatures;
+import burlap.behavior.functionapproximation.sparse.tilecoding.HashedTileCodingFeatures;
+import burlap.behavior.functionapproximation.sparse.tilecoding.TilingArrangement;
+import burlap.behavior.singleagent.Episode;
+import burlap.behavior.singleagent.learnfromdemo.mlirl.MLIRL;
+import burlap.behavior.singleagent.learnfromdemo.mlirl.MLIRLRequest;
+import burlap.behavior.singleagent.learnfromdemo.mlirl.commonrfs.LinearStateDifferentiableRF;
+import burlap.behavior.singleagent.learnfromdemo.mlirl.differentiableplanners.DifferentiableVI;
+import burlap.behavior.singleagent.learning.experiencereplay.EncodedExperienceBuffer;
+import burlap.behavior.singleagent.learning.experiencereplay.FeatureStateEncoder;
+import burlap.behavior.singleagent.learning.experiencereplay.PackedStateEncoder;
+import burlap.behavior.singleagent.learning.experiencereplay.PrioritizedExperienceMemory;
+import burlap.behavior.singleagent.learning.experiencereplay.PrioritizedSample;
+import burlap.behavior.singleagent.learning.lspi.IncrementalLSTDQ;
+import burlap.behavior.singleagent.learning.modellearning.modelplanners.IncrementalVIModelLearningPlanner;
+import burlap.behavior.singleagent.learning.modellearning.rmax.PotentialShapedRMax;
+import burlap.behavior.singleagent.learning.lspi.SARSCollector;
+import burlap.behavior.singleagent.learning.lspi.SARSData;
+import burlap.behavior.singleagent.learning.tdmethods.CompactQTable;
+import burlap.behavior.singleagent.learning.tdmethods.EligibilityTraceStore;
+import burlap.behavior.singleagent.learning.tdmethods.QLearning;
+import burlap.behavior.singleagent.learning.tdmethods.QTable;
+import burlap.behavior.singleagent.learning.tdmethods.SarsaLam;
+import burlap.behavior.singleagent.learning.tdmethods.vfa.GradientDescentSarsaLam;
+import burlap.behavior.singleagent.learning.tdmethods.vfa.GradientDescentQLearning;
+import burlap.behavior.singleagent.planning.stochastic.valueiteration.ValueIteration;
+import burlap.behavior.valuefunction.QValue;
+import burlap.datastructures.SumTree;
+import burlap.debugtools.RandomFactory;
+import burlap.domain.singleagent.gridworld.GridWorldDomain;
+import burlap.domain.singleagent.gridworld.state.GridAgent;
+import burlap.domain.singleagent.gridworld.state.GridLocation;
+import burlap.domain.singleagent.gridworld.state.GridWorldState;
+import burlap.domain.singleagent.mountaincar.MCState;
+import burlap.domain.singleagent.mountaincar.MountainCar;
+import burlap.mdp.auxiliary.common.ConstantStateGenerator;
+import burlap.mdp.auxiliary.common.SinglePFTF;
+import burlap.mdp.core.TerminalFunction;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.action.SimpleAction;
+import burlap.mdp.core.state.FeatureVectorState;
+import burlap.mdp.core.oo.propositional.PropositionalFunction;
+import burlap.mdp.core.state.State;
+import burlap.mdp.core.state.vardomain.VariableDomain;
+import burlap.mdp.singleagent.common.UniformCostRF;
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+import burlap.mdp.singleagent.environment.SimulatedEnvironment;
+import burlap.mdp.singleagent.model.FullModel;
+import burlap.mdp.singleagent.oo.OOSADomain;
+import burlap.statehashing.HashableState;
+import burlap.statehashing.simple.SimpleHashableStateFactory;
+import burlap.statehashing.packed.PackedHashableStateFactory;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static burlap.behavior.policy.PolicyUtils.rollout;
+import static burlap.domain.singleagent.gridworld.GridWorldDomain.PF_AT_LOCATION;
+
+public class TestLearning {
+
+  GridWorldDomain gw;
+  OOSADomain domain;
+  SimpleHashableStateFactory hashingFactory;
+
+  @Before
+  public void setup() {
+    this.gw = new GridWorldDomain(11, 11);
+    this.gw.setMapToFourRooms();
+    this.gw.setRf(new UniformCostRF());
+    TerminalFunction tf = new SinglePFTF(PropositionalFunction.findPF(gw.generatePfs(), PF_AT_LOCATION));
+    this.gw.setTf(tf);
+    this.domain = this.gw.generateDomain();
+    this.hashingFactory = new SimpleHashableStateFactory();
+  }
+
+  @Test
+  public void testCompactQTable() {
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+
+    QLearning[] mapAgents = new QLearning[2];
+    QLearning[] compactAgents = new QLearning[2];
+    for (int i = 0; i < 2; i++) {
+      for (boolean compact : new boolean[]{false, true}) {
+        RandomFactory.seedMapped(0, 123);
+        QLearning agent = i == 0
+                ? new QLearning(this.domain, 0.99, this.hashingFactory, 0., 0.5)
+                : new SarsaLam(this.domain, 0.99, this.hashingFactory, 0., 0.5, 0.8);
+        if (compact) {
+          agent.setQTable(new CompactQTable());
+        }
+        SimulatedEnvironment env = new SimulatedEnvironment(this.domain, initialState);
+        for (int e = 0; e < 50; e++) {
+          agent.runLearningEpisode(env, 500);
+          env.resetEnvironment();
+        }
+        if (compact) {
+          compactAgents[i] = agent;
+        } else {
+          mapAgents[i] = agent;
+        }
+      }
+    }
+
+    for (int i = 0; i < 2; i++) {
+      QTable table = compactAgents[i].getQTable();
+      for (int s = 0; s < table.numStates(); s++) {
+        State state = table.state(s).s();
+        List<QValue> expected = mapAgents[i].qValues(state);
+        List<QValue> actual = compactAgents[i].qValues(state);
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int j = 0; j < expected.size(); j++) {
+          Assert.assertEquals(expected.get(j).a, actual.get(j).a);
+          Assert.assertEquals(expected.get(j).q, actual.get(j).q, 0.);
+        }
+      }
+    }
+
+    //states whose hash codes collide are told apart by equality
+    CompactQTable colliding = new CompactQTable(4);
+    List<Action> actions = Arrays.<Action>asList(new SimpleAction("a"));
+    List<HashableState> stored = new ArrayList<HashableState>();
+    for (int x = 0; x < 40; x++) {
+      final HashableState sh = this.hashingFactory.hashState(new GridWorldState(x, 0));
+      HashableState collision = new HashableState() {
+        @Override
+        public State s() {
+          return sh.s();
+        }
+
+        @Override
+        public int hashCode() {
+          return 7;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+          return obj instanceof HashableState && sh.equals(hashingFactory.hashState(((HashableState) obj).s()));
+        }
+      };
+      stored.add(collision);
+      Assert.assertEquals(x, colliding.addState(collision, actions, new double[]{x}));
+    }
+    for (int x = 0; x < 40; x++) {
+      Assert.assertEquals(x, colliding.stateIndex(stored.get(x)));
+    }
+    colliding.clear();
+    Assert.assertEquals(-1, colliding.stateIndex(stored.get(0)));
+  }
+
+  @Test
+  public void testTableCheckpoints() throws IOException {
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+
+    ValueIteration vi = new ValueIteration(this.domain, 0.99, this.hashingFactory, 0.0001, 200);
+    vi.planFromState(initialState);
+    File valueFile = File.createTempFile("values", ".ckpt");
+    valueFile.deleteOnExit();
+    vi.writeValueTable(valueFile.getPath(), true);
+
+    ValueIteration restoredVI = new ValueIteration(this.domain, 0.99, this.hashingFactory, 0.0001, 200);
+    restoredVI.loadValueTable(valueFile.getPath());
+    for (State s : vi.getAllStates()) {
+      Assert.assertEquals(vi.value(s), restoredVI.value(s), 0.);
+    }
+
+    QLearning agent = new QLearning(this.domain, 0.99, this.hashingFactory, 0., 0.5);
+    agent.setQTable(new CompactQTable());
+    SimulatedEnvironment env = new SimulatedEnvironment(this.domain, initialState);
+    File fullFile = File.createTempFile("qtable", ".ckpt");
+    fullFile.deleteOnExit();
+    File deltaFile = File.createTempFile("qtable-delta", ".ckpt");
+    deltaFile.deleteOnExit();
+    for (int e = 0; e < 20; e++) {
+      agent.runLearningEpisode(env, 500);
+      env.resetEnvironment();
+    }
+    agent.writeQTable(fullFile.getPath());
+    for (int e = 0; e < 20; e++) {
+      agent.runLearningEpisode(env, 500);
+      env.resetEnvironment();
+    }
+    agent.writeQTable(deltaFile.getPath(), false, true);
+
+    QLearning mapRestored = new QLearning(this.domain, 0.99, this.hashingFactory, 0., 0.5);
+    QLearning compactRestored = new QLearning(this.domain, 0.99, this.hashingFactory, 0., 0.5);
+    compactRestored.setQTable(new CompactQTable());
+    for (QLearning restored : new QLearning[]{mapRestored, compactRestored}) {
+      restored.loadQTable(fullFile.getPath());
+      restored.loadQTable(deltaFile.getPath());
+    }
+
+    QTable table = agent.getQTable();
+    Assert.assertEquals(table.numStates(), compactRestored.getQTable().numStates());
+    for (int s = 0; s < table.numStates(); s++) {
+      State state = table.state(s).s();
+      for (QValue q : agent.qValues(state)) {
+        Assert.assertEquals(q.q, mapRestored.qValue(state, q.a), 0.);
+        Assert.assertEquals(q.q, compactRestored.qValue(state, q.a), 0.);
+      }
+    }
+  }
+
+  @Test
+  public void testIncrementalLSTDQ() {
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+    DenseCrossProductFeatures features = new DenseCrossProductFeatures(new NumericVariableFeatures("agent:x", "agent:y"), 4);
+
+    SARSCollector collector = new SARSCollector.UniformRandomSARSCollector(this.domain);
+    SARSData dataset = collector.collectNInstances(new ConstantStateGenerator(initialState), this.domain.getModel(), 500, 50, null);
+    SARSData firstHalf = new SARSData();
+    for (int i = 0; i < 250; i++) {
+      firstHalf.add(dataset.get(i));
+    }
+
+    double[] policyWeights = new double[12];
+    for (int i = 0; i < policyWeights.length; i++) {
+      policyWeights[i] = 0.1 * (i + 1);
+    }
+
+    IncrementalLSTDQ batch = new IncrementalLSTDQ(this.domain, 0.99, features);
+    batch.setDataset(dataset);
+    double[] expected = batch.solve(policyWeights);
+
+    IncrementalLSTDQ leastSquares = new IncrementalLSTDQ(this.domain, 0.99, features);
+    leastSquares.setSolverType(IncrementalLSTDQ.SolverType.LEAST_SQUARES);
+    leastSquares.setDataset(dataset);
+    assertWeightsEqual(expected, leastSquares.solve(policyWeights));
+
+    for (IncrementalLSTDQ.SolverType solverType : IncrementalLSTDQ.SolverType.values()) {
+      IncrementalLSTDQ incremental = new IncrementalLSTDQ(this.domain, 0.99, features);
+      incremental.setSolverType(solverType);
+      incremental.setDataset(firstHalf);
+      incremental.solve(policyWeights);
+      for (int i = 250; i < dataset.size(); i++) {
+        firstHalf.add(dataset.get(i));
+      }
+      assertWeightsEqual(expected, incremental.solve(policyWeights));
+      Assert.assertEquals(dataset.size(), incremental.numCachedSamples());
+      firstHalf = new SARSData();
+      for (int i = 0; i < 250; i++) {
+        firstHalf.add(dataset.get(i));
+      }
+    }
+  }
+
+  protected static void assertWeightsEqual(double[] expected, double[] actual) {
+    Assert.assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertEquals(expected[i], actual[i], 1e-6 * Math.max(1., Math.abs(expected[i])));
+    }
+  }
+
+  @Test
+  public void testIncrementalModelLearningPlanner() {
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+    PotentialShapedRMax rmax = new PotentialShapedRMax(this.domain, 0.99, this.hashingFactory, 0, 1, 0.01, 200);
+    rmax.setModelPlanner(new IncrementalVIModelLearningPlanner(this.domain, (FullModel) rmax.getModel(), 0.99, this.hashingFactory, 0.01, 200));
+    SimulatedEnvironment env = new SimulatedEnvironment(this.domain, initialState);
+    Episode last = null;
+    for (int i = 0; i < 15; i++) {
+      last = rmax.runLearningEpisode(env);
+      env.resetEnvironment();
+    }
+    Assert.assertEquals(this.gw.getHeight() + this.gw.getWidth() - 2, last.maxTimeStep());
+  }
+
+  @Test
+  public void testWarmStartedParallelMLIRL() {
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+    ValueIteration vi = new ValueIteration(this.domain, 0.99, this.hashingFactory, 0.0001, 200);
+    vi.toggleDebugPrinting(false);
+    Policy expert = vi.planFromState(initialState);
+    List<Episode> episodes = new ArrayList<Episode>();
+    for (int i = 0; i < 4; i++) {
+      episodes.add(rollout(expert, initialState, domain.getModel()));
+    }
+
+    DenseStateFeatures atGoal = new DenseStateFeatures() {
+      @Override
+      public double[] features(State s) {
+        GridAgent agent = ((GridWorldState) s).agent;
+        return new double[]{agent.x == 10 && agent.y == 10 ? 1. : 0., 1.};
+      }
+
+      @Override
+      public DenseStateFeatures copy() {
+        return this;
+      }
+    };
+
+    double[] likelihoods = new double[2];
+    double[] goalWeights = new double[2];
+    for (int i = 0; i < 2; i++) {
+      LinearStateDifferentiableRF rf = new LinearStateDifferentiableRF(atGoal, 2, true);
+      MLIRLRequest request = new MLIRLRequest(this.domain, null, episodes, rf);
+      request.setPlanner(new DifferentiableVI(this.domain, rf, 0.9, request.getBoltzmannBeta(), this.hashingFactory, 0.01, 100));
+      MLIRL irl = new MLIRL(request, 0.1, 0.01, 5);
+      irl.toggleDebugPrinting(false);
+      irl.toggleWarmStart(i == 1);
+      irl.setParallelGradient(i == 1 ? 2 : 1);
+      irl.performIRL();
+      likelihoods[i] = irl.logLikelihood();
+      goalWeights[i] = rf.getParameter(0);
+    }
+    Assert.assertTrue(goalWeights[0] > 0.);
+    Assert.assertEquals(likelihoods[0], likelihoods[1], 0.05 * Math.abs(likelihoods[0]));
+    Assert.assertEquals(goalWeights[0], goalWeights[1], 0.05);
+  }
+
+  @Test
+  public void testPrioritizedExperienceReplay() {
+    //a sum-tree over a capacity that is not a power of two finds slots by cumulative priority
+    SumTree tree = new SumTree(5);
+    double[] ps = {1., 0., 3., 0., 4.};
+    for (int i = 0; i < ps.length; i++) {
+      tree.set(i, ps[i]);
+    }
+    Assert.assertEquals(8., tree.total(), 0.);
+    Assert.assertEquals(0, tree.find(0.5));
+    Assert.assertEquals(2, tree.find(1.));
+    Assert.assertEquals(2, tree.find(3.99));
+    Assert.assertEquals(4, tree.find(4.));
+    Assert.assertEquals(4, tree.find(100.));
+    tree.set(2, 1.);
+    Assert.assertEquals(6., tree.total(), 0.);
+    Assert.assertEquals(0., tree.min(), 0.);
+
+    //samples are proportional to priorities, new experiences get the largest priority, and weights correct the sampling
+    PrioritizedExperienceMemory memory = new PrioritizedExperienceMemory(4, 1., 1.);
+    memory.setEpsilon(0.);
+    List<EnvironmentOutcome> eos = new ArrayList<EnvironmentOutcome>();
+    for (int i = 0; i < 5; i++) {
+      eos.add(new EnvironmentOutcome(new GridWorldState(i, 0), new SimpleAction(GridWorldDomain.ACTION_EAST), new GridWorldState(i + 1, 0), -1., false));
+    }
+    for (int i = 0; i < 4; i++) {
+      memory.addExperience(eos.get(i));
+    }
+    memory.updatePriorities(new int[]{0, 1, 2, 3}, new double[]{1., 2., Double.NaN, -4.});
+    PrioritizedSample sample = memory.samplePrioritized(8000);
+    int[] counts = new int[4];
+    for (int i = 0; i < sample.ids.length; i++) {
+      counts[sample.ids[i]]++;
+      Assert.assertSame(eos.get(sample.ids[i]), sample.experiences.get(i));
+      Assert.assertEquals(1. / memory.priority(sample.ids[i]), sample.weights[i], TestPlanning.delta);
+    }
+    Assert.assertArrayEquals(new int[]{1000, 2000, 1000, 4000}, counts);
+    memory.addExperience(eos.get(4));
+    Assert.assertEquals(4., memory.priority(0), 0.);
+    Assert.assertEquals(4, memory.size());
+
+    //encoded buffers decode the stored states and actions
+    PackedHashableStateFactory packed = new PackedHashableStateFactory();
+    EncodedExperienceBuffer buffer = new EncodedExperienceBuffer(3, new PackedStateEncoder(packed));
+    buffer.set(2, eos.get(3));
+    EnvironmentOutcome decoded = buffer.get(2);
+    Assert.assertNull(buffer.get(0));
+    Assert.assertEquals(packed.hashState(eos.get(3).o), packed.hashState(decoded.o));
+    Assert.assertEquals(packed.hashState(eos.get(3).op), packed.hashState(decoded.op));
+    Assert.assertEquals(eos.get(3).a, decoded.a);
+    Assert.assertEquals(-1., decoded.r, 0.);
+    NumericVariableFeatures mcFeatures = new NumericVariableFeatures(MountainCar.ATT_X, MountainCar.ATT_V);
+    EncodedExperienceBuffer featureBuffer = new EncodedExperienceBuffer(2, new FeatureStateEncoder(mcFeatures));
+    featureBuffer.set(1, new EnvironmentOutcome(new MCState(-0.5, 0.01), new SimpleAction("forward"), new MCState(-0.49, 0.011), 0., true));
+    decoded = featureBuffer.get(1);
+    Assert.assertArrayEquals(new double[]{-0.5, 0.01}, ((FeatureVectorState) decoded.o).values(), 0.);
+    Assert.assertArrayEquals(new double[]{-0.49, 0.011}, ((FeatureVectorState) decoded.op).values(), 0.);
+    Assert.assertTrue(decoded.terminated);
+
+    //Q-learning replays prioritized, encoded experiences and reports TD errors back as priorities
+    RandomFactory.seedMapped(0, 7);
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+    HashedTileCodingFeatures htc = new HashedTileCodingFeatures(new NumericVariableFeatures("agent:x", "agent:y"), 1024);
+    htc.addTilingsForAllDimensionsWithWidths(new double[]{1., 1.}, 1, TilingArrangement.UNIFORM);
+    GradientDescentQLearning agent = new GradientDescentQLearning(this.domain, 0.99, htc.generateVFA(0.), 0.5);
+    PrioritizedExperienceMemory replay = new PrioritizedExperienceMemory(new EncodedExperienceBuffer(5000, new PackedStateEncoder(new PackedHashableStateFactory())), 0.6, 0.4);
+    agent.setExperienceReplay(replay, 8);
+    SimulatedEnvironment env = new SimulatedEnvironment(this.domain, initialState);
+    for (int e = 0; e < 30; e++) {
+      agent.runLearningEpisode(env, 500);
+      env.resetEnvironment();
+    }
+    Assert.assertTrue(replay.size() > 0);
+    boolean reprioritized = false;
+    for (int i = 0; i < replay.size(); i++) {
+      reprioritized |= replay.priority(i) != 1.;
+    }
+    Assert.assertTrue(reprioritized);
+    Assert.assertTrue(agent.qValue(new GridWorldState(new GridAgent(9, 10), new GridLocation(10, 10, 0, "loc0")), new SimpleAction(GridWorldDomain.ACTION_EAST)) < 0.);
+  }
+
+  @Test
+  public void testEligibilityTraceStore() {
+    EligibilityTraceStore traces = new EligibilityTraceStore(4);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(-1, traces.indexOf(i * 1000003));
+      Assert.assertEquals(i, traces.add(i * 1000003, i, i % 2 == 0 ? 1. : 0.001, i));
+    }
+    traces.removeBelow(0.01);
+    Assert.assertEquals(50, traces.size());
+    for (int i = 0; i < 50; i++) {
+      Assert.assertEquals(i * 2 * 1000003, traces.id(i));
+      Assert.assertEquals(i, traces.indexOf(i * 2 * 1000003));
+      Assert.assertEquals(i * 2., traces.initialValue(i), 0.);
+      Assert.assertEquals(i * 2, traces.tag(i));
+      Assert.assertEquals(-1, traces.indexOf((i * 2 + 1) * 1000003));
+    }
+    traces.clear();
+    Assert.assertEquals(0, traces.size());
+    Assert.assertEquals(-1, traces.indexOf(0));
+
+    //pruned tabular traces learn the same with both Q-value storage backends
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+    SarsaLam[] agents = new SarsaLam[2];
+    for (int i = 0; i < 2; i++) {
+      RandomFactory.seedMapped(0, 5);
+      agents[i] = new SarsaLam(this.domain, 0.99, this.hashingFactory, 0., 0.5, 0.9);
+      agents[i].setMinEligibilityForUpdate(0.05);
+      if (i == 1) {
+        agents[i].setQTable(new CompactQTable());
+      }
+      SimulatedEnvironment env = new SimulatedEnvironment(this.domain, initialState);
+      for (int e = 0; e < 30; e++) {
+        agents[i].runLearningEpisode(env, 500);
+        env.resetEnvironment();
+      }
+    }
+    QTable table = agents[1].getQTable();
+    for (int s = 0; s < table.numStates(); s++) {
+      State state = table.state(s).s();
+      for (QValue q : agents[1].qValues(state)) {
+        Assert.assertEquals(agents[0].qValue(state, q.a), q.q, 0.);
+      }
+    }
+
+    //replacing traces found from action offsets match those found from the gradient of every action
+    double[] goalQs = new double[2];
+    for (int i = 0; i < 2; i++) {
+      RandomFactory.seedMapped(0, 5);
+      NormalizedVariableFeatures nf = new NormalizedVariableFeatures()
+              .variableDomain("agent:x", new VariableDomain(0, 10))
+              .variableDomain("agent:y", new VariableDomain(0, 10));
+      final DenseLinearVFA linear = new DenseLinearVFA(new FourierBasis(nf, 2), 0.);
+      DifferentiableStateActionValue vfa = i == 0 ? linear : new DifferentiableStateActionValue() {
+        @Override
+        public FunctionGradient gradient(State s, Action a) {
+          return linear.gradient(s, a);
+        }
+        @Override
+        public double evaluate(State s, Action a) {
+          return linear.evaluate(s, a);
+        }
+        @Override
+        public int numParameters() {
+          return linear.numParameters();
+        }
+        @Override
+        public double getParameter(int p) {
+          return linear.getParameter(p);
+        }
+        @Override
+        public void setParameter(int p, double v) {
+          linear.setParameter(p, v);
+        }
+        @Override
+        public void resetParameters() {
+          linear.resetParameters();
+        }
+        @Override
+        public DifferentiableStateActionValue copy() {
+          return linear.copy();
+        }
+      };
+      GradientDescentSarsaLam agent = new GradientDescentSarsaLam(this.domain, 0.99, vfa, 0.02, 0.9);
+      agent.setUseReplaceTraces(true);
+      SimulatedEnvironment env = new SimulatedEnvironment(this.domain, initialState);
+      for (int e = 0; e < 10; e++) {
+        agent.runLearningEpisode(env, 500);
+        env.resetEnvironment();
+      }
+      goalQs[i] = agent.qValue(new GridWorldState(new GridAgent(9, 10), new GridLocation(10, 10, 0, "loc0")), new SimpleAction(GridWorldDomain.ACTION_EAST));
+    }
+    Assert.assertEquals(goalQs[0], goalQs[1], 0.);
+    Assert.assertNotEquals(0., goalQs[0], 0.);
+
+    //a reused gradient holds the same partial derivatives as a newly allocated one
+    NormalizedVariableFeatures nf = new NormalizedVariableFeatures()
+            .variableDomain("agent:x", new VariableDomain(0, 10))
+            .variableDomain("agent:y", new VariableDomain(0, 10));
+    DenseLinearVFA linear = new DenseLinearVFA(new FourierBasis(nf, 2), 0.);
+    FunctionGradient.SparseArrayGradient reused = new FunctionGradient.SparseArrayGradient();
+    linear.gradient(initialState, new SimpleAction(GridWorldDomain.ACTION_NORTH), reused);
+    State other = new GridWorldState(new GridAgent(3, 7), new GridLocation(10, 10, 0, "loc0"));
+    Action east = new SimpleAction(GridWorldDomain.ACTION_EAST);
+    Assert.assertSame(reused, linear.gradient(other, east, reused));
+    FunctionGradient allocated = linear.gradient(other, east);
+    Assert.assertEquals(allocated.numNonZeroPDs(), reused.numNonZeroPDs());
+    for (FunctionGradient.PartialDerivative pd : allocated.getNonZeroPartialDerivatives()) {
+      Assert.assertEquals(pd.value, reused.getPartialDerivative(pd.parameterId), 0.);
+    }
+  }
+}
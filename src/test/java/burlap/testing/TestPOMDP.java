@@ -0,0 +1,134 @@
+package burlap.testing;
+
+import burlap.behavior.policy.GreedyQPolicy;
+import burlap.behavior.policy.Policy;
+import burlap.behavior.singleagent.pomdp.pointbased.PointBasedValueIteration;
+import burlap.behavior.singleagent.pomdp.wrappedmdpalgs.BeliefSparseSampling;
+import burlap.debugtools.RandomFactory;
+import burlap.domain.singleagent.pomdp.tiger.TigerDomain;
+import burlap.domain.singleagent.pomdp.tiger.TigerObservation;
+import burlap.domain.singleagent.pomdp.tiger.TigerState;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.action.SimpleAction;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.pomdp.PODomain;
+import burlap.mdp.singleagent.pomdp.beliefstate.BeliefState;
+import burlap.mdp.singleagent.pomdp.beliefstate.DenseArrayBeliefState;
+import burlap.mdp.singleagent.pomdp.beliefstate.ParticleBeliefState;
+import burlap.mdp.singleagent.pomdp.beliefstate.ParticleFilterBeliefUpdate;
+import burlap.mdp.singleagent.pomdp.beliefstate.SparseArrayBeliefState;
+import burlap.mdp.singleagent.pomdp.beliefstate.TabularBeliefState;
+import burlap.mdp.singleagent.pomdp.beliefstate.TabularBeliefUpdate;
+import burlap.mdp.singleagent.pomdp.beliefstate.TensorBeliefUpdate;
+import burlap.statehashing.ReflectiveHashableStateFactory;
+import burlap.statehashing.simple.SimpleHashableStateFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPOMDP {
+
+  SimpleHashableStateFactory hashingFactory;
+
+  @Before
+  public void setup() {
+    this.hashingFactory = new SimpleHashableStateFactory();
+  }
+
+  @Test
+  public void testPointBasedValueIteration() {
+    PODomain tiger = (PODomain) new TigerDomain(false).generateDomain();
+    TabularBeliefState uniform = TigerDomain.getInitialBeliefState(tiger);
+    TabularBeliefState confident = new TabularBeliefState(tiger, tiger.getStateEnumerator());
+    confident.setBelief(new TigerState(TigerDomain.VAL_LEFT), 0.97);
+    confident.setBelief(new TigerState(TigerDomain.VAL_RIGHT), 0.03);
+
+    double[] values = new double[2];
+    PointBasedValueIteration.BackupMode[] modes = PointBasedValueIteration.BackupMode.values();
+    for (int i = 0; i < modes.length; i++) {
+      PointBasedValueIteration pbvi = new PointBasedValueIteration(tiger, 0.95, this.hashingFactory, 50, 1e-4, 500);
+      pbvi.toggleDebugPrinting(false);
+      pbvi.setBackupMode(modes[i]);
+      pbvi.setParallelBackups(2);
+      Policy p = pbvi.planFromState(uniform);
+      Assert.assertEquals(TigerDomain.ACTION_LISTEN, p.action(uniform).actionName());
+      Assert.assertEquals(TigerDomain.ACTION_RIGHT, p.action(confident).actionName());
+      values[i] = pbvi.value(uniform);
+    }
+    Assert.assertEquals(values[0], values[1], 0.01);
+  }
+
+  @Test
+  public void testTensorBeliefUpdate() {
+    PODomain tiger = (PODomain) new TigerDomain(true, 0.85).generateDomain();
+    TabularBeliefUpdate exact = new TabularBeliefUpdate(tiger);
+    TensorBeliefUpdate tensor = new TensorBeliefUpdate(tiger);
+    BeliefState tabular = TigerDomain.getInitialBeliefState(tiger);
+    SparseArrayBeliefState sparse = new SparseArrayBeliefState(tiger);
+    sparse.initializeBeliefsUniformly();
+    DenseArrayBeliefState dense = new DenseArrayBeliefState(tiger);
+    dense.initializeBeliefsUniformly();
+
+    Action listen = new SimpleAction(TigerDomain.ACTION_LISTEN);
+    Action open = new SimpleAction(TigerDomain.ACTION_LEFT);
+    State hearLeft = new TigerObservation(TigerDomain.HEAR_LEFT);
+    State hearRight = new TigerObservation(TigerDomain.HEAR_RIGHT);
+    State reset = new TigerObservation(TigerDomain.DOOR_RESET);
+    Action[] actions = {listen, listen, listen, open, listen};
+    State[] observations = {hearLeft, hearLeft, hearRight, reset, hearRight};
+
+    State left = new TigerState(TigerDomain.VAL_LEFT);
+    for (int i = 0; i < actions.length; i++) {
+      tabular = exact.update(tabular, observations[i], actions[i]);
+      sparse = (SparseArrayBeliefState) tensor.update(sparse, observations[i], actions[i]);
+      dense = (DenseArrayBeliefState) tensor.update(dense, observations[i], actions[i]);
+      Assert.assertEquals(tabular.belief(left), sparse.belief(left), 1e-10);
+      Assert.assertEquals(tabular.belief(left), dense.belief(left), 1e-10);
+      Assert.assertEquals(sparse, dense);
+    }
+
+    sparse.setBelief(left, 0.9);
+    sparse.setBelief(new TigerState(TigerDomain.VAL_RIGHT), 0.1);
+    RandomFactory.seedMapped(0, 0);
+    int numLeft = 0;
+    for (int i = 0; i < 10000; i++) {
+      if (sparse.sample().equals(left)) {
+        numLeft++;
+      }
+    }
+    Assert.assertEquals(0.9, numLeft / 10000., 0.02);
+  }
+
+  @Test
+  public void testParticleFilterBeliefUpdate() {
+    PODomain tiger = (PODomain) new TigerDomain(false, 0.85).generateDomain();
+    RandomFactory.seedMapped(0, 0);
+    ParticleFilterBeliefUpdate filter = new ParticleFilterBeliefUpdate(tiger, 5000);
+    filter.setParallelPropagation(2);
+    TabularBeliefUpdate exact = new TabularBeliefUpdate(tiger);
+    BeliefState particles = new ParticleBeliefState(TigerDomain.randomSideStateGenerator(), 5000);
+    BeliefState tabular = TigerDomain.getInitialBeliefState(tiger);
+
+    Action listen = new SimpleAction(TigerDomain.ACTION_LISTEN);
+    State[] observations = {new TigerObservation(TigerDomain.HEAR_LEFT), new TigerObservation(TigerDomain.HEAR_LEFT), new TigerObservation(TigerDomain.HEAR_RIGHT)};
+    State left = new TigerState(TigerDomain.VAL_LEFT);
+    for (State o : observations) {
+      particles = filter.update(particles, o, listen);
+      tabular = exact.update(tabular, o, listen);
+      Assert.assertEquals(5000, ((ParticleBeliefState) particles).numParticles());
+      Assert.assertEquals(tabular.belief(left), particles.belief(left), 0.03);
+    }
+
+    ParticleBeliefState weighted = new ParticleBeliefState(new State[]{left, new TigerState(TigerDomain.VAL_RIGHT)}, new double[]{1., 3.});
+    Assert.assertEquals(0.25, weighted.weight(0), 0.);
+    weighted.weights()[0] = 5.;
+    weighted.weightsChanged();
+    Assert.assertEquals(0.625, weighted.weight(0), 0.);
+    Assert.assertEquals(0.625, weighted.belief(left), 0.);
+
+    BeliefSparseSampling bss = new BeliefSparseSampling(tiger, 0.95, new ReflectiveHashableStateFactory(), 2, 3, new ParticleFilterBeliefUpdate(tiger, 100));
+    bss.toggleDebugPrinting(false);
+    BeliefState initial = new ParticleBeliefState(TigerDomain.randomSideStateGenerator(), 100);
+    Assert.assertEquals(TigerDomain.ACTION_LISTEN, new GreedyQPolicy(bss).action(initial).actionName());
+  }
+}
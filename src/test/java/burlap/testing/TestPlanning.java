@@ -3,12 +3,19 @@ package burlap.testing;
 import burlap.behavior.policy.Policy;
 import burlap.behavior.policy.PolicyUtils;
 import burlap.behavior.singleagent.Episode;
+import burlap.behavior.singleagent.options.OptionType;
+import burlap.behavior.singleagent.options.SubgoalOption;
+import burlap.behavior.singleagent.options.model.BFSMarkovOptionModel;
 import burlap.behavior.singleagent.planning.deterministic.DeterministicPlanner;
 import burlap.behavior.singleagent.planning.deterministic.SDPlannerPolicy;
 import burlap.behavior.singleagent.planning.deterministic.informed.Heuristic;
 import burlap.behavior.singleagent.planning.deterministic.informed.astar.AStar;
 import burlap.behavior.singleagent.planning.deterministic.uninformed.bfs.BFS;
 import burlap.behavior.singleagent.planning.deterministic.uninformed.dfs.DFS;
+import burlap.behavior.singleagent.planning.stochastic.montecarlo.uct.UCT;
+import burlap.behavior.singleagent.planning.stochastic.montecarlo.uct.UCTActionNode;
+import burlap.behavior.singleagent.planning.stochastic.policyiteration.PolicyIteration;
+import burlap.behavior.singleagent.planning.stochastic.valueiteration.ValueIteration;
 import burlap.domain.singleagent.gridworld.GridWorldDomain;
 import burlap.domain.singleagent.gridworld.state.GridAgent;
 import burlap.domain.singleagent.gridworld.state.GridLocation;
@@ -20,8 +27,11 @@ import burlap.mdp.core.TerminalFunction;
 import burlap.mdp.core.oo.propositional.PropositionalFunction;
 import burlap.mdp.core.state.State;
 import burlap.mdp.singleagent.common.UniformCostRF;
+import burlap.mdp.singleagent.model.TransitionProb;
 import burlap.mdp.singleagent.oo.OOSADomain;
 import burlap.statehashing.simple.SimpleHashableStateFactory;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -110,6 +120,161 @@ public class TestPlanning {
     this.evaluateEpisode(analysis, true);
   }
 
+  @Test
+  public void testIndexedVI() {
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+
+    ValueIteration mapVI = new ValueIteration(this.domain, 0.99, this.hashingFactory, 0.0001, 200);
+    mapVI.planFromState(initialState);
+
+    ValueIteration indexedVI = new ValueIteration(this.domain, 0.99, this.hashingFactory, 0.0001, 200);
+    indexedVI.toggleIndexedTable(true);
+    Policy p = indexedVI.planFromState(initialState);
+
+    for (State s : mapVI.getAllStates()) {
+      Assert.assertEquals(mapVI.value(s), indexedVI.value(s), 0.001);
+    }
+    Assert.assertEquals(mapVI.qValues(initialState).size(), indexedVI.qValues(initialState).size());
+
+    Episode analysis = rollout(p, initialState, domain.getModel());
+    this.evaluateEpisode(analysis, true);
+  }
+
+  @Test
+  public void testParallelSweeps() {
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+
+    ValueIteration twoThreads = new ValueIteration(this.domain, 0.99, this.hashingFactory, 0.0001, 200);
+    twoThreads.setParallelSweeps(2);
+    Policy p = twoThreads.planFromState(initialState);
+
+    ValueIteration fourThreads = new ValueIteration(this.domain, 0.99, this.hashingFactory, 0.0001, 200);
+    fourThreads.setParallelSweeps(4);
+    fourThreads.planFromState(initialState);
+
+    for (State s : twoThreads.getAllStates()) {
+      Assert.assertEquals(twoThreads.value(s), fourThreads.value(s), 0.);
+    }
+
+    Episode analysis = rollout(p, initialState, domain.getModel());
+    this.evaluateEpisode(analysis, true);
+
+    PolicyIteration pi = new PolicyIteration(this.domain, 0.99, this.hashingFactory, 0.0001, 200, 50);
+    pi.setParallelSweeps(4);
+    analysis = rollout(pi.planFromState(initialState), initialState, domain.getModel());
+    this.evaluateEpisode(analysis, true);
+  }
+
+  @Test
+  public void testParallelUCT() {
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+    for (UCT.ParallelMode mode : UCT.ParallelMode.values()) {
+      UCT uct = new UCT(this.domain, 0.99, this.hashingFactory, 20, 1000, 2);
+      uct.toggleDebugPrinting(false);
+      uct.setParallelRollouts(3, mode);
+      uct.setRolloutSeed(0);
+      uct.planFromState(initialState);
+      int rootVisits = 0;
+      for (UCTActionNode anode : uct.getRoot().actionNodes) {
+        rootVisits += anode.n;
+        Assert.assertEquals(0, anode.virtualVisits);
+      }
+      Assert.assertEquals(1000, rootVisits);
+      Assert.assertEquals(1000, uct.getRoot().n);
+    }
+
+    UCT timed = new UCT(this.domain, 0.99, this.hashingFactory, 20, -1, 2);
+    timed.toggleDebugPrinting(false);
+    timed.setPlanningTimeBudget(50);
+    long start = System.currentTimeMillis();
+    timed.planFromState(initialState);
+    Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    Assert.assertTrue(timed.getRoot().n > 0);
+  }
+
+  @Test
+  public void testDynamicProgrammingOptionModel() {
+    GridWorldState initialState = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+    ValueIteration vi = new ValueIteration(this.domain, 0.99, this.hashingFactory, 0.0001, 200);
+    Policy p = vi.planFromState(initialState);
+    List<State> states = vi.getAllStates();
+
+    //an option that follows the optimal policy out of the bottom left room
+    StateConditionTest inRoom = new StateConditionTest() {
+      @Override
+      public boolean satisfies(State s) {
+        GridAgent agent = ((GridWorldState) s).agent;
+        return agent.x < 5 && agent.y < 5;
+      }
+    };
+    StateConditionTest outOfRoom = new StateConditionTest() {
+      @Override
+      public boolean satisfies(State s) {
+        GridAgent agent = ((GridWorldState) s).agent;
+        return agent.x >= 5 || agent.y >= 5;
+      }
+    };
+    SubgoalOption leaveRoom = new SubgoalOption("leaveRoom", p, inRoom, outOfRoom);
+
+    BFSMarkovOptionModel bfs = new BFSMarkovOptionModel(this.domain.getModel(), 0.99, this.hashingFactory);
+    bfs.setMinProb(1.);
+    BFSMarkovOptionModel dp = new BFSMarkovOptionModel(this.domain.getModel(), 0.99, this.hashingFactory);
+    dp.toggleDynamicProgramming(true);
+    BFSMarkovOptionModel parallelDP = new BFSMarkovOptionModel(this.domain.getModel(), 0.99, this.hashingFactory);
+    parallelDP.toggleDynamicProgramming(true);
+    parallelDP.setParallelPrecompute(2);
+    parallelDP.precomputeModels(Arrays.asList(leaveRoom, new SubgoalOption("leaveRoomCopy", p, inRoom, outOfRoom)), states);
+
+    //dynamic programming gives the same discounted termination distribution and return as BFS, and results are cached
+    int numInRoom = 0;
+    for (State s : states) {
+      if (!inRoom.satisfies(s)) {
+        continue;
+      }
+      numInRoom++;
+      List<TransitionProb> expected = bfs.transitions(s, leaveRoom);
+      List<TransitionProb> actual = dp.transitions(s, leaveRoom);
+      Assert.assertSame(expected, bfs.transitions(s, leaveRoom));
+      Assert.assertSame(actual, dp.transitions(s, leaveRoom));
+      Assert.assertEquals(expected.size(), actual.size());
+      Assert.assertEquals(expected.get(0).eo.r, actual.get(0).eo.r, delta);
+      double expectedMass = 0.;
+      double actualMass = 0.;
+      for (int i = 0; i < expected.size(); i++) {
+        expectedMass += expected.get(i).p;
+        actualMass += actual.get(i).p;
+        Assert.assertTrue(outOfRoom.satisfies(actual.get(i).eo.op));
+      }
+      Assert.assertEquals(expectedMass, actualMass, delta);
+
+      List<TransitionProb> precomputed = parallelDP.transitions(s, leaveRoom);
+      Assert.assertEquals(actual.size(), precomputed.size());
+      for (int i = 0; i < actual.size(); i++) {
+        Assert.assertEquals(actual.get(i).p, precomputed.get(i).p, 0.);
+        Assert.assertEquals(actual.get(i).eo.r, precomputed.get(i).eo.r, 0.);
+      }
+    }
+    Assert.assertEquals(25, numInRoom);
+
+    //planning with the option model finds the same values, since the option follows the optimal policy
+    ValueIteration optionVI = new ValueIteration(this.domain, 0.99, this.hashingFactory, 0.0001, 200);
+    optionVI.setModel(dp);
+    optionVI.addActionType(new OptionType(leaveRoom));
+    optionVI.planFromState(initialState);
+    for (State s : states) {
+      Assert.assertEquals(vi.value(s), optionVI.value(s), 0.001);
+    }
+
+    //lowering the cache bound evicts the least recently used states of the options already cached
+    State first = new GridWorldState(new GridAgent(0, 0), new GridLocation(10, 10, 0, "loc0"));
+    State second = new GridWorldState(new GridAgent(1, 1), new GridLocation(10, 10, 0, "loc0"));
+    List<TransitionProb> secondModel = dp.transitions(second, leaveRoom);
+    List<TransitionProb> firstModel = dp.transitions(first, leaveRoom);
+    dp.setMaxCachedStates(1);
+    Assert.assertSame(firstModel, dp.transitions(first, leaveRoom));
+    Assert.assertNotSame(secondModel, dp.transitions(second, leaveRoom));
+  }
+
   public void evaluateEpisode(Episode analysis) {
     this.evaluateEpisode(analysis, false);
   }
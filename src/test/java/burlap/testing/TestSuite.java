@@ -7,6 +7,10 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
 	TestGridWorld.class,
 	TestPlanning.class,
+	TestLearning.class,
+	TestPOMDP.class,
+	TestFunctionApproximation.class,
+	TestExperiment.class,
 	TestBlockDude.class,
 	TestHashing.class
 })